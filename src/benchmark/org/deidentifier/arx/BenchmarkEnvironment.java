@@ -0,0 +1,184 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.deidentifier.arx.ARXConfiguration.ARXConfigurationInternal;
+import org.deidentifier.arx.framework.check.TransformationChecker;
+import org.deidentifier.arx.framework.check.Transformer;
+import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction;
+import org.deidentifier.arx.framework.check.distribution.IntArrayDictionary;
+import org.deidentifier.arx.framework.check.groupify.HashGroupify;
+import org.deidentifier.arx.framework.check.history.History;
+import org.deidentifier.arx.framework.data.DataManager;
+import org.deidentifier.arx.framework.lattice.SolutionSpace;
+
+/**
+ * Provides access to the internal operators of the anonymization engine, prepared in
+ * the same way as by the ARXAnonymizer before the search is started.
+ * 
+ * @author Fabian Prasser
+ */
+public class BenchmarkEnvironment {
+
+    /** Configuration */
+    private final ARXConfiguration   config;
+
+    /** Data manager */
+    private final DataManager        manager;
+
+    /** Solution space */
+    private final SolutionSpace<?>   solutionSpace;
+
+    /** Dictionary shared by the transformer and the history */
+    private final IntArrayDictionary dictionarySensValue;
+
+    /** Dictionary shared by the transformer and the history */
+    private final IntArrayDictionary dictionarySensFreq;
+
+    /**
+     * Creates a new environment
+     * 
+     * @param data
+     * @param config
+     */
+    public BenchmarkEnvironment(Data data, ARXConfiguration config) {
+        
+        // Encode
+        DataHandle handle = data.getHandle();
+        DataDefinition definition = handle.getDefinition();
+        definition.materializeHierarchies(handle);
+        handle.getRegistry().reset();
+        Map<String, DistributionAggregateFunction> functions = new HashMap<String, DistributionAggregateFunction>();
+        for (String key : definition.getQuasiIdentifiersWithMicroaggregation()) {
+            functions.put(key, definition.getMicroAggregationFunction(key).getFunction());
+        }
+        this.config = config.clone();
+        this.manager = new DataManager(handle.header,
+                                       ((DataHandleInput) handle).data,
+                                       ((DataHandleInput) handle).dictionary,
+                                       definition,
+                                       functions,
+                                       this.config);
+        
+        // Initialize
+        this.config.initialize(manager);
+        this.config.getQualityModel().initialize(manager, definition, manager.getDataGeneralized(), manager.getHierarchies(), this.config);
+        this.solutionSpace = SolutionSpace.create(manager.getHierarchiesMinLevels(), manager.getHierarchiesMaxLevels());
+        this.dictionarySensValue = new IntArrayDictionary(getInitialSize());
+        this.dictionarySensFreq = new IntArrayDictionary(getInitialSize());
+    }
+
+    /**
+     * Creates a transformation checker
+     * 
+     * @param historySize
+     * @param snapshotSizeDataset
+     * @param snapshotSizeSnapshot
+     * @return
+     */
+    public TransformationChecker createChecker(int historySize, double snapshotSizeDataset, double snapshotSizeSnapshot) {
+        return new TransformationChecker(manager,
+                                         config.getQualityModel(),
+                                         config.getInternalConfiguration(),
+                                         historySize,
+                                         snapshotSizeDataset,
+                                         snapshotSizeSnapshot,
+                                         solutionSpace);
+    }
+
+    /**
+     * Creates a groupify operator which groups the output of the given transformer
+     * 
+     * @param transformer
+     * @return
+     */
+    public HashGroupify createGroupify(Transformer transformer) {
+        return new HashGroupify(getInitialSize(),
+                                config.getInternalConfiguration(),
+                                manager.getAggregationInformation().getHotThreshold(),
+                                manager.getAggregationInformation().getDomainSizes(),
+                                manager.getDataGeneralized().getArray(),
+                                transformer.getBuffer(),
+                                manager.getDataAnalyzed().getArray(),
+                                manager.getDataGeneralized().getDictionary().getSuppressedCodes());
+    }
+
+    /**
+     * Creates a history
+     * 
+     * @param size
+     * @param snapshotSizeDataset
+     * @param snapshotSizeSnapshot
+     * @return
+     */
+    public History createHistory(int size, double snapshotSizeDataset, double snapshotSizeSnapshot) {
+        return new History(manager.getDataGeneralized().getArray().getNumRows(),
+                           size,
+                           snapshotSizeDataset,
+                           snapshotSizeSnapshot,
+                           config.getInternalConfiguration(),
+                           dictionarySensValue,
+                           dictionarySensFreq,
+                           solutionSpace);
+    }
+
+    /**
+     * Creates a transformer
+     * 
+     * @return
+     */
+    public Transformer createTransformer() {
+        return new Transformer(manager.getDataGeneralized().getArray(),
+                               manager.getDataAnalyzed().getArray(),
+                               manager.getAggregationInformation().getHotThreshold(),
+                               manager.getHierarchies(),
+                               config.getInternalConfiguration(),
+                               dictionarySensValue,
+                               dictionarySensFreq);
+    }
+
+    /**
+     * Returns the data manager
+     * 
+     * @return
+     */
+    public DataManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Returns the solution space
+     * 
+     * @return
+     */
+    public SolutionSpace<?> getSolutionSpace() {
+        return solutionSpace;
+    }
+
+    /**
+     * Returns the initial size of operators, as used by the transformation checker
+     * 
+     * @return
+     */
+    private int getInitialSize() {
+        return (int) (manager.getDataGeneralized().getDataLength() * 0.01d);
+    }
+}
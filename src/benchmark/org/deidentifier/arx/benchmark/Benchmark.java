@@ -0,0 +1,68 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.benchmark;
+
+import java.io.IOException;
+
+/**
+ * A single benchmark. The setup is performed once, before warmup, the operation to
+ * measure is performed repeatedly.
+ * 
+ * @author Fabian Prasser
+ */
+public abstract class Benchmark {
+
+    /** Name */
+    private final String name;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param name
+     */
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name
+     * 
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Executes the operation to measure. Implementations must return a value which depends
+     * on the result of the operation, to prevent it from being eliminated by the compiler.
+     * 
+     * @return
+     * @throws IOException
+     */
+    public abstract long run() throws IOException;
+
+    /**
+     * Prepares the benchmark
+     * 
+     * @throws IOException
+     */
+    public void setup() throws IOException {
+        // Empty by default
+    }
+}
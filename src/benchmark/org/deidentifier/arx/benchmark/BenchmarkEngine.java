@@ -0,0 +1,387 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.benchmark;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.BenchmarkEnvironment;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.criteria.AverageReidentificationRisk;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.framework.check.Transformer;
+import org.deidentifier.arx.framework.check.groupify.HashGroupify;
+import org.deidentifier.arx.framework.check.history.History;
+import org.deidentifier.arx.framework.check.history.History.StorageStrategy;
+import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.framework.lattice.SolutionSpace;
+import org.deidentifier.arx.framework.lattice.Transformation;
+import org.deidentifier.arx.io.CSVHierarchyInput;
+import org.deidentifier.arx.metric.Metric;
+
+/**
+ * Benchmarks for the hot paths of the anonymization engine. Parameters are passed as
+ * system properties: "Warmup" and "Iterations" define the number of iterations,
+ * "Benchmark" a directory to which results are appended as CSV, "Version" the version
+ * reported. The first program argument, if any, restricts the benchmarks executed to
+ * those whose names contain it.
+ * 
+ * @author Fabian Prasser
+ */
+public class BenchmarkEngine {
+
+    /** Datasets */
+    private static final String[] DATASETS = new String[] { "adult", "cup", "fars", "ihis", "ss13acs" };
+
+    /** Directory */
+    private static final String   DIRECTORY = "./data/";
+
+    /**
+     * Main entry point
+     * 
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        
+        // Parse
+        String filter = args.length > 0 ? args[0] : "";
+        String directory = System.getProperty("Benchmark");
+        BenchmarkRunner runner = new BenchmarkRunner(Integer.parseInt(System.getProperty("Warmup", "5")),
+                                                     Integer.parseInt(System.getProperty("Iterations", "20")),
+                                                     directory != null ? new File(directory, "benchmark-engine.csv") : null,
+                                                     System.getProperty("Version", "unknown"));
+        
+        // Run
+        System.out.println("Benchmarks:");
+        for (Benchmark benchmark : getBenchmarks()) {
+            if (benchmark.getName().contains(filter)) {
+                runner.run(benchmark);
+            }
+        }
+        System.out.println("Done (" + runner.getSink() + ")");
+    }
+
+    /**
+     * Returns all benchmarks
+     * 
+     * @return
+     */
+    private static List<Benchmark> getBenchmarks() {
+        
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        
+        // Operators
+        benchmarks.add(getBenchmarkDictionary());
+        benchmarks.add(getBenchmarkTransformer(Transition.FULL_SCAN));
+        benchmarks.add(getBenchmarkTransformer(Transition.ROLLUP));
+        benchmarks.add(getBenchmarkTransformer(Transition.SNAPSHOT));
+        benchmarks.add(getBenchmarkGroupify());
+        benchmarks.add(getBenchmarkDistribution());
+        benchmarks.add(getBenchmarkHistory());
+        
+        // Full anonymization
+        for (final String dataset : DATASETS) {
+            if (new File(DIRECTORY + dataset + ".csv").exists()) {
+                benchmarks.add(getBenchmarkAnonymization(dataset));
+            } else {
+                System.out.println(" - Skipping dataset: " + dataset + " (not found)");
+            }
+        }
+        
+        // Return
+        return benchmarks;
+    }
+    
+    /**
+     * Anonymizes a dataset
+     * 
+     * @param dataset
+     * @return
+     */
+    private static Benchmark getBenchmarkAnonymization(final String dataset) {
+        return new Benchmark("ARXAnonymizer.anonymize[" + dataset + "]") {
+            private Data data;
+            @Override
+            public long run() throws IOException {
+                data.getHandle().release();
+                return new ARXAnonymizer().anonymize(data, getConfiguration()).getGlobalOptimum().getTransformation()[0];
+            }
+            @Override
+            public void setup() throws IOException {
+                data = getData(dataset);
+            }
+        };
+    }
+    
+    /**
+     * Encodes a dataset with a dictionary
+     * 
+     * @return
+     */
+    private static Benchmark getBenchmarkDictionary() {
+        return new Benchmark("Dictionary.register[adult]") {
+            private String[][] values;
+            @Override
+            public long run() {
+                Dictionary dictionary = new Dictionary(values[0].length);
+                long result = 0;
+                for (String[] row : values) {
+                    for (int column = 0; column < row.length; column++) {
+                        result += dictionary.register(column, row[column]);
+                    }
+                }
+                dictionary.finalizeAll();
+                return result;
+            }
+            @Override
+            public void setup() throws IOException {
+                DataHandle handle = getData("adult").getHandle();
+                values = new String[handle.getNumRows()][handle.getNumColumns()];
+                for (int row = 0; row < values.length; row++) {
+                    for (int column = 0; column < values[row].length; column++) {
+                        values[row][column] = handle.getValue(row, column);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Enforces a sample-based privacy model, which suppresses classes via binary search
+     * 
+     * @return
+     */
+    private static Benchmark getBenchmarkDistribution() {
+        return new Benchmark("HashGroupifyDistribution.suppressWhileNotFulfilledBinary[adult]") {
+            private HashGroupify         groupify;
+            private Transformation<?>    transformation;
+            @Override
+            public long run() {
+                groupify.stateResetSuppression();
+                groupify.stateAnalyze(transformation, true);
+                return groupify.isPrivacyModelFulfilled() ? 1 : 0;
+            }
+            @Override
+            public void setup() throws IOException {
+                ARXConfiguration config = ARXConfiguration.create(1d, Metric.createLossMetric());
+                config.addPrivacyModel(new AverageReidentificationRisk(0.01d));
+                BenchmarkEnvironment environment = new BenchmarkEnvironment(getData("adult"), config);
+                Transformer transformer = environment.createTransformer();
+                transformation = getTransformation(environment.getSolutionSpace(), 0.5d);
+                groupify = transformer.apply(0L, transformation.getGeneralization(), environment.createGroupify(transformer));
+            }
+        };
+    }
+
+    /**
+     * Groups a transformed dataset
+     * 
+     * @return
+     */
+    private static Benchmark getBenchmarkGroupify() {
+        return new Benchmark("HashGroupify.addFromBuffer[adult]") {
+            private HashGroupify groupify;
+            private int          rows;
+            @Override
+            public long run() {
+                groupify.stateClear();
+                for (int row = 0; row < rows; row++) {
+                    groupify.addFromBuffer(row, -1, row, 1, -1);
+                }
+                return groupify.getNumberOfEquivalenceClasses();
+            }
+            @Override
+            public void setup() throws IOException {
+                BenchmarkEnvironment environment = new BenchmarkEnvironment(getData("adult"), getConfiguration());
+                Transformer transformer = environment.createTransformer();
+                rows = environment.getManager().getDataGeneralized().getArray().getNumRows();
+                groupify = transformer.apply(0L, getTransformation(environment.getSolutionSpace(), 0.5d).getGeneralization(),
+                                             environment.createGroupify(transformer));
+            }
+        };
+    }
+
+    /**
+     * Stores and retrieves snapshots
+     * 
+     * @return
+     */
+    private static Benchmark getBenchmarkHistory() {
+        return new Benchmark("History.store/get[adult]") {
+            private History              history;
+            private HashGroupify         groupify;
+            private Transformation<?>    source;
+            private Transformation<?>    target;
+            @Override
+            public long run() {
+                history.reset();
+                history.store(source, groupify, null);
+                return history.get(target.getGeneralization()).length;
+            }
+            @Override
+            public void setup() throws IOException {
+                BenchmarkEnvironment environment = new BenchmarkEnvironment(getData("adult"), getConfiguration());
+                Transformer transformer = environment.createTransformer();
+                history = environment.createHistory(1, 1d, 1d);
+                history.setStorageStrategy(StorageStrategy.ALL);
+                source = getTransformation(environment.getSolutionSpace(), 0.5d);
+                target = environment.getSolutionSpace().getTop();
+                groupify = transformer.apply(0L, source.getGeneralization(), environment.createGroupify(transformer));
+            }
+        };
+    }
+
+    /**
+     * Transforms data, using the given type of transition
+     * 
+     * @param transition
+     * @return
+     */
+    private static Benchmark getBenchmarkTransformer(final Transition transition) {
+        return new Benchmark("Transformer." + transition.method + "[adult]") {
+            private Transformer       transformer;
+            private HashGroupify      source;
+            private HashGroupify      target;
+            private int[]             snapshot;
+            private int[]             generalization;
+            @Override
+            public long run() {
+                switch (transition) {
+                case FULL_SCAN:
+                    return transformer.apply(0L, generalization, target).getNumberOfEquivalenceClasses();
+                case ROLLUP:
+                    return transformer.applyRollup(0L, generalization, source, target).getNumberOfEquivalenceClasses();
+                case SNAPSHOT:
+                    return transformer.applySnapshot(0L, generalization, target, snapshot).getNumberOfEquivalenceClasses();
+                default:
+                    throw new IllegalStateException("Unknown transition: " + transition);
+                }
+            }
+            @Override
+            public void setup() throws IOException {
+                BenchmarkEnvironment environment = new BenchmarkEnvironment(getData("adult"), getConfiguration());
+                SolutionSpace<?> solutionSpace = environment.getSolutionSpace();
+                transformer = environment.createTransformer();
+                source = environment.createGroupify(transformer);
+                target = environment.createGroupify(transformer);
+                Transformation<?> predecessor = getTransformation(solutionSpace, 0.5d);
+                generalization = getTransformation(solutionSpace, 0.75d).getGeneralization();
+                if (transition != Transition.FULL_SCAN) {
+                    transformer.apply(0L, predecessor.getGeneralization(), source);
+                }
+                if (transition == Transition.SNAPSHOT) {
+                    History history = environment.createHistory(1, 1d, 1d);
+                    history.setStorageStrategy(StorageStrategy.ALL);
+                    history.store(predecessor, source, null);
+                    snapshot = history.get(generalization);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the configuration used for benchmarks
+     * 
+     * @return
+     */
+    private static ARXConfiguration getConfiguration() {
+        return ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+    }
+
+    /**
+     * Loads a dataset with its hierarchies
+     * 
+     * @param dataset
+     * @return
+     * @throws IOException
+     */
+    private static Data getData(final String dataset) throws IOException {
+        
+        Data data = Data.create(DIRECTORY + dataset + ".csv", StandardCharsets.UTF_8, ';');
+        File[] files = new File(DIRECTORY).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.matches(dataset + "_hierarchy_(.)+.csv");
+            }
+        });
+        Pattern pattern = Pattern.compile("_hierarchy_(.*?).csv");
+        for (File file : files) {
+            Matcher matcher = pattern.matcher(file.getName());
+            if (matcher.find()) {
+                CSVHierarchyInput hierarchy = new CSVHierarchyInput(file, StandardCharsets.UTF_8, ';');
+                data.getDefinition().setAttributeType(matcher.group(1), Hierarchy.create(hierarchy.getHierarchy()));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Returns the transformation which generalizes each attribute to the given fraction of its maximal level
+     * 
+     * @param solutionSpace
+     * @param fraction
+     * @return
+     */
+    private static Transformation<?> getTransformation(SolutionSpace<?> solutionSpace, double fraction) {
+        int[] top = solutionSpace.getTop().getGeneralization();
+        int[] result = new int[top.length];
+        for (int i = 0; i < top.length; i++) {
+            result[i] = (int) Math.round(top[i] * fraction);
+        }
+        return solutionSpace.getTransformation(result);
+    }
+
+    /**
+     * Types of transitions between transformations
+     * 
+     * @author Fabian Prasser
+     */
+    private static enum Transition {
+        
+        /** Transforms all records */
+        FULL_SCAN("apply"),
+        
+        /** Rolls up the classes of a predecessor */
+        ROLLUP("applyRollup"),
+        
+        /** Transforms the classes stored in a snapshot */
+        SNAPSHOT("applySnapshot");
+
+        /** Method */
+        private final String method;
+
+        /**
+         * Creates a new instance
+         * @param method
+         */
+        private Transition(String method) {
+            this.method = method;
+        }
+    }
+}
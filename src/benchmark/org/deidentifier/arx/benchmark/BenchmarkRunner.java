@@ -0,0 +1,129 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Executes benchmarks with warmup and repeated measurements, and reports the
+ * mean, standard deviation, minimum and maximum of the execution times.
+ * 
+ * @author Fabian Prasser
+ */
+public class BenchmarkRunner {
+
+    /** Number of warmup iterations */
+    private final int    warmup;
+
+    /** Number of measured iterations */
+    private final int    iterations;
+
+    /** CSV file to append results to, if any */
+    private final File   output;
+
+    /** Version */
+    private final String version;
+
+    /** Consumes results */
+    private long         sink = 0;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param warmup
+     * @param iterations
+     * @param output
+     * @param version
+     */
+    public BenchmarkRunner(int warmup, int iterations, File output, String version) {
+        if (warmup < 0 || iterations <= 0) {
+            throw new IllegalArgumentException("Invalid number of iterations");
+        }
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.output = output;
+        this.version = version;
+    }
+
+    /**
+     * Returns the accumulated results of all operations performed
+     * 
+     * @return
+     */
+    public long getSink() {
+        return sink;
+    }
+
+    /**
+     * Runs the given benchmark
+     * 
+     * @param benchmark
+     * @throws IOException
+     */
+    public void run(Benchmark benchmark) throws IOException {
+        
+        // Prepare
+        benchmark.setup();
+        for (int i = 0; i < warmup; i++) {
+            sink += benchmark.run();
+        }
+        System.gc();
+        
+        // Measure
+        double[] times = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink += benchmark.run();
+            times[i] = (System.nanoTime() - start) / 1000000d;
+        }
+        
+        // Statistics
+        double min = Double.MAX_VALUE;
+        double max = 0d;
+        double mean = 0d;
+        for (double time : times) {
+            min = Math.min(min, time);
+            max = Math.max(max, time);
+            mean += time;
+        }
+        mean /= iterations;
+        double variance = 0d;
+        for (double time : times) {
+            variance += (time - mean) * (time - mean);
+        }
+        double deviation = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0d;
+        
+        // Report
+        System.out.println(String.format(Locale.ENGLISH, " - %-65s %12.3f +/- %10.3f [ms] (min: %.3f, max: %.3f)",
+                                         benchmark.getName(), mean, deviation, min, max));
+        if (output != null) {
+            boolean header = !output.exists();
+            try (PrintWriter writer = new PrintWriter(new FileWriter(output, true))) {
+                if (header) {
+                    writer.println("version;benchmark;iterations;mean;deviation;min;max");
+                }
+                writer.println(String.format(Locale.ENGLISH, "%s;%s;%d;%f;%f;%f;%f",
+                                             version, benchmark.getName(), iterations, mean, deviation, min, max));
+            }
+        }
+    }
+}
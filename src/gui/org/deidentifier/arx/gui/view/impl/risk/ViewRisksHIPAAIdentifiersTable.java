@@ -16,6 +16,7 @@
  */
 package org.deidentifier.arx.gui.view.impl.risk;
 
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.gui.Controller;
 import org.deidentifier.arx.gui.model.ModelEvent;
 import org.deidentifier.arx.gui.model.ModelEvent.ModelPart;
@@ -245,7 +246,7 @@ public class ViewRisksHIPAAIdentifiersTable extends ViewRisks<AnalysisContextRis
                 long time = System.currentTimeMillis();
                 
                 // Perform work
-                matches = builder.getHIPAAIdentifiers();
+                matches = builder.getHIPAAIdentifiers(0.5d, ThreadPool.getAvailableProcessors());
                 
                 // Our users are patient
                 while (System.currentTimeMillis() - time < MINIMAL_WORKING_TIME && !stopped) {
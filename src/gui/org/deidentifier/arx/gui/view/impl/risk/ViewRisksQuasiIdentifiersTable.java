@@ -18,6 +18,7 @@ package org.deidentifier.arx.gui.view.impl.risk;
 
 import java.util.List;
 
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.gui.Controller;
 import org.deidentifier.arx.gui.model.ModelEvent;
 import org.deidentifier.arx.gui.model.ModelEvent.ModelPart;
@@ -50,6 +51,9 @@ import de.linearbits.swt.table.DynamicTableColumn;
  */
 public class ViewRisksQuasiIdentifiersTable extends ViewRisks<AnalysisContextRisk> {
 
+    /** Maximal number of combinations of attributes to analyze */
+    private static final int MAX_COMBINATIONS = 16384;
+
     /** View */
     private DynamicTable table;
 
@@ -103,6 +107,26 @@ public class ViewRisksQuasiIdentifiersTable extends ViewRisks<AnalysisContextRis
         item.setData("2", risks.getSeparation()); //$NON-NLS-1$
     }
 
+    /**
+     * Returns the maximal number of attributes per combination, such that at most
+     * MAX_COMBINATIONS combinations are analyzed
+     *
+     * @param numQIs
+     * @return
+     */
+    private int getMaxSize(int numQIs) {
+        long combinations = 0;
+        long binomial = 1;
+        for (int size = 1; size <= numQIs; size++) {
+            binomial = binomial * (numQIs - size + 1) / size;
+            combinations += binomial;
+            if (combinations > MAX_COMBINATIONS) {
+                return Math.max(size - 1, 1);
+            }
+        }
+        return Math.max(numQIs, 1);
+    }
+
     @Override
     protected Control createControl(Composite parent) {
 
@@ -170,6 +194,9 @@ public class ViewRisksQuasiIdentifiersTable extends ViewRisks<AnalysisContextRis
             return;
         }
 
+        // Bound the number of combinations for wide tables
+        final int maxSize = getMaxSize(context.context.getModel().getSelectedQuasiIdentifiers().size());
+
         // Create an analysis
         Analysis analysis = new Analysis() {
 
@@ -241,7 +268,7 @@ public class ViewRisksQuasiIdentifiersTable extends ViewRisks<AnalysisContextRis
             public void run() throws InterruptedException {
                 // Timestamp
                 long time = System.currentTimeMillis();
-                risks = builder.getAttributeRisks();
+                risks = builder.getAttributeRisks(maxSize, ThreadPool.getAvailableProcessors());
 
                 // Our users are patient
                 while (System.currentTimeMillis() - time < MINIMAL_WORKING_TIME && !stopped) {
@@ -19,10 +19,16 @@ package org.deidentifier.arx;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.deidentifier.arx.ARXConfiguration.SearchStepSemantics;
 import org.deidentifier.arx.AttributeType.MicroAggregationFunction;
@@ -33,6 +39,7 @@ import org.deidentifier.arx.algorithm.FLASHStrategy;
 import org.deidentifier.arx.algorithm.GeneticAlgorithm;
 import org.deidentifier.arx.algorithm.LIGHTNINGAlgorithm;
 import org.deidentifier.arx.algorithm.LIGHTNINGTopDownAlgorithm;
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.criteria.BasicBLikeness;
 import org.deidentifier.arx.criteria.DDisclosurePrivacy;
 import org.deidentifier.arx.criteria.EDDifferentialPrivacy;
@@ -165,6 +172,9 @@ public class ARXAnonymizer { // NO_UCD
     /** The maximal number of QIs that can be processed. */
     private int         maxQuasiIdentifiers  = Integer.MAX_VALUE;
 
+    /** The number of threads used for transforming data and checking transformations. */
+    private int         numThreads           = 1;
+
 
     /**
      * Creates a new anonymizer with the default configuration.
@@ -202,12 +212,13 @@ public class ARXAnonymizer { // NO_UCD
      */
     public ARXResult anonymize(final Data data, ARXConfiguration config) throws IOException {
         
-        if (((DataHandleInput)data.getHandle()).isLocked()){
+        // Encode data, off-heap if required
+        DataHandleInput handle = data.getHandle(config.getOffHeapThreshold(), config.getOffHeapDirectory());
+        if (handle.isLocked()){
             throw new RuntimeException("This data handle is locked. Please release it first");
         }
         
         // Update registry
-        DataHandle handle = data.getHandle();
         handle.getDefinition().materializeHierarchies(handle);
         checkBeforeEncoding(handle, config);
         handle.getRegistry().reset();
@@ -219,12 +230,98 @@ public class ARXAnonymizer { // NO_UCD
         handle.getRegistry().createInputSubset(config);
         
         // Attach arrays to data handle
-        ((DataHandleInput)handle).update(manager.getDataGeneralized().getArray(), 
-                                         manager.getDataAnalyzed().getArray());
+        handle.update(manager.getDataGeneralized().getArray(), 
+                      manager.getDataAnalyzed().getArray());
+
+        // Execute
+        return anonymize(manager, handle.getDefinition(), config).asResult(config, handle);
+    }
+
+    /**
+     * Performs data anonymization on prepared data. This method may be called concurrently
+     * for the same prepared data, also with the same configuration or with configurations
+     * derived via <code>clone()</code>. Each run operates on a private copy of the configuration,
+     * including its privacy models and its quality model, which is returned by
+     * <code>ARXResult.getConfiguration()</code>. This requires privacy models to implement
+     * <code>clone()</code> as a deep copy and quality models to be serializable. Each result is
+     * bound to a separate input handle, which can be obtained via <code>ARXResult.getInput()</code>.
+     *
+     * @param data The prepared data
+     * @param config The privacy config
+     * @return ARXResult
+     * @throws IOException
+     */
+    public ARXResult anonymize(final ARXPreparedData data, ARXConfiguration config) throws IOException {
+        
+        // Privacy models and quality models are stateful
+        config = config.getInstanceForConcurrentUse();
+        
+        // Create handle for this run
+        DataHandleInput handle = data.createHandle();
+        checkBeforeEncoding(handle, config);
+        
+        // Create manager
+        DataManager manager = data.getDataManager(handle, config);
+
+        // Attach subset to handle
+        handle.getRegistry().createInputSubset(config);
+        
+        // Attach arrays to data handle
+        handle.update(manager.getDataGeneralized().getArray(), 
+                      manager.getDataAnalyzed().getArray());
 
         // Execute
         return anonymize(manager, handle.getDefinition(), config).asResult(config, handle);
     }
+
+    /**
+     * Performs data anonymization on prepared data with several configurations, which are
+     * processed concurrently by the given number of threads. Results are returned in the order
+     * of the configurations. Each run operates on a private copy of its configuration, see
+     * <code>anonymize(ARXPreparedData, ARXConfiguration)</code>.
+     *
+     * @param data The prepared data
+     * @param configs The privacy configs
+     * @param numThreads The number of configurations to process concurrently
+     * @return The results
+     * @throws IOException
+     */
+    public List<ARXResult> anonymize(final ARXPreparedData data, 
+                                     final List<ARXConfiguration> configs,
+                                     final int numThreads) throws IOException {
+        
+        // Check
+        if (numThreads < 1) { throw new IllegalArgumentException("Number of threads must be > 0"); }
+        
+        // Sequential processing
+        List<ARXResult> results = new ArrayList<ARXResult>();
+        if (numThreads == 1 || configs.size() <= 1) {
+            for (ARXConfiguration config : configs) {
+                results.add(anonymize(data, config));
+            }
+            return results;
+        }
+        
+        // Parallel processing
+        ExecutorService executor = ThreadPool.create("arx-anonymizer", Math.min(numThreads, configs.size()));
+        try {
+            List<Future<ARXResult>> futures = new ArrayList<Future<ARXResult>>();
+            for (final ARXConfiguration config : configs) {
+                futures.add(executor.submit(new Callable<ARXResult>() {
+                    @Override
+                    public ARXResult call() throws IOException {
+                        return anonymize(data, config);
+                    }
+                }));
+            }
+            for (Future<ARXResult> future : futures) {
+                results.add(get(future));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
     
     /**
      * Returns the maximum number of snapshots allowed to store in the history.
@@ -234,6 +331,30 @@ public class ARXAnonymizer { // NO_UCD
     public int getHistorySize() {
         return historySize;
     }
+
+    /**
+     * Prepares the given data for being anonymized repeatedly, e.g. with different parameters.
+     * Hierarchies are materialized and the data is encoded once. Subsequent changes to the
+     * data or its definition are not reflected by the prepared data.
+     *
+     * @param data The data
+     * @return The prepared data
+     */
+    public ARXPreparedData prepare(final Data data) {
+        
+        // Check
+        DataHandle handle = data.getHandle();
+        if (((DataHandleInput)handle).isLocked()){
+            throw new RuntimeException("This data handle is locked. Please release it first");
+        }
+        if (handle.getNumRows() == 0) { 
+            throw new IllegalArgumentException("Data does not contain any rows"); 
+        }
+        
+        // Prepare
+        handle.getDefinition().materializeHierarchies(handle);
+        return new ARXPreparedData((DataHandleInput)handle);
+    }
     
     /**
      * Gets the snapshot size.
@@ -262,6 +383,15 @@ public class ARXAnonymizer { // NO_UCD
         return maxQuasiIdentifiers;
     }
 
+    /**
+     * Returns the number of threads used for transforming data and checking transformations.
+     * 
+     * @return
+     */
+    public int getNumberOfThreads() {
+        return numThreads;
+    }
+
     /**
      * Sets the maximum number of snapshots allowed to store in the history.
      * 
@@ -283,6 +413,22 @@ public class ARXAnonymizer { // NO_UCD
         this.listener = listener;
     }
 
+    /**
+     * Sets the number of threads used for transforming data and checking transformations.
+     * If more than one thread is specified, the records of the dataset will be partitioned
+     * and transformed concurrently. Moreover, if enabled in the configuration, the optimal
+     * algorithm will speculatively check multiple transformations on its search paths
+     * concurrently, which requires one copy of the output buffer and one history per thread.
+     * Results are identical to sequential processing. 
+     * The default is 1, i.e. sequential processing.
+     * 
+     * @param numThreads
+     */
+    public void setNumberOfThreads(final int numThreads) {
+        if (numThreads < 1) { throw new IllegalArgumentException("Number of threads must be > 0"); }
+        this.numThreads = numThreads;
+    }
+
     /**
      * Sets the maximum size of a snapshot relative to the dataset size.
      *
@@ -712,6 +858,32 @@ public class ARXAnonymizer { // NO_UCD
     	}
     }
 
+    /**
+     * Returns the result of the given future
+     * 
+     * @param future
+     * @return
+     * @throws IOException
+     */
+    private ARXResult get(Future<ARXResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while anonymizing data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
     /**
      * Prepares the data manager.
      *
@@ -768,7 +940,8 @@ public class ARXAnonymizer { // NO_UCD
                                                                         historySize,
                                                                         snapshotSizeDataset,
                                                                         snapshotSizeSnapshot,
-                                                                        solutionSpace);
+                                                                        solutionSpace,
+                                                                        numThreads);
 
         // Create an algorithm instance
         AbstractAlgorithm algorithm = getAlgorithm(config,
@@ -783,6 +956,11 @@ public class ARXAnonymizer { // NO_UCD
         long time = System.currentTimeMillis();
         boolean optimumFound = algorithm.traverse();
         
+        // Report engine statistics
+        if (listener != null && checker.getStatistics() != null) {
+            listener.statistics(new ARXProcessStatistics.EngineStatistics(checker.getStatistics()));
+        }
+        
         // Free resources
         checker.reset();
         
@@ -799,5 +977,6 @@ public class ARXAnonymizer { // NO_UCD
         this.snapshotSizeDataset = anonymizer.snapshotSizeDataset;
         this.snapshotSizeSnapshot = anonymizer.snapshotSizeSnapshot;
         this.maxQuasiIdentifiers = anonymizer.maxQuasiIdentifiers;
+        this.numThreads = anonymizer.numThreads;
     }
 }
\ No newline at end of file
@@ -17,6 +17,7 @@
 
 package org.deidentifier.arx;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -28,6 +29,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.apache.commons.lang3.SerializationUtils;
 import org.deidentifier.arx.certificate.elements.ElementData;
 import org.deidentifier.arx.criteria.BasicBLikeness;
 import org.deidentifier.arx.criteria.DDisclosurePrivacy;
@@ -104,6 +106,22 @@ public class ARXConfiguration implements Serializable, Cloneable {
             return config.getPrivacyModelsAsArray();
         }
 
+        /**
+         * Returns the policy used for evicting snapshots from the history
+         * @return
+         */
+        public HistoryEvictionPolicy getHistoryEvictionPolicy() {
+            return config.getHistoryEvictionPolicy();
+        }
+
+        /**
+         * Returns the maximal number of bytes occupied by snapshots in the history
+         * @return
+         */
+        public long getHistoryMemoryLimit() {
+            return config.getHistoryMemoryLimit();
+        }
+
         /**
          * Returns the max relative number of outliers.
          *
@@ -138,6 +156,22 @@ public class ARXConfiguration implements Serializable, Cloneable {
             return config.getMonotonicityOfUtility();
         }
 
+        /**
+         * Returns the directory used for storing data off-heap
+         * @return
+         */
+        public File getOffHeapDirectory() {
+            return config.getOffHeapDirectory();
+        }
+
+        /**
+         * Returns the size in bytes above which data is stored off-heap
+         * @return
+         */
+        public long getOffHeapThreshold() {
+            return config.getOffHeapThreshold();
+        }
+
         /**
          * 
          *
@@ -210,6 +244,30 @@ public class ARXConfiguration implements Serializable, Cloneable {
             return config.getSuppressedAttributeTypes();
         }
 
+        /**
+         * Returns whether data matrices are bit-packed
+         * @return
+         */
+        public boolean isDataPackingEnabled() {
+            return config.isDataPackingEnabled();
+        }
+
+        /**
+         * Returns whether statistics about the internals of the engine are collected
+         * @return
+         */
+        public boolean isEngineStatisticsEnabled() {
+            return config.isEngineStatisticsEnabled();
+        }
+
+        /**
+         * Returns whether snapshots in the history are compressed
+         * @return
+         */
+        public boolean isHistoryCompressionEnabled() {
+            return config.isHistoryCompressionEnabled();
+        }
+
         /**
          * Is practical monotonicity assumed.
          *
@@ -228,6 +286,14 @@ public class ARXConfiguration implements Serializable, Cloneable {
             return config.isPrivacyModelSpecified(clazz);
         }
 
+        /**
+         * Returns whether transformations are checked speculatively in parallel
+         * @return
+         */
+        public boolean isSpeculativeCheckingEnabled() {
+            return config.isSpeculativeCheckingEnabled();
+        }
+
         /**
          * Returns whether suppression is applied to the output of anonymous as 
          * well as non-anonymous transformations. If this flag is set to true, 
@@ -257,6 +323,18 @@ public class ARXConfiguration implements Serializable, Cloneable {
         }
     }
 
+    /**
+     * Policies for evicting snapshots from the history.
+     */
+    public static enum HistoryEvictionPolicy {
+        
+        /** Evict the least recently used snapshot */
+        LRU,
+        
+        /** Evict the snapshot which is expected to be the least useful relative to its size */
+        COST_AWARE
+    }
+    
     /**
      * Monotonicity.
      */
@@ -434,6 +512,30 @@ public class ARXConfiguration implements Serializable, Cloneable {
     /** The algorithm to use */
     private AnonymizationAlgorithm             algorithm                             = AnonymizationAlgorithm.OPTIMAL;
 
+    /** Data matrices requiring more bytes will be stored off-heap */
+    private Long                               offHeapThreshold                      = Long.MAX_VALUE;
+
+    /** Directory for storing data off-heap, null for the default temporary directory */
+    private String                             offHeapDirectory                      = null;
+
+    /** Collect statistics about the internals of the engine */
+    private Boolean                            engineStatisticsEnabled               = false;
+
+    /** Store data matrices bit-packed, if this saves memory */
+    private Boolean                            dataPackingEnabled                    = false;
+
+    /** Maximal number of bytes occupied by snapshots in the history */
+    private Long                               historyMemoryLimit                    = Long.MAX_VALUE;
+
+    /** Policy for evicting snapshots from the history */
+    private HistoryEvictionPolicy              historyEvictionPolicy                 = HistoryEvictionPolicy.LRU;
+
+    /** Compress snapshots stored in the history */
+    private Boolean                            historyCompressionEnabled             = false;
+
+    /** Check transformations on search paths speculatively in parallel */
+    private Boolean                            speculativeCheckingEnabled            = false;
+
 	
     /**
      * Creates a new configuration without tuple suppression.
@@ -575,6 +677,14 @@ public class ARXConfiguration implements Serializable, Cloneable {
 		result.geneticAlgorithmProductionFraction = this.geneticAlgorithmProductionFraction;
         result.geneticAlgorithmIterations = this.geneticAlgorithmIterations;
         result.algorithm = this.algorithm;
+        result.offHeapThreshold = this.offHeapThreshold;
+        result.offHeapDirectory = this.offHeapDirectory;
+        result.engineStatisticsEnabled = this.engineStatisticsEnabled;
+        result.dataPackingEnabled = this.dataPackingEnabled;
+        result.historyMemoryLimit = this.historyMemoryLimit;
+        result.historyEvictionPolicy = this.historyEvictionPolicy;
+        result.historyCompressionEnabled = this.historyCompressionEnabled;
+        result.speculativeCheckingEnabled = this.speculativeCheckingEnabled;
         if (this.attributeWeights != null) {
             result.attributeWeights = new HashMap<String, Double>(this.attributeWeights);
         } else {
@@ -824,6 +934,29 @@ public class ARXConfiguration implements Serializable, Cloneable {
         }
         return this.heuristicSearchTimeLimit;
     }
+
+    /**
+     * Returns the policy used for evicting snapshots from the history. The default is LRU.
+     * @return
+     */
+    public HistoryEvictionPolicy getHistoryEvictionPolicy() {
+        if (this.historyEvictionPolicy == null) {
+            this.historyEvictionPolicy = HistoryEvictionPolicy.LRU;
+        }
+        return this.historyEvictionPolicy;
+    }
+
+    /**
+     * Returns the maximal number of bytes occupied by snapshots in the history. The default
+     * is Long.MAX_VALUE, i.e. the history is only bounded by the number of snapshots.
+     * @return
+     */
+    public long getHistoryMemoryLimit() {
+        if (this.historyMemoryLimit == null) {
+            this.historyMemoryLimit = Long.MAX_VALUE;
+        }
+        return this.historyMemoryLimit;
+    }
     
     /**
      * Returns the maximum number of allowed outliers.
@@ -889,6 +1022,28 @@ public class ARXConfiguration implements Serializable, Cloneable {
         }
     }
     
+    /**
+     * Returns the directory in which data is stored off-heap.
+     * The default is the temporary directory of the system.
+     * @return
+     */
+    public File getOffHeapDirectory() {
+        return new File(this.offHeapDirectory != null ? this.offHeapDirectory : System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Returns the size in bytes above which data matrices used during anonymization are
+     * stored off-heap in memory-mapped files. The default is Long.MAX_VALUE, i.e. all
+     * data is stored on the heap.
+     * @return
+     */
+    public long getOffHeapThreshold() {
+        if (this.offHeapThreshold == null) {
+            this.offHeapThreshold = Long.MAX_VALUE;
+        }
+        return this.offHeapThreshold;
+    }
+    
     /**
      * Returns an instance of the class, if any. Throws an exception if more than one such model exists.
      *
@@ -1009,6 +1164,42 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return (suppressedAttributeTypes & (1 << type.getType())) != 0;
     }
     
+    /**
+     * Returns whether data matrices used during anonymization are bit-packed, if this
+     * saves memory. Default is <code>false</code>.
+     * @return
+     */
+    public boolean isDataPackingEnabled() {
+        if (this.dataPackingEnabled == null) {
+            this.dataPackingEnabled = false;
+        }
+        return this.dataPackingEnabled;
+    }
+
+    /**
+     * Returns whether statistics about the internals of the engine, such as the types of
+     * transitions performed or the time spent evaluating privacy models, are collected.
+     * Default is <code>false</code>.
+     * @return
+     */
+    public boolean isEngineStatisticsEnabled() {
+        if (this.engineStatisticsEnabled == null) {
+            this.engineStatisticsEnabled = false;
+        }
+        return this.engineStatisticsEnabled;
+    }
+
+    /**
+     * Returns whether snapshots stored in the history are compressed. Default is <code>false</code>.
+     * @return
+     */
+    public boolean isHistoryCompressionEnabled() {
+        if (this.historyCompressionEnabled == null) {
+            this.historyCompressionEnabled = false;
+        }
+        return this.historyCompressionEnabled;
+    }
+
     /**
      * Is practical monotonicity assumed.
      *
@@ -1032,6 +1223,18 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return false;
     }
 
+    /**
+     * Returns whether the optimal algorithm speculatively checks multiple transformations on its
+     * search paths in parallel, if more than one thread is used. Default is <code>false</code>.
+     * @return
+     */
+    public boolean isSpeculativeCheckingEnabled() {
+        if (this.speculativeCheckingEnabled == null) {
+            this.speculativeCheckingEnabled = false;
+        }
+        return this.speculativeCheckingEnabled;
+    }
+
     /**
      * Returns whether suppression is applied to the output of anonymous as well as non-anonymous transformations. If
      * this flag is set to <code>true</code>, suppression will be applied to the output of non-anonymous 
@@ -1144,6 +1347,18 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return this;
     }
 
+    /**
+     * Sets whether the quasi-identifiers and the analyzed attributes are stored in bit-packed
+     * data matrices, in which each column only occupies as many bits as its domain requires.
+     * Packing is only applied if it reduces the memory required by at least one half. It
+     * trades time for memory: cells are decoded on every access, which slows down
+     * transformation and grouping. Default is <code>false</code>.
+     * @param enabled
+     */
+    public void setDataPackingEnabled(boolean enabled) {
+        this.dataPackingEnabled = enabled;
+    }
+
     /**
      * Sets the privacy budget to use for the data-dependent
      * differential privacy search algorithm. The default is 0.1.
@@ -1154,6 +1369,17 @@ public class ARXConfiguration implements Serializable, Cloneable {
         this.dpSearchBudget = budget;
     }
     
+    /**
+     * Sets whether statistics about the internals of the engine, such as the types of
+     * transitions performed or the time spent evaluating privacy models, are collected.
+     * They are available via ARXProcessStatistics and reported to listeners. Default
+     * is <code>false</code>, in which case no overhead is introduced.
+     * @param enabled
+     */
+    public void setEngineStatisticsEnabled(boolean enabled) {
+        this.engineStatisticsEnabled = enabled;
+    }
+    
     /**
 	 * Sets the fraction of individuals crossed over
 	 * @param geneticAlgorithmCrossoverPercent
@@ -1272,6 +1498,39 @@ public class ARXConfiguration implements Serializable, Cloneable {
         this.heuristicSearchTimeLimit = timeInMillis;
     }
 
+    /**
+     * Sets whether snapshots stored in the history are compressed. Compressed snapshots
+     * require less memory, so that more of them fit into the history, but must be decoded
+     * when they are used for transforming data. Default is <code>false</code>.
+     * @param enabled
+     */
+    public void setHistoryCompressionEnabled(boolean enabled) {
+        this.historyCompressionEnabled = enabled;
+    }
+
+    /**
+     * Sets the policy used for evicting snapshots from the history when it is full.
+     * LRU evicts the least recently used snapshot. COST_AWARE evicts the snapshot with the
+     * fewest unchecked successors per byte, i.e. the one least likely to be reused.
+     * @param policy
+     */
+    public void setHistoryEvictionPolicy(HistoryEvictionPolicy policy) {
+        checkArgument(policy);
+        this.historyEvictionPolicy = policy;
+    }
+
+    /**
+     * Sets the maximal number of bytes occupied by the snapshots in a history. Snapshots are
+     * evicted if storing another snapshot would exceed this limit. The limit applies to each
+     * history maintained during the search, in addition to the maximal number of snapshots
+     * specified via ARXAnonymizer.setHistorySize(). The default is Long.MAX_VALUE.
+     * @param bytes
+     */
+    public void setHistoryMemoryLimit(long bytes) {
+        if (bytes < 0) { throw new IllegalArgumentException("Parameter must be >= 0"); }
+        this.historyMemoryLimit = bytes;
+    }
+
 	/**
      * Allows for a certain percentage of outliers and thus
      * triggers tuple suppression.
@@ -1284,6 +1543,33 @@ public class ARXConfiguration implements Serializable, Cloneable {
         this.relMaxOutliers = max;
     }
 
+    /**
+     * Sets the directory in which data is stored off-heap. Files are removed when
+     * they are no longer needed. Null selects the temporary directory of the system.
+     * @param directory
+     */
+    public void setOffHeapDirectory(File directory) {
+        if (directory != null && !directory.isDirectory()) { throw new IllegalArgumentException("Not a directory: " + directory); }
+        this.offHeapDirectory = directory != null ? directory.getAbsolutePath() : null;
+    }
+
+    /**
+     * Data matrices used during anonymization which require more than the given number of bytes
+     * will be stored off-heap in memory-mapped files. This covers the encoded input data, the
+     * projections of the data onto the quasi-identifiers and the analyzed attributes as well as
+     * the output buffer. Data which is encoded by <code>ARXAnonymizer.anonymize(Data, ...)</code>
+     * is written off-heap directly, data which has been encoded before is moved off-heap.
+     * Moreover, snapshots in the history are stored off-heap as soon as the snapshots on the
+     * heap would require more than the given number of bytes. Dictionaries and equivalence
+     * classes are still stored on the heap. The default is Long.MAX_VALUE, i.e. all data is
+     * stored on the heap.
+     * @param bytes
+     */
+    public void setOffHeapThreshold(long bytes) {
+        if (bytes < 0) { throw new IllegalArgumentException("Parameter must be >= 0"); }
+        this.offHeapThreshold = bytes;
+    }
+
 	/**
      * Set, if practical monotonicity assumed.
      *
@@ -1303,6 +1589,19 @@ public class ARXConfiguration implements Serializable, Cloneable {
         this.metric = model;
     }
 
+    /**
+     * Sets whether the optimal algorithm speculatively checks multiple transformations on its
+     * search paths in parallel, if more than one thread is used. Each thread maintains its own
+     * output buffer and history. Whether this reduces execution times depends on the number of
+     * cores available and on how many of the transformations checked speculatively are
+     * visited by the search. Results are identical to sequential processing. Default is
+     * <code>false</code>.
+     * @param enabled
+     */
+    public void setSpeculativeCheckingEnabled(boolean enabled) {
+        this.speculativeCheckingEnabled = enabled;
+    }
+
 	/**
      * Sets whether suppression is applied to the output of anonymous as well as non-anonymous transformations. If
      * this flag is set to <code>true</code>, suppression will be applied to the output of non-anonymous 
@@ -1386,6 +1685,34 @@ public class ARXConfiguration implements Serializable, Cloneable {
         return this.absMaxOutliers;
     }
 
+    /**
+     * Returns an instance of this configuration which does not share any state with this instance.
+     * In contrast to <code>clone()</code>, which shares the privacy models and the quality model,
+     * these are copied as well, as they are initialized with the data to be anonymized:<br>
+     * - All privacy models will be cloned<br>
+     * - The quality model will be copied via serialization<br>
+     *
+     * @return
+     */
+    protected ARXConfiguration getInstanceForConcurrentUse() {
+
+        // Clone all criteria
+        HashSet<PrivacyCriterion> criteria = new HashSet<PrivacyCriterion>();
+        for (PrivacyCriterion criterion : this.getPrivacyModels()) {
+            criteria.add(criterion.clone());
+        }
+        
+        // Clone the config
+        ARXConfiguration result = this.clone();
+        result.aCriteria = new PrivacyCriterion[0];
+        result.bCriteria = new SampleBasedCriterion[0];
+        result.criteria = criteria;
+        result.metric = SerializationUtils.clone(this.metric);
+        
+        // Return
+        return result;
+    }
+
     /**
      * Clones this config and projects everything onto the given subset.<br>
      * - All privacy models will be cloned<br>
@@ -32,4 +32,14 @@ public interface ARXListener {
      */
     public void progress(double progress);
 
+    /**
+     * Reports statistics about the internals of the engine after the search has terminated.
+     * Only called if collecting these statistics has been enabled in the configuration.
+     *
+     * @param statistics The statistics
+     */
+    public default void statistics(ARXProcessStatistics.EngineStatistics statistics) {
+        // Empty by default
+    }
+
 }
@@ -0,0 +1,171 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction;
+import org.deidentifier.arx.framework.data.DataManager;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+
+/**
+ * A dataset which has been prepared for anonymization with <code>ARXAnonymizer.prepare()</code>.
+ * It stores the encoded data, the materialized hierarchies as well as the structures derived
+ * from them, such as encoded hierarchies and domain shares. An instance can be anonymized
+ * with an arbitrary number of configurations, e.g. to perform parameter sweeps, without
+ * repeating the preparation. This is also possible concurrently, as long as different
+ * instances of <code>ARXConfiguration</code> are used. Each result is bound to a separate
+ * input handle. Changes to the original data after preparation are not reflected.
+ * 
+ * @author Fabian Prasser
+ */
+public class ARXPreparedData {
+
+    /** The header */
+    private final String[]                      header;
+
+    /** The encoded data */
+    private final DataMatrix                    data;
+
+    /** The dictionary */
+    private final Dictionary                    dictionary;
+
+    /** The locked definition */
+    private final DataDefinition                definition;
+
+    /** Prototypes of data managers for different data layouts */
+    private final Map<List<Object>, DataManager> prototypes = new HashMap<List<Object>, DataManager>();
+
+    /**
+     * Creates a new instance from the given input handle
+     * 
+     * @param handle
+     */
+    ARXPreparedData(DataHandleInput handle) {
+        int[] dimensions = new int[handle.dictionary.getNumDimensions()];
+        for (int i = 0; i < dimensions.length; i++) {
+            dimensions[i] = i;
+        }
+        this.header = Arrays.copyOf(handle.header, handle.header.length);
+        this.data = handle.data.clone();
+        this.dictionary = new Dictionary(handle.dictionary, dimensions);
+        this.definition = handle.getDefinition().clone();
+        this.definition.setLocked(true);
+    }
+
+    /**
+     * Returns the data definition which has been captured when preparing the data
+     * 
+     * @return
+     */
+    public DataDefinition getDefinition() {
+        return definition.clone();
+    }
+
+    /**
+     * Returns the number of columns
+     * 
+     * @return
+     */
+    public int getNumColumns() {
+        return header.length;
+    }
+
+    /**
+     * Returns the number of rows
+     * 
+     * @return
+     */
+    public int getNumRows() {
+        return data.getNumRows();
+    }
+
+    /**
+     * Returns a map of all microaggregation functions
+     * @param definition
+     * @return
+     */
+    private Map<String, DistributionAggregateFunction> getAggregateFunctions(DataDefinition definition) {
+        Map<String, DistributionAggregateFunction> result = new HashMap<String, DistributionAggregateFunction>();
+        for (String key : definition.getQuasiIdentifiersWithMicroaggregation()) {
+            result.put(key, definition.getMicroAggregationFunction(key).getFunction());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the prototype for the data layout implied by the given configuration.
+     * Prototypes are created on demand.
+     * 
+     * @param config
+     * @return
+     */
+    private synchronized DataManager getPrototype(ARXConfiguration config) {
+
+        // Everything else is independent of the configuration
+        List<Object> layout = Arrays.<Object>asList(config.getQualityModel().isAbleToHandleMicroaggregation(),
+                                                    config.getQualityModel().isAbleToHandleClusteredMicroaggregation(),
+                                                    config.isDataPackingEnabled(),
+                                                    config.getOffHeapThreshold(),
+                                                    config.getOffHeapDirectory());
+        DataManager prototype = prototypes.get(layout);
+        if (prototype == null) {
+            prototype = new DataManager(header,
+                                        data,
+                                        dictionary,
+                                        definition,
+                                        getAggregateFunctions(definition),
+                                        config.getQualityModel().isAbleToHandleMicroaggregation(),
+                                        config.getQualityModel().isAbleToHandleClusteredMicroaggregation(),
+                                        config.isDataPackingEnabled(),
+                                        config.getOffHeapThreshold(),
+                                        config.getOffHeapDirectory());
+            prototypes.put(layout, prototype);
+        }
+        return prototype;
+    }
+
+    /**
+     * Creates a new input handle with a private copy of the data
+     * 
+     * @return
+     */
+    DataHandleInput createHandle() {
+        int[] dimensions = new int[dictionary.getNumDimensions()];
+        for (int i = 0; i < dimensions.length; i++) {
+            dimensions[i] = i;
+        }
+        Data copy = Data.createFromEncoded(header, new Dictionary(dictionary, dimensions), data.clone(), definition);
+        return new DataHandleInput(copy);
+    }
+
+    /**
+     * Returns a data manager for the given handle and configuration
+     * 
+     * @param handle A handle created with <code>createHandle()</code>
+     * @param config
+     * @return
+     */
+    DataManager getDataManager(DataHandleInput handle, ARXConfiguration config) {
+        return getPrototype(config).getInstance(handle.data, handle.dictionary, config);
+    }
+}
@@ -25,6 +25,7 @@ import java.util.Map;
 
 import org.deidentifier.arx.ARXAnonymizer.Result;
 import org.deidentifier.arx.ARXLattice.ARXNode;
+import org.deidentifier.arx.framework.check.CheckerStatistics;
 import org.deidentifier.arx.framework.lattice.ObjectIterator;
 import org.deidentifier.arx.framework.lattice.Transformation;
 import org.deidentifier.arx.metric.InformationLoss;
@@ -37,6 +38,243 @@ import org.deidentifier.arx.metric.v2.QualityMetadata;
  */
 public class ARXProcessStatistics implements Serializable {
     
+    /**
+     * Statistics about the internals of the engine, which are only collected if
+     * enabled in the configuration. Times are reported in milliseconds.
+     * 
+     * @author Fabian Prasser
+     */
+    public static class EngineStatistics implements Serializable {
+
+        /** SVUID */
+        private static final long serialVersionUID = 2839503620283837498L;
+
+        /** Number of transformations transformed and evaluated */
+        private long              numChecks;
+
+        /** Number of transformations performed by scanning the input */
+        private long              numTransitionsFullScan;
+
+        /** Number of transformations performed by rolling up the previous result */
+        private long              numTransitionsRollup;
+
+        /** Number of transformations performed by using a snapshot */
+        private long              numTransitionsSnapshot;
+
+        /** Number of successful lookups in the history */
+        private long              numHistoryHits;
+
+        /** Number of unsuccessful lookups in the history */
+        private long              numHistoryMisses;
+
+        /** Number of snapshots stored in the history */
+        private long              numHistoryStores;
+
+        /** Number of snapshots evicted from the history */
+        private long              numHistoryEvictions;
+
+        /** Maximal number of equivalence classes */
+        private long              maxEquivalenceClasses;
+
+        /** Maximal number of bytes occupied by the snapshots in a history */
+        private long              maxHistoryMemory;
+
+        /** Time spent transforming data */
+        private double            timeTransformation;
+
+        /** Time spent evaluating privacy models */
+        private double            timePrivacyModel;
+
+        /** Time spent evaluating quality models */
+        private double            timeQualityModel;
+
+        /**
+         * Creates a new instance from the statistics collected by the engine
+         * @param statistics
+         */
+        protected EngineStatistics(CheckerStatistics statistics) {
+            this.numChecks = statistics.getNumChecks();
+            this.numTransitionsFullScan = statistics.getNumTransitionsFullScan();
+            this.numTransitionsRollup = statistics.getNumTransitionsRollup();
+            this.numTransitionsSnapshot = statistics.getNumTransitionsSnapshot();
+            this.numHistoryHits = statistics.getNumHistoryHits();
+            this.numHistoryMisses = statistics.getNumHistoryMisses();
+            this.numHistoryStores = statistics.getNumHistoryStores();
+            this.numHistoryEvictions = statistics.getNumHistoryEvictions();
+            this.maxEquivalenceClasses = statistics.getMaxEquivalenceClasses();
+            this.maxHistoryMemory = statistics.getMaxHistoryMemory();
+            this.timeTransformation = statistics.getTimeTransformation() / 1000000d;
+            this.timePrivacyModel = statistics.getTimePrivacyModel() / 1000000d;
+            this.timeQualityModel = statistics.getTimeQualityModel() / 1000000d;
+        }
+
+        /**
+         * Clone constructor
+         * @param other
+         */
+        private EngineStatistics(EngineStatistics other) {
+            this.numChecks = other.numChecks;
+            this.numTransitionsFullScan = other.numTransitionsFullScan;
+            this.numTransitionsRollup = other.numTransitionsRollup;
+            this.numTransitionsSnapshot = other.numTransitionsSnapshot;
+            this.numHistoryHits = other.numHistoryHits;
+            this.numHistoryMisses = other.numHistoryMisses;
+            this.numHistoryStores = other.numHistoryStores;
+            this.numHistoryEvictions = other.numHistoryEvictions;
+            this.maxEquivalenceClasses = other.maxEquivalenceClasses;
+            this.maxHistoryMemory = other.maxHistoryMemory;
+            this.timeTransformation = other.timeTransformation;
+            this.timePrivacyModel = other.timePrivacyModel;
+            this.timeQualityModel = other.timeQualityModel;
+        }
+
+        @Override
+        public EngineStatistics clone() {
+            return new EngineStatistics(this);
+        }
+
+        /**
+         * Returns the maximal number of equivalence classes in any transformed dataset
+         * @return
+         */
+        public long getMaximalNumberOfEquivalenceClasses() {
+            return maxEquivalenceClasses;
+        }
+
+        /**
+         * Returns the maximal number of bytes occupied by the snapshots stored in a history
+         * @return
+         */
+        public long getMaximalHistoryMemory() {
+            return maxHistoryMemory;
+        }
+
+        /**
+         * Returns the number of snapshots evicted from the history
+         * @return
+         */
+        public long getNumberOfHistoryEvictions() {
+            return numHistoryEvictions;
+        }
+
+        /**
+         * Returns the number of lookups in the history which returned a snapshot
+         * @return
+         */
+        public long getNumberOfHistoryHits() {
+            return numHistoryHits;
+        }
+
+        /**
+         * Returns the number of lookups in the history which did not return a snapshot
+         * @return
+         */
+        public long getNumberOfHistoryMisses() {
+            return numHistoryMisses;
+        }
+
+        /**
+         * Returns the number of snapshots stored in the history
+         * @return
+         */
+        public long getNumberOfHistoryStores() {
+            return numHistoryStores;
+        }
+
+        /**
+         * Returns the number of transformations which have been applied to the data and evaluated.
+         * This includes transformations checked speculatively by parallel workers.
+         * @return
+         */
+        public long getNumberOfTransformationsEvaluated() {
+            return numChecks;
+        }
+
+        /**
+         * Returns the number of transformations performed by scanning the complete input
+         * @return
+         */
+        public long getNumberOfTransitionsFullScan() {
+            return numTransitionsFullScan;
+        }
+
+        /**
+         * Returns the number of transformations performed by rolling up the result of the previous transformation
+         * @return
+         */
+        public long getNumberOfTransitionsRollup() {
+            return numTransitionsRollup;
+        }
+
+        /**
+         * Returns the number of transformations performed by transforming a snapshot from the history
+         * @return
+         */
+        public long getNumberOfTransitionsSnapshot() {
+            return numTransitionsSnapshot;
+        }
+
+        /**
+         * Returns the time spent evaluating privacy models in milliseconds
+         * @return
+         */
+        public double getTimePrivacyModel() {
+            return timePrivacyModel;
+        }
+
+        /**
+         * Returns the time spent evaluating quality models in milliseconds
+         * @return
+         */
+        public double getTimeQualityModel() {
+            return timeQualityModel;
+        }
+
+        /**
+         * Returns the time spent transforming data in milliseconds
+         * @return
+         */
+        public double getTimeTransformation() {
+            return timeTransformation;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("Engine statistics\n");
+            builder.append(" - Transformations evaluated: ").append(numChecks).append("\n");
+            builder.append(" - Transitions (full scan / rollup / snapshot): ").append(numTransitionsFullScan).append(" / ")
+                   .append(numTransitionsRollup).append(" / ").append(numTransitionsSnapshot).append("\n");
+            builder.append(" - History (hits / misses / stores / evictions): ").append(numHistoryHits).append(" / ")
+                   .append(numHistoryMisses).append(" / ").append(numHistoryStores).append(" / ").append(numHistoryEvictions).append("\n");
+            builder.append(" - Maximal number of equivalence classes: ").append(maxEquivalenceClasses).append("\n");
+            builder.append(" - Maximal memory occupied by history [bytes]: ").append(maxHistoryMemory).append("\n");
+            builder.append(" - Time (transformation / privacy / quality) [ms]: ").append(timeTransformation).append(" / ")
+                   .append(timePrivacyModel).append(" / ").append(timeQualityModel);
+            return builder.toString();
+        }
+
+        /**
+         * Adds the statistics of the other instance to this instance
+         * @param other
+         */
+        private void merge(EngineStatistics other) {
+            this.numChecks += other.numChecks;
+            this.numTransitionsFullScan += other.numTransitionsFullScan;
+            this.numTransitionsRollup += other.numTransitionsRollup;
+            this.numTransitionsSnapshot += other.numTransitionsSnapshot;
+            this.numHistoryHits += other.numHistoryHits;
+            this.numHistoryMisses += other.numHistoryMisses;
+            this.numHistoryStores += other.numHistoryStores;
+            this.numHistoryEvictions += other.numHistoryEvictions;
+            this.maxEquivalenceClasses = Math.max(this.maxEquivalenceClasses, other.maxEquivalenceClasses);
+            this.maxHistoryMemory = Math.max(this.maxHistoryMemory, other.maxHistoryMemory);
+            this.timeTransformation += other.timeTransformation;
+            this.timePrivacyModel += other.timePrivacyModel;
+            this.timeQualityModel += other.timeQualityModel;
+        }
+    }
+    
     /**
      * One individual anonymization step
      * 
@@ -273,6 +511,9 @@ public class ARXProcessStatistics implements Serializable {
     /** Duration */
     private long              duration;
 
+    /** Statistics about the engine, if collected */
+    private EngineStatistics  engineStatistics       = null;
+
     /**
      * Clone constructor
      * @param other
@@ -283,6 +524,7 @@ public class ARXProcessStatistics implements Serializable {
         this.transformationsTotalLargeLattice = other.transformationsTotalLargeLattice;
         this.duration = other.duration;
         this.initialNumberOfRecords = other.initialNumberOfRecords;
+        this.engineStatistics = other.engineStatistics != null ? other.engineStatistics.clone() : null;
         this.steps = new ArrayList<>();
         for (Step step : other.steps) {
             this.steps.add(step.clone());
@@ -302,8 +544,9 @@ public class ARXProcessStatistics implements Serializable {
      * @param optimum
      * @param isOptimal
      * @param duration
+     * @param engineStatistics
      */
-    protected ARXProcessStatistics(ARXLattice lattice, ARXNode optimum, boolean isOptimal, long duration) {
+    protected ARXProcessStatistics(ARXLattice lattice, ARXNode optimum, boolean isOptimal, long duration, EngineStatistics engineStatistics) {
         
         // Add step
         if (optimum != null) {
@@ -312,6 +555,7 @@ public class ARXProcessStatistics implements Serializable {
 
         // Compute statistics
         this.duration += duration;
+        this.engineStatistics = engineStatistics;
         this.transformationsTotal += lattice.getVirtualSize().longValue();  
         this.transformationsTotalLargeLattice = BigInteger.valueOf(0);
         this.transformationsTotalLargeLattice = this.transformationsTotalLargeLattice.add(lattice.getVirtualSize());
@@ -355,6 +599,7 @@ public class ARXProcessStatistics implements Serializable {
         this.transformationsTotalLargeLattice = this.transformationsTotalLargeLattice.add(result.solutionSpace.getSize());
         this.transformationsTotal += result.solutionSpace.getSize().longValue();
         this.duration += duration;
+        this.engineStatistics = result.checker.getStatistics() != null ? new EngineStatistics(result.checker.getStatistics()) : null;
         
         // Collect number of checked transformations
         for (ObjectIterator<?> iterator = result.solutionSpace.getMaterializedTransformations(); iterator.hasNext();) {
@@ -378,6 +623,14 @@ public class ARXProcessStatistics implements Serializable {
         return this.duration;
     }
     
+    /**
+     * Returns statistics about the internals of the engine, if they have been collected
+     * @return
+     */
+    public EngineStatistics getEngineStatistics() {
+        return this.engineStatistics;
+    }
+    
     /**
      * Converts the statistics into a lattice
      * @return
@@ -431,6 +684,14 @@ public class ARXProcessStatistics implements Serializable {
         return this.transformationsChecked;
     }
     
+    /**
+     * Returns whether statistics about the internals of the engine have been collected
+     * @return
+     */
+    public boolean isEngineStatisticsAvailable() {
+        return this.engineStatistics != null;
+    }
+    
     /**
      * Returns whether the result is a local transformation scheme
      * @return
@@ -486,5 +747,12 @@ public class ARXProcessStatistics implements Serializable {
         this.transformationsTotal += stats.transformationsTotal;
         this.transformationsChecked += stats.transformationsChecked;
         this.duration += stats.duration;
+        if (stats.engineStatistics != null) {
+            if (this.engineStatistics == null) {
+                this.engineStatistics = stats.engineStatistics.clone();
+            } else {
+                this.engineStatistics.merge(stats.engineStatistics);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -19,24 +19,34 @@ package org.deidentifier.arx;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.deidentifier.arx.ARXAnonymizer.Result;
 import org.deidentifier.arx.ARXLattice.ARXNode;
+import org.deidentifier.arx.ARXProcessStatistics.EngineStatistics;
 import org.deidentifier.arx.criteria.PrivacyCriterion;
 import org.deidentifier.arx.exceptions.RollbackRequiredException;
 import org.deidentifier.arx.framework.check.TransformationApplicator;
 import org.deidentifier.arx.framework.check.TransformationChecker;
 import org.deidentifier.arx.framework.check.TransformedData;
+import org.deidentifier.arx.common.WrappedBoolean;
+import org.deidentifier.arx.common.WrappedInteger;
 import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction;
+import org.deidentifier.arx.framework.check.groupify.HashGroupify;
+import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
 import org.deidentifier.arx.framework.data.Data;
 import org.deidentifier.arx.framework.data.DataManager;
 import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.DataMatrixMapped;
 import org.deidentifier.arx.framework.data.Dictionary;
 import org.deidentifier.arx.framework.lattice.SolutionSpace;
 import org.deidentifier.arx.framework.lattice.Transformation;
 import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.risk.RiskModelSampleSummary;
 
 /**
  * Encapsulates the results of an execution of the ARX algorithm.
@@ -46,6 +56,219 @@ import org.deidentifier.arx.metric.Metric;
  */
 public class ARXResult {
 
+    /**
+     * Performs local recoding on an output handle in one or multiple steps. The engine keeps the
+     * suppressed records in compact form across steps. Each step only scans the records that were
+     * suppressed after the previous step. The data processed by the search is copied from the
+     * previous step, instead of being accessed indirectly via the complete input.
+     * 
+     * @author Fabian Prasser
+     */
+    private class LocalRecodingEngine {
+
+        /** The anonymizer */
+        private final ARXAnonymizer    anonymizer;
+
+        /** The number of records in the baseline */
+        private final int              baselineRecords;
+
+        /** The data definition */
+        private final DataDefinition   definition;
+
+        /** The data manager for the records processed in the last step */
+        private DataManager            manager;
+
+        /** The records processed in the last step */
+        private int[]                  managerRows;
+
+        /** The handle */
+        private final DataHandleOutput output;
+
+        /** The records which are currently suppressed */
+        private int[]                  rows;
+
+        /**
+         * Creates a new instance
+         * 
+         * @param output
+         */
+        private LocalRecodingEngine(DataHandleOutput output) {
+            
+            // Baseline records
+            RowSet baselineRowSet = config.getSubset() == null ? null : config.getSubset().getSet();
+            this.baselineRecords = baselineRowSet == null ? output.getNumRows() : baselineRowSet.size();
+            
+            // Collect suppressed records
+            int[] rows = new int[output.getNumRows()];
+            int size = 0;
+            for (int row = 0; row < output.getNumRows(); row++) {
+                if (output.isOutlier(row) && (baselineRowSet == null || baselineRowSet.contains(row))) {
+                    rows[size++] = row;
+                }
+            }
+            this.rows = Arrays.copyOf(rows, size);
+            
+            // In the data definition, only microaggregation functions maintain a state, but these 
+            // are cloned, when cloning the definition
+            // TODO: This is probably not necessary, because they are used from the data manager,
+            //       which in turn creates a clone by itself
+            this.definition = ARXResult.this.definition.clone();
+            this.output = output;
+            this.manager = ARXResult.this.manager;
+            this.managerRows = null;
+            
+            // Create an anonymizer
+            this.anonymizer = new ARXAnonymizer();
+            if (ARXResult.this.anonymizer != null) {
+                this.anonymizer.parse(ARXResult.this.anonymizer);
+            }
+        }
+
+        /**
+         * Returns whether further records can be optimized
+         * 
+         * @return
+         */
+        private boolean isOptimizable() {
+            
+            // Update suppressed records
+            int size = 0;
+            for (int row : rows) {
+                if (output.isOutlier(row)) {
+                    rows[size++] = row;
+                }
+            }
+            if (size != rows.length) {
+                rows = Arrays.copyOf(rows, size);
+            }
+            
+            // Check minimal group size
+            if (config.getMinimalGroupSize() != Integer.MAX_VALUE && rows.length < config.getMinimalGroupSize()) {
+                return false;
+            }
+            
+            // Check, if there are any outliers
+            return rows.length != 0;
+        }
+
+        /**
+         * Optimizes the records which are currently suppressed
+         * 
+         * @param records
+         * @param gsFactor
+         * @param listener
+         * @return
+         * @throws RollbackRequiredException
+         */
+        private ARXProcessStatistics optimize(double records,
+                                              double gsFactor,
+                                              ARXListener listener) throws RollbackRequiredException {
+
+            // Check
+            checkLocalRecodingParameters(records, gsFactor);
+            if (!isOptimizable()) {
+                return new ARXProcessStatistics();
+            }
+            
+            // Prepare tracking of duration
+            long time = System.currentTimeMillis();
+            int initialRecords = baselineRecords - rows.length;
+            
+            // Rows of the input which are processed
+            RowSet rowset = RowSet.create(output.getNumRows());
+            for (int row : rows) {
+                rowset.add(row);
+            }
+            
+            // Rows of the previous data manager which are processed
+            RowSet managerRowset = rowset;
+            if (managerRows != null) {
+                managerRowset = RowSet.create(managerRows.length);
+                for (int index = 0, row = 0; index < managerRows.length && row < rows.length; index++) {
+                    if (managerRows[index] == rows[row]) {
+                        managerRowset.add(index);
+                        row++;
+                    }
+                }
+            }
+            
+            // Everything that is used from here on, needs to be either
+            // (a) state-less, or
+            // (b) a fresh copy of the original configuration.
+
+            // We start by creating a projected instance of the configuration
+            // - All privacy models will be cloned
+            // - Subsets will be projected accordingly
+            // - Utility measures will be cloned
+            ARXConfiguration config = ARXResult.this.config.getInstanceForLocalRecoding(rowset, gsFactor);
+            if (!Double.isNaN(records)) {
+                double absoluteRecords = records * baselineRecords;
+                double relativeRecords = absoluteRecords / (double)rowset.size();
+                relativeRecords = relativeRecords < 0d ? 0d : relativeRecords;
+                relativeRecords = relativeRecords > 1d ? 1d : relativeRecords;
+                config.setSuppressionLimit(1d - relativeRecords);
+            }
+            
+            // Project the data manager of the previous step
+            this.manager = this.manager.getCompactSubsetInstance(managerRowset);
+            this.managerRows = rows.clone();
+            
+            // Anonymize
+            anonymizer.setListener(listener);
+            Result result = null;
+            try {
+                result = anonymizer.anonymize(manager, definition, config);
+            } catch (IOException e) {
+                // This should not happen at this point in time, as data has already been read from the source
+                throw new RuntimeException("Internal error: unexpected IO issue");
+            }
+            
+            // Break, if no solution has been found
+            if (result.optimum == null) {
+                return new ARXProcessStatistics();
+            }
+            
+            // Else, merge the results back into the given handle
+            TransformedData data = result.checker.getApplicator().applyTransformation(result.optimum, output.getOutputBufferMicroaggregated().getDictionary());
+            DataMatrix oldGeneralized = output.getOutputBufferGeneralized().getArray();
+            DataMatrix oldMicroaggregated = output.getOutputBufferMicroaggregated().getArray();
+            DataMatrix newGeneralized = data.bufferGeneralized.getArray();
+            DataMatrix newMicroaggregated = data.bufferMicroaggregated.getArray();
+            
+            try {
+                
+                int optimized = 0;
+                for (int newIndex = 0; newIndex < rows.length; newIndex++) {
+                    int oldIndex = rows[newIndex];
+                    if (oldGeneralized != null && oldGeneralized.getNumRows() != 0) {
+                        oldGeneralized.copyFrom(oldIndex, newGeneralized, newIndex);
+                        optimized += (newGeneralized.get(newIndex, 0) & Data.OUTLIER_MASK) != 0 ? 0 : 1;
+                    }
+                    if (oldMicroaggregated != null && oldMicroaggregated.getNumRows() != 0) {
+                        oldMicroaggregated.copyFrom(oldIndex, newMicroaggregated, newIndex);
+                    }
+                }
+                
+                // Update data types
+                output.updateDataTypes(result.optimum.getGeneralization());
+                
+                // Mark as optimized
+                if (optimized != 0) {
+                    output.setOptimized(true);
+                }
+                
+                // Done
+                time = System.currentTimeMillis() - time;
+                return new ARXProcessStatistics(result, initialRecords, optimized, time);
+                
+            // If anything happens in the above block, the operation needs to be rolled back, because
+            // the buffer might be in an inconsistent state
+            } catch (Exception e) {
+                throw new RollbackRequiredException("Handle must be rebuilt to guarantee privacy", e);
+            }
+        }
+    }
+
     /** Anonymizer */
     private ARXAnonymizer                   anonymizer;
 
@@ -149,8 +372,10 @@ public class ARXResult {
         // Initialize the metric
         metric.initialize(manager, definition, manager.getDataGeneralized(), manager.getHierarchies(), config);
 
-        this.buffer = new DataMatrix(manager.getDataGeneralized().getArray().getNumRows(), 
-                                     manager.getDataGeneralized().getArray().getNumColumns());
+        this.buffer = DataMatrixMapped.create(manager.getDataGeneralized().getArray().getNumRows(), 
+                                              manager.getDataGeneralized().getArray().getNumColumns(),
+                                              config.getOffHeapThreshold(),
+                                              config.getOffHeapDirectory());
         
         // Initialize the result
         this.registry = handle.getRegistry();
@@ -160,7 +385,7 @@ public class ARXResult {
         this.lattice = lattice;
         this.optimalTransformation = lattice.getOptimum();
         this.solutionSpace = solutionSpace;
-        this.statistics = statistics != null ? statistics : new ARXProcessStatistics(lattice, optimalTransformation, lattice._legacySearchedWithFlash(), time);
+        this.statistics = statistics != null ? statistics : new ARXProcessStatistics(lattice, optimalTransformation, lattice._legacySearchedWithFlash(), time, null);
         this.optimumFound = this.statistics.isSolutationAvailable() ? this.statistics.getStep(0).isOptimal() : false;
         this.duration = this.statistics.getDuration();
     }
@@ -201,7 +426,11 @@ public class ARXResult {
         this.duration = duration;
         this.solutionSpace = solutionSpace;
         this.optimumFound = optimumFound;
-        this.statistics = new ARXProcessStatistics(lattice, optimalTransformation, optimumFound, duration);
+        this.statistics = new ARXProcessStatistics(lattice,
+                                                   optimalTransformation,
+                                                   optimumFound,
+                                                   duration,
+                                                   checker.getStatistics() != null ? new EngineStatistics(checker.getStatistics()) : null);
     }
 
     /**
@@ -323,7 +552,8 @@ public class ARXResult {
         TransformationApplicator applicator = new TransformationApplicator(this.manager,
                                                                            this.buffer,
                                                                            this.config.getQualityModel(),
-                                                                           this.config.getInternalConfiguration());
+                                                                           this.config.getInternalConfiguration(),
+                                                                           this.anonymizer != null ? this.anonymizer.getNumberOfThreads() : 1);
         
         TransformedData information = applicator.applyTransformation(transformation);
         transformation.setChecked(information.properties);
@@ -420,6 +650,91 @@ public class ARXResult {
         return this.statistics;
     }
 
+    /**
+     * Returns sample-based risk summaries for the given transformations. The summaries are equal to
+     * the results of <code>getOutput(node).getRiskEstimator().getSampleBasedRiskSummary(threshold)</code>,
+     * but they are computed from the equivalence classes constructed when applying the transformations,
+     * without creating handles for output data. Transformations are processed in an order that allows
+     * reusing previous results. If microaggregation is used, output handles will be created.
+     * 
+     * @param nodes the transformations
+     * @param threshold Acceptable highest probability of re-identification for a single record. Please note that this
+     *                  threshold may be exceeded by up to 1% due to rounding issues.
+     * @return
+     */
+    public List<RiskModelSampleSummary> getSampleBasedRiskSummaries(List<ARXNode> nodes, double threshold) {
+        
+        // Microaggregated values are only available in output data
+        RiskModelSampleSummary[] result = new RiskModelSampleSummary[nodes.size()];
+        if (manager.getAggregationInformation().getMicroaggregationHeader().length != 0) {
+            for (int index = 0; index < result.length; index++) {
+                result[index] = getOutput(nodes.get(index)).getRiskEstimator().getSampleBasedRiskSummary(threshold);
+            }
+            return Arrays.asList(result);
+        }
+        
+        // Order by level, to allow for rollups and snapshots
+        final Transformation<?>[] transformations = new Transformation<?>[nodes.size()];
+        Integer[] order = new Integer[nodes.size()];
+        for (int index = 0; index < order.length; index++) {
+            transformations[index] = solutionSpace.getTransformation(nodes.get(index).getTransformation());
+            order[index] = index;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer index1, Integer index2) {
+                return Integer.compare(transformations[index1].getLevel(), transformations[index2].getLevel());
+            }
+        });
+        
+        // Create a checker, which maintains its own history
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        if (this.anonymizer != null) {
+            anonymizer.parse(this.anonymizer);
+        }
+        TransformationChecker checker = new TransformationChecker(this.manager,
+                                                                  this.config.getQualityModel(),
+                                                                  this.config.getInternalConfiguration(),
+                                                                  anonymizer.getHistorySize(),
+                                                                  anonymizer.getMaximumSnapshotSizeDataset(),
+                                                                  anonymizer.getMaximumSnapshotSizeSnapshot(),
+                                                                  this.solutionSpace,
+                                                                  anonymizer.getNumberOfThreads());
+        boolean subset = this.config.getSubset() != null;
+        WrappedBoolean stop = new WrappedBoolean(false);
+        WrappedInteger progress = new WrappedInteger();
+        
+        try {
+            for (int index : order) {
+                
+                // Determine the sizes of the classes in output data. Completely generalized records are
+                // ignored, suppressed records and records not contained in the research subset are removed
+                HashGroupify groupify = checker.getEquivalenceClasses(transformations[index]);
+                boolean suppress = this.config.getInternalConfiguration().getAbsoluteSuppressionLimit() != 0 ||
+                                   !groupify.isPrivacyModelFulfilled();
+                int[] sizes = new int[groupify.getNumberOfEquivalenceClasses()];
+                int classes = 0;
+                HashGroupifyEntry entry = groupify.getFirstEquivalenceClass();
+                while (entry != null) {
+                    int size = suppress ? (entry.isNotOutlier ? entry.count : 0) : (subset ? entry.pcount : entry.count);
+                    if (size != 0 && !groupify.isCompletelyGeneralized(entry)) {
+                        sizes[classes++] = size;
+                    }
+                    entry = entry.nextOrdered;
+                }
+                sizes = Arrays.copyOf(sizes, classes);
+                
+                // Output data is not a sample of other data
+                result[index] = new RiskModelSampleSummary(sizes, sizes, threshold, stop, progress);
+            }
+        } finally {
+            checker.reset();
+        }
+        
+        // Return
+        return Arrays.asList(result);
+    }
+
     /**
      * Returns the execution time (wall clock).
      *
@@ -598,14 +913,7 @@ public class ARXResult {
         }
 
         // Check bounds
-        if (!Double.isNaN(records) && (records <= 0d || records > 1d)) {
-            throw new IllegalArgumentException("Number of records to optimize must be in ]0, 1]");
-        }
-        
-        // Check bounds
-        if (!Double.isNaN(gsFactor) && (gsFactor < 0d || gsFactor > 1d)) {
-            throw new IllegalArgumentException("Generalization/suppression factor must be in [0, 1]");
-        }
+        checkLocalRecodingParameters(records, gsFactor);
         
         // Check if output
         if (!(handle instanceof DataHandleOutput)) {
@@ -617,123 +925,14 @@ public class ARXResult {
             return new ARXProcessStatistics();
         }
         
-        // Prepare tracking of duration
-        long time = System.currentTimeMillis();
-        
-        // Extract
-        DataHandleOutput output = (DataHandleOutput)handle;
-        
         // Check, if input matches
+        DataHandleOutput output = (DataHandleOutput)handle;
         if (output.getInputBuffer() == null || !output.getInputBuffer().equals(this.manager.getDataGeneralized().getArray())) {
             throw new IllegalArgumentException("This output data is not associated to the correct input data");
         }
         
-        // Baseline records
-        RowSet baselineRowSet = config.getSubset() == null ? null : config.getSubset().getSet();
-        int baselineRecords = baselineRowSet == null ? output.getNumRows() : baselineRowSet.size();
-        
-        // We are now ready to go
-        // Collect input and row indices
-        int initialRecords = 0;
-        RowSet rowset = RowSet.create(output.getNumRows());
-        for (int row = 0; row < output.getNumRows(); row++) {
-            if (output.isOutlier(row) && (baselineRowSet == null || baselineRowSet.contains(row))) {
-                rowset.add(row);
-                initialRecords++;
-            }
-        }
-        initialRecords = baselineRecords - initialRecords;
-        
-        // Everything that is used from here on, needs to be either
-        // (a) state-less, or
-        // (b) a fresh copy of the original configuration.
-
-        // We start by creating a projected instance of the configuration
-        // - All privacy models will be cloned
-        // - Subsets will be projected accordingly
-        // - Utility measures will be cloned
-        ARXConfiguration config = this.config.getInstanceForLocalRecoding(rowset, gsFactor);
-        if (!Double.isNaN(records)) {
-            double absoluteRecords = records * baselineRecords;
-            double relativeRecords = absoluteRecords / (double)rowset.size();
-            relativeRecords = relativeRecords < 0d ? 0d : relativeRecords;
-            relativeRecords = relativeRecords > 1d ? 1d : relativeRecords;
-            config.setSuppressionLimit(1d - relativeRecords);
-        }
-        
-        // In the data definition, only microaggregation functions maintain a state, but these 
-        // are cloned, when cloning the definition
-        // TODO: This is probably not necessary, because they are used from the data manager,
-        //       which in turn creates a clone by itself
-        DataDefinition definition = this.definition.clone();
-        
-        // Clone the data manager
-        DataManager manager = this.manager.getSubsetInstance(rowset);
-        
-        // Create an anonymizer
-        ARXAnonymizer anonymizer = new ARXAnonymizer();
-        if (listener != null) {
-            anonymizer.setListener(listener);
-        }
-        if (this.anonymizer != null) {
-            anonymizer.parse(this.anonymizer);
-        }
-        
-        // Anonymize
-        Result result = null;
-        try {
-            result = anonymizer.anonymize(manager, definition, config);
-        } catch (IOException e) {
-            // This should not happen at this point in time, as data has already been read from the source
-            throw new RuntimeException("Internal error: unexpected IO issue");
-        }
-        
-        // Break, if no solution has been found
-        if (result.optimum == null) {
-            return new ARXProcessStatistics();
-        }
-        
-        // Else, merge the results back into the given handle
-        TransformedData data = result.checker.getApplicator().applyTransformation(result.optimum, output.getOutputBufferMicroaggregated().getDictionary());
-        int newIndex = -1;
-        DataMatrix oldGeneralized = output.getOutputBufferGeneralized().getArray();
-        DataMatrix oldMicroaggregated = output.getOutputBufferMicroaggregated().getArray();
-        DataMatrix newGeneralized = data.bufferGeneralized.getArray();
-        DataMatrix newMicroaggregated = data.bufferMicroaggregated.getArray();
-        
-        try {
-            
-            int optimized = 0;
-            for (int oldIndex = 0; oldIndex < rowset.length(); oldIndex++) {
-                if (rowset.contains(oldIndex)) {
-                    newIndex++;
-                    if (oldGeneralized != null && oldGeneralized.getNumRows() != 0) {
-                        oldGeneralized.copyFrom(oldIndex, newGeneralized, newIndex);
-                        optimized += (newGeneralized.get(newIndex, 0) & Data.OUTLIER_MASK) != 0 ? 0 : 1;
-                    }
-                    if (oldMicroaggregated != null && oldMicroaggregated.getNumRows() != 0) {
-                        oldMicroaggregated.copyFrom(oldIndex, newMicroaggregated, newIndex);
-                    }
-                }
-            }
-            
-            // Update data types
-            output.updateDataTypes(result.optimum.getGeneralization());
-            
-            // Mark as optimized
-            if (optimized != 0) {
-                output.setOptimized(true);
-            }
-            
-            // Done
-            time = System.currentTimeMillis() - time;
-            return new ARXProcessStatistics(result, initialRecords, optimized, time);
-            
-        // If anything happens in the above block, the operation needs to be rolled back, because
-        // the buffer might be in an inconsistent state
-        } catch (Exception e) {
-            throw new RollbackRequiredException("Handle must be rebuilt to guarantee privacy", e);
-        }
+        // Perform a single step
+        return new LocalRecodingEngine(output).optimize(records, gsFactor, listener);
     }
     
     /**
@@ -811,10 +1010,16 @@ public class ARXResult {
         listener.progress(0d);
         
         // Outer loop
-        while (isOptimizable(handle) && iterationsTotal < maxIterations && optimizedCurrent > 0) {
+        LocalRecodingEngine engine = isOptimizable(handle) ? new LocalRecodingEngine((DataHandleOutput)handle) : null;
+        while (engine != null && engine.isOptimizable() && iterationsTotal < maxIterations && optimizedCurrent > 0) {
 
             // Perform individual optimization
-            ARXProcessStatistics _statistics = optimize(handle, gsFactor);
+            ARXProcessStatistics _statistics = engine.optimize(Double.NaN, gsFactor, new ARXListener(){
+                @Override
+                public void progress(double progress) {
+                    // Empty by design
+                }
+            });
             optimizedCurrent = 0;
             if (_statistics.isSolutationAvailable()) {
                 optimizedCurrent = _statistics.getStep(0).getNumberOfRecordsTransformed();
@@ -919,14 +1124,15 @@ public class ARXResult {
         listener.progress(0d);
         
         // Outer loop
-        while (isOptimizable(handle) && optimizedCurrent > 0) {
+        LocalRecodingEngine engine = isOptimizable(handle) ? new LocalRecodingEngine((DataHandleOutput)handle) : null;
+        while (engine != null && engine.isOptimizable() && optimizedCurrent > 0) {
 
             // Progress
             final double minProgress = (double)optimizedTotal / (double)optimizedGoal;
             final double maxProgress = minProgress + records;
             
             // Perform individual optimization
-            ARXProcessStatistics _statistics = optimizeFast(handle, records, gsFactor, new ARXListener() {
+            ARXProcessStatistics _statistics = engine.optimize(records, gsFactor, new ARXListener() {
                 @Override
                 public void progress(double progress) {
                     listener.progress(minProgress + progress * (maxProgress - minProgress));
@@ -950,6 +1156,25 @@ public class ARXResult {
         return statistics;
     }
     
+    /**
+     * Checks the parameters of local recoding
+     * 
+     * @param records
+     * @param gsFactor
+     */
+    private void checkLocalRecodingParameters(double records, double gsFactor) {
+        
+        // Check bounds
+        if (!Double.isNaN(records) && (records <= 0d || records > 1d)) {
+            throw new IllegalArgumentException("Number of records to optimize must be in ]0, 1]");
+        }
+        
+        // Check bounds
+        if (!Double.isNaN(gsFactor) && (gsFactor < 0d || gsFactor > 1d)) {
+            throw new IllegalArgumentException("Generalization/suppression factor must be in [0, 1]");
+        }
+    }
+
     /**
      * Returns a map of all microaggregation functions
      * @param definition
@@ -26,11 +26,17 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+import org.deidentifier.arx.io.BinaryDataInput;
 import org.deidentifier.arx.io.CSVDataInput;
+import org.deidentifier.arx.io.CSVDataInputParallel;
 import org.deidentifier.arx.io.CSVOptions;
 import org.deidentifier.arx.io.CSVSyntax;
 import org.deidentifier.arx.io.ImportAdapter;
 import org.deidentifier.arx.io.ImportConfiguration;
+import org.deidentifier.arx.io.ImportConfigurationJDBC;
+import org.deidentifier.arx.io.JDBCDataInputParallel;
 
 /**
  * Represents input data for the ARX framework.
@@ -117,6 +123,99 @@ public abstract class Data { // NO_UCD
 
     }
 
+    /**
+     * A data object which has already been encoded.
+     *
+     * @author Fabian Prasser
+     */
+    static class EncodedData extends Data {
+
+        /** The header. */
+        private final String[]   header;
+
+        /** The dictionary. */
+        private final Dictionary dictionary;
+
+        /** The data. */
+        private final DataMatrix matrix;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param header the header
+         * @param dictionary the finalized dictionary
+         * @param matrix the encoded data
+         */
+        private EncodedData(final String[] header, final Dictionary dictionary, final DataMatrix matrix) {
+            this.header = header;
+            this.dictionary = dictionary;
+            this.matrix = matrix;
+        }
+
+        /**
+         * Returns the finalized dictionary
+         * @return
+         */
+        protected Dictionary getDictionary() {
+            return dictionary;
+        }
+
+        /**
+         * Returns the header
+         * @return
+         */
+        protected String[] getHeader() {
+            return header;
+        }
+
+        @Override
+        protected Integer getLength() {
+            return matrix.getNumRows();
+        }
+
+        /**
+         * Returns the encoded data
+         * @return
+         */
+        protected DataMatrix getMatrix() {
+            return matrix;
+        }
+
+        @Override
+        protected Iterator<String[]> iterator() {
+            return new Iterator<String[]>() {
+
+                private int pos = -1;
+
+                @Override
+                public boolean hasNext() {
+                    return pos < matrix.getNumRows();
+                }
+
+                @Override
+                public String[] next() throws NoSuchElementException {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    String[] result = header.clone();
+                    if (pos >= 0) {
+                        result = new String[header.length];
+                        for (int column = 0; column < result.length; column++) {
+                            result[column] = dictionary.getMapping()[column][matrix.get(pos, column)];
+                        }
+                    }
+                    pos++;
+                    return result;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
     /**
      * A data object for iterators.
      *
@@ -181,6 +280,18 @@ public abstract class Data { // NO_UCD
     public static Data create(final DataSource source) throws IOException {
 
         ImportConfiguration config = source.getConfiguration();
+        
+        // Partitioned import from JDBC sources
+        if (config instanceof ImportConfigurationJDBC && ((ImportConfigurationJDBC) config).isPartitioned()) {
+            JDBCDataInputParallel input = new JDBCDataInputParallel((ImportConfigurationJDBC) config);
+            input.read();
+            Data data = new EncodedData(input.getHeader(), input.getDictionary(), input.getData());
+            for (int i = 0; i < config.getColumns().size(); i++) {
+                data.getDefinition().setDataType(input.getHeader()[i], config.getColumns().get(i).getDataType());
+            }
+            return data;
+        }
+        
         ImportAdapter adapter = ImportAdapter.create(config);
         return create(adapter, adapter.getLength());
     }
@@ -275,6 +386,24 @@ public abstract class Data { // NO_UCD
         return new IterableData(new CSVDataInput(file, charset, config, options).iterator());
     }
 
+    /**
+     * Creates a new data object from a CSV file, which is parsed and encoded in parallel using the given
+     * number of threads. This is considerably faster for large files. Assumes that the file contains a header.
+     *
+     * @param file the file
+     * @param charset the charset
+     * @param config the config
+     * @param options the options, may be null
+     * @param numThreads the number of threads
+     * @return the data
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static Data create(final File file, final Charset charset, final CSVSyntax config, final CSVOptions options, final int numThreads) throws IOException {
+        CSVDataInputParallel input = new CSVDataInputParallel(file, charset, config, options, numThreads);
+        input.read();
+        return new EncodedData(input.getHeader(), input.getDictionary(), input.getData());
+    }
+
     /**
      * Creates a new data object from a CSV file. Assumes that the file contains a header.
      *
@@ -554,6 +683,42 @@ public abstract class Data { // NO_UCD
         return new ArrayData(array);
     }
 
+    /**
+     * Creates a new data object from a file in ARX's binary format, which has been created with
+     * <code>DataHandle.saveBinary()</code>. The data definition, including generalization
+     * hierarchies, is restored as well. As the data is stored in encoded form, this is
+     * considerably faster than loading CSV files.
+     *
+     * @param file the file
+     * @return the data
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static Data createFromBinary(final File file) throws IOException {
+        BinaryDataInput input = new BinaryDataInput(file);
+        input.read();
+        Data data = new EncodedData(input.getHeader(), input.getDictionary(), input.getData());
+        data.getDefinition().read(input.getDefinition());
+        return data;
+    }
+
+    /**
+     * Creates a new data object from encoded data and the given definition.
+     *
+     * @param header the header
+     * @param dictionary the finalized dictionary
+     * @param matrix the encoded data
+     * @param definition the definition
+     * @return A Data object
+     */
+    static Data createFromEncoded(final String[] header,
+                                  final Dictionary dictionary,
+                                  final DataMatrix matrix,
+                                  final DataDefinition definition) {
+        Data data = new EncodedData(header, dictionary, matrix);
+        data.definition = definition;
+        return data;
+    }
+
     /** The data handle. */
     private DataHandleInput handle;
 
@@ -583,6 +748,24 @@ public abstract class Data { // NO_UCD
         return handle;
     }
 
+    /**
+     * Returns a data handle. The encoded data is stored off-heap, if it requires more than
+     * the given number of bytes.
+     *
+     * @param offHeapThreshold
+     * @param offHeapDirectory
+     * @return the handle
+     */
+    DataHandleInput getHandle(long offHeapThreshold, File offHeapDirectory) {
+        if (handle == null) {
+            handle = new DataHandleInput(this, offHeapThreshold, offHeapDirectory);
+        } else {
+            handle.update(this);
+            handle.storeOffHeap(offHeapThreshold, offHeapDirectory);
+        }
+        return handle;
+    }
+
     /**
      * Override to return a length to improve loading
      * @return
@@ -20,6 +20,7 @@ package org.deidentifier.arx;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,7 +45,11 @@ import org.deidentifier.arx.DataType.ARXInteger;
 import org.deidentifier.arx.DataType.DataTypeDescription;
 import org.deidentifier.arx.aggregates.StatisticsBuilder;
 import org.deidentifier.arx.certificate.elements.ElementData;
+import org.deidentifier.arx.io.BinaryDataOutput;
 import org.deidentifier.arx.io.CSVDataOutput;
+import org.deidentifier.arx.io.CSVDataOutputParallel;
+import org.deidentifier.arx.io.CSVDataOutputParallel.Rows;
+import org.deidentifier.arx.io.CSVOptions;
 import org.deidentifier.arx.io.CSVSyntax;
 import org.deidentifier.arx.risk.RiskEstimateBuilder;
 import org.deidentifier.arx.risk.RiskModelHistogram;
@@ -699,6 +704,23 @@ public abstract class DataHandle {
         output.write(iterator());
     }
 
+    /**
+     * Writes the data to a CSV file. Renders the output directly from the encoded data,
+     * using the given number of threads. The result is identical to the output
+     * of {@link #save(File, CSVSyntax)} when using the same charset.
+     *
+     * @param file the file
+     * @param charset the charset
+     * @param config the config
+     * @param numThreads the number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void save(final File file, final Charset charset, final CSVSyntax config, final int numThreads) throws IOException {
+        checkReleased();
+        final CSVDataOutputParallel output = new CSVDataOutputParallel(file, charset, config, new CSVOptions(config.getMaxColumns()), numThreads);
+        output.write(header, getValueDictionary(), getEncodedRows());
+    }
+
     /**
      * Writes the data to a CSV file.
      *
@@ -737,6 +759,22 @@ public abstract class DataHandle {
         output.write(iterator());
     }
 
+    /**
+     * Writes the data to a CSV file. Renders the output directly from the encoded data,
+     * using the given number of threads. The stream will not be closed.
+     *
+     * @param out the out
+     * @param charset the charset
+     * @param config the config
+     * @param numThreads the number of threads
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void save(final OutputStream out, final Charset charset, final CSVSyntax config, final int numThreads) throws IOException {
+        checkReleased();
+        final CSVDataOutputParallel output = new CSVDataOutputParallel(out, charset, config, new CSVOptions(config.getMaxColumns()), numThreads);
+        output.write(header, getValueDictionary(), getEncodedRows());
+    }
+
     /**
      * Writes the data to a CSV file.
      *
@@ -775,6 +813,32 @@ public abstract class DataHandle {
         output.write(iterator());
     }
 
+    /**
+     * Writes the data and its definition, including generalization hierarchies, to a file in
+     * ARX's binary format. It can be loaded with <code>Data.createFromBinary()</code>.
+     *
+     * @param file the file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void saveBinary(final File file) throws IOException {
+        checkReleased();
+        final BinaryDataOutput output = new BinaryDataOutput(file);
+        output.write(header, getValueDictionary(), getEncodedRows(), getDefinition());
+    }
+
+    /**
+     * Writes the data and its definition, including generalization hierarchies, in ARX's
+     * binary format. The stream will not be closed.
+     *
+     * @param out the out
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public void saveBinary(final OutputStream out) throws IOException {
+        checkReleased();
+        final BinaryDataOutput output = new BinaryDataOutput(out);
+        output.write(header, getValueDictionary(), getEncodedRows(), getDefinition());
+    }
+
     /**
      * Returns an iterator over the data in a random order.
      *
@@ -944,6 +1008,25 @@ public abstract class DataHandle {
      */
     protected abstract String[] getDistinctValues(int column, boolean ignoreSuppression, InterruptHandler handler);
 
+    /**
+     * Returns the encoded rows of this handle
+     * 
+     * @return
+     */
+    private Rows getEncodedRows() {
+        final int rows = getNumRows();
+        return new Rows() {
+            @Override
+            public int getNumRows() {
+                return rows;
+            }
+            @Override
+            public void getRow(int row, int[] codes) {
+                internalGetEncodedRow(row, codes);
+            }
+        };
+    }
+
     /**
      * Returns the registry associated with this handle.
      *
@@ -961,6 +1044,14 @@ public abstract class DataHandle {
      */
     protected abstract int getValueIdentifier(int column, String value);
 
+    /**
+     * Returns the values referenced by the codes returned by internalGetEncodedValue(),
+     * for each column. Entries are null for columns which only contain suppressed values.
+     * 
+     * @return
+     */
+    protected abstract String[][] getValueDictionary();
+
     /**
      * A negative integer, zero, or a positive integer as the first argument is
      * less than, equal to, or greater than the second. It uses the specified
@@ -995,6 +1086,18 @@ public abstract class DataHandle {
         }
     }
 
+    /**
+     * Stores the encoded values of the given row in the given array. Returns -1 for suppressed values.
+     * 
+     * @param row the row
+     * @param codes the codes
+     */
+    protected void internalGetEncodedRow(int row, int[] codes) {
+        for (int col = 0; col < codes.length; col++) {
+            codes[col] = internalGetEncodedValue(row, col, false);
+        }
+    }
+
     /**
      * Internal representation of get encoded value. Returns -1 for suppressed values.
      *
@@ -17,6 +17,7 @@
 
 package org.deidentifier.arx;
 
+import java.io.File;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -25,9 +26,11 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.deidentifier.arx.Data.EncodedData;
 import org.deidentifier.arx.DataHandleInternal.InterruptHandler;
 import org.deidentifier.arx.aggregates.StatisticsBuilder;
 import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.DataMatrixMapped;
 import org.deidentifier.arx.framework.data.Dictionary;
 
 /**
@@ -38,6 +41,12 @@ import org.deidentifier.arx.framework.data.Dictionary;
  */
 public class DataHandleInput extends DataHandle {
 
+    /** Minimal number of rows of blocks used for encoding data of unknown length. */
+    private static final int MIN_BLOCK_SIZE     = 1 << 10;
+
+    /** Maximal number of rows of blocks used for encoding data of unknown length. */
+    private static final int MAX_BLOCK_SIZE     = 1 << 20;
+
     /** The data. */
     protected DataMatrix data               = null;
 
@@ -65,6 +74,18 @@ public class DataHandleInput extends DataHandle {
      * @param data
      */
     protected DataHandleInput(final Data data) {
+        this(data, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Creates a new data handle. The encoded data is stored off-heap, if it requires
+     * more than the given number of bytes.
+     *
+     * @param data
+     * @param offHeapThreshold
+     * @param offHeapDirectory
+     */
+    protected DataHandleInput(final Data data, final long offHeapThreshold, final File offHeapDirectory) {
         
         // Obtain and check iterator
         Iterator<String[]> iterator = data.iterator();
@@ -77,6 +98,16 @@ public class DataHandleInput extends DataHandle {
         this.getRegistry().updateInput(this);
         this.definition = data.getDefinition().clone();
 
+        // Optimized code-path, if the data has already been encoded
+        if (data instanceof EncodedData) {
+            EncodedData encoded = (EncodedData) data;
+            super.setHeader(Arrays.copyOf(encoded.getHeader(), encoded.getHeader().length));
+            this.dictionary = encoded.getDictionary();
+            this.data = encoded.getMatrix();
+            this.columnToDataType = getColumnToDataType();
+            return;
+        }
+
         // Obtain header
         String[] columns = iterator.next();
         super.setHeader(Arrays.copyOf(columns, columns.length));
@@ -91,7 +122,7 @@ public class DataHandleInput extends DataHandle {
             int records = data.getLength();
 
             // Build array
-            this.data = new DataMatrix(records, header.length);
+            this.data = DataMatrixMapped.create(records, header.length, offHeapThreshold, offHeapDirectory);
             
             // Encode data on the fly
             int row = 0;
@@ -116,8 +147,12 @@ public class DataHandleInput extends DataHandle {
 
         } else { 
     
-            // Encode data
-            List<int[]> vals = new ArrayList<int[]>();
+            // Encode data into blocks of increasing size. Blocks are stored off-heap as soon
+            // as the data encoded so far requires more than the threshold.
+            List<DataMatrix> blocks = new ArrayList<DataMatrix>();
+            DataMatrix block = null;
+            int offset = 0;
+            int records = 0;
             while (iterator.hasNext()) {
     
                 // Process a tuple
@@ -128,13 +163,30 @@ public class DataHandleInput extends DataHandle {
                     value = (value != null) ? value : DataType.NULL_VALUE;
                     tuple[i] = dictionary.register(i, value);
                 }
-                vals.add(tuple);
+                
+                // Store
+                if (block == null || offset == block.getNumRows()) {
+                    int size = block == null ? MIN_BLOCK_SIZE : Math.min(block.getNumRows() * 2, MAX_BLOCK_SIZE);
+                    long threshold = offHeapThreshold - (long) records * (long) header.length * 4L;
+                    block = DataMatrixMapped.create(size, header.length, threshold, offHeapDirectory);
+                    blocks.add(block);
+                    offset = 0;
+                }
+                block.setRow(offset++, tuple);
+                records++;
             }
     
             // Build array
-            this.data = new DataMatrix(vals.size(), header.length);
-            for (int row = 0; row < vals.size(); row++) {
-                this.data.setRow(row, vals.get(row));
+            this.data = DataMatrixMapped.create(records, header.length, offHeapThreshold, offHeapDirectory);
+            int[] tuple = new int[header.length];
+            int row = 0;
+            for (DataMatrix current : blocks) {
+                for (int i = 0; i < current.getNumRows() && row < records; i++, row++) {
+                    for (int column = 0; column < tuple.length; column++) {
+                        tuple[column] = current.get(i, column);
+                    }
+                    this.data.setRow(row, tuple);
+                }
             }
         }
 
@@ -365,6 +417,11 @@ public class DataHandleInput extends DataHandle {
         return this.dataGeneralized;
     }
     
+    @Override
+    protected String[][] getValueDictionary() {
+        return dictionary.getMapping();
+    }
+
     @Override
     protected int getValueIdentifier(int column, String value) {
         String[] values = dictionary.getMapping()[column];
@@ -482,6 +539,26 @@ public class DataHandleInput extends DataHandle {
         this.locked = locked;
     }
     
+    /**
+     * Moves the encoded data off-heap, if it requires more than the given number of bytes.
+     * Does nothing if the handle is locked.
+     *
+     * @param threshold
+     * @param directory
+     */
+    protected void storeOffHeap(long threshold, File directory) {
+        if (this.isLocked() || this.data instanceof DataMatrixMapped) {
+            return;
+        }
+        DataMatrix matrix = DataMatrixMapped.create(data.getNumRows(), data.getNumColumns(), threshold, directory);
+        if (matrix instanceof DataMatrixMapped) {
+            for (int row = 0; row < data.getNumRows(); row++) {
+                matrix.copyFrom(row, data, row);
+            }
+            this.data = matrix;
+        }
+    }
+    
     /**
      * Update the definition.
      *
@@ -238,6 +238,15 @@ public class DataHandleInternal {
         return handle.internalGetValue(row, col, ignoreSuppression);
     }
     
+    /**
+     * Returns the values referenced by the codes returned by getEncodedValue(), for
+     * each column. Entries are null for columns which only contain suppressed values.
+     * @return
+     */
+    public String[][] getValueDictionary() {
+        return handle.getValueDictionary();
+    }
+    
     /**
      * Returns the internal id of the given value
      * @param column
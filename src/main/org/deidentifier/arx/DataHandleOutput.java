@@ -531,6 +531,16 @@ public class DataHandleOutput extends DataHandle {
         return dataAggregated;
     }
     
+    @Override
+    protected String[][] getValueDictionary() {
+        String[][] result = new String[header.length][];
+        for (int column = 0; column < result.length; column++) {
+            Data data = columnToData[column];
+            result[column] = data == null ? null : data.getDictionary().getMapping()[columnToIndex[column]];
+        }
+        return result;
+    }
+    
     @Override
     protected int getValueIdentifier(int column, String value) {
         
@@ -599,6 +609,23 @@ public class DataHandleOutput extends DataHandle {
         return 0;
     }
 
+    @Override
+    protected void internalGetEncodedRow(final int row, final int[] codes) {
+        
+        // Handle suppressed records
+        boolean suppressed = (dataGeneralized.getArray().get(row, 0) & Data.OUTLIER_MASK) != 0;
+        
+        // Decode from the underlying data
+        for (int col = 0; col < codes.length; col++) {
+            Data data = columnToData[col];
+            if (data == null || (suppressed && columnToSuppressionStatus[col])) {
+                codes[col] = -1;
+            } else {
+                codes[col] = data.getArray().get(row, columnToIndex[col]) & Data.REMOVE_OUTLIER_MASK;
+            }
+        }
+    }
+
     @Override
     protected int internalGetEncodedValue(final int row,
                                           final int col,
@@ -246,6 +246,11 @@ public class DataHandleSubset extends DataHandle {
         return source;
     }
 
+    @Override
+    protected String[][] getValueDictionary() {
+        return source.getValueDictionary();
+    }
+
     @Override
     protected int getValueIdentifier(int column, String value) {
         return source.getValueIdentifier(column, value);
@@ -256,6 +261,11 @@ public class DataHandleSubset extends DataHandle {
         return source.internalCompare(this.subset.getArray()[row1], this.subset.getArray()[row2], columns, ascending);
     }
     
+    @Override
+    protected void internalGetEncodedRow(int row, int[] codes) {
+        source.internalGetEncodedRow(this.subset.getArray()[row], codes);
+    }
+
     @Override
     protected int internalGetEncodedValue(int row, int col, boolean ignoreSuppression) {
         return source.internalGetEncodedValue(this.subset.getArray()[row], col, ignoreSuppression);
@@ -332,6 +332,33 @@ public class DataSource { // NO_UCD
         }
     }
     
+    /**
+     * Sets the number of rows fetched from the database at once, enabling cursor-based streaming.
+     * Only supported for JDBC sources.
+     *
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        if (!(config instanceof ImportConfigurationJDBC)) {
+            throw new UnsupportedOperationException("Only supported for JDBC sources");
+        }
+        ((ImportConfigurationJDBC) config).setFetchSize(fetchSize);
+    }
+    
+    /**
+     * Enables partitioned import, in which ranges of values of the given numeric key column are
+     * fetched concurrently on separate connections. Only supported for JDBC sources.
+     *
+     * @param column
+     * @param numPartitions
+     */
+    public void setPartitioning(String column, int numPartitions) {
+        if (!(config instanceof ImportConfigurationJDBC)) {
+            throw new UnsupportedOperationException("Only supported for JDBC sources");
+        }
+        ((ImportConfigurationJDBC) config).setPartitioning(column, numPartitions);
+    }
+    
     /**
      * Returns the configuration.
      *
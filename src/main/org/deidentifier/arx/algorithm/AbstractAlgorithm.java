@@ -165,7 +165,7 @@ public abstract class AbstractAlgorithm {
      */
     protected boolean mustStop() {
         return ((int)(System.currentTimeMillis() - timeStart) > timeLimit) ||
-               (checker.getNumChecksPerformed() >= checkLimit);
+               (getCheckCount() >= checkLimit);
     }
 
     /**
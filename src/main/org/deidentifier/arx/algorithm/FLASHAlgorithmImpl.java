@@ -274,6 +274,11 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
                 break;
             }
             
+            // Speculatively check transformations that may be visited next
+            if (checker.getNumThreads() > 1 && checker.getConfiguration().isSpeculativeCheckingEnabled()) {
+                prefetch(path, low, high, triggerSkip);
+            }
+            
             // Init
             final int mid = (low + high) / 2;
             final Transformation<Long> transformation = path.get(mid);
@@ -305,6 +310,11 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
             }
         }
         
+        // Discard speculative results which have not been consumed
+        if (checker.getNumThreads() > 1 && checker.getConfiguration().isSpeculativeCheckingEnabled()) {
+            checker.prefetch(new ArrayList<Transformation<Long>>());
+        }
+        
         // Done
         return lastAnonymousTransformation;
     }
@@ -540,6 +550,48 @@ public class FLASHAlgorithmImpl extends AbstractAlgorithm {
         return false;
     }
 
+    /**
+     * Speculatively checks transformations on the given path in parallel, which may be visited
+     * by the next steps of the binary search. Results are only consumed when the search actually
+     * visits a transformation, which means that the search itself is not altered. Results for
+     * transformations which are no longer on the remaining path or which have been tagged in
+     * the meantime are discarded.
+     * 
+     * @param path
+     * @param low
+     * @param high
+     * @param triggerSkip
+     */
+    private void prefetch(List<Transformation<Long>> path, int low, int high, DependentAction triggerSkip) {
+
+        // Prepare
+        FLASHPhaseConfiguration configuration = config.getBinaryPhaseConfiguration();
+        List<Transformation<Long>> candidates = new ArrayList<Transformation<Long>>();
+        LinkedList<int[]> ranges = new LinkedList<int[]>();
+        ranges.add(new int[] { low, high });
+        
+        // Breadth-first traversal of the remaining steps of the binary search
+        while (!ranges.isEmpty() && candidates.size() < checker.getNumThreads()) {
+            int[] range = ranges.poll();
+            if (range[0] > range[1]) {
+                continue;
+            }
+            int mid = (range[0] + range[1]) / 2;
+            Transformation<Long> transformation = path.get(mid);
+            if (!triggerSkip.appliesTo(transformation) &&
+                !transformation.hasProperty(solutionSpace.getPropertyInsufficientUtility()) &&
+                !configuration.getTriggerEvaluate().appliesTo(transformation) &&
+                configuration.getTriggerCheck().appliesTo(transformation)) {
+                candidates.add(transformation);
+            }
+            ranges.add(new int[] { range[0], mid - 1 });
+            ranges.add(new int[] { mid + 1, range[1] });
+        }
+        
+        // Check
+        checker.prefetch(candidates);
+    }
+
     /**
      * Sorts a given array of transformation identifiers.
      * 
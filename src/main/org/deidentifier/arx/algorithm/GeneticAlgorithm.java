@@ -18,14 +18,23 @@ package org.deidentifier.arx.algorithm;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.math3.distribution.EnumeratedDistribution;
 import org.apache.commons.math3.random.AbstractRandomGenerator;
 import org.apache.commons.math3.util.Pair;
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.framework.check.TransformationChecker;
 import org.deidentifier.arx.framework.check.TransformationChecker.ScoreType;
+import org.deidentifier.arx.framework.check.TransformationResult;
 import org.deidentifier.arx.framework.check.history.History.StorageStrategy;
 import org.deidentifier.arx.framework.lattice.SolutionSpace;
 import org.deidentifier.arx.framework.lattice.Transformation;
@@ -87,6 +96,35 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
                                checkLimit);
     }
 
+    /**
+     * The context in which a sub-population evolves. When running in parallel,
+     * each island has its own RNG and checker and evolves on its own thread.
+     * 
+     * @author Fabian Prasser
+     */
+    private class Island {
+
+        /** RNG */
+        private final Random                  random;
+        /** Checker */
+        private final TransformationChecker   checker;
+        /** Individuals for which the optimum must be tracked, null if tracked directly */
+        private final List<Transformation<?>> evaluated;
+
+        /**
+         * Creates a new instance
+         * 
+         * @param random
+         * @param checker
+         * @param parallel
+         */
+        private Island(Random random, TransformationChecker checker, boolean parallel) {
+            this.random = random;
+            this.checker = checker;
+            this.evaluated = parallel ? new ArrayList<Transformation<?>>() : null;
+        }
+    }
+
     /** RNG */
     private final Random                random;
     /** Max values */
@@ -95,6 +133,12 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
     private final int[]                 minLevels;
     /** Checker */
     private final TransformationChecker checker;
+    /** Lock guarding the solution space */
+    private final Object                lock;
+    /** Number of checks performed by islands running in parallel */
+    private final AtomicInteger         islandChecks = new AtomicInteger();
+    /** Identifiers of transformations which are currently being checked, guarded by the lock */
+    private final Set<Object>           inProgress   = new HashSet<Object>();
     /** Configuration */
     private int                         geneticAlgorithmIterations;
     /** Configuration */
@@ -144,6 +188,7 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
         super(solutionSpace, checker, timeLimit, checkLimit);
         this.checker = checker;
         this.checker.getHistory().setStorageStrategy(StorageStrategy.ALL);
+        this.lock = checker.getLock();
         this.maxLevels = solutionSpace.getTop().getGeneralization();
         this.minLevels = solutionSpace.getBottom().getGeneralization();
         this.geneticAlgorithmIterations = geneticAlgorithmIterations;
@@ -157,11 +202,21 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
         this.random = geneticAlgorithmDeterministic ? new Random(0xDEADBEEF) : new Random();
     }
 
+    @Override
+    public int getCheckCount() {
+        return super.getCheckCount() + islandChecks.get();
+    }
+
     @Override
     public boolean traverse() {
 
         // Prepare
         super.startTraverse();
+        
+        // Run islands in parallel, if configured
+        if (checker.getNumThreads() > 1) {
+            return traverseParallel();
+        }
 
         // k is defined in a way that stops very small sub-populations
         // from breaking the algorithm, as very small values fail to
@@ -171,60 +226,15 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
         int itr = geneticAlgorithmIterations;
         int imm = geneticAlgorithmImmigrationInterval;
         int immigrationCount = (int) geneticAlgorithmImmigrationFraction * k;
+        Island island = new Island(random, checker, false);
 
         // Build sub-populations
         GeneticAlgorithmSubpopulation z1 = new GeneticAlgorithmSubpopulation();
         GeneticAlgorithmSubpopulation z2 = new GeneticAlgorithmSubpopulation();
 
-        // Fill sub-population 1
-        for (int i = 0; i < k; i++) {
-
-            // Prepare
-            int[] generalization = new int[maxLevels.length];
-
-            // Create "triangle" structure to cover the solution space
-            if (i < this.maxLevels.length) {
-
-                // Fill 0 .. i with max generalization levels
-                for (int j = 0; j <= i; j++) {
-                    generalization[j] = maxLevels[j];
-                }
-
-                // Fill the rest with min generalization levels
-                for (int j = i + 1; j < maxLevels.length; j++) {
-                    generalization[j] = minLevels[j];
-                }
-
-            } else {
-
-                // Generate random individual
-                for (int j = 0; j < maxLevels.length; j++) {
-                    generalization[j] = getRandomGeneralizationLevel(j);
-                }
-            }
-
-            // Stop
-            if (mustStop()) { return false; }
-
-            z1.addIndividual(getIndividual(generalization));
-        }
-
-        // Fill sub-population 2
-        for (int i = 0; i < k; i++) {
-
-            // Prepare
-            int[] generalization = new int[maxLevels.length];
-
-            // Generate random individual
-            for (int j = 0; j < maxLevels.length; j++) {
-                generalization[j] = getRandomGeneralizationLevel(j);
-            }
-
-            // Stop
-            if (mustStop()) { return false; }
-
-            z2.addIndividual(getIndividual(generalization));
-        }
+        // Fill sub-populations
+        if (!fillSubpopulation(island, z1, k, true)) { return false; }
+        if (!fillSubpopulation(island, z2, k, false)) { return false; }
 
         // Main iterator
         for (int t = 0; t < itr; t++) {
@@ -246,8 +256,8 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
             }
 
             // Iterate
-            iterateSubpopulation(z1);
-            iterateSubpopulation(z2);
+            iterateSubpopulation(island, z1);
+            iterateSubpopulation(island, z2);
 
             // Stop
             if (mustStop()) { return false; }
@@ -258,18 +268,108 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
     }
 
     /**
-     * Returns an individual
+     * Fills the given sub-population with k individuals
+     * 
+     * @param island
+     * @param population
+     * @param k
+     * @param triangle Whether to create a "triangle" structure covering the solution space
+     * @return False if the algorithm must stop
+     */
+    private boolean fillSubpopulation(Island island, GeneticAlgorithmSubpopulation population, int k, boolean triangle) {
+
+        // Fill sub-population
+        for (int i = 0; i < k; i++) {
+
+            // Prepare
+            int[] generalization = new int[maxLevels.length];
+
+            // Create "triangle" structure to cover the solution space
+            if (triangle && i < this.maxLevels.length) {
+
+                // Fill 0 .. i with max generalization levels
+                for (int j = 0; j <= i; j++) {
+                    generalization[j] = maxLevels[j];
+                }
+
+                // Fill the rest with min generalization levels
+                for (int j = i + 1; j < maxLevels.length; j++) {
+                    generalization[j] = minLevels[j];
+                }
+
+            } else {
+
+                // Generate random individual
+                for (int j = 0; j < maxLevels.length; j++) {
+                    generalization[j] = getRandomGeneralizationLevel(island, j);
+                }
+            }
+
+            // Stop
+            if (mustStop()) { return false; }
+
+            population.addIndividual(getIndividual(island, generalization));
+        }
+        
+        // Done
+        return true;
+    }
+
+    /**
+     * Returns an individual. A transformation is claimed for checking atomically, so that
+     * it is checked only once, even if several islands request it concurrently.
      * 
+     * @param island
      * @param generalization
      * @return
      */
-    private Transformation<?> getIndividual(int[] generalization) {
-        Transformation<?> transformation = this.solutionSpace.getTransformation(generalization);
-        if (!transformation.hasProperty(this.solutionSpace.getPropertyChecked())) {
-            transformation.setChecked(this.checker.check(transformation, true, ScoreType.INFORMATION_LOSS));
+    private Transformation<?> getIndividual(Island island, int[] generalization) {
+        
+        // Obtain transformation and claim it, if it has not been checked
+        Transformation<?> transformation;
+        boolean checked;
+        synchronized (lock) {
+            transformation = this.solutionSpace.getTransformation(generalization);
+            while (inProgress.contains(transformation.getIdentifier())) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for transformation to be checked", e);
+                }
+            }
+            checked = transformation.hasProperty(this.solutionSpace.getPropertyChecked());
+            if (!checked) {
+                inProgress.add(transformation.getIdentifier());
+            }
+        }
+        
+        // Check
+        if (!checked) {
+            TransformationResult result = null;
+            try {
+                result = island.checker.check(transformation, true, ScoreType.INFORMATION_LOSS);
+            } finally {
+                synchronized (lock) {
+                    if (result != null) {
+                        transformation.setChecked(result);
+                    }
+                    inProgress.remove(transformation.getIdentifier());
+                    lock.notifyAll();
+                }
+            }
+            if (island.checker != this.checker) {
+                islandChecks.incrementAndGet();
+            }
+        }
+        
+        // Track optimum
+        if (island.evaluated != null) {
+            island.evaluated.add(transformation);
+        } else {
+            trackOptimum(transformation);
+            trackProgressFromLimits();
         }
-        trackOptimum(transformation);
-        trackProgressFromLimits();
         return transformation;
     }
 
@@ -282,9 +382,11 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
      * representing the locations of mutated places <br>
      * - Replace selected places with random levels
      * 
+     * @param island
+     * @param transformation
      * @return
      */
-    private Transformation<?> getMutatedIndividual(Transformation<?> transformation) {
+    private Transformation<?> getMutatedIndividual(Island island, Transformation<?> transformation) {
 
         // Prepare
         int[] generalization = transformation.getGeneralization().clone();
@@ -293,7 +395,7 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
         // mutated places (from 1 to ceil (upper bound on mutation probability *
         // m))
         int max = (int) Math.ceil(geneticAlgorithmMutationProbability * generalization.length);
-        int numMutations = random.nextInt(max + 1);
+        int numMutations = island.random.nextInt(max + 1);
 
         // Randomly generate r unrepeated integers (within the range [1, m]),
         // representing the locations of mutated places
@@ -301,68 +403,72 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
         for (int i = 0; i < generalization.length; i++) {
             list.add(i);
         }
-        Collections.shuffle(list, random);
+        Collections.shuffle(list, island.random);
         List<Integer> mutationIndices = list.subList(0, numMutations);
 
         // Replace selected places with random levels
         for (int index : mutationIndices) {
-            generalization[index] = getRandomGeneralizationLevel(index);
+            generalization[index] = getRandomGeneralizationLevel(island, index);
         }
 
         // Done
-        return getIndividual(generalization);
+        return getIndividual(island, generalization);
     }
 
     /**
      * Returns a random generalization level
      * 
+     * @param island
      * @param dimension
      * @return
      */
-    private int getRandomGeneralizationLevel(int dimension) {
-        return minLevels[dimension] + (int) Math.round(random.nextDouble() * (maxLevels[dimension] - minLevels[dimension]));
+    private int getRandomGeneralizationLevel(Island island, int dimension) {
+        return minLevels[dimension] + (int) Math.round(island.random.nextDouble() * (maxLevels[dimension] - minLevels[dimension]));
     }
 
     /**
      * Selects a random individual within the given range from [0, range[ with
      * probability proportional to their scaled fitness.
      * 
+     * @param island
      * @param population
      * @param range
      * @return
      */
-    private Transformation<?>[] getRandomIndividuals(GeneticAlgorithmSubpopulation population, int range, int count) {
+    private Transformation<?>[] getRandomIndividuals(final Island island, GeneticAlgorithmSubpopulation population, int range, int count) {
 
         // Array of transformations, min and max
-        InformationLoss<?> min = null;
-        InformationLoss<?> max = null;
-        Transformation<?>[] individuals = new Transformation[range];
-        for (int i = 0; i < range; i++) {
-            individuals[i] = population.getIndividual(i);
-            InformationLoss<?> loss = individuals[i].getInformationLoss();
-            if (min == null) {
-                min = loss;
-            } else if (min.compareTo(loss) > 0) {
-                min = loss;
+        List<Pair<Transformation<?>, Double>> elements = new ArrayList<>();
+        synchronized (lock) {
+            InformationLoss<?> min = null;
+            InformationLoss<?> max = null;
+            Transformation<?>[] individuals = new Transformation[range];
+            for (int i = 0; i < range; i++) {
+                individuals[i] = population.getIndividual(i);
+                InformationLoss<?> loss = individuals[i].getInformationLoss();
+                if (min == null) {
+                    min = loss;
+                } else if (min.compareTo(loss) > 0) {
+                    min = loss;
+                }
+                if (max == null) {
+                    max = loss;
+                } else if (max.compareTo(loss) < 0) {
+                    max = loss;
+                }
             }
-            if (max == null) {
-                max = loss;
-            } else if (max.compareTo(loss) < 0) {
-                max = loss;
+    
+            // Fitness
+            for (int i = 0; i < range; i++) {
+                elements.add(new Pair<Transformation<?>, Double>(individuals[i], 1d - individuals[i].getInformationLoss().relativeTo(min, max)));
             }
         }
 
-        // Fitness
-        List<Pair<Transformation<?>, Double>> elements = new ArrayList<>();
-        for (int i = 0; i < range; i++) {
-            elements.add(new Pair<Transformation<?>, Double>(individuals[i], 1d - individuals[i].getInformationLoss().relativeTo(min, max)));
-        }
-
         // Distribution
         EnumeratedDistribution<Transformation<?>> distribution = new EnumeratedDistribution<Transformation<?>>(new AbstractRandomGenerator() {
             @Override
             public double nextDouble() {
-                return random.nextDouble();
+                return island.random.nextDouble();
             }
 
             @Override
@@ -382,9 +488,10 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
     /**
      * Performs one iteration on a sub-population.
      * 
+     * @param island
      * @param population
      */
-    private void iterateSubpopulation(GeneticAlgorithmSubpopulation population) {
+    private void iterateSubpopulation(Island island, GeneticAlgorithmSubpopulation population) {
 
         // Copy old Population
         GeneticAlgorithmSubpopulation oldPopulation = new GeneticAlgorithmSubpopulation(population);
@@ -403,28 +510,28 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
         int productionCount = (int) Math.ceil(geneticAlgorithmProductionFraction * k);
 
         // Crossover individuals
-        Transformation<?>[] parents1 = getRandomIndividuals(population, productionCount, crossoverCount);
-        Transformation<?>[] parents2 = getRandomIndividuals(population, productionCount, crossoverCount);
+        Transformation<?>[] parents1 = getRandomIndividuals(island, population, productionCount, crossoverCount);
+        Transformation<?>[] parents2 = getRandomIndividuals(island, population, productionCount, crossoverCount);
         for (int crossover = 0; crossover < crossoverCount; crossover++) {
 
             // Create crossover child
             int[] vec = new int[maxLevels.length];
             for (int i = 0; i < maxLevels.length; i++) {
-                vec[i] = (random.nextDouble() < 0.5 ? parents1[crossover] : parents2[crossover]).getGeneralization()[i];
+                vec[i] = (island.random.nextDouble() < 0.5 ? parents1[crossover] : parents2[crossover]).getGeneralization()[i];
             }
 
             // Stop
             if (mustStop()) { return; }
 
             // Replace
-            population.setIndividual(k - crossover - 1, getIndividual(vec));
+            population.setIndividual(k - crossover - 1, getIndividual(island, vec));
         }
 
         // Mutate individuals
         for (int mutation = eliteCount; mutation < k - crossoverCount; mutation++) {
 
             // Mutate
-            Transformation<?> individual = getMutatedIndividual(oldPopulation.getIndividual(random.nextInt(k)));
+            Transformation<?> individual = getMutatedIndividual(island, oldPopulation.getIndividual(island.random.nextInt(k)));
             if (individual != null) {
                 population.setIndividual(mutation, individual);
             }
@@ -433,4 +540,148 @@ public class GeneticAlgorithm extends AbstractAlgorithm {
             if (mustStop()) { return; }
         }
     }
+
+    /**
+     * Runs the given tasks, one per island, in parallel. Afterwards, the optimum is tracked
+     * for all individuals evaluated by the islands in a deterministic order.
+     * 
+     * @param executor
+     * @param islands
+     * @param tasks
+     */
+    private void runIslands(ExecutorService executor, Island[] islands, List<Callable<Boolean>> tasks) {
+        
+        // Run
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+        for (Callable<Boolean> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        
+        // Wait
+        try {
+            for (Future<Boolean> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while evolving sub-populations", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while evolving sub-populations", e.getCause());
+        } finally {
+            for (Future<Boolean> future : futures) {
+                future.cancel(true);
+            }
+        }
+        
+        // Track optimum
+        for (Island island : islands) {
+            for (Transformation<?> transformation : island.evaluated) {
+                trackOptimum(transformation);
+            }
+            island.evaluated.clear();
+        }
+        trackProgressFromLimits();
+    }
+
+    /**
+     * Implements the island model: each sub-population evolves on its own thread using
+     * its own RNG and checker. Individuals are exchanged at the configured immigration
+     * interval, when all islands are synchronized. In deterministic mode, the RNGs of
+     * the islands are seeded deterministically, so that results do not depend on the
+     * number of threads, as long as more than one thread is used. With one thread, both
+     * sub-populations share a single RNG, as before.
+     * 
+     * @return
+     */
+    private boolean traverseParallel() {
+
+        // See traverse()
+        final int k = this.maxLevels.length + geneticAlgorithmSubpopulationSize;
+        int itr = geneticAlgorithmIterations;
+        int imm = geneticAlgorithmImmigrationInterval;
+        int immigrationCount = (int) geneticAlgorithmImmigrationFraction * k;
+
+        // Build sub-populations
+        final GeneticAlgorithmSubpopulation[] populations = new GeneticAlgorithmSubpopulation[] { new GeneticAlgorithmSubpopulation(),
+                                                                                                  new GeneticAlgorithmSubpopulation() };
+        
+        // Build islands
+        int threads = Math.max(1, checker.getNumThreads() / populations.length);
+        final Island[] islands = new Island[populations.length];
+        for (int i = 0; i < islands.length; i++) {
+            TransformationChecker worker = checker.createWorker(threads);
+            worker.getHistory().setStorageStrategy(StorageStrategy.ALL);
+            islands[i] = new Island(new Random(random.nextLong()), worker, true);
+        }
+        ExecutorService executor = ThreadPool.create("arx-genetic", islands.length);
+        
+        try {
+            
+            // Fill sub-populations
+            List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+            for (int i = 0; i < islands.length; i++) {
+                final int index = i;
+                tasks.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return fillSubpopulation(islands[index], populations[index], k, index == 0);
+                    }
+                });
+            }
+            runIslands(executor, islands, tasks);
+            if (mustStop()) { return false; }
+
+            // Iterate sub-populations
+            tasks.clear();
+            for (int i = 0; i < islands.length; i++) {
+                final int index = i;
+                tasks.add(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        iterateSubpopulation(islands[index], populations[index]);
+                        return true;
+                    }
+                });
+            }
+
+            // Main iterator
+            for (int t = 0; t < itr; t++) {
+    
+                // Sort by fitness descending
+                synchronized (lock) {
+                    for (GeneticAlgorithmSubpopulation population : populations) {
+                        population.sort();
+                    }
+                    
+                    // Swap individuals between GASubpopulations periodically
+                    if (t % imm == 0) {
+        
+                        // Moves the imff fittest individuals between groups
+                        populations[0].moveFittestIndividuals(populations[1], immigrationCount);
+                        populations[1].moveFittestIndividuals(populations[0], immigrationCount);
+        
+                        // Sort by fitness descending
+                        for (GeneticAlgorithmSubpopulation population : populations) {
+                            population.sort();
+                        }
+                    }
+                }
+    
+                // Iterate
+                runIslands(executor, islands, tasks);
+    
+                // Stop
+                if (mustStop()) { return false; }
+            }
+    
+            // Check whether we found a solution
+            return getGlobalOptimum() != null;
+            
+        } finally {
+            executor.shutdown();
+            for (Island island : islands) {
+                island.checker.reset();
+            }
+        }
+    }
 }
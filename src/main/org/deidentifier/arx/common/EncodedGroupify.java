@@ -0,0 +1,231 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.common;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.DataType;
+
+import com.carrotsearch.hppc.LongIntOpenHashMap;
+
+/**
+ * A groupify operator which groups the records of a data handle by the values of a
+ * set of attributes. In contrast to using Groupify with TupleWrappers, it works directly
+ * on the codes of the handle's encoded data and thus avoids creating strings for every
+ * record. Codes which represent the same string, including suppressed values, are
+ * mapped onto each other, so that the resulting classes are exactly the same as when
+ * comparing strings. Classes are enumerated in the order of their first occurrence.
+ * 
+ * @author Fabian Prasser
+ */
+public class EncodedGroupify {
+
+    /** The handle */
+    private final DataHandleInternal    handle;
+
+    /** Indices */
+    private final int[]                 indices;
+
+    /** Whether to ignore suppression */
+    private final boolean               ignoreSuppression;
+
+    /** Maps code + 1 to a canonical code, per attribute */
+    private final int[][]               canonical;
+
+    /** Radix per attribute, null if keys are constructed incrementally */
+    private final long[]                radix;
+
+    /** Maps prefixes of tuples to identifiers, per attribute, if keys are constructed incrementally */
+    private final LongIntOpenHashMap[]  prefixes;
+
+    /** Maps keys to classes */
+    private final LongIntOpenHashMap    classes;
+
+    /** Sizes of classes */
+    private int[]                       counts;
+
+    /** Representatives of classes */
+    private int[]                       representatives;
+
+    /** Number of classes */
+    private int                         size;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param handle
+     * @param indices
+     * @param ignoreSuppression
+     * @param capacity
+     */
+    public EncodedGroupify(DataHandleInternal handle, int[] indices, boolean ignoreSuppression, int capacity) {
+
+        // Store
+        this.handle = handle;
+        this.indices = indices;
+        this.ignoreSuppression = ignoreSuppression;
+        this.classes = new LongIntOpenHashMap(capacity);
+        this.counts = new int[Math.max(capacity, 10)];
+        this.representatives = new int[counts.length];
+        this.size = 0;
+
+        // Map codes referencing the same string onto each other. -1 represents suppressed values.
+        String[][] dictionary = handle.getValueDictionary();
+        this.canonical = new int[indices.length][];
+        for (int i = 0; i < indices.length; i++) {
+            String[] values = dictionary[indices[i]];
+            values = values != null ? values : new String[0];
+            Map<String, Integer> codes = new HashMap<String, Integer>();
+            for (int code = 0; code < values.length; code++) {
+                if (!codes.containsKey(values[code])) {
+                    codes.put(values[code], code);
+                }
+            }
+            int[] map = new int[values.length + 1];
+            Integer suppressed = codes.get(DataType.ANY_VALUE);
+            map[0] = suppressed != null ? suppressed : values.length;
+            for (int code = 0; code < values.length; code++) {
+                map[code + 1] = codes.get(values[code]);
+            }
+            this.canonical[i] = map;
+        }
+
+        // Use mixed-radix keys, if possible
+        long[] radix = new long[indices.length];
+        long product = 1;
+        for (int i = 0; i < indices.length && radix != null; i++) {
+            radix[i] = product;
+            long domain = canonical[i].length;
+            product = product <= Long.MAX_VALUE / domain ? product * domain : -1;
+            radix = product != -1 ? radix : null;
+        }
+        this.radix = radix;
+        
+        // Else, construct keys incrementally
+        if (this.radix == null) {
+            this.prefixes = new LongIntOpenHashMap[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                this.prefixes[i] = new LongIntOpenHashMap();
+            }
+        } else {
+            this.prefixes = null;
+        }
+    }
+
+    /**
+     * Adds the given row
+     * 
+     * @param row
+     */
+    public void add(int row) {
+
+        // Find or create class
+        long key = getKey(row);
+        int index = classes.getOrDefault(key, -1);
+        if (index == -1) {
+            if (size == counts.length) {
+                counts = Arrays.copyOf(counts, size << 1);
+                representatives = Arrays.copyOf(representatives, size << 1);
+            }
+            index = size++;
+            classes.put(key, index);
+            representatives[index] = row;
+        }
+
+        // Track size
+        counts[index]++;
+    }
+
+    /**
+     * Returns the canonical code of the given row for the attribute at the given position
+     * in the array of indices. Two rows have equal values for the attribute, iff their
+     * canonical codes are equal.
+     * 
+     * @param row
+     * @param index
+     * @return
+     */
+    public int getCode(int row, int index) {
+        return canonical[index][handle.getEncodedValue(row, indices[index], ignoreSuppression) + 1];
+    }
+
+    /**
+     * Returns the size of the class with the given index
+     * 
+     * @param index
+     * @return
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Returns the classes as a groupify operator with tuples of strings. Strings are
+     * only created for one representative of each class.
+     * 
+     * @return
+     */
+    public Groupify<TupleWrapper> getGroupify() {
+        Groupify<TupleWrapper> result = new Groupify<TupleWrapper>(Math.max(size, 10));
+        for (int index = 0; index < size; index++) {
+            result.add(new TupleWrapper(handle, indices, representatives[index], ignoreSuppression), counts[index]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of classes
+     * 
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a key, which is equal for two rows, iff they have equal values
+     * 
+     * @param row
+     * @return
+     */
+    private long getKey(int row) {
+        
+        // Mixed radix
+        if (radix != null) {
+            long key = 0;
+            for (int i = 0; i < indices.length; i++) {
+                key += radix[i] * getCode(row, i);
+            }
+            return key;
+        }
+        
+        // Incremental
+        int key = 0;
+        for (int i = 0; i < indices.length; i++) {
+            long prefix = ((long) key << 32) | getCode(row, i);
+            key = prefixes[i].getOrDefault(prefix, -1);
+            if (key == -1) {
+                key = prefixes[i].size();
+                prefixes[i].put(prefix, key);
+            }
+        }
+        return key;
+    }
+}
@@ -144,6 +144,16 @@ public class Groupify<T> {
      * @param element
      */
     public void add(T element) {
+        add(element, 1);
+    }
+
+    /**
+     * Adds a new element with the given frequency
+     * 
+     * @param element
+     * @param frequency
+     */
+    public void add(T element, int frequency) {
 
         // Add
         final int hash = element.hashCode();
@@ -160,7 +170,7 @@ public class Groupify<T> {
         }
 
         // Track size
-        entry.count++;
+        entry.count += frequency;
     }
 
     /**
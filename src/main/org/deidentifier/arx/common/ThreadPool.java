@@ -0,0 +1,68 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates thread pools consisting of daemon threads, which will not prevent the
+ * JVM from terminating if a pool is not shut down explicitly.
+ * 
+ * @author Fabian Prasser
+ */
+public class ThreadPool {
+
+    /**
+     * Creates a new fixed-size thread pool
+     * 
+     * @param name Prefix of the names of the threads
+     * @param threads Number of threads
+     * @return
+     */
+    public static ExecutorService create(final String name, final int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be > 0");
+        }
+        final AtomicInteger counter = new AtomicInteger(0);
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+    
+    /**
+     * Returns the number of available processors
+     * @return
+     */
+    public static int getAvailableProcessors() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * No instantiation
+     */
+    private ThreadPool() {
+        // Empty by design
+    }
+}
@@ -122,6 +122,11 @@ public class DDisclosurePrivacy extends ExplicitPrivacyCriterion {
         return true;
     }
     
+    @Override
+    public boolean isConcurrentEvaluationSupported() {
+        return true;
+    }
+
     @Override
     public boolean isLocalRecodingSupported() {
         return true;
@@ -122,6 +122,11 @@ public class DPresence extends ImplicitPrivacyCriterion {
         return (delta >= dMin) && (delta <= dMax);
     }
 
+    @Override
+    public boolean isConcurrentEvaluationSupported() {
+        return true;
+    }
+
     @Override
     public boolean isLocalRecodingSupported() {
         return false;
@@ -111,6 +111,11 @@ public class EnhancedBLikeness extends ExplicitPrivacyCriterion {
         return true;
     }
     
+    @Override
+    public boolean isConcurrentEvaluationSupported() {
+        return true;
+    }
+
     @Override
     public boolean isLocalRecodingSupported() {
         return true;
@@ -260,19 +260,26 @@ public class EntropyLDiversity extends LDiversity {
         // Sum must stay smaller than this constant term
         final double C = total * (estimator.psi(total) - Math.log(l));
         double sum1 = 0d;
+        
+        // Lower bound of the term contributed by a single element. As \psi is monotonic,
+        // the remaining elements contribute at least their number times this value.
+        final double min = Math.min(0d, estimator.psi(1));
+        int remaining = total;
 
         final int[] buckets = d.getBuckets();
         for (int i = 0; i < buckets.length; i += 2) {
             if (buckets[i] != -1) { // bucket not empty
                 final int frequency = buckets[i + 1];
                 sum1 += frequency * estimator.psi(frequency);
-                // If the sum grows over C, we can abort the loop earlier.
-                if (C < sum1) { return false; }
+                remaining -= frequency;
+                // If the sum must grow over C, we can abort the loop earlier.
+                // This does not depend on the order in which values are visited.
+                if (C < sum1 + remaining * min) { return false; }
             }
         }
 
         // If we reach this point, the loop did not return false.
-        return true;
+        return C >= sum1;
     }
 
     @Override
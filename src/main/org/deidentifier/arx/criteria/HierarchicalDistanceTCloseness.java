@@ -17,6 +17,8 @@
 
 package org.deidentifier.arx.criteria;
 
+import java.util.Arrays;
+
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.AttributeType.Hierarchy;
 import org.deidentifier.arx.certificate.elements.ElementData;
@@ -32,20 +34,121 @@ import org.deidentifier.arx.framework.lattice.Transformation;
  */
 public class HierarchicalDistanceTCloseness extends TCloseness {
 
+    /**
+     * Internal buffers for evaluating the EMD of a class
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Buffer {
+
+        /** Positive extras of the children of inner nodes. */
+        private final long[] nodePositive;
+
+        /** Negative extras of the children of inner nodes. */
+        private final long[] nodeNegative;
+
+        /** Number of elements in the dataset covered by the children visited. */
+        private final long[] nodeElementsPVisited;
+
+        /** Marks inner nodes visited for the current class. */
+        private final int[]  nodeStamps;
+
+        /** Current stamp. */
+        private int          stamp;
+
+        /** Inner nodes on the current level. */
+        private int[]        nodesCurrent;
+
+        /** Inner nodes on the next level. */
+        private int[]        nodesNext;
+
+        /**
+         * Creates a new instance
+         * @param numNodes
+         */
+        private Buffer(int numNodes) {
+            this.nodePositive = new long[numNodes];
+            this.nodeNegative = new long[numNodes];
+            this.nodeElementsPVisited = new long[numNodes];
+            this.nodeStamps = new int[numNodes];
+            this.stamp = 0;
+            this.nodesCurrent = new int[numNodes];
+            this.nodesNext = new int[numNodes];
+        }
+
+        /**
+         * Prepares the buffer for the next class
+         */
+        private void next() {
+            if (++stamp == 0) {
+                Arrays.fill(nodeStamps, 0);
+                stamp = 1;
+            }
+        }
+
+        /**
+         * Accounts for the extra of a child of the given inner node.
+         * 
+         * @param node
+         * @param extra
+         * @param elementsP
+         * @param nodes
+         * @param numNodes
+         * @return The new number of nodes
+         */
+        private int visit(int node, long extra, long elementsP, int[] nodes, int numNodes) {
+            if (nodeStamps[node] != stamp) {
+                nodeStamps[node] = stamp;
+                nodePositive[node] = 0;
+                nodeNegative[node] = 0;
+                nodeElementsPVisited[node] = 0;
+                nodes[numNodes++] = node;
+            }
+            if (extra > 0) { // positive
+                nodePositive[node] += extra;
+            } else { // negative
+                nodeNegative[node] -= extra;
+            }
+            nodeElementsPVisited[node] += elementsP;
+            return numNodes;
+        }
+    }
+
     /**  SVUID */
     private static final long serialVersionUID = -2142590190479670706L;
 
     /** The hierarchy used for the EMD. */
     private final Hierarchy   hierarchy;
 
-    /** Internal tree. */
-    private int[]             tree;
+    /** Number of elements in the dataset. */
+    private int               totalElementsP;
+
+    /** Height of the hierarchy. */
+    private double            height;
+
+    /** Number of elements per leaf in the dataset. */
+    private int[]             leafElementsP;
+
+    /** Parents of leafs, indexed by leafParentsOffsets. */
+    private int[]             leafParents;
+
+    /** Offsets into leafParents. */
+    private int[]             leafParentsOffsets;
+
+    /** Level of inner nodes. Inner nodes are ordered by level. */
+    private int[]             nodeLevels;
+
+    /** Number of elements per inner node in the dataset. */
+    private long[]            nodeElementsP;
+
+    /** Parents of inner nodes, indexed by nodeParentsOffsets. */
+    private int[]             nodeParents;
 
-    /** Internal offset. */
-    private int               start;
+    /** Offsets into nodeParents. */
+    private int[]             nodeParentsOffsets;
 
-    /** Internal empty tree. */
-    private int[]             empty;
+    /** Internal buffers of the threads evaluating this criterion. */
+    private transient ThreadLocal<Buffer> buffers;
 
     /**
      * Creates a new instance of the t-closeness criterion with hierarchical earth-movers-distance as proposed in:
@@ -79,88 +182,162 @@ public class HierarchicalDistanceTCloseness extends TCloseness {
     @Override
     public void initialize(DataManager manager, ARXConfiguration config) {
         super.initialize(manager, config);
-        this.tree = manager.getTree(attribute);
-        this.start = this.tree[1] + 3;
-        this.empty = new int[this.tree[1]];
+        
+        // Tree data format: #p_count, #leafs, height, freqLeaf_1, ...,
+        // freqLeaf_n, extra_1,..., extra_n, [#childs, level, child_1, ...
+        // child_x, pos_e, neg_e], ...
+        int[] tree = manager.getTree(attribute);
+        this.totalElementsP = tree[0];
+        int numLeafs = tree[1];
+        this.height = tree[2];
+        this.leafElementsP = new int[numLeafs];
+        System.arraycopy(tree, 3, this.leafElementsP, 0, numLeafs);
+        int extraStartPos = numLeafs + 3;
+        int extraEndPos = extraStartPos + numLeafs;
+        
+        // Enumerate inner nodes
+        int numNodes = 0;
+        int[] offsetToNode = new int[tree.length];
+        for (int i = extraEndPos; i < tree.length; i += tree[i] + 4) {
+            offsetToNode[i] = numNodes++;
+        }
+        
+        // Count parents
+        this.nodeLevels = new int[numNodes];
+        this.nodeElementsP = new long[numNodes];
+        this.leafParentsOffsets = new int[numLeafs + 1];
+        this.nodeParentsOffsets = new int[numNodes + 1];
+        for (int i = extraEndPos; i < tree.length; i += tree[i] + 4) {
+            int level = tree[i + 1];
+            for (int j = 0; j < tree[i]; j++) {
+                int child = tree[i + 2 + j];
+                if (level == 1) {
+                    this.leafParentsOffsets[child - extraStartPos + 1]++;
+                } else {
+                    this.nodeParentsOffsets[offsetToNode[child] + 1]++;
+                }
+            }
+        }
+        for (int i = 0; i < numLeafs; i++) {
+            this.leafParentsOffsets[i + 1] += this.leafParentsOffsets[i];
+        }
+        for (int i = 0; i < numNodes; i++) {
+            this.nodeParentsOffsets[i + 1] += this.nodeParentsOffsets[i];
+        }
+        
+        // Link parents and sum up elements. Children precede their parents.
+        this.leafParents = new int[this.leafParentsOffsets[numLeafs]];
+        this.nodeParents = new int[this.nodeParentsOffsets[numNodes]];
+        int[] leafParentsCount = new int[numLeafs];
+        int[] nodeParentsCount = new int[numNodes];
+        for (int i = extraEndPos; i < tree.length; i += tree[i] + 4) {
+            int node = offsetToNode[i];
+            int level = tree[i + 1];
+            this.nodeLevels[node] = level;
+            for (int j = 0; j < tree[i]; j++) {
+                int child = tree[i + 2 + j];
+                if (level == 1) {
+                    child -= extraStartPos;
+                    this.leafParents[this.leafParentsOffsets[child] + leafParentsCount[child]++] = node;
+                    this.nodeElementsP[node] += this.leafElementsP[child];
+                } else {
+                    child = offsetToNode[child];
+                    this.nodeParents[this.nodeParentsOffsets[child] + nodeParentsCount[child]++] = node;
+                    this.nodeElementsP[node] += this.nodeElementsP[child];
+                }
+            }
+        }
+        
+        // Prepare internal buffers
+        final int size = numNodes;
+        this.buffers = new ThreadLocal<Buffer>() {
+            @Override
+            protected Buffer initialValue() {
+                return new Buffer(size);
+            }
+        };
     }
 
+    /**
+     * Computes the EMD by only visiting the ancestors of the values contained in the class.
+     * The extra (pos_e - neg_e) of a node equals p_n * Q - q_n * P, where p_n and q_n denote
+     * the number of elements in the dataset and the class covered by the node, respectively. 
+     * As a consequence, the extras of all children without elements in the class are 
+     * non-negative and can be accounted for by the number of elements covered, while
+     * nodes without elements in the class do not contribute any costs. The costs are
+     * summed up in the same order as when walking the whole tree and the check is terminated
+     * early, as soon as the partial costs exceed the threshold.
+     */
     @Override
     public boolean isAnonymous(Transformation<?> node, HashGroupifyEntry entry) {
         
-        // Empty data in tree
-        System.arraycopy(empty, 0, tree, start, empty.length);
-
-        // init parameters
-        final int totalElementsP = tree[0];
-        final int numLeafs = tree[1];
-        final double height = tree[2]; // cast to double as it is used in double
-                                       // calculations
-        final int extraStartPos = numLeafs + 3;
-        final int extraEndPos = extraStartPos + numLeafs;
-
-        // Copy and count
+        // Count
         int totalElementsQ = 0;
         int[] buckets = entry.distributions[index].getBuckets();
+        for (int i = 0; i < buckets.length; i += 2) {
+            if (buckets[i] != -1) { // bucket not empty
+                totalElementsQ += buckets[i + 1];
+            }
+        }
+        
+        // Prepare
+        final long totalElementsP = this.totalElementsP;
+        final long totalElementsQL = totalElementsQ;
+        final double total = (double) totalElementsP * (double) totalElementsQ;
+        final Buffer buffer = buffers.get();
+        buffer.next();
+        
+        // Leafs
+        int numCurrent = 0;
         for (int i = 0; i < buckets.length; i += 2) {
             if (buckets[i] != -1) { // bucket not empty
                 final int value = buckets[i];
-                final int frequency = buckets[i + 1];
-                tree[value + extraStartPos] = frequency;
-                totalElementsQ += frequency;
+                final long elementsP = leafElementsP[value];
+                final long extra = (elementsP * totalElementsQL) - (buckets[i + 1] * totalElementsP); // p_i - q_i
+                for (int j = leafParentsOffsets[value]; j < leafParentsOffsets[value + 1]; j++) {
+                    numCurrent = buffer.visit(leafParents[j], extra, elementsP, buffer.nodesCurrent, numCurrent);
+                }
             }
         }
-        // Tree data format: #p_count, #leafs, height, freqLeaf_1, ...,
-        // freqLeaf_n, extra_1,..., extra_n, [#childs, level, child_1, ...
-        // child_x, pos_e, neg_e], ...
+        
+        // Inner nodes, level by level
         double cost = 0;
-
-        // leafs
-        for (int i = extraStartPos; i < extraEndPos; i++) {
-            tree[i] = (tree[i - numLeafs] * totalElementsQ) -
-                      (tree[i] * totalElementsP); // p_i - q_i
-        }
-
-        // innerNodes
-        for (int i = extraEndPos; i < tree.length; i++) {
-            int pos_e = 0;
-            int neg_e = 0;
-
-            final int numChilds = tree[i++];
-            final int level = tree[i++];
-
-            // iterate over all children
-            for (int j = 0; j < numChilds; j++) {
-                // differentiate between first level and rest
-
-                int extra = 0;
-                if (level == 1) {
-                    extra = tree[tree[i + j]];
-                } else {
-                    final int extra_child_index = tree[i + j] +
-                                                  tree[tree[i + j]] + 2; // pointer to the pos_e of node
-                    final int pos_child = tree[extra_child_index];
-                    final int neg_child = tree[extra_child_index + 1];
-                    extra = pos_child - neg_child;
+        while (numCurrent != 0) {
+            
+            // Same order as in the tree
+            Arrays.sort(buffer.nodesCurrent, 0, numCurrent);
+            int numNext = 0;
+            for (int i = 0; i < numCurrent; i++) {
+                
+                // Children without elements in the class are positive
+                final int current = buffer.nodesCurrent[i];
+                final long pos_e = buffer.nodePositive[current] + (nodeElementsP[current] - buffer.nodeElementsPVisited[current]) * totalElementsQL;
+                final long neg_e = buffer.nodeNegative[current];
+                
+                // Sum
+                final double cost_n = (nodeLevels[current] / height) * Math.min(pos_e, neg_e);
+                cost += cost_n;
+                
+                // Early abort: all remaining costs are non-negative
+                if (cost / total > t) {
+                    return false;
                 }
-
-                if (extra > 0) { // positive
-                    pos_e += extra;
-                } else { // negative
-                    neg_e += (-extra);
+                
+                // Propagate
+                final long extra = pos_e - neg_e;
+                for (int j = nodeParentsOffsets[current]; j < nodeParentsOffsets[current + 1]; j++) {
+                    numNext = buffer.visit(nodeParents[j], extra, nodeElementsP[current], buffer.nodesNext, numNext);
                 }
             }
-
-            // save extras
-            i += numChilds; // increment pointer to extra
-            tree[i++] = pos_e;
-            tree[i] = neg_e;
-
-            // sum
-            final double cost_n = (level / height) * Math.min(pos_e, neg_e);
-            cost += cost_n;
+            
+            // Swap
+            int[] temp = buffer.nodesCurrent;
+            buffer.nodesCurrent = buffer.nodesNext;
+            buffer.nodesNext = temp;
+            numCurrent = numNext;
         }
 
-        cost /= ((double) totalElementsP * (double) totalElementsQ);
+        cost /= total;
 
         // check
         return cost <= t;
@@ -19,7 +19,6 @@ package org.deidentifier.arx.criteria;
 
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.certificate.elements.ElementData;
-import org.deidentifier.arx.common.FastIntDoubleMap;
 import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
 import org.deidentifier.arx.framework.data.DataManager;
 import org.deidentifier.arx.framework.lattice.Transformation;
@@ -54,6 +53,9 @@ public class OrderedDistanceTCloseness extends TCloseness {
 
     /** Minimal order number that must be present */
     private int               minOrder;
+
+    /** Internal: frequencies of the values in the current class, per thread. */
+    private transient ThreadLocal<double[]> frequencies;
     
     /**
      * Creates a new instance of the t-closeness criterion for ordered attributes as proposed in:
@@ -85,6 +87,13 @@ public class OrderedDistanceTCloseness extends TCloseness {
         this.orderNumber = getOrderNumbers(order);
         this.baseDistances = new double[order.length];
         this.baseSums = new double[order.length];
+        final int size = order.length;
+        this.frequencies = new ThreadLocal<double[]>() {
+            @Override
+            protected double[] initialValue() {
+                return new double[size];
+            }
+        };
         
         // Prepare
         double threshold = t * (order.length - 1d);
@@ -119,12 +128,9 @@ public class OrderedDistanceTCloseness extends TCloseness {
         
         // Prepare
         int currentMinOrder = Integer.MAX_VALUE;
-        FastIntDoubleMap map = new FastIntDoubleMap(buckets.length / 2);
         for (int i = 0; i < buckets.length; i += 2) {
             if (buckets[i] != -1) { // bucket not empty
                 int value = buckets[i];
-                double frequency = ((double) buckets[i + 1] / count);
-                map.put(value, frequency);
                 currentMinOrder = Math.min(currentMinOrder,  orderNumber[value]);
             }
         }
@@ -134,27 +140,26 @@ public class OrderedDistanceTCloseness extends TCloseness {
             return false;
         }
         
-        // Calculate distance
-        double threshold = t * (order.length - 1d);
-        double distance = currentMinOrder > 0 ? baseDistances[currentMinOrder - 1] : 0d;
-        double sum_i = currentMinOrder > 0 ? baseSums[currentMinOrder - 1] : 0d;
+        // Store frequencies in the internal buffer
+        double[] frequencies = this.frequencies.get();
+        for (int i = 0; i < buckets.length; i += 2) {
+            if (buckets[i] != -1) { // bucket not empty
+                frequencies[buckets[i]] = ((double) buckets[i + 1] / count);
+            }
+        }
         
         // Calculate and check
-        for (int i = currentMinOrder; i < order.length; i++) {
-            
-            // Compute summands and distance
-            int value = order[i];
-            sum_i += (map.get(value, 0d) - distribution[value]);
-            distance += Math.abs(sum_i);
-            
-            // Early abort
-            if (distance > threshold) {
-                return false;
+        boolean result = isAnonymous(currentMinOrder, frequencies);
+        
+        // Clear internal buffer
+        for (int i = 0; i < buckets.length; i += 2) {
+            if (buckets[i] != -1) { // bucket not empty
+                frequencies[buckets[i]] = 0d;
             }
         }
         
-        // Yes
-        return true;
+        // Return
+        return result;
     }
     
     @Override
@@ -176,6 +181,38 @@ public class OrderedDistanceTCloseness extends TCloseness {
         return t+"-closeness with ordered distance for attribute '"+attribute+"'";
     }
 
+    /**
+     * Calculates the distance of the frequencies stored in the internal buffer 
+     * and checks whether it exceeds the threshold
+     * @param currentMinOrder
+     * @param frequencies
+     * @return
+     */
+    private boolean isAnonymous(int currentMinOrder, double[] frequencies) {
+        
+        // Calculate distance
+        double threshold = t * (order.length - 1d);
+        double distance = currentMinOrder > 0 ? baseDistances[currentMinOrder - 1] : 0d;
+        double sum_i = currentMinOrder > 0 ? baseSums[currentMinOrder - 1] : 0d;
+        
+        // Calculate and check
+        for (int i = currentMinOrder; i < order.length; i++) {
+            
+            // Compute summands and distance
+            int value = order[i];
+            sum_i += (frequencies[value] - distribution[value]);
+            distance += Math.abs(sum_i);
+            
+            // Early abort
+            if (distance > threshold) {
+                return false;
+            }
+        }
+        
+        // Yes
+        return true;
+    }
+
     /**
      * Maps values to order nums
      * @param order
@@ -23,6 +23,7 @@ import org.deidentifier.arx.ARXSolverConfiguration;
 import org.deidentifier.arx.certificate.elements.ElementData;
 import org.deidentifier.arx.framework.check.groupify.HashGroupifyDistribution;
 import org.deidentifier.arx.framework.data.DataManager;
+import org.deidentifier.arx.risk.ModelCache;
 import org.deidentifier.arx.risk.RiskModelPopulationUniqueness;
 import org.deidentifier.arx.risk.RiskModelPopulationUniqueness.PopulationUniquenessModel;
 
@@ -45,6 +46,9 @@ public class PopulationUniqueness extends RiskBasedCriterion { // NO_UCD
     /** The solver config */
     private ARXSolverConfiguration    solverConfig;
 
+    /** Cache for estimates, created for each anonymization process */
+    private transient ModelCache      cache;
+
     /**
      * Creates a new instance of this criterion. Uses Dankar's method for estimating population uniqueness.
      * This constructor will clone the population model, making further changes to it will not influence
@@ -139,6 +143,7 @@ public class PopulationUniqueness extends RiskBasedCriterion { // NO_UCD
     @SuppressWarnings("deprecation")
     public void initialize(DataManager manager, ARXConfiguration config) {
         super.initialize(manager, config);
+        this.cache = new ModelCache();
         
         // TODO: Needed for backwards compatibility of ARX 3.4.0 with previous versions
         if (this.populationModel != null) {
@@ -182,7 +187,8 @@ public class PopulationUniqueness extends RiskBasedCriterion { // NO_UCD
 
         RiskModelPopulationUniqueness riskModel = new RiskModelPopulationUniqueness(this.populationModel,
                                                                                     distribution.getHistogram(),
-                                                                                    solverConfig);
+                                                                                    solverConfig,
+                                                                                    cache);
         
         double populationUniques = 0d;
         if (this.statisticalModel == PopulationUniquenessModel.DANKAR) {
@@ -147,6 +147,15 @@ public abstract class PrivacyCriterion implements Serializable{
         // Empty by design
     }
     
+    /**
+     * Returns whether isAnonymous() may be called concurrently for different equivalence classes.
+     * Criteria which support this must not modify shared state while checking a class.
+     * @return
+     */
+    public boolean isConcurrentEvaluationSupported() {
+        return false;
+    }
+    
     /**
      * Returns whether the criterion supports heuristic search strategies.
      * @return
@@ -53,6 +53,11 @@ public abstract class TCloseness extends ExplicitPrivacyCriterion {
         return ARXConfiguration.REQUIREMENT_DISTRIBUTION;
     }
     
+    @Override
+    public boolean isConcurrentEvaluationSupported() {
+        return true;
+    }
+    
     /**
      * Returns the parameter t.
      *
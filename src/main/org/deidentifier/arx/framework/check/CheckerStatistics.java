@@ -0,0 +1,258 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+import org.deidentifier.arx.framework.check.TransformationCheckerStateMachine.TransitionType;
+
+/**
+ * Collects statistics about the internals of the engine. An instance is shared by
+ * a transformation checker, its workers and their histories. Instances are only
+ * created if collecting statistics has been enabled.
+ * 
+ * @author Fabian Prasser
+ */
+public class CheckerStatistics {
+
+    /** Number of transformations transformed and evaluated */
+    private long numChecks;
+
+    /** Number of transformations performed by scanning the input */
+    private long numTransitionsFullScan;
+
+    /** Number of transformations performed by rolling up the previous result */
+    private long numTransitionsRollup;
+
+    /** Number of transformations performed by using a snapshot */
+    private long numTransitionsSnapshot;
+
+    /** Number of successful lookups in the history */
+    private long numHistoryHits;
+
+    /** Number of unsuccessful lookups in the history */
+    private long numHistoryMisses;
+
+    /** Number of snapshots stored in the history */
+    private long numHistoryStores;
+
+    /** Number of snapshots evicted from the history */
+    private long numHistoryEvictions;
+
+    /** Maximal number of equivalence classes */
+    private long maxEquivalenceClasses;
+
+    /** Maximal number of bytes occupied by the snapshots in a history */
+    private long maxHistoryMemory;
+
+    /** Time spent transforming data, in nanoseconds */
+    private long timeTransformation;
+
+    /** Time spent evaluating privacy models, in nanoseconds */
+    private long timePrivacyModel;
+
+    /** Time spent evaluating quality models, in nanoseconds */
+    private long timeQualityModel;
+
+    /**
+     * Records a check
+     * 
+     * @param type The type of transition performed
+     * @param numEquivalenceClasses The number of classes resulting from the transformation
+     * @param time The time spent transforming data, in nanoseconds
+     */
+    public synchronized void addCheck(TransitionType type, int numEquivalenceClasses, long time) {
+        numChecks++;
+        switch (type) {
+        case UNOPTIMIZED:
+            numTransitionsFullScan++;
+            break;
+        case ROLLUP:
+            numTransitionsRollup++;
+            break;
+        case SNAPSHOT:
+            numTransitionsSnapshot++;
+            break;
+        }
+        maxEquivalenceClasses = Math.max(maxEquivalenceClasses, numEquivalenceClasses);
+        timeTransformation += time;
+    }
+
+    /**
+     * Records a lookup in the history
+     * 
+     * @param hit Whether a snapshot has been found
+     */
+    public synchronized void addHistoryAccess(boolean hit) {
+        if (hit) {
+            numHistoryHits++;
+        } else {
+            numHistoryMisses++;
+        }
+    }
+
+    /**
+     * Records the eviction of a snapshot from the history
+     */
+    public synchronized void addHistoryEviction() {
+        numHistoryEvictions++;
+    }
+
+    /**
+     * Records that a snapshot has been stored in the history
+     * 
+     * @param memory The number of bytes occupied by the history after storing the snapshot
+     */
+    public synchronized void addHistoryStore(long memory) {
+        numHistoryStores++;
+        maxHistoryMemory = Math.max(maxHistoryMemory, memory);
+    }
+
+    /**
+     * Records time spent evaluating privacy models
+     * 
+     * @param time in nanoseconds
+     */
+    public synchronized void addTimePrivacyModel(long time) {
+        timePrivacyModel += time;
+    }
+
+    /**
+     * Records time spent evaluating quality models
+     * 
+     * @param time in nanoseconds
+     */
+    public synchronized void addTimeQualityModel(long time) {
+        timeQualityModel += time;
+    }
+
+    /**
+     * Returns the maximal number of equivalence classes
+     * 
+     * @return
+     */
+    public synchronized long getMaxEquivalenceClasses() {
+        return maxEquivalenceClasses;
+    }
+
+    /**
+     * Returns the maximal number of bytes occupied by the snapshots in a history
+     * 
+     * @return
+     */
+    public synchronized long getMaxHistoryMemory() {
+        return maxHistoryMemory;
+    }
+
+    /**
+     * Returns the number of transformations transformed and evaluated
+     * 
+     * @return
+     */
+    public synchronized long getNumChecks() {
+        return numChecks;
+    }
+
+    /**
+     * Returns the number of snapshots evicted from the history
+     * 
+     * @return
+     */
+    public synchronized long getNumHistoryEvictions() {
+        return numHistoryEvictions;
+    }
+
+    /**
+     * Returns the number of successful lookups in the history
+     * 
+     * @return
+     */
+    public synchronized long getNumHistoryHits() {
+        return numHistoryHits;
+    }
+
+    /**
+     * Returns the number of unsuccessful lookups in the history
+     * 
+     * @return
+     */
+    public synchronized long getNumHistoryMisses() {
+        return numHistoryMisses;
+    }
+
+    /**
+     * Returns the number of snapshots stored in the history
+     * 
+     * @return
+     */
+    public synchronized long getNumHistoryStores() {
+        return numHistoryStores;
+    }
+
+    /**
+     * Returns the number of transformations performed by scanning the input
+     * 
+     * @return
+     */
+    public synchronized long getNumTransitionsFullScan() {
+        return numTransitionsFullScan;
+    }
+
+    /**
+     * Returns the number of transformations performed by rolling up the previous result
+     * 
+     * @return
+     */
+    public synchronized long getNumTransitionsRollup() {
+        return numTransitionsRollup;
+    }
+
+    /**
+     * Returns the number of transformations performed by using a snapshot
+     * 
+     * @return
+     */
+    public synchronized long getNumTransitionsSnapshot() {
+        return numTransitionsSnapshot;
+    }
+
+    /**
+     * Returns the time spent evaluating privacy models, in nanoseconds
+     * 
+     * @return
+     */
+    public synchronized long getTimePrivacyModel() {
+        return timePrivacyModel;
+    }
+
+    /**
+     * Returns the time spent evaluating quality models, in nanoseconds
+     * 
+     * @return
+     */
+    public synchronized long getTimeQualityModel() {
+        return timeQualityModel;
+    }
+
+    /**
+     * Returns the time spent transforming data, in nanoseconds
+     * 
+     * @return
+     */
+    public synchronized long getTimeTransformation() {
+        return timeTransformation;
+    }
+}
@@ -61,6 +61,9 @@ public class TransformationApplicator {
     /** Is a minimal class size required */
     private final boolean                    minimalClassSizeRequired;
 
+    /** The number of threads used for microaggregation */
+    private final int                        numThreads;
+
     /**
      * Creates a new transformation applicator instance.
      * 
@@ -73,6 +76,23 @@ public class TransformationApplicator {
                                     final DataMatrix buffer,
                                     final Metric<?> metric,
                                     final ARXConfigurationInternal config) {
+        this(manager, buffer, metric, config, 1);
+    }
+
+    /**
+     * Creates a new transformation applicator instance.
+     * 
+     * @param manager The manager
+     * @param buffer The buffer
+     * @param metric The metric
+     * @param config The configuration
+     * @param numThreads The number of threads used for microaggregation
+     */
+    public TransformationApplicator(final DataManager manager,
+                                    final DataMatrix buffer,
+                                    final Metric<?> metric,
+                                    final ARXConfigurationInternal config,
+                                    final int numThreads) {
 
         // Initialize all operators
         this.metric = metric;
@@ -83,6 +103,7 @@ public class TransformationApplicator {
         this.aggregation = manager.getAggregationInformation();
         this.outputGeneralized = buffer;
         this.minimalClassSizeRequired = config.getMinimalGroupSize() != Integer.MAX_VALUE;
+        this.numThreads = numThreads;
     }
 
     
@@ -119,14 +140,20 @@ public class TransformationApplicator {
         HashGroupify currentGroupify = new HashGroupify(initialSize,
                                                         config, 
                                                         aggregation.getHeader().length,
+                                                        aggregation.getDomainSizes(),
                                                         inputGeneralized.getArray(),
                                                         outputGeneralized,
                                                         inputAnalyzed,
-                                                        inputGeneralized.getDictionary().getSuppressedCodes());
+                                                        inputGeneralized.getDictionary().getSuppressedCodes(),
+                                                        numThreads);
         
         // Apply transition and groupify
         currentGroupify = transformer.apply(0L, transformation.getGeneralization(), currentGroupify);
-        currentGroupify.stateAnalyze(transformation, true);
+        try {
+            currentGroupify.stateAnalyze(transformation, true);
+        } finally {
+            currentGroupify.shutdown();
+        }
         if (!currentGroupify.isPrivacyModelFulfilled() && !config.isSuppressionAlwaysEnabled()) {
             currentGroupify.stateResetSuppression();
         }
@@ -145,7 +172,7 @@ public class TransformationApplicator {
         if (aggregation.getColdQIsFunctions().length > 0 ||
             aggregation.getHotQIsNotGeneralizedFunctions().length > 0 ||
             aggregation.getHotQIsGeneralizedFunctions().length > 0) {
-            microaggregatedOutput = currentGroupify.performMicroaggregation(aggregation, microaggregationDictionary);
+            microaggregatedOutput = currentGroupify.performMicroaggregation(aggregation, microaggregationDictionary, numThreads);
         }
         
         // Perform suppression
@@ -17,8 +17,22 @@
 
 package org.deidentifier.arx.framework.check;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXConfiguration.ARXConfigurationInternal;
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.framework.check.TransformationCheckerStateMachine.Transition;
 import org.deidentifier.arx.framework.check.distribution.IntArrayDictionary;
 import org.deidentifier.arx.framework.check.groupify.HashGroupify;
@@ -90,6 +104,33 @@ public class TransformationChecker {
     /** Count the number of checks performed */
     private int                                     numChecksPerformed = 0;
 
+    /** The number of threads */
+    private final int                               numThreads;
+
+    /** Lock guarding state shared between checkers, i.e. privacy models, metrics and the solution space */
+    private final Object                            lock;
+
+    /** The history max size */
+    private final int                               historyMaxSize;
+
+    /** A history threshold */
+    private final double                            snapshotSizeDataset;
+
+    /** A history threshold */
+    private final double                            snapshotSizeSnapshot;
+
+    /** Results of speculative checks, indexed by the identifiers of the transformations */
+    private final Map<Object, TransformationResult> speculativeResults = new HashMap<Object, TransformationResult>();
+
+    /** Checkers used for speculative checks, created on demand */
+    private TransformationChecker[]                 workers;
+
+    /** Statistics shared between checkers, null if they are not collected */
+    private final CheckerStatistics                 statistics;
+
+    /** The executor for speculative checks, created on demand */
+    private ExecutorService                         executor;
+
     /**
      * Creates a new transformation checker.
      * 
@@ -108,6 +149,92 @@ public class TransformationChecker {
                                  final double snapshotSizeDataset,
                                  final double snapshotSizeSnapshot,
                                  final SolutionSpace<?> solutionSpace) {
+        this(manager, metric, config, historyMaxSize, snapshotSizeDataset, snapshotSizeSnapshot, solutionSpace, 1);
+    }
+    
+    /**
+     * Creates a new transformation checker.
+     * 
+     * @param manager The manager
+     * @param metric The metric
+     * @param config The configuration
+     * @param historyMaxSize The history max size
+     * @param snapshotSizeDataset A history threshold
+     * @param snapshotSizeSnapshot A history threshold
+     * @param solutionSpace
+     * @param numThreads The number of threads used for transforming data
+     */
+    public TransformationChecker(final DataManager manager,
+                                 final Metric<?> metric,
+                                 final ARXConfigurationInternal config,
+                                 final int historyMaxSize,
+                                 final double snapshotSizeDataset,
+                                 final double snapshotSizeSnapshot,
+                                 final SolutionSpace<?> solutionSpace,
+                                 final int numThreads) {
+        this(manager,
+             manager.getDataGeneralized().getArray(),
+             manager.getDataAnalyzed().getArray(),
+             metric,
+             config,
+             historyMaxSize,
+             snapshotSizeDataset,
+             snapshotSizeSnapshot,
+             solutionSpace,
+             numThreads,
+             new Object(),
+             config.isEngineStatisticsEnabled() ? new CheckerStatistics() : null);
+    }
+
+    /**
+     * Creates a new transformation checker which operates on views of the data of the given checker.
+     * 
+     * @param parent
+     * @param numThreads The number of threads used for transforming data
+     */
+    private TransformationChecker(final TransformationChecker parent, final int numThreads) {
+        this(parent.manager,
+             parent.manager.getDataGeneralized().getArray().getView(),
+             parent.manager.getDataAnalyzed().getArray() != null ? parent.manager.getDataAnalyzed().getArray().getView() : null,
+             parent.metric,
+             parent.config,
+             parent.historyMaxSize,
+             parent.snapshotSizeDataset,
+             parent.snapshotSizeSnapshot,
+             parent.solutionSpace,
+             numThreads,
+             parent.lock,
+             parent.statistics);
+    }
+    
+    /**
+     * Creates a new transformation checker.
+     * 
+     * @param manager The manager
+     * @param inputGeneralized The generalized input data
+     * @param inputAnalyzed The analyzed input data
+     * @param metric The metric
+     * @param config The configuration
+     * @param historyMaxSize The history max size
+     * @param snapshotSizeDataset A history threshold
+     * @param snapshotSizeSnapshot A history threshold
+     * @param solutionSpace
+     * @param numThreads The number of threads used for transforming data
+     * @param lock The lock used for analyzing transformations
+     * @param statistics The statistics to collect, if any
+     */
+    private TransformationChecker(final DataManager manager,
+                                  final DataMatrix inputGeneralized,
+                                  final DataMatrix inputAnalyzed,
+                                  final Metric<?> metric,
+                                  final ARXConfigurationInternal config,
+                                  final int historyMaxSize,
+                                  final double snapshotSizeDataset,
+                                  final double snapshotSizeSnapshot,
+                                  final SolutionSpace<?> solutionSpace,
+                                  final int numThreads,
+                                  final Object lock,
+                                  final CheckerStatistics statistics) {
         
         // Store data
         this.metric = metric;
@@ -116,6 +243,12 @@ public class TransformationChecker {
         this.dataGeneralized = manager.getDataGeneralized();
         this.solutionSpace = solutionSpace;
         this.minimalClassSizeRequired = config.getMinimalGroupSize() != Integer.MAX_VALUE;
+        this.numThreads = numThreads;
+        this.lock = lock;
+        this.statistics = statistics;
+        this.historyMaxSize = historyMaxSize;
+        this.snapshotSizeDataset = snapshotSizeDataset;
+        this.snapshotSizeSnapshot = snapshotSizeSnapshot;
         
         // Initialize all operators
         int initialSize = (int) (manager.getDataGeneralized().getDataLength() * 0.01d);
@@ -130,7 +263,7 @@ public class TransformationChecker {
             dictionarySensFreq = new IntArrayDictionary(0);
         }
         
-        this.history = new History(manager.getDataGeneralized().getArray().getNumRows(),
+        this.history = new History(inputGeneralized.getNumRows(),
                                    historyMaxSize,
                                    snapshotSizeDataset,
                                    snapshotSizeSnapshot,
@@ -138,27 +271,46 @@ public class TransformationChecker {
                                    dictionarySensValue,
                                    dictionarySensFreq,
                                    solutionSpace);
+        this.history.setStatistics(statistics);
         
         this.stateMachine = new TransformationCheckerStateMachine(history);
-        this.transformer = new Transformer(manager.getDataGeneralized().getArray(),
-                                           manager.getDataAnalyzed().getArray(),
-                                           manager.getAggregationInformation().getHotThreshold(),
-                                           manager.getHierarchies(),
-                                           config,
-                                           dictionarySensValue,
-                                           dictionarySensFreq);
+        if (numThreads > 1) {
+            this.transformer = new TransformerParallel(inputGeneralized,
+                                                       inputAnalyzed,
+                                                       manager.getAggregationInformation().getHotThreshold(),
+                                                       manager.getAggregationInformation().getDomainSizes(),
+                                                       manager.getHierarchies(),
+                                                       config,
+                                                       dictionarySensValue,
+                                                       dictionarySensFreq,
+                                                       manager.getDataGeneralized().getDictionary().getSuppressedCodes(),
+                                                       initialSize,
+                                                       numThreads);
+        } else {
+            this.transformer = new Transformer(inputGeneralized,
+                                               inputAnalyzed,
+                                               manager.getAggregationInformation().getHotThreshold(),
+                                               manager.getHierarchies(),
+                                               config,
+                                               dictionarySensValue,
+                                               dictionarySensFreq);
+        }
         
         this.currentGroupify = new HashGroupify(initialSize, config, manager.getAggregationInformation().getHotThreshold(),
-                                                manager.getDataGeneralized().getArray(),
+                                                manager.getAggregationInformation().getDomainSizes(),
+                                                inputGeneralized,
                                                 transformer.getBuffer(),
-                                                manager.getDataAnalyzed().getArray(),
-                                                manager.getDataGeneralized().getDictionary().getSuppressedCodes());
+                                                inputAnalyzed,
+                                                manager.getDataGeneralized().getDictionary().getSuppressedCodes(),
+                                                numThreads);
         
         this.lastGroupify = new HashGroupify(initialSize, config, manager.getAggregationInformation().getHotThreshold(),
-                                             manager.getDataGeneralized().getArray(),
+                                             manager.getAggregationInformation().getDomainSizes(),
+                                             inputGeneralized,
                                              transformer.getBuffer(),
-                                             manager.getDataAnalyzed().getArray(),
-                                             manager.getDataGeneralized().getDictionary().getSuppressedCodes());
+                                             inputAnalyzed,
+                                             manager.getDataGeneralized().getDictionary().getSuppressedCodes(),
+                                             numThreads);
     }
 
     /**
@@ -187,63 +339,55 @@ public class TransformationChecker {
             return (TransformationResult) node.getData();
         }
         
-        // Store snapshot from last check
-        if (stateMachine.getLastTransformation() != null) {
-            history.store(solutionSpace.getTransformation(stateMachine.getLastTransformation()), currentGroupify, stateMachine.getLastTransition().snapshot);
+        // If the result has been computed speculatively, simply return it
+        if (!speculativeResults.isEmpty() && !forceMeasureInfoLoss && scoreType == ScoreType.INFORMATION_LOSS) {
+            TransformationResult result = speculativeResults.remove(node.getIdentifier());
+            if (result != null) {
+                return result;
+            }
         }
         
-        // Transition
-        final Transition transition = stateMachine.transition(node.getGeneralization());
-        
-        // Switch groupifies
-        final HashGroupify temp = lastGroupify;
-        lastGroupify = currentGroupify;
-        currentGroupify = temp;
-        
-        // Apply transition
-        switch (transition.type) {
-        case UNOPTIMIZED:
-            currentGroupify = transformer.apply(transition.projection, node.getGeneralization(), currentGroupify);
-            break;
-        case ROLLUP:
-            currentGroupify = transformer.applyRollup(transition.projection, node.getGeneralization(), lastGroupify, currentGroupify);
-            break;
-        case SNAPSHOT:
-            currentGroupify = transformer.applySnapshot(transition.projection, node.getGeneralization(), currentGroupify, transition.snapshot);
-            break;
-        }
+        // Transform
+        transform(node);
         
-        // We are done with transforming and adding
-        currentGroupify.stateAnalyze(node, forceMeasureInfoLoss);
-        if (forceMeasureInfoLoss && !currentGroupify.isPrivacyModelFulfilled() && !config.isSuppressionAlwaysEnabled()) {
-            currentGroupify.stateResetSuppression();
-        }
+        // Analyze
+        return analyze(node, forceMeasureInfoLoss, scoreType);
+    }
+    
+    /**
+     * Creates a new checker which can be used concurrently with this checker, e.g. by another
+     * thread of an algorithm. It operates on views of the data and maintains its own history.
+     * Accesses to state shared between the checkers must be synchronized on getLock().
+     * 
+     * @param numThreads The number of threads used by the new checker for transforming data
+     * @return
+     */
+    public TransformationChecker createWorker(final int numThreads) {
+        return new TransformationChecker(this, numThreads);
+    }
+    
+    /**
+     * Applies the given transformation and returns the resulting equivalence classes. Outliers are
+     * marked as they would be when applying the transformation to output data, but no information
+     * loss is computed. Snapshots of previously applied transformations are reused. The returned
+     * operator is only valid until the next transformation is checked or applied.
+     * 
+     * @param node
+     * @return
+     */
+    public HashGroupify getEquivalenceClasses(final Transformation<?> node) {
         
-        // Compute information loss and lower bound
-        InformationLoss<?> loss = null;
-        InformationLoss<?> bound = null;
+        // Transform
+        transform(node);
         
-        switch (scoreType) {
-        case DP_SCORE:
-            // Evaluate score function
-            loss = metric.getScore(node, currentGroupify);
-            break;
-        case INFORMATION_LOSS:
-            // Calculate conventional information loss and bound
-            InformationLossWithBound<?> result = (currentGroupify.isPrivacyModelFulfilled() || forceMeasureInfoLoss) ?
-                                                  metric.getInformationLoss(node, currentGroupify) : null;
-            loss = result != null ? result.getInformationLoss() : null;
-            bound = result != null ? result.getLowerBound() : metric.getLowerBound(node, currentGroupify);
-            break;
-        default:
-            throw new RuntimeException("The score type " + scoreType + " is not supported");
+        // Analyze
+        synchronized (lock) {
+            currentGroupify.stateAnalyze(node, true);
+            if (!currentGroupify.isPrivacyModelFulfilled() && !config.isSuppressionAlwaysEnabled()) {
+                currentGroupify.stateResetSuppression();
+            }
         }
-        
-        // Return result;
-        return new TransformationResult(currentGroupify.isPrivacyModelFulfilled(),
-                                      minimalClassSizeRequired ? currentGroupify.isMinimalClassSizeFulfilled() : null,
-                                      loss,
-                                      bound);
+        return currentGroupify;
     }
     
     /**
@@ -251,7 +395,7 @@ public class TransformationChecker {
      * @return
      */
     public TransformationApplicator getApplicator() {
-        return new TransformationApplicator(this.manager, this.getOutputBuffer(), this.metric, this.config);
+        return new TransformationApplicator(this.manager, this.getOutputBuffer(), this.metric, this.config, this.numThreads);
     }
     
     /**
@@ -287,6 +431,16 @@ public class TransformationChecker {
         return this.dataGeneralized.getArray();
     }
     
+    /**
+     * Returns the lock guarding state shared between this checker and its workers, i.e. privacy
+     * models, metrics and the solution space.
+     * 
+     * @return
+     */
+    public Object getLock() {
+        return lock;
+    }
+    
     /**
      * Returns the utility measure
      * @return
@@ -303,6 +457,14 @@ public class TransformationChecker {
         return this.numChecksPerformed;
     }
     
+    /**
+     * Returns the number of threads
+     * @return
+     */
+    public int getNumThreads() {
+        return this.numThreads;
+    }
+    
     /**
      * Returns the output buffer
      * @return
@@ -311,6 +473,108 @@ public class TransformationChecker {
         return this.transformer.getBuffer();
     }
 
+    /**
+     * Returns statistics about the checks performed by this checker and its workers,
+     * null if they are not collected.
+     * @return
+     */
+    public CheckerStatistics getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Speculatively checks the given transformations in parallel. The results are returned by
+     * subsequent calls to check(transformation), which still count as checks. Results are
+     * independent of the order in which transformations are checked, which means that the
+     * calling algorithm behaves exactly as if the transformations had been checked sequentially.
+     * Results of previous calls for transformations which are not contained in the given list
+     * are discarded, as the caller will not visit them anymore. Does nothing if the checker has
+     * been configured to use a single thread or if speculative checks are disabled.
+     * 
+     * @param transformations
+     */
+    public void prefetch(final List<? extends Transformation<?>> transformations) {
+
+        // Check
+        if (numThreads <= 1 || !config.isSpeculativeCheckingEnabled()) {
+            return;
+        }
+        
+        // Collect transformations for which no result is known
+        final List<Transformation<?>> pending = new ArrayList<Transformation<?>>();
+        Set<Object> retained = new HashSet<Object>();
+        for (Transformation<?> transformation : transformations) {
+            if (!(transformation.getData() instanceof TransformationResult)) {
+                retained.add(transformation.getIdentifier());
+                if (!speculativeResults.containsKey(transformation.getIdentifier())) {
+                    pending.add(transformation);
+                }
+            }
+        }
+        
+        // Discard results which will not be consumed
+        speculativeResults.keySet().retainAll(retained);
+        
+        // Nothing to parallelize
+        if (pending.size() <= 1) {
+            return;
+        }
+        
+        // Create workers
+        if (workers == null) {
+            workers = new TransformationChecker[numThreads];
+            for (int i = 0; i < numThreads; i++) {
+                workers[i] = new TransformationChecker(this, 1);
+            }
+            executor = ThreadPool.create("arx-checker", numThreads);
+        }
+        
+        // Check in ascending order of levels, which allows workers to roll up previous results
+        Collections.sort(pending, new Comparator<Transformation<?>>() {
+            @Override
+            public int compare(Transformation<?> o1, Transformation<?> o2) {
+                return Integer.compare(o1.getLevel(), o2.getLevel());
+            }
+        });
+        
+        // Distribute transformations round-robin
+        final int numWorkers = Math.min(numThreads, pending.size());
+        List<Future<List<TransformationResult>>> futures = new ArrayList<Future<List<TransformationResult>>>();
+        for (int i = 0; i < numWorkers; i++) {
+            final int offset = i;
+            final TransformationChecker worker = workers[i];
+            futures.add(executor.submit(new Callable<List<TransformationResult>>() {
+                @Override
+                public List<TransformationResult> call() throws Exception {
+                    List<TransformationResult> results = new ArrayList<TransformationResult>();
+                    for (int j = offset; j < pending.size(); j += numWorkers) {
+                        results.add(worker.check(pending.get(j)));
+                    }
+                    return results;
+                }
+            }));
+        }
+        
+        // Collect results
+        try {
+            for (int i = 0; i < numWorkers; i++) {
+                List<TransformationResult> results = futures.get(i).get();
+                for (int j = i, k = 0; j < pending.size(); j += numWorkers, k++) {
+                    speculativeResults.put(pending.get(j).getIdentifier(), results.get(k));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while checking transformations", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while checking transformations", e.getCause());
+        } finally {
+            for (Future<List<TransformationResult>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
     /**
      * Frees memory
      */
@@ -320,5 +584,118 @@ public class TransformationChecker {
         history.setSize(0);
         currentGroupify.stateClear();
         lastGroupify.stateClear();
+        currentGroupify.shutdown();
+        lastGroupify.shutdown();
+        transformer.shutdown();
+        speculativeResults.clear();
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        if (workers != null) {
+            for (TransformationChecker worker : workers) {
+                worker.reset();
+            }
+            workers = null;
+        }
+    }
+
+    /**
+     * Analyzes the current groupify operator and computes the result of the check
+     * @param node
+     * @param forceMeasureInfoLoss
+     * @param scoreType
+     * @return
+     */
+    private TransformationResult analyze(final Transformation<?> node, final boolean forceMeasureInfoLoss, final ScoreType scoreType) {
+        
+        // We are done with transforming and adding. Privacy models that support concurrent
+        // evaluation are analyzed without holding the lock.
+        long time = statistics != null ? System.nanoTime() : 0L;
+        if (currentGroupify.isConcurrentAnalysisSupported()) {
+            currentGroupify.stateAnalyze(node, forceMeasureInfoLoss);
+        } else {
+            synchronized (lock) {
+                currentGroupify.stateAnalyze(node, forceMeasureInfoLoss);
+            }
+        }
+        if (forceMeasureInfoLoss && !currentGroupify.isPrivacyModelFulfilled() && !config.isSuppressionAlwaysEnabled()) {
+            currentGroupify.stateResetSuppression();
+        }
+        if (statistics != null) {
+            long now = System.nanoTime();
+            statistics.addTimePrivacyModel(now - time);
+            time = now;
+        }
+        
+        // Compute information loss and lower bound
+        InformationLoss<?> loss = null;
+        InformationLoss<?> bound = null;
+        
+        synchronized (lock) {
+            switch (scoreType) {
+            case DP_SCORE:
+                // Evaluate score function
+                loss = metric.getScore(node, currentGroupify);
+                break;
+            case INFORMATION_LOSS:
+                // Calculate conventional information loss and bound
+                InformationLossWithBound<?> result = (currentGroupify.isPrivacyModelFulfilled() || forceMeasureInfoLoss) ?
+                                                      metric.getInformationLoss(node, currentGroupify) : null;
+                loss = result != null ? result.getInformationLoss() : null;
+                bound = result != null ? result.getLowerBound() : metric.getLowerBound(node, currentGroupify);
+                break;
+            default:
+                throw new RuntimeException("The score type " + scoreType + " is not supported");
+            }
+        }
+        if (statistics != null) {
+            statistics.addTimeQualityModel(System.nanoTime() - time);
+        }
+        
+        // Return result;
+        return new TransformationResult(currentGroupify.isPrivacyModelFulfilled(),
+                                      minimalClassSizeRequired ? currentGroupify.isMinimalClassSizeFulfilled() : null,
+                                      loss,
+                                      bound);
+    }
+
+    /**
+     * Transforms the data and groups it into equivalence classes, reusing the history if possible
+     * @param node
+     */
+    private void transform(final Transformation<?> node) {
+        
+        // Store snapshot from last check
+        if (stateMachine.getLastTransformation() != null) {
+            synchronized (lock) {
+                history.store(solutionSpace.getTransformation(stateMachine.getLastTransformation()), currentGroupify, stateMachine.getLastTransition().snapshot);
+            }
+        }
+        
+        // Transition
+        final Transition transition = stateMachine.transition(node.getGeneralization());
+        
+        // Switch groupifies
+        final HashGroupify temp = lastGroupify;
+        lastGroupify = currentGroupify;
+        currentGroupify = temp;
+        
+        // Apply transition
+        long time = statistics != null ? System.nanoTime() : 0L;
+        switch (transition.type) {
+        case UNOPTIMIZED:
+            currentGroupify = transformer.apply(transition.projection, node.getGeneralization(), currentGroupify);
+            break;
+        case ROLLUP:
+            currentGroupify = transformer.applyRollup(transition.projection, node.getGeneralization(), lastGroupify, currentGroupify);
+            break;
+        case SNAPSHOT:
+            currentGroupify = transformer.applySnapshot(transition.projection, node.getGeneralization(), currentGroupify, transition.snapshot);
+            break;
+        }
+        if (statistics != null) {
+            statistics.addCheck(transition.type, currentGroupify.getNumberOfEquivalenceClasses(), System.nanoTime() - time);
+        }
     }
-}
\ No newline at end of file
+}
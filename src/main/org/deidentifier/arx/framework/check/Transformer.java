@@ -22,6 +22,7 @@ import org.deidentifier.arx.framework.check.TransformationCheckerStateMachine.Tr
 import org.deidentifier.arx.framework.check.distribution.IntArrayDictionary;
 import org.deidentifier.arx.framework.check.groupify.HashGroupify;
 import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
+import org.deidentifier.arx.framework.check.history.SnapshotCompression;
 import org.deidentifier.arx.framework.check.transformer.AbstractTransformer;
 import org.deidentifier.arx.framework.check.transformer.Transformer01;
 import org.deidentifier.arx.framework.check.transformer.Transformer02;
@@ -40,6 +41,7 @@ import org.deidentifier.arx.framework.check.transformer.Transformer14;
 import org.deidentifier.arx.framework.check.transformer.Transformer15;
 import org.deidentifier.arx.framework.check.transformer.TransformerAll;
 import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.DataMatrixMapped;
 import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
 
 /**
@@ -98,14 +100,46 @@ public class Transformer {
                        final ARXConfigurationInternal config,
                        final IntArrayDictionary dictionarySensValue,
                        final IntArrayDictionary dictionarySensFreq) {
+        this(inputGeneralized,
+             inputAnalyzed,
+             DataMatrixMapped.create(inputGeneralized.getNumRows(),
+                                     inputGeneralized.getNumColumns(),
+                                     config.getOffHeapThreshold(),
+                                     config.getOffHeapDirectory()),
+             dataAnalyzedNumberOfColumns,
+             hierarchies,
+             config,
+             dictionarySensValue,
+             dictionarySensFreq);
+    }
+
+    /**
+     * Instantiates a new transformer, which writes into the given output buffer
+     *
+     * @param inputGeneralized
+     * @param inputAnalyzed
+     * @param outputGeneralized
+     * @param dataAnalyzedNumberOfColumns
+     * @param hierarchies
+     * @param config
+     * @param dictionarySensValue
+     * @param dictionarySensFreq
+     */
+    protected Transformer(final DataMatrix inputGeneralized,
+                          final DataMatrix inputAnalyzed,
+                          final DataMatrix outputGeneralized,
+                          final int dataAnalyzedNumberOfColumns,
+                          final GeneralizationHierarchy[] hierarchies,
+                          final ARXConfigurationInternal config,
+                          final IntArrayDictionary dictionarySensValue,
+                          final IntArrayDictionary dictionarySensFreq) {
 
         this.config = config;
         this.inputGeneralized = inputGeneralized;
         this.dataAnalyzedNumberOfColumns = dataAnalyzedNumberOfColumns;
         this.hierarchies = hierarchies;
         this.instances = new AbstractTransformer[16];
-        this.outputGeneralized = new DataMatrix(inputGeneralized.getNumRows(), 
-                                                inputGeneralized.getNumColumns());
+        this.outputGeneralized = outputGeneralized;
 
         this.dimensions = inputGeneralized.getNumColumns();
         this.dictionarySensValue = dictionarySensValue;
@@ -230,6 +264,13 @@ public class Transformer {
         return outputGeneralized;
     }
 
+    /**
+     * Releases all resources held by this transformer
+     */
+    public void shutdown() {
+        // Empty by design
+    }
+
     /**
      * Builds the applicators.
      */
@@ -383,7 +424,7 @@ public class Transformer {
             break;
         case SNAPSHOT:
             startIndex = 0;
-            stopIndex = snapshot.length / config.getSnapshotLength();
+            stopIndex = SnapshotCompression.getNumberOfEntries(snapshot, config);
             break;
         }
 
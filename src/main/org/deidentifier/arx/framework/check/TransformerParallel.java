@@ -0,0 +1,204 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.deidentifier.arx.ARXConfiguration.ARXConfigurationInternal;
+import org.deidentifier.arx.common.ThreadPool;
+import org.deidentifier.arx.framework.check.TransformationCheckerStateMachine.TransitionType;
+import org.deidentifier.arx.framework.check.distribution.IntArrayDictionary;
+import org.deidentifier.arx.framework.check.groupify.HashGroupify;
+import org.deidentifier.arx.framework.check.history.SnapshotCompression;
+import org.deidentifier.arx.framework.check.transformer.AbstractTransformer;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
+
+/**
+ * A transformer which partitions the input (rows of the dataset or classes from a snapshot)
+ * into contiguous ranges that are transformed and grouped by multiple threads. Each worker
+ * groups its partition into a private groupify operator. The partial results are merged in
+ * the order of the partitions, which yields exactly the same result as sequential processing.
+ * Roll-ups are performed sequentially.
+ * 
+ * @author Fabian Prasser
+ */
+public class TransformerParallel extends Transformer {
+
+    /** Minimal number of rows or classes that are processed by one worker */
+    private static final int     MIN_ITEMS_PER_WORKER = 5000;
+
+    /** The executor, created on demand */
+    private ExecutorService      executor;
+
+    /** The partial results of the workers */
+    private final HashGroupify[] partials;
+
+    /** The workers */
+    private final Transformer[]  workers;
+
+    /**
+     * Instantiates a new transformer.
+     *
+     * @param inputGeneralized
+     * @param inputAnalyzed
+     * @param dataAnalyzedNumberOfColumns
+     * @param dataAnalyzedDomainSizes
+     * @param hierarchies
+     * @param config
+     * @param dictionarySensValue
+     * @param dictionarySensFreq
+     * @param suppressedCodes
+     * @param initialSize
+     * @param numThreads
+     */
+    public TransformerParallel(final DataMatrix inputGeneralized,
+                               final DataMatrix inputAnalyzed,
+                               final int dataAnalyzedNumberOfColumns,
+                               final int[] dataAnalyzedDomainSizes,
+                               final GeneralizationHierarchy[] hierarchies,
+                               final ARXConfigurationInternal config,
+                               final IntArrayDictionary dictionarySensValue,
+                               final IntArrayDictionary dictionarySensFreq,
+                               final int[] suppressedCodes,
+                               final int initialSize,
+                               final int numThreads) {
+        
+        super(inputGeneralized,
+              inputAnalyzed,
+              dataAnalyzedNumberOfColumns,
+              hierarchies,
+              config,
+              dictionarySensValue,
+              dictionarySensFreq);
+        
+        if (numThreads <= 1) {
+            throw new IllegalArgumentException("Number of threads must be > 1");
+        }
+        
+        // Each worker operates on views, as matrices maintain row pointers
+        this.workers = new Transformer[numThreads];
+        this.partials = new HashGroupify[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            DataMatrix input = inputGeneralized.getView();
+            DataMatrix analyzed = inputAnalyzed != null ? inputAnalyzed.getView() : null;
+            DataMatrix output = outputGeneralized.getView();
+            this.workers[i] = new Transformer(input,
+                                              analyzed,
+                                              output,
+                                              dataAnalyzedNumberOfColumns,
+                                              hierarchies,
+                                              config,
+                                              dictionarySensValue,
+                                              dictionarySensFreq);
+            this.partials[i] = new HashGroupify(initialSize / numThreads,
+                                                config,
+                                                dataAnalyzedNumberOfColumns,
+                                                dataAnalyzedDomainSizes,
+                                                input,
+                                                output,
+                                                analyzed,
+                                                suppressedCodes);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+        for (HashGroupify partial : partials) {
+            partial.stateClear();
+        }
+    }
+
+    @Override
+    protected HashGroupify applyInternal(final long projection,
+                                         final int[] state,
+                                         final HashGroupify source,
+                                         final HashGroupify target,
+                                         final int[] snapshot,
+                                         final TransitionType transition) {
+
+        // Determine number of items to process
+        int items = 0;
+        switch (transition) {
+        case UNOPTIMIZED:
+            items = inputGeneralized.getNumRows();
+            break;
+        case SNAPSHOT:
+            items = SnapshotCompression.getNumberOfEntries(snapshot, config);
+            break;
+        default:
+            return super.applyInternal(projection, state, source, target, snapshot, transition);
+        }
+        
+        // Determine number of workers
+        int numWorkers = Math.min(workers.length, items / MIN_ITEMS_PER_WORKER);
+        if (numWorkers <= 1) {
+            return super.applyInternal(projection, state, source, target, snapshot, transition);
+        }
+        
+        // Start workers
+        if (executor == null) {
+            executor = ThreadPool.create("arx-transformer", workers.length);
+        }
+        List<Future<HashGroupify>> futures = new ArrayList<Future<HashGroupify>>();
+        for (int i = 0; i < numWorkers; i++) {
+            int startIndex = (int) ((long) items * i / numWorkers);
+            int stopIndex = (int) ((long) items * (i + 1) / numWorkers);
+            AbstractTransformer transformer = workers[i].getTransformer(projection);
+            transformer.init(projection,
+                             state,
+                             partials[i],
+                             null,
+                             snapshot,
+                             transition,
+                             startIndex,
+                             stopIndex,
+                             null,
+                             workers[i].getBuffer());
+            futures.add(executor.submit(transformer));
+        }
+        
+        // Merge partial results in order
+        target.stateClear();
+        try {
+            for (Future<HashGroupify> future : futures) {
+                target.addFromGroupify(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while transforming data", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while transforming data", e.getCause());
+        } finally {
+            for (Future<HashGroupify> future : futures) {
+                future.cancel(true);
+            }
+        }
+        
+        // Done
+        return target;
+    }
+}
@@ -23,7 +23,9 @@ import org.deidentifier.arx.framework.check.groupify.HashTableUtil;
 
 /**
  * This class can be utilized to track the distributions of values. It is backed by a hash table
- * implementing open addressing with linear probing.
+ * implementing open addressing with linear probing. Values from small domains are stored densely
+ * instead, i.e. each value is stored in the bucket with the index of its code. Both representations
+ * expose the same layout of buckets.
  * 
  * @author Fabian Prasser
  * @author Florian Kohlmayer
@@ -31,10 +33,17 @@ import org.deidentifier.arx.framework.check.groupify.HashTableUtil;
 public class Distribution {
 
     /** The load factor. */
-    private final static float LOADFACTOR       = 0.75f;
+    private final static float LOADFACTOR            = 0.75f;
 
     /** The initial default capacity of the hash table. */
-    private static final int   DEFAULT_CAPACITY = 8;    // power of two
+    private static final int   DEFAULT_CAPACITY      = 8;    // power of two
+
+    /**
+     * The maximal size of domains which are represented densely. Dense tables are iterated in the
+     * order of codes, hash tables are not, so consumers of {@link #getBuckets()} must not depend on
+     * the order of buckets.
+     */
+    private static final int   DENSE_MAX_DOMAIN_SIZE = 256;
 
     /** The size. */
     private int                size;
@@ -45,11 +54,24 @@ public class Distribution {
     /** The elements. Even index contains value, odd index contains frequency */
     private int[]              elements;
 
+    /** Whether values are stored densely */
+    private final boolean      dense;
+
     /**
      * Default constructor.
      */
     public Distribution() {
-        this(DEFAULT_CAPACITY);
+        this(DEFAULT_CAPACITY, false);
+    }
+
+    /**
+     * Creates a distribution for values from the domain [0, domainSize). Small domains
+     * are represented densely. A domain size of 0 indicates an unknown domain.
+     * 
+     * @param domainSize
+     */
+    public Distribution(final int domainSize) {
+        this(isDense(domainSize) ? domainSize : DEFAULT_CAPACITY, isDense(domainSize));
     }
 
     /**
@@ -59,26 +81,39 @@ public class Distribution {
      * @param frequency
      */
     public Distribution(final int[] element, final int[] frequency) {
-        this(element.length);
-        for (int i = 0; i < element.length; i++) {
-            if (element[i] != -1) {
-                this.add(element[i], frequency[i]);
-            }
-        }
+        this(element.length, false);
+        merge(element, frequency);
     }
 
     /**
      * Constructor using next power of two starting at capacity as initial
-     * capacity.
+     * capacity for hash tables, and exactly the given capacity for dense tables.
      * 
      * @param capacity
+     * @param dense
      */
-    private Distribution(int capacity) {
-        capacity = HashTableUtil.calculateCapacity(capacity);
-        size = 0;
-        elements = new int[capacity << 1];
-        Arrays.fill(elements, -1);
-        threshold = HashTableUtil.calculateThreshold(capacity, LOADFACTOR);
+    private Distribution(int capacity, boolean dense) {
+        this.dense = dense;
+        this.size = 0;
+        if (dense) {
+            this.elements = new int[capacity << 1];
+            this.clearDense();
+            this.threshold = Integer.MAX_VALUE;
+        } else {
+            capacity = HashTableUtil.calculateCapacity(capacity);
+            this.elements = new int[capacity << 1];
+            Arrays.fill(this.elements, -1);
+            this.threshold = HashTableUtil.calculateThreshold(capacity, LOADFACTOR);
+        }
+    }
+
+    /**
+     * Returns whether values from a domain with the given size are represented densely
+     * @param domainSize
+     * @return
+     */
+    private static boolean isDense(int domainSize) {
+        return domainSize > 0 && domainSize <= DENSE_MAX_DOMAIN_SIZE;
     }
 
     /**
@@ -98,6 +133,17 @@ public class Distribution {
      */
     public void add(final int element, final int value) {
 
+        // Direct addressing
+        if (dense) {
+            final int index = element << 1;
+            if (elements[index] == -1) {
+                elements[index] = element;
+                size++;
+            }
+            elements[index + 1] += value;
+            return;
+        }
+
         final int mask = (elements.length - 1);
         int index = (element & ((elements.length >> 1) - 1)) << 1; // start at home bucket
         while (true) {
@@ -124,7 +170,11 @@ public class Distribution {
      * Clears the table.
      */
     public void clear() {
-        Arrays.fill(elements, -1);
+        if (dense) {
+            clearDense();
+        } else {
+            Arrays.fill(elements, -1);
+        }
         size = 0;
     }
     
@@ -144,6 +194,20 @@ public class Distribution {
      */
     public void merge(final Distribution other) {
         final int[] otherElements = other.elements;
+        
+        // Both tables are dense: frequencies of empty buckets are zero
+        if (dense && other.dense && elements.length == otherElements.length) {
+            int size = 0;
+            for (int i = 0; i < elements.length; i += 2) {
+                final int element = Math.max(elements[i], otherElements[i]);
+                elements[i] = element;
+                elements[i + 1] += otherElements[i + 1];
+                size += (element >>> 31) ^ 1;
+            }
+            this.size = size;
+            return;
+        }
+        
         for (int i = 0; i < otherElements.length; i += 2) {
             if (otherElements[i] != -1) {
                 this.add(otherElements[i], otherElements[i + 1]);
@@ -212,6 +276,16 @@ public class Distribution {
         return builder.toString();
     }
 
+    /**
+     * Marks all buckets of a dense table as empty
+     */
+    private void clearDense() {
+        for (int i = 0; i < elements.length; i += 2) {
+            elements[i] = -1;
+            elements[i + 1] = 0;
+        }
+    }
+
     /**
      * Rehashes the frequency set table.
      */
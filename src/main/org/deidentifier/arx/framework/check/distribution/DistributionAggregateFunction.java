@@ -21,12 +21,11 @@ import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.stat.StatUtils;
 import org.deidentifier.arx.DataType;
 import org.deidentifier.arx.DataType.DataTypeWithRatioScale;
 
@@ -57,14 +56,11 @@ public abstract class DistributionAggregateFunction implements Serializable {
         /** SVUID. */
         private static final long               serialVersionUID = 8379579591466576517L;
 
-        /** Commons math object to calculate the statistic. */
-        private transient DescriptiveStatistics stats;
-
         /** Minimum */
-        private Double                          minimum          = null;
+        private Double            minimum          = null;
 
         /** Maximum */
-        private Double                          maximum          = null;
+        private Double            maximum          = null;
 
         /**
          * Instantiates.
@@ -91,13 +87,12 @@ public abstract class DistributionAggregateFunction implements Serializable {
 
         @Override
         public <T> String aggregate(Distribution distribution) {
-            stats.clear();
             @SuppressWarnings("unchecked")
             DataType<T> type = (DataType<T>)this.type;
             @SuppressWarnings("unchecked")
             DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>) this.type;
-            addAll(stats, distribution, rType, 0d);
-            return stats.getN() == 0 ? DataType.NULL_VALUE : type.format(rType.fromDouble(stats.getMean()));
+            double[] values = getValues(distribution, 0d);
+            return values.length == 0 ? DataType.NULL_VALUE : type.format(rType.fromDouble(StatUtils.mean(values)));
         }
 
         /**
@@ -115,17 +110,13 @@ public abstract class DistributionAggregateFunction implements Serializable {
 
         @Override
         public <T> double getError(Distribution distribution) {
-            stats.clear();
-            @SuppressWarnings("unchecked")
-            DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>) this.type;
-            addAll(stats, distribution, rType, 0d);
-            return getNMSE(minimum, maximum, stats.getValues(), stats.getMean());
+            double[] values = getValues(distribution, 0d);
+            return getNMSE(minimum, maximum, values, StatUtils.mean(values));
         }
 
         @Override
         public void initialize(String[] dictionary, DataType<?> type) {
             super.initialize(dictionary, type);
-            this.stats = new DescriptiveStatistics();
             if (minimum == null || maximum == null) {
                 double[] values = getMinMax(dictionary, (DataTypeWithRatioScale<?>)type);
                 this.minimum = values[0];
@@ -145,14 +136,11 @@ public abstract class DistributionAggregateFunction implements Serializable {
         /** SVUID. */
         private static final long               serialVersionUID = -3835477735362966307L;
 
-        /** Commons math object to calculate the statistic. */
-        private transient DescriptiveStatistics stats;
-
         /** Minimum */
-        private Double                          minimum          = null;
+        private Double            minimum          = null;
 
         /** Maximum */
-        private Double                          maximum          = null;
+        private Double            maximum          = null;
 
         /**
          * Instantiates.
@@ -179,13 +167,12 @@ public abstract class DistributionAggregateFunction implements Serializable {
 
         @Override
         public <T> String aggregate(Distribution distribution) {
-            stats.clear();
             @SuppressWarnings("unchecked")
             DataType<T> type = (DataType<T>)this.type;
             @SuppressWarnings("unchecked")
             DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>) this.type;
-            addAll(stats, distribution, rType, 1d);
-            return stats.getN() == 0 ? DataType.NULL_VALUE : type.format(rType.fromDouble(stats.getGeometricMean() - 1d));
+            double[] values = getValues(distribution, 1d);
+            return values.length == 0 ? DataType.NULL_VALUE : type.format(rType.fromDouble(StatUtils.geometricMean(values) - 1d));
         }
 
         /**
@@ -204,17 +191,13 @@ public abstract class DistributionAggregateFunction implements Serializable {
 
         @Override
         public <T> double getError(Distribution distribution) {
-            stats.clear();
-            @SuppressWarnings("unchecked")
-            DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>) this.type;
-            addAll(stats, distribution, rType, 1d);
-            return getNMSE(minimum, maximum, stats.getValues(), stats.getGeometricMean() - 1d);
+            double[] values = getValues(distribution, 1d);
+            return getNMSE(minimum, maximum, values, StatUtils.geometricMean(values) - 1d);
         }
         
         @Override
         public void initialize(String[] dictionary, DataType<?> type) {
             super.initialize(dictionary, type);
-            this.stats = new DescriptiveStatistics();
             if (minimum == null || maximum == null) {
                 double[] values = getMinMax(dictionary, (DataTypeWithRatioScale<?>)type);
                 this.minimum = values[0];
@@ -256,7 +239,8 @@ public abstract class DistributionAggregateFunction implements Serializable {
             for (int i = 0; i < buckets.length; i += 2) {
                 int value = buckets[i];
                 if (value != -1) {
-                    T valT = type.parse(dictionary[value]);
+                    @SuppressWarnings("unchecked")
+                    T valT = (T) parsedValues[value];
                     if (minT == null || type.compare(valT, minT) < 0 ) {
                         minT = valT;
                     }
@@ -285,6 +269,12 @@ public abstract class DistributionAggregateFunction implements Serializable {
         public <T> double getError(Distribution distribution) {
             return getInformationLoss(distribution);
         }
+
+        @Override
+        public void initialize(String[] dictionary, DataType<?> type) {
+            super.initialize(dictionary, type);
+            this.parsedValues = parse(dictionary, type);
+        }
     }
 
     /**
@@ -344,7 +334,9 @@ public abstract class DistributionAggregateFunction implements Serializable {
                 int value = buckets[i];
                 if (value != -1) {
                     int frequency = buckets[i + 1];
-                    values.add(type.parse(dictionary[value]));
+                    @SuppressWarnings("unchecked")
+                    T parsed = (T) parsedValues[value];
+                    values.add(parsed);
                     frequencies.add(frequency);
                 }
             }
@@ -416,15 +408,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
             
             @SuppressWarnings("unchecked")
             DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>) this.type;
-            DoubleArrayList list = new DoubleArrayList();
-            Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, dictionary, rType);
-            while (it.hasNext()) {
-                Double value = it.next();
-                value = value == null ? (ignoreMissingData ? null : 0d) : value;
-                if (value != null) {
-                    list.add(value);
-                }
-            }
+            double[] values = getValues(distribution, 0d);
             
             // Determine and check mode
             String mean = aggregate(distribution);
@@ -433,13 +417,13 @@ public abstract class DistributionAggregateFunction implements Serializable {
             }
             
             // Compute error
-            return getNMSE(minimum, maximum, Arrays.copyOf(list.elements(), list.size()), 
-                                             rType.toDouble(rType.parse(mean)));
+            return getNMSE(minimum, maximum, values, rType.toDouble(rType.parse(mean)));
         }
         
         @Override
         public void initialize(String[] dictionary, DataType<?> type) {
             super.initialize(dictionary, type);
+            this.parsedValues = parse(dictionary, type);
             if (type instanceof DataTypeWithRatioScale) {
                 if (minimum == null || maximum == null) {
                     double[] values = getMinMax(dictionary, (DataTypeWithRatioScale<?>)type);
@@ -536,15 +520,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
             
             @SuppressWarnings("unchecked")
             DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>) this.type;
-            DoubleArrayList list = new DoubleArrayList();
-            Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, dictionary, rType);
-            while (it.hasNext()) {
-                Double value = it.next();
-                value = value == null ? (ignoreMissingData ? null : 0d) : value;
-                if (value != null) {
-                    list.add(value);
-                }
-            }
+            double[] values = getValues(distribution, 0d);
             
             // Determine and check mode
             int mode = getMode(distribution);
@@ -553,8 +529,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
             }
             
             // Compute error
-            return getNMSE(minimum, maximum, Arrays.copyOf(list.elements(), list.size()), 
-                                             rType.toDouble(rType.parse(dictionary[mode])));
+            return getNMSE(minimum, maximum, values, rType.toDouble(rType.parse(dictionary[mode])));
         }
 
         @Override
@@ -579,7 +554,8 @@ public abstract class DistributionAggregateFunction implements Serializable {
             for (int i = 0; i < buckets.length; i += 2) {
                 int value = buckets[i];
                 int frequency = buckets[i + 1];
-                if (value != -1 && frequency > max) {
+                // Ties are broken by code, independently of the order of buckets
+                if (value != -1 && (frequency > max || (frequency == max && value < mode))) {
                     max = frequency;
                     mode = value;
                 }
@@ -664,6 +640,11 @@ public abstract class DistributionAggregateFunction implements Serializable {
             return mode == -1 ? DataType.NULL_VALUE : dictionary[mode];
         }
 
+        @Override
+        public boolean isStateful() {
+            return true;
+        }
+
         /**
          * Clone method
          */
@@ -688,15 +669,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
             
             @SuppressWarnings("unchecked")
             DataTypeWithRatioScale<T> rType = (DataTypeWithRatioScale<T>) this.type;
-            DoubleArrayList list = new DoubleArrayList();
-            Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, dictionary, rType);
-            while (it.hasNext()) {
-                Double value = it.next();
-                value = value == null ? (ignoreMissingData ? null : 0d) : value;
-                if (value != null) {
-                    list.add(value);
-                }
-            }
+            double[] values = getValues(distribution, 0d);
             
             // Determine and check mode
             int mode = getModeWithDistributionFallback(distribution);
@@ -705,8 +678,7 @@ public abstract class DistributionAggregateFunction implements Serializable {
             }
             
             // Compute error
-            return getNMSE(minimum, maximum, Arrays.copyOf(list.elements(), list.size()), 
-                                             rType.toDouble(rType.parse(dictionary[mode])));
+            return getNMSE(minimum, maximum, values, rType.toDouble(rType.parse(dictionary[mode])));
         }
 
         @Override
@@ -758,6 +730,9 @@ public abstract class DistributionAggregateFunction implements Serializable {
                 }
             }
             
+            // Order by code, independently of the order of buckets
+            Arrays.sort(mode.buffer, 0, mode.size());
+            
             // Weird
             if (mode.isEmpty()) {
             	return -1;
@@ -885,6 +860,15 @@ public abstract class DistributionAggregateFunction implements Serializable {
     /** Type */
     protected transient DataType<?> type;
 
+    /** Values from the dictionary parsed into doubles. Only available for numeric type-preserving functions */
+    protected transient double[]    numericValues;
+
+    /** Flags indicating which values from the dictionary are missing. Only available for numeric type-preserving functions */
+    protected transient boolean[]   numericValuesMissing;
+
+    /** Values from the dictionary parsed with the data type. Only available for functions that compare values */
+    protected transient Object[]    parsedValues;
+
     /**
      * Instantiates a new function.
      * 
@@ -947,6 +931,19 @@ public abstract class DistributionAggregateFunction implements Serializable {
     public void initialize(String[] dictionary, DataType<?> type) {
         this.dictionary = dictionary;
         this.type = type;
+        
+        // Type-preserving functions work on numeric values, which are parsed only once
+        if (typePreserving && type instanceof DataTypeWithRatioScale) {
+            @SuppressWarnings("unchecked")
+            DataTypeWithRatioScale<Object> rType = (DataTypeWithRatioScale<Object>) type;
+            this.numericValues = new double[dictionary.length];
+            this.numericValuesMissing = new boolean[dictionary.length];
+            for (int i = 0; i < dictionary.length; i++) {
+                Double value = rType.toDouble(rType.parse(dictionary[i]));
+                this.numericValues[i] = value == null ? 0d : value;
+                this.numericValuesMissing[i] = value == null;
+            }
+        }
     }
     
     /**
@@ -966,24 +963,50 @@ public abstract class DistributionAggregateFunction implements Serializable {
     }
     
     /**
-     * Adds all values from the distribution to the given descriptive statistics object
-     * @param statistics
+     * Returns whether this function maintains state across calls to aggregate(), e.g. a source of
+     * randomness. Results of such functions depend on the order in which distributions are aggregated
+     * and instances must not be used by multiple threads concurrently. Other functions are thread-safe
+     * after they have been initialized.
+     * 
+     * @return
+     */
+    public boolean isStateful() {
+        return false;
+    }
+
+    /**
+     * Returns all numeric values from the distribution, each repeated according to its frequency.
+     * Missing values are ignored or treated as zero.
+     * 
      * @param distribution
-     * @param type
      * @param offset will be added to values
+     * @return
      */
-    protected <T> void addAll(DescriptiveStatistics statistics, 
-                           Distribution distribution,
-                           DataTypeWithRatioScale<T> type,
-                           double offset) {
-        Iterator<Double> it = DistributionIterator.createIteratorDouble(distribution, dictionary, type);
-        while (it.hasNext()) {
-            Double value = it.next();
-            value = value == null ? (ignoreMissingData ? null : 0d) : value;
-            if (value != null) {
-                statistics.addValue(value + offset);
+    protected double[] getValues(Distribution distribution, double offset) {
+        
+        // Determine size
+        int[] buckets = distribution.getBuckets();
+        int size = 0;
+        for (int i = 0; i < buckets.length; i += 2) {
+            int value = buckets[i];
+            if (value != -1 && (!ignoreMissingData || !numericValuesMissing[value])) {
+                size += buckets[i + 1];
             }
         }
+        
+        // Collect
+        double[] result = new double[size];
+        int offsetResult = 0;
+        for (int i = 0; i < buckets.length; i += 2) {
+            int value = buckets[i];
+            if (value != -1 && (!ignoreMissingData || !numericValuesMissing[value])) {
+                int frequency = buckets[i + 1];
+                double numeric = (numericValuesMissing[value] ? 0d : numericValues[value]) + offset;
+                Arrays.fill(result, offsetResult, offsetResult + frequency, numeric);
+                offsetResult += frequency;
+            }
+        }
+        return result;
     }
 
     /**
@@ -1009,6 +1032,20 @@ public abstract class DistributionAggregateFunction implements Serializable {
         return new double[]{_min, _max};
     }
 
+    /**
+     * Parses all values from the dictionary
+     * @param dictionary
+     * @param type
+     * @return
+     */
+    protected Object[] parse(String[] dictionary, DataType<?> type) {
+        Object[] result = new Object[dictionary.length];
+        for (int i = 0; i < dictionary.length; i++) {
+            result[i] = type.parse(dictionary[i]);
+        }
+        return result;
+    }
+
     /**
      * Calculates the mean square error after normalizing everything into [0,1]
      * 
@@ -17,8 +17,17 @@
 
 package org.deidentifier.arx.framework.check.groupify;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import org.deidentifier.arx.ARXConfiguration.ARXConfigurationInternal;
 import org.deidentifier.arx.RowSet;
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.criteria.DPresence;
 import org.deidentifier.arx.criteria.Inclusion;
 import org.deidentifier.arx.criteria.PrivacyCriterion;
@@ -35,22 +44,38 @@ import org.deidentifier.arx.metric.Metric;
 import com.carrotsearch.hppc.ObjectIntOpenHashMap;
 
 /**
- * A hash groupify operator. It implements a hash table with chaining and keeps
- * track of additional properties per equivalence class
+ * A hash groupify operator. It implements a hash table with open addressing and keeps
+ * track of additional properties per equivalence class. The table itself only consists of
+ * primitive arrays. Entries are allocated once and reused after the operator has been cleared.
  * 
  * @author Fabian Prasser
  * @author Florian Kohlmayer
  */
 public class HashGroupify {
 
+    /** Minimal number of classes checked by one task when class-based criteria are evaluated in parallel */
+    private static final int             ANALYSIS_MIN_BLOCK_SIZE         = 256;
+
+    /** Minimal number of classes aggregated by one task when microaggregation is performed in parallel */
+    private static final int             MICROAGGREGATION_MIN_BLOCK_SIZE = 1024;
+
     /** Criteria. */
     private final PrivacyCriterion[]     classBasedCriteria;
 
+    /** Whether all class-based criteria support being evaluated concurrently */
+    private final boolean                classBasedCriteriaConcurrent;
+
     /** The current number of outliers. */
     private int                          currentNumOutliers;
 
-    /** The entry array. */
-    private HashGroupifyEntry[]          hashTableBuckets;
+    /** The entries, in the order in which they have been added. Reused after clearing. */
+    private HashGroupifyEntry[]          hashTableEntries;
+
+    /** The hash codes of the entries stored in each slot. */
+    private int[]                        hashTableHashes;
+
+    /** The index of the entry stored in each slot plus one, zero if the slot is empty. */
+    private int[]                        hashTableSlots;
 
     /** Current number of elements. */
     private int                          hashTableElementCount;
@@ -106,18 +131,29 @@ public class HashGroupify {
     /** Number of columns (from index 0) that need to be analyzed in hot-mode */
     private final int                    dataAnalyzedNumberOfColumns;
 
+    /** Domain sizes of columns that need to be analyzed, 0 if unknown. May be null */
+    private final int[]                  dataAnalyzedDomainSizes;
+
     /** Suppressed codes */
     private final int[]                  suppressedCodes;
     
     /** Hash code of fully generalized records*/
     private final int                    suppressedHashCode;
 
+    /** Number of threads used for evaluating class-based criteria */
+    private final int                    numThreads;
+
+    /** The executor, created on demand */
+    private ExecutorService              executor;
+
     /**
      * Constructs a new hash groupify operator.
      *
      * @param capacity The capacity
      * @param aggregation The aggregation information
      * @param config The config
+     * @param dataAnalyzedNumberOfColumns
+     * @param dataAnalyzedDomainSizes Domain sizes used to choose representations of distributions, may be null
      * @param input
      * @param output
      * @param analyzed
@@ -126,24 +162,55 @@ public class HashGroupify {
     public HashGroupify(int capacity, 
                         ARXConfigurationInternal config,
                         int dataAnalyzedNumberOfColumns,
+                        int[] dataAnalyzedDomainSizes,
                         DataMatrix input,
                         DataMatrix output,
                         DataMatrix analyzed,
                         int[] suppressedCodes) {
+        this(capacity, config, dataAnalyzedNumberOfColumns, dataAnalyzedDomainSizes, input, output, analyzed, suppressedCodes, 1);
+    }
+
+    /**
+     * Constructs a new hash groupify operator, which evaluates class-based criteria
+     * in parallel, if they support it. Call shutdown() to release the threads.
+     *
+     * @param capacity The capacity
+     * @param config The config
+     * @param dataAnalyzedNumberOfColumns
+     * @param dataAnalyzedDomainSizes Domain sizes used to choose representations of distributions, may be null
+     * @param input
+     * @param output
+     * @param analyzed
+     * @param suppressedCodes
+     * @param numThreads The number of threads used for evaluating class-based criteria
+     */
+    public HashGroupify(int capacity, 
+                        ARXConfigurationInternal config,
+                        int dataAnalyzedNumberOfColumns,
+                        int[] dataAnalyzedDomainSizes,
+                        DataMatrix input,
+                        DataMatrix output,
+                        DataMatrix analyzed,
+                        int[] suppressedCodes,
+                        int numThreads) {
         
         // Store
         this.dataInput = input;
         this.dataOutput = output;
         this.dataAnalyzed = analyzed;
         this.dataAnalyzedNumberOfColumns = dataAnalyzedNumberOfColumns;
+        this.dataAnalyzedDomainSizes = dataAnalyzedDomainSizes;
         this.suppressedCodes = suppressedCodes;
         this.suppressedHashCode = dataOutput.hashCode(suppressedCodes);
+        this.numThreads = numThreads;
         
         // Set capacity
         capacity = HashTableUtil.calculateCapacity(capacity);
         this.hashTableElementCount = 0;
-        this.hashTableBuckets = new HashGroupifyEntry[capacity];
-        this.hashTableThreshold = HashTableUtil.calculateThreshold(hashTableBuckets.length, hashTableLoadFactor);
+        this.hashTableSlots = new int[capacity];
+        this.hashTableHashes = new int[capacity];
+        this.hashTableThreshold = HashTableUtil.calculateThreshold(hashTableSlots.length, hashTableLoadFactor);
+        this.hashTableEntries = new HashGroupifyEntry[Math.max(1, hashTableThreshold)];
         
         // Set params
         this.currentNumOutliers = 0;
@@ -173,6 +240,13 @@ public class HashGroupify {
         
         // Remember, if (real) d-presence is part of the criteria that must be enforced
         privacyModelContainsDPresence = (classBasedCriteria.length > 0 && (classBasedCriteria[0] instanceof DPresence) && !(classBasedCriteria[0] instanceof Inclusion));
+        
+        // Remember, if criteria may be evaluated concurrently
+        boolean concurrent = true;
+        for (PrivacyCriterion criterion : classBasedCriteria) {
+            concurrent &= criterion.isConcurrentEvaluationSupported();
+        }
+        this.classBasedCriteriaConcurrent = concurrent;
     }
     
     /**
@@ -196,7 +270,7 @@ public class HashGroupify {
                 
                 // TODO: Improve!
                 for (int i = 0; i < entry.distributions.length; i++) {
-                    entry.distributions[i] = new Distribution();
+                    entry.distributions[i] = new Distribution(getDomainSize(i));
                 }
             }
             
@@ -240,6 +314,21 @@ public class HashGroupify {
         }
     }
     
+    /**
+     * Adds all classes from another groupify operator, in the order in which they
+     * have been added to the other operator. If the other operator has been built from 
+     * a partition of the data, merging the operators of all partitions in the order 
+     * of the partitions yields the same result as grouping the complete data at once.
+     * @param source
+     */
+    public void addFromGroupify(HashGroupify source) {
+        HashGroupifyEntry entry = source.hashTableFirstEntry;
+        while (entry != null) {
+            addFromGroupify(entry.row, entry.distributions, entry.representative, entry.count, entry.pcount);
+            entry = entry.nextOrdered;
+        }
+    }
+    
     /**
      * Adds a class from a snapshot
      * @param generalized
@@ -282,12 +371,18 @@ public class HashGroupify {
      */
     public HashGroupifyEntry getEntry(int[] tuple) {
         final int hash = dataOutput.hashCode(tuple);
-        int index = hash & (hashTableBuckets.length - 1);
-        HashGroupifyEntry m = hashTableBuckets[index];
-        while ((m != null) && ((m.hashcode != hash) || !dataOutput.equals(m.row, tuple))) {
-            m = m.next;
+        final int mask = hashTableSlots.length - 1;
+        int index = HashTableUtil.mix(hash) & mask;
+        while (hashTableSlots[index] != 0) {
+            if (hashTableHashes[index] == hash) {
+                HashGroupifyEntry entry = hashTableEntries[hashTableSlots[index] - 1];
+                if (dataOutput.equals(entry.row, tuple)) {
+                    return entry;
+                }
+            }
+            index = (index + 1) & mask;
         }
-        return m;
+        return null;
     }
     
     /**
@@ -341,6 +436,16 @@ public class HashGroupify {
         return true;
     }
 
+    /**
+     * Returns whether the privacy model may be analyzed by several operators concurrently,
+     * i.e. whether all class-based criteria support concurrent evaluation and there are no
+     * sample-based criteria
+     * @return
+     */
+    public boolean isConcurrentAnalysisSupported() {
+        return classBasedCriteriaConcurrent && sampleBasedCriteria.length == 0;
+    }
+
     /**
      * Returns whether the current state of the dataset fulfills the minimal class-size property
      * @return
@@ -365,38 +470,79 @@ public class HashGroupify {
      */
     public Data performMicroaggregation(DataAggregationInformation microaggregationData,
                                         Dictionary dictionary) {
+        return performMicroaggregation(microaggregationData, dictionary, 1);
+    }
+
+    /**
+     * Returns a data object with microaggregation performed. Aggregates are computed once per
+     * equivalence class and attribute, in parallel if more than one thread is used. Functions
+     * which are stateful are always evaluated sequentially, in the order in which classes first
+     * occur in the dataset, so that results do not depend on the number of threads.
+     * 
+     * @param microaggregationData
+     * @param dictionary
+     * @param numThreads
+     * @return
+     */
+    public Data performMicroaggregation(DataAggregationInformation microaggregationData,
+                                        Dictionary dictionary,
+                                        int numThreads) {
         
         // Initialize
-        int[] indices = microaggregationData.getMicroaggregationIndices();
-        DistributionAggregateFunction[] functions = microaggregationData.getMicroaggregationFunctions();
+        final int[] indices = microaggregationData.getMicroaggregationIndices();
+        final DistributionAggregateFunction[] functions = microaggregationData.getMicroaggregationFunctions();
         String[] header = microaggregationData.getMicroaggregationHeader();
         int[] columns = microaggregationData.getMicroaggregationColumns();
         
         // Prepare result
         Data result = Data.createWrapper(new DataMatrix(dataOutput.getNumRows(), indices.length), header, columns, dictionary);
 
+        // Collect classes in the order in which they occur
         // TODO: To improve performance, microaggregation and marking of outliers could be performed in one pass
-        ObjectIntOpenHashMap<Distribution> cache = new ObjectIntOpenHashMap<Distribution>();
+        final List<HashGroupifyEntry> classes = new ArrayList<HashGroupifyEntry>();
+        ObjectIntOpenHashMap<HashGroupifyEntry> classIndices = new ObjectIntOpenHashMap<HashGroupifyEntry>();
+        int[] rowToClass = new int[dataOutput.getNumRows()];
         for (int row = 0; row < dataOutput.getNumRows(); row++) {
             if (privacyModelDefinesSubset == null || privacyModelDefinesSubset.contains(row)) {
-                final int hash = dataOutput.hashCode(row);
-                final int index = hash & (hashTableBuckets.length - 1);
-                HashGroupifyEntry m = hashTableBuckets[index];
-                while ((m != null) && ((m.hashcode != hash) || !dataOutput.equalsIgnoringOutliers(row, m.row))) {
-                    m = m.next;
-                }
+                HashGroupifyEntry m = findEntryIgnoringOutliers(row);
                 if (m == null) { throw new RuntimeException("Invalid state! Groupify the data before performing microaggregation!"); }
+                int index = classIndices.getOrDefault(m, -1);
+                if (index == -1) {
+                    index = classes.size();
+                    classes.add(m);
+                    classIndices.put(m, index);
+                }
+                rowToClass[row] = index;
+            } else {
+                rowToClass[row] = -1;
+            }
+        }
+        
+        // Aggregate
+        final String[][] values = new String[indices.length][classes.size()];
+        if (numThreads <= 1 || classes.size() <= 1) {
+            boolean[] attributes = new boolean[indices.length];
+            Arrays.fill(attributes, true);
+            aggregate(classes, indices, functions, attributes, values, 0, classes.size());
+        } else {
+            performMicroaggregationParallel(classes, indices, functions, values, numThreads);
+        }
+
+        // Encode in the order in which classes occur
+        int[][] codes = new int[indices.length][classes.size()];
+        for (int index = 0; index < classes.size(); index++) {
+            for (int i = 0; i < indices.length; i++) {
+                codes[i][index] = result.getDictionary().register(i, values[i][index]);
+            }
+        }
+        
+        // Write
+        for (int row = 0; row < dataOutput.getNumRows(); row++) {
+            int index = rowToClass[row];
+            if (index != -1) {
                 result.getArray().iterator(row);
                 for (int i = 0; i < indices.length; i++) {
-                    int columnIndex = indices[i];
-                    Distribution distribution = m.distributions[columnIndex];
-                    int code = cache.getOrDefault(distribution, -1);
-                    if (code == -1) {
-                        String value = functions[i].aggregate(distribution);
-                        code = result.getDictionary().register(i, value);
-                        cache.put(distribution, code);
-                    }
-                    result.getArray().iterator_write(code);
+                    result.getArray().iterator_write(codes[i][index]);
                 }
             }
         }
@@ -418,12 +564,7 @@ public class HashGroupify {
         
         for (int row = 0; row < dataOutput.getNumRows(); row++) {
             if (privacyModelDefinesSubset == null || privacyModelDefinesSubset.contains(row)) {
-                final int hash = dataOutput.hashCode(row);
-                final int index = hash & (hashTableBuckets.length - 1);
-                HashGroupifyEntry m = hashTableBuckets[index];
-                while ((m != null) && ((m.hashcode != hash) || !dataOutput.equalsIgnoringOutliers(row, m.row))) {
-                    m = m.next;
-                }
+                HashGroupifyEntry m = findEntryIgnoringOutliers(row);
                 if (m == null) {
                     throw new RuntimeException("Invalid state! Group the data before suppressing records!");
                 }
@@ -437,6 +578,16 @@ public class HashGroupify {
         }
     }
 
+    /**
+     * Releases the threads used for evaluating class-based criteria, if any
+     */
+    public void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+    }
+
     /**
      * Analyzes the current state
      * @param transformation
@@ -456,7 +607,7 @@ public class HashGroupify {
             this.currentNumOutliers = 0;
             this.hashTableFirstEntry = null;
             this.hashTableLastEntry = null;
-            HashTableUtil.nullifyArray(hashTableBuckets);
+            Arrays.fill(hashTableSlots, 0);
         }
     }
     
@@ -485,12 +636,14 @@ public class HashGroupify {
     private HashGroupifyEntry addInternal(final int generalized, final int hash, final int representative, int count, final int pcount) {
         
         // Find or create entry
-        int index = hash & (hashTableBuckets.length - 1);
-        HashGroupifyEntry entry = findEntry(generalized, index, hash);
-        if (entry == null) {
+        int index = findSlot(generalized, hash);
+        HashGroupifyEntry entry;
+        if (hashTableSlots[index] != 0) {
+            entry = hashTableEntries[hashTableSlots[index] - 1];
+        } else {
             if (++hashTableElementCount > hashTableThreshold) {
                 rehash();
-                index = hash & (hashTableBuckets.length - 1);
+                index = findSlot(generalized, hash);
             }
             entry = createEntry(generalized, index, hash, representative);
         }
@@ -545,6 +698,33 @@ public class HashGroupify {
         return entry;
     }
     
+    /**
+     * Computes aggregates for the given range of classes and the given attributes
+     * @param classes
+     * @param indices
+     * @param functions
+     * @param attributes
+     * @param values
+     * @param from
+     * @param to
+     */
+    private void aggregate(List<HashGroupifyEntry> classes,
+                           int[] indices,
+                           DistributionAggregateFunction[] functions,
+                           boolean[] attributes,
+                           String[][] values,
+                           int from,
+                           int to) {
+        for (int index = from; index < to; index++) {
+            Distribution[] distributions = classes.get(index).distributions;
+            for (int i = 0; i < indices.length; i++) {
+                if (attributes[i]) {
+                    values[i][index] = functions[i].aggregate(distributions[indices[i]]);
+                }
+            }
+        }
+    }
+
     /**
      * Analyzes the content of the hash table. Checks the privacy criteria against each class.
      * @param transformation
@@ -554,14 +734,22 @@ public class HashGroupify {
         // We have only checked k-anonymity so far
         minimalClassSizeFulfilled = (currentNumOutliers <= suppressionLimit);
         
+        // Check classes in parallel, if possible
+        int[] results = null;
+        if (isClassBasedAnalysisParallel()) {
+            results = new int[hashTableElementCount];
+            analyzeClassBasedCriteria(transformation, results, 0, hashTableElementCount);
+        }
+
         // Iterate over all classes
         boolean dpresent = true;
         currentNumOutliers = 0;
         HashGroupifyEntry entry = hashTableFirstEntry;
+        int index = 0;
         while (entry != null) {
             
             // Check for anonymity
-            int anonymous = isPrivacyModelFulfilled(transformation, entry);
+            int anonymous = results != null ? results[index++] : isPrivacyModelFulfilled(transformation, entry);
             
             // Determine outliers
             if (anonymous != -1) {
@@ -589,6 +777,60 @@ public class HashGroupify {
         this.privacyModelFulfilled = (currentNumOutliers <= suppressionLimit) && dpresent;
     }
     
+    /**
+     * Checks class-based criteria for the classes in the given range in parallel. The results are
+     * stored in the order of the classes and are accounted for sequentially by the caller, which
+     * yields exactly the same suppression as checking the classes sequentially.
+     *
+     * @param transformation
+     * @param results The results of isPrivacyModelFulfilled(transformation, entry)
+     * @param from First class, inclusive
+     * @param to Last class, exclusive
+     */
+    private void analyzeClassBasedCriteria(final Transformation<?> transformation,
+                                           final int[] results,
+                                           final int from,
+                                           final int to) {
+
+        // Entries are stored in the order of the list of classes
+        final HashGroupifyEntry[] classes = hashTableEntries;
+        final int numClasses = to - from;
+        int numTasks = Math.max(1, Math.min(numThreads, numClasses / ANALYSIS_MIN_BLOCK_SIZE));
+
+        // Start tasks
+        if (executor == null) {
+            executor = ThreadPool.create("arx-analysis", numThreads);
+        }
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        try {
+            for (int i = 0; i < numTasks; i++) {
+                final int blockFrom = from + (int) ((long) numClasses * i / numTasks);
+                final int blockTo = from + (int) ((long) numClasses * (i + 1) / numTasks);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int j = blockFrom; j < blockTo; j++) {
+                            results[j] = isPrivacyModelFulfilled(transformation, classes[j]);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while checking privacy models", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while checking privacy models", e.getCause());
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
     /**
      * Analyze sample-based criteria
      * @param transformation
@@ -644,13 +886,27 @@ public class HashGroupify {
             return;
         }
         
+        // Check classes in parallel, if possible. Classes are checked in rounds of increasing
+        // size, so that an early abort wastes at most the work of the current round
+        int[] results = isClassBasedAnalysisParallel() ? new int[hashTableElementCount] : null;
+        int round = numThreads * ANALYSIS_MIN_BLOCK_SIZE;
+        int analyzed = 0;
+
         // Iterate over all classes
         currentNumOutliers = 0;
         HashGroupifyEntry entry = hashTableFirstEntry;
+        int index = 0;
         while (entry != null) {
-            
+
+            // Check next round of classes in parallel
+            if (results != null && index == analyzed) {
+                analyzed = (int) Math.min((long) hashTableElementCount, (long) analyzed + round);
+                analyzeClassBasedCriteria(transformation, results, index, analyzed);
+                round = (int) Math.min((long) round * 2, Integer.MAX_VALUE);
+            }
+
             // Check for anonymity
-            int anonymous = isPrivacyModelFulfilled(transformation, entry);
+            int anonymous = results != null ? results[index++] : isPrivacyModelFulfilled(transformation, entry);
             
             // Determine outliers
             if (anonymous != -1) {
@@ -689,12 +945,12 @@ public class HashGroupify {
     }
 
     /**
-     * Creates a new entry.
+     * Creates a new entry or reuses an entry which has been created before the table has been cleared.
      * 
      * @param row
      *            the row
      * @param index
-     *            the index
+     *            the index of the slot
      * @param hash
      *            the hash
      * @param line
@@ -702,10 +958,24 @@ public class HashGroupify {
      * @return the hash groupify entry
      */
     private HashGroupifyEntry createEntry(final int row, final int index, final int hash, final int line) {
-        final HashGroupifyEntry entry = new HashGroupifyEntry(this.dataOutput, row, hash);
-        entry.next = hashTableBuckets[index];
+        
+        // Obtain entry
+        final int position = hashTableElementCount - 1;
+        if (position == hashTableEntries.length) {
+            hashTableEntries = Arrays.copyOf(hashTableEntries, hashTableEntries.length << 1);
+        }
+        HashGroupifyEntry entry = hashTableEntries[position];
+        if (entry == null) {
+            entry = new HashGroupifyEntry(this.dataOutput, row, hash);
+            hashTableEntries[position] = entry;
+        } else {
+            entry.reset(row, hash);
+        }
+        
+        // Store
         entry.representative = line;
-        hashTableBuckets[index] = entry;
+        hashTableSlots[index] = position + 1;
+        hashTableHashes[index] = hash;
         if (hashTableFirstEntry == null) {
             hashTableFirstEntry = entry;
             hashTableLastEntry = entry;
@@ -717,22 +987,66 @@ public class HashGroupify {
     }
 
     /**
-     * Returns the according entry.
+     * Returns the entry for the given row, ignoring the outlier flag.
      * 
      * @param row
      *            the row
-     * @param index
-     *            the index
-     * @param keyHash
-     *            the key hash
-     * @return the hash groupify entry
+     * @return the hash groupify entry, null if there is none
      */
-    private HashGroupifyEntry findEntry(final int row, final int index, final int keyHash) {
-        HashGroupifyEntry m = hashTableBuckets[index];
-        while ((m != null) && ((m.hashcode != keyHash) || !dataOutput.equals(row, m.row))) {
-            m = m.next;
+    private HashGroupifyEntry findEntryIgnoringOutliers(final int row) {
+        final int hash = dataOutput.hashCode(row);
+        final int mask = hashTableSlots.length - 1;
+        int index = HashTableUtil.mix(hash) & mask;
+        while (hashTableSlots[index] != 0) {
+            if (hashTableHashes[index] == hash) {
+                HashGroupifyEntry entry = hashTableEntries[hashTableSlots[index] - 1];
+                if (dataOutput.equalsIgnoringOutliers(row, entry.row)) {
+                    return entry;
+                }
+            }
+            index = (index + 1) & mask;
         }
-        return m;
+        return null;
+    }
+
+    /**
+     * Returns the slot which contains the entry for the given row or the empty slot at
+     * which it must be inserted.
+     * 
+     * @param row
+     *            the row
+     * @param hash
+     *            the hash
+     * @return the index of the slot
+     */
+    private int findSlot(final int row, final int hash) {
+        final int mask = hashTableSlots.length - 1;
+        int index = HashTableUtil.mix(hash) & mask;
+        while (hashTableSlots[index] != 0) {
+            if (hashTableHashes[index] == hash && dataOutput.equals(row, hashTableEntries[hashTableSlots[index] - 1].row)) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the domain size of the given analyzed column, 0 if unknown
+     * @param column
+     * @return
+     */
+    private int getDomainSize(int column) {
+        return dataAnalyzedDomainSizes == null ? 0 : dataAnalyzedDomainSizes[column];
+    }
+
+    /**
+     * Returns whether class-based criteria should be checked in parallel
+     * @return
+     */
+    private boolean isClassBasedAnalysisParallel() {
+        return numThreads > 1 && classBasedCriteria.length != 0 && classBasedCriteriaConcurrent &&
+               hashTableElementCount / ANALYSIS_MIN_BLOCK_SIZE > 1;
     }
 
     /**
@@ -762,21 +1076,102 @@ public class HashGroupify {
         return -1;
     }
 
+    /**
+     * Computes aggregates in parallel. Stateless functions are evaluated for blocks of classes
+     * per attribute, stateful functions are evaluated by a single task in the original order.
+     * 
+     * @param classes
+     * @param indices
+     * @param functions
+     * @param values
+     * @param numThreads
+     */
+    private void performMicroaggregationParallel(final List<HashGroupifyEntry> classes,
+                                                 final int[] indices,
+                                                 final DistributionAggregateFunction[] functions,
+                                                 final String[][] values,
+                                                 final int numThreads) {
+
+        // Prepare tasks
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        final boolean[] stateful = new boolean[indices.length];
+        boolean containsStateful = false;
+        int blockSize = Math.max(MICROAGGREGATION_MIN_BLOCK_SIZE, (classes.size() + numThreads - 1) / numThreads);
+        for (int i = 0; i < indices.length; i++) {
+            if (functions[i].isStateful()) {
+                stateful[i] = true;
+                containsStateful = true;
+            } else {
+                final boolean[] attributes = new boolean[indices.length];
+                attributes[i] = true;
+                for (int from = 0; from < classes.size(); from += blockSize) {
+                    final int _from = from;
+                    final int _to = Math.min(from + blockSize, classes.size());
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            aggregate(classes, indices, functions, attributes, values, _from, _to);
+                            return null;
+                        }
+                    });
+                }
+            }
+        }
+        if (containsStateful) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    aggregate(classes, indices, functions, stateful, values, 0, classes.size());
+                    return null;
+                }
+            });
+        }
+        
+        // Execute
+        ExecutorService executor = ThreadPool.create("arx-microaggregation", Math.min(numThreads, tasks.size()));
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        try {
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while performing microaggregation", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while performing microaggregation", e.getCause());
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+            executor.shutdown();
+        }
+    }
+
     /**
      * Rehashes this operator.
      */
     private void rehash() {
         
-        final int length = HashTableUtil.calculateCapacity((hashTableBuckets.length == 0 ? 1 : hashTableBuckets.length << 1));
-        final HashGroupifyEntry[] newData = new HashGroupifyEntry[length];
-        HashGroupifyEntry entry = hashTableFirstEntry;
-        while (entry != null) {
-            final int index = entry.hashcode & (length - 1);
-            entry.next = newData[index];
-            newData[index] = entry;
-            entry = entry.nextOrdered;
+        final int length = HashTableUtil.calculateCapacity((hashTableSlots.length == 0 ? 1 : hashTableSlots.length << 1));
+        final int mask = length - 1;
+        final int[] newSlots = new int[length];
+        final int[] newHashes = new int[length];
+        
+        // Entries that have been added so far, excluding the entry which is about to be added
+        for (int position = 0; position < hashTableElementCount - 1; position++) {
+            final int hash = hashTableEntries[position].hashcode;
+            int index = HashTableUtil.mix(hash) & mask;
+            while (newSlots[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            newSlots[index] = position + 1;
+            newHashes[index] = hash;
         }
-        hashTableBuckets = newData;
-        hashTableThreshold = HashTableUtil.calculateThreshold(hashTableBuckets.length, hashTableLoadFactor);
+        hashTableSlots = newSlots;
+        hashTableHashes = newHashes;
+        hashTableThreshold = HashTableUtil.calculateThreshold(hashTableSlots.length, hashTableLoadFactor);
     }
 }
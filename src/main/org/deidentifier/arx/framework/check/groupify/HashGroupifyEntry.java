@@ -35,13 +35,10 @@ public class HashGroupifyEntry {
     public int               pcount         = 0;
 
     /** The hashcode of this class. */
-    public final int         hashcode;
+    public int               hashcode;
 
     /** The key of this class. */
-    public final int         row;
-
-    /** The next element in this bucket. */
-    public HashGroupifyEntry next           = null;
+    public int               row;
 
     /** The overall next element in original order. */
     public HashGroupifyEntry nextOrdered    = null;
@@ -93,4 +90,21 @@ public class HashGroupifyEntry {
     public void read() {
         matrix.iterator(row);
     }
+
+    /**
+     * Resets this entry, so that it can be reused for another class
+     * 
+     * @param row the row
+     * @param hash the hash
+     */
+    void reset(final int row, final int hash) {
+        this.hashcode = hash;
+        this.row = row;
+        this.count = 0;
+        this.pcount = 0;
+        this.nextOrdered = null;
+        this.representative = -1;
+        this.isNotOutlier = false;
+        this.distributions = null;
+    }
 }
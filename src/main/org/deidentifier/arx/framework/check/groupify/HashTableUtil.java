@@ -197,6 +197,18 @@ public class HashTableUtil {
         return result;
     }
     
+    /**
+     * Spreads the bits of a hashcode, which is required for tables with open addressing.
+     * 
+     * @param hash
+     *            the hashcode
+     * @return the mixed hashcode
+     */
+    public static final int mix(final int hash) {
+        final int result = hash * 0x9E3779B9;
+        return result ^ (result >>> 16);
+    }
+    
     /**
      * Returns the same result as Arrays.fill(array, null)
      * 
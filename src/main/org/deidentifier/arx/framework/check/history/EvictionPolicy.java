@@ -0,0 +1,123 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check.history;
+
+import org.deidentifier.arx.ARXConfiguration.HistoryEvictionPolicy;
+import org.deidentifier.arx.framework.lattice.SolutionSpace;
+import org.deidentifier.arx.framework.lattice.TransformationList;
+
+/**
+ * Selects the snapshot to evict from a history which is full.
+ * 
+ * @author Fabian Prasser
+ */
+public abstract class EvictionPolicy {
+
+    /**
+     * Evicts the snapshot with the fewest unchecked successors per byte. Snapshots of
+     * transformations with many unchecked successors are likely to be used for
+     * transforming data in the future. Ties are broken by recency.
+     * 
+     * @author Fabian Prasser
+     */
+    private static class EvictionPolicyCostAware extends EvictionPolicy {
+
+        /** The solution space */
+        private final SolutionSpace<?> solutionSpace;
+
+        /**
+         * Creates a new instance
+         * @param solutionSpace
+         */
+        private EvictionPolicyCostAware(SolutionSpace<?> solutionSpace) {
+            this.solutionSpace = solutionSpace;
+        }
+
+        @Override
+        public MRUCacheEntryMetadata select(MRUCache<MRUCacheEntryMetadata> cache) {
+            MRUCacheEntryMetadata result = null;
+            double min = Double.MAX_VALUE;
+            MRUCacheEntry<MRUCacheEntryMetadata> entry = cache.getHead();
+            while (entry != null) {
+                double value = (getNumUncheckedSuccessors(entry.data) + 1d) / (double) entry.data.size;
+                if (value < min) {
+                    min = value;
+                    result = entry.data;
+                }
+                entry = entry.next;
+            }
+            return result;
+        }
+
+        /**
+         * Returns the number of successors of the given transformation, which have not yet been checked
+         * @param metadata
+         * @return
+         */
+        private int getNumUncheckedSuccessors(MRUCacheEntryMetadata metadata) {
+            TransformationList<?> successors = solutionSpace.getTransformation(metadata.id).getSuccessors();
+            int count = 0;
+            for (int i = 0; i < successors.size(); i++) {
+                if (!solutionSpace.getTransformation(successors.getQuick(i)).hasProperty(solutionSpace.getPropertyChecked())) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Evicts the least recently used snapshot.
+     * 
+     * @author Fabian Prasser
+     */
+    private static class EvictionPolicyLRU extends EvictionPolicy {
+
+        @Override
+        public MRUCacheEntryMetadata select(MRUCache<MRUCacheEntryMetadata> cache) {
+            MRUCacheEntry<MRUCacheEntryMetadata> head = cache.getHead();
+            return head == null ? null : head.data;
+        }
+    }
+
+    /**
+     * Creates a new instance
+     * 
+     * @param policy
+     * @param solutionSpace
+     * @return
+     */
+    public static EvictionPolicy create(HistoryEvictionPolicy policy, SolutionSpace<?> solutionSpace) {
+        switch (policy) {
+        case LRU:
+            return new EvictionPolicyLRU();
+        case COST_AWARE:
+            return new EvictionPolicyCostAware(solutionSpace);
+        default:
+            throw new IllegalArgumentException("Unknown eviction policy: " + policy);
+        }
+    }
+
+    /**
+     * Returns the snapshot to evict from the given cache, or null if the cache is empty
+     * 
+     * @param cache
+     * @return
+     */
+    public abstract MRUCacheEntryMetadata select(MRUCache<MRUCacheEntryMetadata> cache);
+}
@@ -17,15 +17,19 @@
 
 package org.deidentifier.arx.framework.check.history;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Iterator;
 
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXConfiguration.ARXConfigurationInternal;
+import org.deidentifier.arx.framework.check.CheckerStatistics;
 import org.deidentifier.arx.framework.check.distribution.Distribution;
 import org.deidentifier.arx.framework.check.distribution.IntArrayDictionary;
 import org.deidentifier.arx.framework.check.groupify.HashGroupify;
 import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.DataMatrixMapped;
 import org.deidentifier.arx.framework.lattice.DependentAction;
 import org.deidentifier.arx.framework.lattice.SolutionSpace;
 import org.deidentifier.arx.framework.lattice.Transformation;
@@ -47,6 +51,9 @@ public class History {
         NON_ANONYMOUS
     }
 
+    /** Number of entries decoded at once when releasing compressed snapshots. */
+    private static final int                DECODER_BUFFER_SIZE           = 256;
+
     /** The actual buffer. */
     private MRUCache<MRUCacheEntryMetadata> cache                         = null;
 
@@ -59,9 +66,36 @@ public class History {
     /** The dictionary for values of the distributions. */
     private final IntArrayDictionary        dictionarySensValue;
 
+    /** The policy for evicting snapshots. */
+    private final EvictionPolicy            evictionPolicy;
+
+    /** Decoder for compressed snapshots, null if snapshots are not compressed. */
+    private final SnapshotCompression.Decoder decoder;
+
+    /** Buffer for decoding compressed snapshots. */
+    private int[]                           decoderBuffer                 = null;
+
+    /** Number of bytes occupied by the snapshots. */
+    private long                            memory                        = 0L;
+
+    /** Maximal number of bytes occupied by the snapshots. */
+    private final long                      memoryLimit;
+
     /** A map from nodes to snapshots. */
     private HashMap<Object, int[]>          nodeToSnapshot                = null;
 
+    /** A map from nodes to snapshots stored off-heap. */
+    private HashMap<Object, DataMatrix>     nodeToSnapshotOffHeap         = null;
+
+    /** Number of bytes occupied by the snapshots on the heap. */
+    private long                            memoryOnHeap                  = 0L;
+
+    /** Snapshots are stored off-heap, if those on the heap would require more bytes. */
+    private final long                      offHeapThreshold;
+
+    /** Directory for storing snapshots off-heap. */
+    private final File                      offHeapDirectory;
+
     /** The current requirements. */
     private final int                       requirements;
 
@@ -80,6 +114,9 @@ public class History {
     /** The solution space */
     private final SolutionSpace<?>             solutionSpace;
 
+    /** Statistics, if collected */
+    private CheckerStatistics               statistics                    = null;
+
     /** Store the results of all types of transformations. */
     private final DependentAction STORAGE_TRIGGER_ALL = new DependentAction(){
         @Override
@@ -124,6 +161,7 @@ public class History {
         this.snapshotSizeSnapshot = snapshotSizeSnapshot;
         this.cache = new MRUCache<MRUCacheEntryMetadata>(size);
         this.nodeToSnapshot = new HashMap<Object, int[]>(size);
+        this.nodeToSnapshotOffHeap = new HashMap<Object, DataMatrix>();
         this.size = size;
         this.dictionarySensFreq = dictionarySensFreq;
         this.dictionarySensValue = dictionarySensValue;
@@ -131,6 +169,11 @@ public class History {
         this.requirements = config.getRequirements();
         this.storageTrigger = STORAGE_TRIGGER_NON_ANONYMOUS;
         this.solutionSpace = solutionSpace;
+        this.memoryLimit = config.getHistoryMemoryLimit();
+        this.evictionPolicy = EvictionPolicy.create(config.getHistoryEvictionPolicy(), solutionSpace);
+        this.decoder = config.isHistoryCompressionEnabled() ? new SnapshotCompression.Decoder(config.getSnapshotLength()) : null;
+        this.offHeapThreshold = config.getOffHeapThreshold();
+        this.offHeapDirectory = config.getOffHeapDirectory();
     }
     
     /**
@@ -142,7 +185,7 @@ public class History {
     public int[] get(final int[] transformation) {
 
         // Init
-        int[] resultSnapshot = null;
+        int resultEntries = 0;
         MRUCacheEntryMetadata resultMetadata = null;
         int level = solutionSpace.getLevel(transformation);
 
@@ -151,22 +194,28 @@ public class History {
         while (entry != null) {
             MRUCacheEntryMetadata currentMetadata = entry.data;
             if (currentMetadata.level < level) {
-                final int[] currentSnapshot = nodeToSnapshot.get(currentMetadata.id);
-                if ((resultMetadata == null) || (currentSnapshot.length < resultSnapshot.length)) {
+                final int currentEntries = getNumberOfEntries(currentMetadata.id);
+                if ((resultMetadata == null) || (currentEntries < resultEntries)) {
                     if (solutionSpace.isParentChildOrEqual(transformation, currentMetadata.transformation)) {
                         resultMetadata = currentMetadata;
-                        resultSnapshot = currentSnapshot;
+                        resultEntries = currentEntries;
                     }
                 }
             }
             entry = entry.next;
         }
+        
+        // Obtain snapshot, which is copied to the heap if it is stored off-heap
+        int[] resultSnapshot = resultMetadata != null ? getSnapshot(resultMetadata.id) : null;
 
         // Manager
         if (resultMetadata != null) {
             cache.touch(resultMetadata);
         }
         this.resultMetadata = resultMetadata;
+        if (statistics != null) {
+            statistics.addHistoryAccess(resultMetadata != null);
+        }
 
         // Return
         return resultSnapshot;
@@ -190,6 +239,16 @@ public class History {
         return dictionarySensValue;
     }
 
+    /**
+     * Returns the number of bytes currently occupied by the snapshots in this history.
+     * Entries of the dictionaries for distributions are shared between snapshots and not included.
+     *
+     * @return
+     */
+    public long getMemoryUsage() {
+        return memory;
+    }
+
     /**
      * Returns the current storage strategy.
      *
@@ -218,9 +277,12 @@ public class History {
     public void reset() {
         this.cache.clear();
         this.nodeToSnapshot.clear();
+        this.nodeToSnapshotOffHeap.clear();
+        this.memoryOnHeap = 0L;
         this.dictionarySensFreq.clear();
         this.dictionarySensValue.clear();
         this.resultMetadata = null;
+        this.memory = 0L;
     }
 
     /**
@@ -232,6 +294,14 @@ public class History {
         this.size = size;
     }
     
+    /**
+     * Sets the statistics to collect, if any
+     * @param statistics
+     */
+    public void setStatistics(CheckerStatistics statistics) {
+        this.statistics = statistics;
+    }
+    
     /**
      * Sets the storage strategy
      * @param strategy
@@ -261,7 +331,7 @@ public class History {
 
         // Early abort if too large
         if (snapshot != null) {
-            final double relativeSize = (groupify.getNumberOfEquivalenceClasses() / ((double) snapshot.length / config.getSnapshotLength()));
+            final double relativeSize = (groupify.getNumberOfEquivalenceClasses() / (double) SnapshotCompression.getNumberOfEntries(snapshot, config));
             if (relativeSize > snapshotSizeSnapshot) { return false; }
         }
         
@@ -271,20 +341,46 @@ public class History {
             return false;
         }
         
-        // Clear the cache
-        cleanUpHistory();
-
-        // Perform LRU eviction, if still too large
-        if (cache.size() >= size) {
-            removeHistoryEntry(cache.removeHead());
+        // Early abort if larger than the memory limit
+        if (decoder == null && getSize(groupify.getNumberOfEquivalenceClasses() * config.getSnapshotLength(),
+                                       transformation.getGeneralization().length) > memoryLimit) {
+            return false;
         }
         
         // Create the snapshot
         final int[] data = createSnapshot(groupify);
+        final long bytes = getSize(data.length, transformation.getGeneralization().length);
+        if (bytes > memoryLimit) {
+            releaseSnapshot(data);
+            return false;
+        }
+        
+        // Clear the cache
+        cleanUpHistory();
 
-        // Assign snapshot and keep reference for cache
-        nodeToSnapshot.put(transformation.getIdentifier(), data);
-        cache.append(new MRUCacheEntryMetadata(transformation));
+        // Perform eviction, if still too large
+        while (cache.size() > 0 && (cache.size() >= size || memory + bytes > memoryLimit)) {
+            final MRUCacheEntryMetadata evicted = evictionPolicy.select(cache);
+            cache.remove(evicted);
+            removeHistoryEntry(evicted);
+            if (statistics != null) {
+                statistics.addHistoryEviction();
+            }
+        }
+
+        // Assign snapshot and keep reference for cache. Store it off-heap, if the
+        // snapshots on the heap would otherwise exceed the threshold
+        if (bytes > offHeapThreshold - memoryOnHeap) {
+            nodeToSnapshotOffHeap.put(transformation.getIdentifier(), toOffHeap(data));
+        } else {
+            nodeToSnapshot.put(transformation.getIdentifier(), data);
+            memoryOnHeap += bytes;
+        }
+        cache.append(new MRUCacheEntryMetadata(transformation, bytes));
+        memory += bytes;
+        if (statistics != null) {
+            statistics.addHistoryStore(memory);
+        }
 
         // Success
         return true;
@@ -354,20 +450,87 @@ public class History {
             // Next element
             m = m.nextOrdered;
         }
-        return data;
+        return decoder != null ? SnapshotCompression.compress(data, config.getSnapshotLength()) : data;
     }
 
     /**
-     * Removes a snapshot.
+     * Returns the number of entries in the snapshot of the given node
      *
-     * @param metadata
+     * @param id
+     * @return
      */
-    private final void removeHistoryEntry(final MRUCacheEntryMetadata metadata) {
-        final int[] snapshot = nodeToSnapshot.remove(metadata.id);
+    private final int getNumberOfEntries(final Object id) {
+        final int[] snapshot = nodeToSnapshot.get(id);
+        if (snapshot != null) {
+            return SnapshotCompression.getNumberOfEntries(snapshot, config);
+        }
+        final DataMatrix matrix = nodeToSnapshotOffHeap.get(id);
+        return config.isHistoryCompressionEnabled() ? matrix.get(0, 0) : matrix.getNumRows() / config.getSnapshotLength();
+    }
+
+    /**
+     * Returns the snapshot of the given node, which is copied to the heap if it is stored off-heap
+     *
+     * @param id
+     * @return
+     */
+    private final int[] getSnapshot(final Object id) {
+        final int[] snapshot = nodeToSnapshot.get(id);
+        return snapshot != null ? snapshot : toHeap(nodeToSnapshotOffHeap.get(id));
+    }
+
+    /**
+     * Returns an estimate of the number of bytes occupied by a snapshot and its metadata.
+     *
+     * @param snapshotLength The length of the snapshot
+     * @param numQIs The number of quasi-identifiers
+     * @return
+     */
+    private final long getSize(final int snapshotLength, final int numQIs) {
+        // Arrays of the snapshot and the transformation, metadata, entries in the cache and the map
+        return (16L + 4L * snapshotLength) + (16L + 4L * numQIs) + 32L + 32L + 48L;
+    }
+
+    /**
+     * Releases the entries of the dictionaries referenced by a snapshot.
+     *
+     * @param snapshot
+     */
+    private final void releaseSnapshot(final int[] snapshot) {
+        
+        // Nothing referenced
+        if (!config.requires(ARXConfiguration.REQUIREMENT_DISTRIBUTION)) {
+            return;
+        }
+        
+        // Uncompressed
+        if (decoder == null) {
+            releaseSnapshot(snapshot, snapshot.length);
+            return;
+        }
+        
+        // Compressed
+        if (decoderBuffer == null) {
+            decoderBuffer = new int[DECODER_BUFFER_SIZE * config.getSnapshotLength()];
+        }
+        decoder.reset(snapshot, 0, snapshot[0]);
+        int entries;
+        while ((entries = decoder.decode(decoderBuffer)) > 0) {
+            releaseSnapshot(decoderBuffer, entries * config.getSnapshotLength());
+        }
+    }
+
+    /**
+     * Releases the entries of the dictionaries referenced by the first elements of a snapshot.
+     *
+     * @param snapshot
+     * @param length
+     */
+    private final void releaseSnapshot(final int[] snapshot, final int length) {
 
         switch (requirements) {
         case ARXConfiguration.REQUIREMENT_COUNTER | ARXConfiguration.REQUIREMENT_SECONDARY_COUNTER | ARXConfiguration.REQUIREMENT_DISTRIBUTION:
-            for (int i = 0; i < snapshot.length; i += config.getSnapshotLength()) {
+            for (int i = 0; i < length; i += config.getSnapshotLength()) {
                 for (int j = i + 3; j < i + config.getSnapshotLength() - 1; j += 2) {
                     dictionarySensValue.decrementRefCount(snapshot[j]);
                     dictionarySensFreq.decrementRefCount(snapshot[j+1]);
@@ -377,7 +540,7 @@ public class History {
         // TODO: If we only need a distribution, we should get rid of the primary counter
         case ARXConfiguration.REQUIREMENT_COUNTER | ARXConfiguration.REQUIREMENT_DISTRIBUTION:
         case ARXConfiguration.REQUIREMENT_DISTRIBUTION:
-            for (int i = 0; i < snapshot.length; i += config.getSnapshotLength()) {
+            for (int i = 0; i < length; i += config.getSnapshotLength()) {
                 for (int j = i + 2; j < i + config.getSnapshotLength() - 1; j += 2) {
                     dictionarySensValue.decrementRefCount(snapshot[j]);
                     dictionarySensFreq.decrementRefCount(snapshot[j+1]);
@@ -385,4 +548,51 @@ public class History {
             }
         }
     }
+
+    /**
+     * Removes a snapshot.
+     *
+     * @param metadata
+     */
+    private final void removeHistoryEntry(final MRUCacheEntryMetadata metadata) {
+        memory -= metadata.size;
+        final int[] snapshot = nodeToSnapshot.remove(metadata.id);
+        if (snapshot != null) {
+            memoryOnHeap -= metadata.size;
+            releaseSnapshot(snapshot);
+        } else {
+            final DataMatrix matrix = nodeToSnapshotOffHeap.remove(metadata.id);
+            if (config.requires(ARXConfiguration.REQUIREMENT_DISTRIBUTION)) {
+                releaseSnapshot(toHeap(matrix));
+            }
+        }
+    }
+
+    /**
+     * Copies a snapshot stored off-heap to the heap
+     *
+     * @param matrix
+     * @return
+     */
+    private final int[] toHeap(final DataMatrix matrix) {
+        final int[] snapshot = new int[matrix.getNumRows()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = matrix.get(i, 0);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Copies a snapshot to off-heap storage
+     *
+     * @param snapshot
+     * @return
+     */
+    private final DataMatrix toOffHeap(final int[] snapshot) {
+        final DataMatrix matrix = new DataMatrixMapped(snapshot.length, 1, offHeapDirectory);
+        for (int i = 0; i < snapshot.length; i++) {
+            matrix.set(i, 0, snapshot[i]);
+        }
+        return matrix;
+    }
 }
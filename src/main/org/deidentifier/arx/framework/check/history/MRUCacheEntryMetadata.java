@@ -31,14 +31,18 @@ public class MRUCacheEntryMetadata {
     public final int   level;
     /** Id */
     public final Object  id;
+    /** Size in bytes */
+    public final long    size;
 
     /**
      * Creates a new instance
      * @param transformation
+     * @param size
      */
-    public MRUCacheEntryMetadata(Transformation<?> transformation) {
+    public MRUCacheEntryMetadata(Transformation<?> transformation, long size) {
         this.transformation = transformation.getGeneralization().clone();
         this.level = transformation.getLevel();
         this.id = transformation.getIdentifier();
+        this.size = size;
     }
 }
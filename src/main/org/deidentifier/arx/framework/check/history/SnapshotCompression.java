@@ -0,0 +1,211 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check.history;
+
+import java.util.Arrays;
+
+import org.deidentifier.arx.ARXConfiguration.ARXConfigurationInternal;
+
+/**
+ * Compressed encoding of snapshots. Each entry of a snapshot consists of a representative,
+ * counters and identifiers of distributions. Representatives are delta-encoded, because
+ * they are mostly increasing, and all values are stored as variable-length integers. Entries
+ * are grouped into blocks, which can be decoded independently, so that parts of a snapshot
+ * can be processed in parallel.<br>
+ * <br>
+ * Layout: [number of entries, number of blocks, offset of block 0, ..., offset of block n, packed bytes]
+ * 
+ * @author Fabian Prasser
+ */
+public class SnapshotCompression {
+
+    /**
+     * Decodes compressed snapshots entry by entry.
+     * 
+     * @author Fabian Prasser
+     */
+    public static class Decoder {
+
+        /** The size of an entry */
+        private final int   stepWidth;
+
+        /** Buffer used for skipping entries */
+        private final int[] skip;
+
+        /** The snapshot */
+        private int[]       snapshot;
+
+        /** Offset of the packed bytes */
+        private int         offset;
+
+        /** Current position in bytes */
+        private int         position;
+
+        /** Index of the next entry */
+        private int         index;
+
+        /** Index of the first entry not to decode */
+        private int         stop;
+
+        /** The last representative decoded */
+        private int         previous;
+
+        /**
+         * Creates a new instance
+         * 
+         * @param stepWidth The size of an entry
+         */
+        public Decoder(int stepWidth) {
+            this.stepWidth = stepWidth;
+            this.skip = new int[stepWidth];
+        }
+
+        /**
+         * Decodes the next entries into the given buffer.
+         * 
+         * @param buffer
+         * @return The number of entries decoded, 0 if there are no more entries
+         */
+        public int decode(int[] buffer) {
+            int count = Math.min(buffer.length / stepWidth, stop - index);
+            for (int i = 0; i < count; i++) {
+                decode(buffer, i * stepWidth);
+            }
+            return count;
+        }
+
+        /**
+         * Prepares decoding entries [start, stop) of the given snapshot
+         * 
+         * @param snapshot
+         * @param start
+         * @param stop
+         */
+        public void reset(int[] snapshot, int start, int stop) {
+            int block = start / BLOCK_SIZE;
+            this.snapshot = snapshot;
+            this.offset = 2 + snapshot[1];
+            this.index = block * BLOCK_SIZE;
+            this.position = block < snapshot[1] ? snapshot[2 + block] : 0;
+            this.stop = stop;
+            while (this.index < start) {
+                decode(skip, 0);
+            }
+        }
+
+        /**
+         * Decodes the next entry
+         * 
+         * @param buffer
+         * @param offset
+         */
+        private void decode(int[] buffer, int offset) {
+            if (index % BLOCK_SIZE == 0) {
+                previous = 0;
+            }
+            int value = read();
+            previous += (value >>> 1) ^ -(value & 1);
+            buffer[offset] = previous;
+            for (int i = 1; i < stepWidth; i++) {
+                buffer[offset + i] = read();
+            }
+            index++;
+        }
+
+        /**
+         * Reads a variable-length integer
+         * @return
+         */
+        private int read() {
+            int result = 0;
+            int shift = 0;
+            int value;
+            do {
+                value = (snapshot[offset + (position >>> 2)] >>> ((position & 3) << 3)) & 0xFF;
+                position++;
+                result |= (value & 0x7F) << shift;
+                shift += 7;
+            } while ((value & 0x80) != 0);
+            return result;
+        }
+    }
+
+    /** Number of entries per block */
+    private static final int BLOCK_SIZE = 64;
+
+    /**
+     * Compresses the given snapshot
+     * 
+     * @param snapshot
+     * @param stepWidth The size of an entry
+     * @return
+     */
+    public static int[] compress(int[] snapshot, int stepWidth) {
+
+        // Prepare
+        int entries = snapshot.length / stepWidth;
+        int blocks = (entries + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] offsets = new int[blocks];
+        byte[] bytes = new byte[Math.max(16, snapshot.length * 2)];
+        int position = 0;
+
+        // Encode
+        int previous = 0;
+        for (int entry = 0; entry < entries; entry++) {
+            if (entry % BLOCK_SIZE == 0) {
+                offsets[entry / BLOCK_SIZE] = position;
+                previous = 0;
+            }
+            int index = entry * stepWidth;
+            int delta = snapshot[index] - previous;
+            previous = snapshot[index];
+            for (int i = 0; i < stepWidth; i++) {
+                if (bytes.length - position < 5) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+                int value = i == 0 ? (delta << 1) ^ (delta >> 31) : snapshot[index + i];
+                while ((value & ~0x7F) != 0) {
+                    bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                bytes[position++] = (byte) value;
+            }
+        }
+
+        // Pack
+        int[] result = new int[2 + blocks + (position + 3) / 4];
+        result[0] = entries;
+        result[1] = blocks;
+        System.arraycopy(offsets, 0, result, 2, blocks);
+        for (int i = 0; i < position; i++) {
+            result[2 + blocks + (i >>> 2)] |= (bytes[i] & 0xFF) << ((i & 3) << 3);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of entries in the given snapshot
+     * 
+     * @param snapshot
+     * @param config
+     * @return
+     */
+    public static int getNumberOfEntries(int[] snapshot, ARXConfigurationInternal config) {
+        return config.isHistoryCompressionEnabled() ? snapshot[0] : snapshot.length / config.getSnapshotLength();
+    }
+}
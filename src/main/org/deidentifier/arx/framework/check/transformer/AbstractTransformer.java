@@ -25,6 +25,7 @@ import org.deidentifier.arx.framework.check.TransformationCheckerStateMachine.Tr
 import org.deidentifier.arx.framework.check.distribution.IntArrayDictionary;
 import org.deidentifier.arx.framework.check.groupify.HashGroupify;
 import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
+import org.deidentifier.arx.framework.check.history.SnapshotCompression;
 import org.deidentifier.arx.framework.data.DataMatrix;
 import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
 
@@ -214,6 +215,9 @@ public abstract class AbstractTransformer implements Callable<HashGroupify> {
         public abstract void callSnapshot(final int outtuple, final int[] snapshot, final int i);
     }
 
+    /** Number of entries of compressed snapshots decoded at once. */
+    private static final int                  DECODER_BUFFER_SIZE = 1024;
+
     /** The hash groupify. */
     private HashGroupify                      groupify;
 
@@ -262,6 +266,12 @@ public abstract class AbstractTransformer implements Callable<HashGroupify> {
     /** The snapshot. */
     protected int[]                           snapshot;
 
+    /** Decoder for compressed snapshots, null if snapshots are not compressed. */
+    private final SnapshotCompression.Decoder decoder;
+
+    /** Buffer for decoded entries of compressed snapshots. */
+    private int[]                             decoderBuffer;
+
     /** The size of one snapshopt entry *. */
     protected final int                       ssStepWidth;
 
@@ -309,6 +319,7 @@ public abstract class AbstractTransformer implements Callable<HashGroupify> {
         this.dictionarySensValue = dictionarySensValue;
         this.dictionarySensFreq = dictionarySensFreq;
         this.ssStepWidth = config.getSnapshotLength();
+        this.decoder = config.isHistoryCompressionEnabled() ? new SnapshotCompression.Decoder(ssStepWidth) : null;
 
         // Init arrays
         this.dimensions = data.getNumColumns();
@@ -358,7 +369,11 @@ public abstract class AbstractTransformer implements Callable<HashGroupify> {
             processGroupify();
             break;
         case SNAPSHOT:
-            processSnapshot();
+            if (decoder == null) {
+                processSnapshot();
+            } else {
+                processSnapshotCompressed();
+            }
             break;
 
         default:
@@ -479,4 +494,27 @@ public abstract class AbstractTransformer implements Callable<HashGroupify> {
      * Process snapshot.
      */
     protected abstract void processSnapshot();
+
+    /**
+     * Process compressed snapshot. Entries are decoded in batches, which are processed like uncompressed snapshots.
+     */
+    private void processSnapshotCompressed() {
+        
+        // Prepare
+        if (decoderBuffer == null) {
+            decoderBuffer = new int[DECODER_BUFFER_SIZE * ssStepWidth];
+        }
+        final int[] compressed = this.snapshot;
+        decoder.reset(compressed, startIndex, stopIndex);
+        
+        // Process
+        int entries;
+        while ((entries = decoder.decode(decoderBuffer)) > 0) {
+            this.snapshot = decoderBuffer;
+            this.startIndex = 0;
+            this.stopIndex = entries;
+            processSnapshot();
+        }
+        this.snapshot = compressed;
+    }
 }
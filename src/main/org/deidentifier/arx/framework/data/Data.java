@@ -17,6 +17,7 @@
 
 package org.deidentifier.arx.framework.data;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
@@ -49,20 +50,34 @@ public class Data implements Cloneable, Serializable {
      * @param header
      * @param columns
      * @param dictionary
+     * @param packed whether the matrix may be bit-packed, if this saves memory
+     * @param threshold number of bytes above which the matrix is stored off-heap
+     * @param directory directory for off-heap storage
      * @return
      */
     public static Data createProjection(final DataMatrix data,
                                         final String[] header,
                                         final int[] columns,
-                                        final Dictionary dictionary) {
+                                        final Dictionary dictionary,
+                                        final boolean packed,
+                                        final long threshold,
+                                        final File directory) {
         
         // Empty object
         if (columns.length == 0) {
             return new Data(null, new String[0], new int[0], new Dictionary(0));
         }
 
-        // Clone matrix
-        DataMatrix matrix = new DataMatrix(data.getNumRows(), columns.length);
+        // Determine domain sizes
+        int[] domainSizes = new int[columns.length];
+        for (int index = 0; index < columns.length; index++) {
+            String[] mapping = dictionary.getMapping()[columns[index]];
+            domainSizes[index] = mapping != null ? mapping.length : Integer.MAX_VALUE;
+        }
+        
+        // Clone matrix, use packed representation if enabled and it saves memory and off-heap storage for large matrices
+        DataMatrix matrix = packed && DataMatrixPacked.isBeneficial(domainSizes) ? new DataMatrixPacked(data.getNumRows(), domainSizes) :
+                                                                         DataMatrixMapped.create(data.getNumRows(), columns.length, threshold, directory);
         for (int row = 0; row < data.getNumRows(); row++) {
             
             // Prepare row
@@ -146,6 +161,20 @@ public class Data implements Cloneable, Serializable {
         return new Data(data != null ? data.clone() : null, header, columns, dictionary);
     }
 
+    /**
+     * Returns a copy of this object, which, in contrast to <code>clone()</code>,
+     * also copies the dictionary.
+     *
+     * @return
+     */
+    public Data copy() {
+        int[] dimensions = new int[dictionary.getNumDimensions()];
+        for (int i = 0; i < dimensions.length; i++) {
+            dimensions[i] = i;
+        }
+        return new Data(data != null ? data.clone() : null, header, columns, new Dictionary(dictionary, dimensions));
+    }
+
     /**
      * Returns the data array.
      *
@@ -200,6 +229,36 @@ public class Data implements Cloneable, Serializable {
         return !map.containsKey(attribute) ? -1 : map.get(attribute);
     }
 
+    /**
+     * Returns a new instance that contains a copy of the given subset. In contrast to
+     * <code>getSubsetInstance()</code>, rows are not accessed indirectly and the matrix
+     * is never packed, which speeds up repeated scans over small subsets.
+     * @param rowset
+     * @return
+     */
+    public Data getSubsetCopy(RowSet rowset) {
+        
+        // Empty object
+        if (data == null) {
+            return new Data(null, header, columns, dictionary);
+        }
+        
+        // Copy rows
+        DataMatrix source = data.getView();
+        DataMatrix matrix = new DataMatrix(rowset.size(), data.getNumColumns());
+        int index = 0;
+        for (int row = 0; row < rowset.length(); row++) {
+            if (rowset.contains(row)) {
+                matrix.setRow(index++);
+                source.setRow(row);
+                for (int column = 0; column < matrix.getNumColumns(); column++) {
+                    matrix.setValueAtColumn(column, source.getValueAtColumn(column));
+                }
+            }
+        }
+        return new Data(matrix, header, columns, dictionary);
+    }
+
     /**
      * Returns a new instance that is projected onto the given subset
      * @param rowset
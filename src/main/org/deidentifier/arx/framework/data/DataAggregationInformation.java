@@ -72,6 +72,9 @@ public class DataAggregationInformation implements Serializable {
     /** Domain size of i-th attribute (in coldQIs) that must be aggregated only after the anonymization process. */
     private final int[]                           coldQIsDomainSizes;
 
+    /** Domain size of i-th attribute (in <code>columns</code>). */
+    private final int[]                           domainSizes;
+
     /**
      * Creates a new instance
      * @param data
@@ -112,6 +115,12 @@ public class DataAggregationInformation implements Serializable {
         
         // First cold attribute is threshold
         this.hotThreshold = this.coldQIs.length == 0 ? data.getHeader().length : this.coldQIs[0];
+        
+        // Domain sizes
+        this.domainSizes = new int[header.length];
+        for (int i = 0; i < header.length; i++) {
+            this.domainSizes[i] = data.getDictionary().getMapping()[i].length;
+        }
 
         // TODO: Actually arrays would not even be needed for indices, as they follow a [min, max] scheme
     }
@@ -130,6 +139,7 @@ public class DataAggregationInformation implements Serializable {
      * @param coldQIs
      * @param coldQIsFunctions
      * @param coldQIsDomainSizes
+     * @param domainSizes
      */
     private DataAggregationInformation(String[] header,
                                        int[] columns,
@@ -142,7 +152,8 @@ public class DataAggregationInformation implements Serializable {
                                        int[] hotQIsGeneralizedDomainSizes,
                                        int[] coldQIs,
                                        DistributionAggregateFunction[] coldQIsFunctions,
-                                       int[] coldQIsDomainSizes) {
+                                       int[] coldQIsDomainSizes,
+                                       int[] domainSizes) {
         this.header = header;
         this.columns = columns;
         this.hotThreshold = hotThreshold;
@@ -155,6 +166,7 @@ public class DataAggregationInformation implements Serializable {
         this.coldQIs = coldQIs;
         this.coldQIsFunctions = coldQIsFunctions;
         this.coldQIsDomainSizes = coldQIsDomainSizes;
+        this.domainSizes = domainSizes;
     }
     
     /**
@@ -173,7 +185,8 @@ public class DataAggregationInformation implements Serializable {
                                               this.hotQIsGeneralizedDomainSizes,
                                               this.coldQIs,
                                               this.clone(this.coldQIsFunctions),
-                                              this.coldQIsDomainSizes);
+                                              this.coldQIsDomainSizes,
+                                              this.domainSizes);
     }
 
     /**
@@ -204,6 +217,14 @@ public class DataAggregationInformation implements Serializable {
         return columns;
     }
 
+    /**
+     * Returns the domain sizes of all attributes. Used to choose representations for distributions of values.
+     * @return
+     */
+    public int[] getDomainSizes() {
+        return domainSizes;
+    }
+
     /**
      * @return the header
      */
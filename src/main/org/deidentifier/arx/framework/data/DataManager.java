@@ -17,6 +17,7 @@
 
 package org.deidentifier.arx.framework.data;
 
+import java.io.File;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -99,6 +100,9 @@ public class DataManager {
     /** The size of the research subset. */
     private int                               subsetSize = 0;
 
+    /** The prototype from which this instance has been derived, if any */
+    private final DataManager                 prototype;
+
     /**
      * Creates a new data manager from pre-encoded data.
      * 
@@ -115,10 +119,50 @@ public class DataManager {
                        final DataDefinition definition,
                        final Map<String, DistributionAggregateFunction> functions,
                        final ARXConfiguration config) {
+        this(header,
+             data,
+             dictionary,
+             definition,
+             functions,
+             config.getQualityModel().isAbleToHandleMicroaggregation(),
+             config.getQualityModel().isAbleToHandleClusteredMicroaggregation(),
+             config.isDataPackingEnabled(),
+             config.getOffHeapThreshold(),
+             config.getOffHeapDirectory());
+        this.initialize(config);
+    }
+
+    /**
+     * Creates a new data manager from pre-encoded data, which is not bound to a specific configuration.
+     * Such an instance only serves as a prototype from which instances for individual configurations can
+     * be derived via <code>getInstance()</code>.
+     * 
+     * @param header
+     * @param data
+     * @param dictionary
+     * @param definition
+     * @param functions
+     * @param hotMicroaggregation Whether the quality model is able to handle microaggregation
+     * @param hotClusteredMicroaggregation Whether the quality model is able to handle clustered microaggregation
+     * @param packed whether matrices may be bit-packed
+     * @param threshold number of bytes above which matrices are stored off-heap
+     * @param directory directory for off-heap storage
+     */
+    public DataManager(final String[] header,
+                       final DataMatrix data,
+                       final Dictionary dictionary,
+                       final DataDefinition definition,
+                       final Map<String, DistributionAggregateFunction> functions,
+                       final boolean hotMicroaggregation,
+                       final boolean hotClusteredMicroaggregation,
+                       final boolean packed,
+                       final long threshold,
+                       final File directory) {
 
         // Store basic info
         this.header = header;
         this.definition = definition;
+        this.prototype = null;
 
         /* *************************************************
          * Collect attributes which need to be generalized
@@ -149,7 +193,7 @@ public class DataManager {
          * Collect non-generalized aggregated QIs which are hot
          ***************************************************/
         Set<String> hotQIsNotGeneralized = new HashSet<String>();
-        if (config.getQualityModel().isAbleToHandleMicroaggregation()) {
+        if (hotMicroaggregation) {
             hotQIsNotGeneralized.addAll(qisNotGeneralized);
         } 
 
@@ -157,7 +201,7 @@ public class DataManager {
          * Collect generalized aggregated QIs which are hot
          ***************************************************/
         Set<String> hotQIsGeneralized = new HashSet<String>();
-        if (config.getQualityModel().isAbleToHandleClusteredMicroaggregation()) {
+        if (hotClusteredMicroaggregation) {
             hotQIsGeneralized.addAll(definition.getQuasiIdentifiersWithClusteringAndMicroaggregation());
             throw new RuntimeException("Not implemented"); // TODO: SSE
         }
@@ -178,13 +222,17 @@ public class DataManager {
         hotOtherAttributes.removeAll(definition.getQuasiIdentifiersWithMicroaggregation());
         
         // Create data objects
-        this.dataGeneralized = Data.createProjection(data, header, getColumns(header, qisGeneralized), dictionary);
+        this.dataGeneralized = Data.createProjection(data, header, getColumns(header, qisGeneralized), dictionary,
+                                                      packed, threshold, directory);
         this.dataAnalyzed = Data.createProjection(data, header, getColumns(header, 
                                                                            hotOtherAttributes,
                                                                            hotQIsNotGeneralized,
                                                                            hotQIsGeneralized,
                                                                            coldQIs), 
-                                                                           dictionary);
+                                                                           dictionary,
+                                                                           packed,
+                                                                           threshold,
+                                                                           directory);
         this.dataInput = Data.createWrapper(data, header, getColumns(header), dictionary);
         
         // Store information about aggregated attributes
@@ -227,68 +275,46 @@ public class DataManager {
                 index++;
             }
         }
-        
-        // Change to fixed generalization scheme when using differential privacy
-        for (PrivacyCriterion c : config.getPrivacyModels()) {
-            
-            // DP found
-            if (c instanceof EDDifferentialPrivacy) {
-                
-                EDDifferentialPrivacy edpModel = (EDDifferentialPrivacy)c;
-                if (!edpModel.isDataDependent()) {
-                    
-                    // Extract scheme
-                    DataGeneralizationScheme scheme = edpModel.getGeneralizationScheme();
-
-                    // For each attribute
-                    index = 0;
-                    for (final String attribute : header) {
-
-                        // This is a generalized quasi-identifier
-                        if (qisGeneralized.contains(attribute)) {
-                            this.generalizationLevelsMaximum[index] = scheme.getGeneralizationLevel(attribute, definition);
-                            this.generalizationLevelsMinimum[index] = scheme.getGeneralizationLevel(attribute, definition);
-                            
-                            // Next quasi-identifier
-                            index++;
-                        }
-                    }
-                }
-                break;
-            }
-        }
 
-        // Build map with hierarchies for sensitive attributes
+        // Hierarchies for sensitive attributes depend on the privacy models
         this.hierarchiesAnalyzed = new GeneralizationHierarchy[this.dataAnalyzed.getColumns().length];
-        for (PrivacyCriterion c : config.getPrivacyModels()) {
-            if (c instanceof HierarchicalDistanceTCloseness) {
-                HierarchicalDistanceTCloseness t = (HierarchicalDistanceTCloseness) c;
-                String attribute = t.getAttribute();
-                index = dataAnalyzed.getIndexOf(attribute);
-                this.hierarchiesAnalyzed[index] = new GeneralizationHierarchy(attribute, t.getHierarchy().getHierarchy(),
-                                                                              index, dataAnalyzed.getDictionary());
-            }
-        }
 
         // finalize dictionary
         dataGeneralized.getDictionary().registerSpecialValues();
         dataGeneralized.getDictionary().finalizeAll();
         dataAnalyzed.getDictionary().finalizeAll();
+    }
 
-        // Store research subset
-        for (PrivacyCriterion c : config.getPrivacyModels()) {
-            if (c instanceof EDDifferentialPrivacy) {
-                ((EDDifferentialPrivacy) c).initialize(this, config);
-            }
-            if (c.isSubsetAvailable()) {
-                DataSubset _subset = c.getDataSubset();
-                if (_subset != null) {
-                    subset = _subset.getSet();
-                    subsetSize = _subset.getArray().length;
-                    break;
-                }
-            }
-        }
+    /**
+     * Creates a new instance for the given configuration, which shares all immutable
+     * data, such as hierarchies and domain shares, with the given prototype. Matrices
+     * and dictionaries are copied, as they may be altered by handles.
+     * 
+     * @param prototype
+     * @param data
+     * @param dictionary
+     * @param config
+     */
+    private DataManager(final DataManager prototype,
+                        final DataMatrix data,
+                        final Dictionary dictionary,
+                        final ARXConfiguration config) {
+
+        // Copy or share
+        this.prototype = prototype;
+        this.header = prototype.header;
+        this.definition = prototype.definition;
+        this.dataGeneralized = prototype.dataGeneralized.copy();
+        this.dataAnalyzed = prototype.dataAnalyzed.copy();
+        this.dataInput = Data.createWrapper(data, header, getColumns(header), dictionary);
+        this.aggregationInformation = prototype.aggregationInformation.clone();
+        this.hierarchiesGeneralized = prototype.hierarchiesGeneralized;
+        this.hierarchiesAnalyzed = new GeneralizationHierarchy[this.dataAnalyzed.getColumns().length];
+        this.generalizationLevelsMinimum = prototype.generalizationLevelsMinimum.clone();
+        this.generalizationLevelsMaximum = prototype.generalizationLevelsMaximum.clone();
+        
+        // Initialize
+        this.initialize(config);
     }
 
     /**
@@ -332,6 +358,7 @@ public class DataManager {
         this.generalizationLevelsMinimum = generalizationLevelsMinimum;
         this.generalizationLevelsMaximum = generalizationLevelsMaximum;
         this.aggregationInformation = microaggregationData;
+        this.prototype = null;
         
         // Both variables are only used for getDistribution() and getTree()
         // The projected instance delegates these methods to the original data manager
@@ -410,7 +437,12 @@ public class DataManager {
      * Returns the domain shares for all generalized quasi-identifiers
      * @return
      */
-    public DomainShare[] getDomainShares() {
+    public synchronized DomainShare[] getDomainShares() {
+
+        // Obtain from prototype
+        if (this.shares == null && this.prototype != null) {
+            this.shares = this.prototype.getDomainShares();
+        }
 
         // Build on-demand
         if (this.shares == null) {
@@ -452,7 +484,12 @@ public class DataManager {
      * Returns the reliable domain shares for all generalized quasi-identifiers
      * @return
      */
-    public DomainShareReliable[] getDomainSharesReliable() {
+    public synchronized DomainShareReliable[] getDomainSharesReliable() {
+
+        // Obtain from prototype
+        if (this.sharesReliable == null && this.prototype != null) {
+            this.sharesReliable = this.prototype.getDomainSharesReliable();
+        }
 
         // Build on-demand
         if (this.sharesReliable == null) {
@@ -571,6 +608,21 @@ public class DataManager {
         return order;
     }
 
+    /**
+     * Returns an instance of this data manager for the given configuration. The instance shares
+     * hierarchies and domain shares with this instance, but works on copies of the data. The
+     * given matrix and dictionary provide the input data of the handle the instance is bound to.
+     * This method may be called concurrently.
+     * 
+     * @param data
+     * @param dictionary
+     * @param config
+     * @return
+     */
+    public DataManager getInstance(DataMatrix data, Dictionary dictionary, ARXConfiguration config) {
+        return new DataManager(this, data, dictionary, config);
+    }
+
     /**
      * Returns an instance of this data manager, that is projected onto the given rowset
      * @param rowset
@@ -592,6 +644,30 @@ public class DataManager {
                                      aggregationInformation.clone());
     }
 
+    /**
+     * Returns an instance of this data manager, that is projected onto the given rowset. In contrast to
+     * <code>getSubsetInstance()</code>, the data which is transformed and analyzed is copied into compact
+     * matrices. This is beneficial when the subset is small and processed repeatedly, and it allows to
+     * project the resulting instance again without building up chains of indirections.
+     * @param rowset
+     * @return
+     */
+    public DataManager getCompactSubsetInstance(RowSet rowset) {
+        
+        return new DataManagerSubset(this,
+                                     dataAnalyzed.getSubsetCopy(rowset),
+                                     dataGeneralized.getSubsetCopy(rowset),
+                                     dataInput.getSubsetInstance(rowset),
+                                     definition,
+                                     shares,
+                                     header,
+                                     hierarchiesGeneralized,
+                                     hierarchiesAnalyzed,
+                                     generalizationLevelsMinimum,
+                                     generalizationLevelsMaximum,
+                                     aggregationInformation.clone());
+    }
+
     /**
      * Returns a tree for the given attribute at the index within the given data array, using the given hierarchy.
      * The resulting tree can be used to calculate the earth mover's distance with hierarchical ground-distance.
@@ -719,6 +795,71 @@ public class DataManager {
         return getTree(data, index, hierarchiesAnalyzed[index].map);
     }
     
+    /**
+     * Initializes all properties which depend on the given configuration
+     * 
+     * @param config
+     */
+    private void initialize(final ARXConfiguration config) {
+        
+        // Change to fixed generalization scheme when using differential privacy
+        for (PrivacyCriterion c : config.getPrivacyModels()) {
+            
+            // DP found
+            if (c instanceof EDDifferentialPrivacy) {
+                
+                EDDifferentialPrivacy edpModel = (EDDifferentialPrivacy)c;
+                if (!edpModel.isDataDependent()) {
+                    
+                    // Extract scheme
+                    DataGeneralizationScheme scheme = edpModel.getGeneralizationScheme();
+
+                    // For each generalized quasi-identifier
+                    for (int index = 0; index < hierarchiesGeneralized.length; index++) {
+                        String attribute = hierarchiesGeneralized[index].getName();
+                        this.generalizationLevelsMaximum[index] = scheme.getGeneralizationLevel(attribute, definition);
+                        this.generalizationLevelsMinimum[index] = scheme.getGeneralizationLevel(attribute, definition);
+                    }
+                }
+                break;
+            }
+        }
+
+        // Build map with hierarchies for sensitive attributes
+        boolean definalized = false;
+        for (PrivacyCriterion c : config.getPrivacyModels()) {
+            if (c instanceof HierarchicalDistanceTCloseness) {
+                if (!definalized) {
+                    dataAnalyzed.getDictionary().definalizeAll();
+                    definalized = true;
+                }
+                HierarchicalDistanceTCloseness t = (HierarchicalDistanceTCloseness) c;
+                String attribute = t.getAttribute();
+                int index = dataAnalyzed.getIndexOf(attribute);
+                this.hierarchiesAnalyzed[index] = new GeneralizationHierarchy(attribute, t.getHierarchy().getHierarchy(),
+                                                                              index, dataAnalyzed.getDictionary());
+            }
+        }
+        if (definalized) {
+            dataAnalyzed.getDictionary().finalizeAll();
+        }
+
+        // Store research subset
+        for (PrivacyCriterion c : config.getPrivacyModels()) {
+            if (c instanceof EDDifferentialPrivacy) {
+                ((EDDifferentialPrivacy) c).initialize(this, config);
+            }
+            if (c.isSubsetAvailable()) {
+                DataSubset _subset = c.getDataSubset();
+                if (_subset != null) {
+                    subset = _subset.getSet();
+                    subsetSize = _subset.getArray().length;
+                    break;
+                }
+            }
+        }
+    }
+
     /**
      * Simple returns the set of all columns
      * @param header
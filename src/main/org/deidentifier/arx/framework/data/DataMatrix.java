@@ -65,6 +65,19 @@ public class DataMatrix implements Serializable {
         }
     }
 
+    /**
+     * Instantiates a view on the given backing array
+     *
+     * @param array
+     * @param rows
+     * @param columns
+     */
+    private DataMatrix(final int[] array, final int rows, final int columns) {
+        this.array = array;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
     /**
      * ANDs the first value of the row with the given value
      * @param row
@@ -272,6 +285,16 @@ public class DataMatrix implements Serializable {
         return this.array[baseOffset + column];
     }
 
+    /**
+     * Returns a view on this matrix, which shares the backing data but maintains
+     * its own row pointer and iterator. Views can be used to access disjoint sets
+     * of rows from different threads.
+     * @return
+     */
+    public DataMatrix getView() {
+        return new DataMatrix(this.array, this.rows, this.columns);
+    }
+
     /**
      * Returns an hashcode for the given row
      * @param row
@@ -556,4 +579,4 @@ public class DataMatrix implements Serializable {
         // Return
         return result;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,372 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A data matrix which is stored off-heap in a memory-mapped file. The file is split
+ * into chunks of complete rows, each of which is mapped separately, which enables
+ * storing more than 2^31-1 cells. The file is deleted as soon as it has been mapped,
+ * or when the JVM terminates if the platform does not support this.
+ * 
+ * @author Fabian Prasser
+ */
+public class DataMatrixMapped extends DataMatrix {
+
+    /** SVUID */
+    private static final long serialVersionUID = 3920915006962405135L;
+
+    /** Maximal number of cells per chunk */
+    private static final int  MAX_CHUNK_SIZE   = 1 << 28;
+
+    /**
+     * Creates a new matrix, which is stored off-heap if it requires more than the given number of bytes
+     * 
+     * @param rows
+     * @param columns
+     * @param threshold
+     * @param directory
+     * @return
+     */
+    public static DataMatrix create(int rows, int columns, long threshold, File directory) {
+        if ((long) rows * (long) columns * 4L > threshold) {
+            return new DataMatrixMapped(rows, columns, directory);
+        } else {
+            return new DataMatrix(rows, columns);
+        }
+    }
+
+    /** Chunks */
+    private final IntBuffer[] chunks;
+
+    /** The number of rows per chunk */
+    private final int         rowsPerChunk;
+
+    /** The number of rows. */
+    private final int         rows;
+
+    /** The number of columns. */
+    private final int         columns;
+
+    /** The directory */
+    private final File        directory;
+
+    /** Row */
+    private IntBuffer         baseChunk;
+
+    /** Row */
+    private int               baseOffset     = 0;
+
+    /** Iterate */
+    private IntBuffer         iteratorChunk;
+
+    /** Iterate */
+    private int               iteratorI      = 0;
+
+    /** Iterate */
+    private int               iteratorOffset = 0;
+
+    /**
+     * Instantiates a new matrix.
+     *
+     * @param rows the num rows
+     * @param columns the num columns
+     * @param directory the directory in which the backing file is created
+     */
+    public DataMatrixMapped(final int rows, final int columns, final File directory) {
+        super(0, 0);
+        this.rows = rows;
+        this.columns = columns;
+        this.directory = directory;
+        this.rowsPerChunk = Math.max(1, MAX_CHUNK_SIZE / Math.max(1, columns));
+        this.chunks = new IntBuffer[(rows + rowsPerChunk - 1) / rowsPerChunk];
+        
+        // Map file
+        if (chunks.length > 0) {
+            File file = null;
+            try {
+                file = File.createTempFile("arx-", ".matrix", directory);
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+                    long position = 0;
+                    for (int i = 0; i < chunks.length; i++) {
+                        long size = (long) Math.min(rowsPerChunk, rows - i * rowsPerChunk) * (long) columns * 4L;
+                        MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, position, size);
+                        buffer.order(ByteOrder.nativeOrder());
+                        chunks[i] = buffer.asIntBuffer();
+                        position += size;
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create off-heap storage in " + directory, e);
+            } finally {
+                if (file != null && !file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        this.baseChunk = chunks.length > 0 ? chunks[0] : null;
+        this.iteratorChunk = baseChunk;
+    }
+
+    /**
+     * Instantiates a view on the given matrix
+     *
+     * @param other
+     */
+    private DataMatrixMapped(final DataMatrixMapped other) {
+        super(0, 0);
+        this.chunks = other.chunks;
+        this.rowsPerChunk = other.rowsPerChunk;
+        this.rows = other.rows;
+        this.columns = other.columns;
+        this.directory = other.directory;
+        this.baseChunk = chunks.length > 0 ? chunks[0] : null;
+        this.iteratorChunk = baseChunk;
+    }
+
+    @Override
+    public void and(int row, int value) {
+        IntBuffer chunk = chunks[row / rowsPerChunk];
+        int offset = (row % rowsPerChunk) * columns;
+        chunk.put(offset, chunk.get(offset) & value);
+    }
+
+    @Override
+    public DataMatrix clone() {
+        DataMatrixMapped result = new DataMatrixMapped(this.rows, this.columns, this.directory);
+        for (int row = 0; row < rows; row++) {
+            result.copyFrom(row, this, row);
+        }
+        return result;
+    }
+
+    @Override
+    public void copyFrom(int row, DataMatrix sourceMatrix, int sourceRow) {
+        IntBuffer chunk = chunks[row / rowsPerChunk];
+        int offset = (row % rowsPerChunk) * columns;
+        for (int column = 0; column < columns; column++) {
+            chunk.put(offset + column, sourceMatrix.get(sourceRow, column));
+        }
+    }
+
+    @Override
+    public boolean equals(final int row1, final int row2) {
+        return equals(row1, row2, ~0);
+    }
+
+    @Override
+    public boolean equals(int row, int[] data) {
+        IntBuffer chunk = chunks[row / rowsPerChunk];
+        int offset = (row % rowsPerChunk) * columns;
+        for (int column = 0; column < columns; column++) {
+            if (chunk.get(offset + column) != data[column]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equalsIgnore(int row1, int row2, int ignore) {
+        IntBuffer chunk1 = chunks[row1 / rowsPerChunk];
+        IntBuffer chunk2 = chunks[row2 / rowsPerChunk];
+        int offset1 = (row1 % rowsPerChunk) * columns;
+        int offset2 = (row2 % rowsPerChunk) * columns;
+        for (int column = 0; column < columns; column++) {
+            if (column != ignore && chunk1.get(offset1 + column) != chunk2.get(offset2 + column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equalsIgnoringOutliers(int row1, int row2) {
+        return equals(row1, row2, Data.REMOVE_OUTLIER_MASK);
+    }
+
+    @Override
+    public int get(final int row, final int col) {
+        return chunks[row / rowsPerChunk].get((row % rowsPerChunk) * columns + col);
+    }
+
+    @Override
+    public int getNumColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getNumRows() {
+        return rows;
+    }
+
+    @Override
+    public int getValueAtColumn(int column) {
+        return baseChunk.get(baseOffset + column);
+    }
+
+    @Override
+    public DataMatrix getView() {
+        return new DataMatrixMapped(this);
+    }
+
+    @Override
+    public int hashCode(final int row) {
+        IntBuffer chunk = chunks[row / rowsPerChunk];
+        int offset = (row % rowsPerChunk) * columns;
+        int result = 23;
+        for (int column = 0; column < columns; column++) {
+            result = (37 * result) + chunk.get(offset + column);
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCodeIgnore(final int row, final int ignore) {
+        IntBuffer chunk = chunks[row / rowsPerChunk];
+        int offset = (row % rowsPerChunk) * columns;
+        int result = 23;
+        for (int column = 0; column < columns; column++) {
+            result = (column == ignore) ? result : ((37 * result) + chunk.get(offset + column));
+        }
+        return result;
+    }
+
+    @Override
+    public void iterator(int row) {
+        iteratorChunk = chunks[row / rowsPerChunk];
+        iteratorOffset = (row % rowsPerChunk) * columns;
+        iteratorI = 0;
+    }
+
+    @Override
+    public boolean iterator_hasNext() {
+        return iteratorI < columns;
+    }
+
+    @Override
+    public int iterator_next() {
+        iteratorI++;
+        return iteratorChunk.get(iteratorOffset++);
+    }
+
+    @Override
+    public void iterator_write(int value) {
+        iteratorChunk.put(iteratorOffset++, value);
+        iteratorI++;
+    }
+
+    @Override
+    public void or(int row, int value) {
+        IntBuffer chunk = chunks[row / rowsPerChunk];
+        int offset = (row % rowsPerChunk) * columns;
+        chunk.put(offset, chunk.get(offset) | value);
+    }
+
+    @Override
+    public void set(int row, int column, int value) {
+        chunks[row / rowsPerChunk].put((row % rowsPerChunk) * columns + column, value);
+    }
+
+    @Override
+    public void setRow(int row) {
+        this.baseChunk = chunks[row / rowsPerChunk];
+        this.baseOffset = (row % rowsPerChunk) * columns;
+    }
+
+    @Override
+    public void setRow(int row, int[] data) {
+        IntBuffer chunk = chunks[row / rowsPerChunk];
+        int offset = (row % rowsPerChunk) * columns;
+        for (int column = 0; column < data.length; column++) {
+            chunk.put(offset + column, data[column]);
+        }
+    }
+
+    @Override
+    public void setValueAtColumn(int column, int value) {
+        baseChunk.put(baseOffset + column, value);
+    }
+
+    @Override
+    public void swap(int row1, int row2) {
+        IntBuffer chunk1 = chunks[row1 / rowsPerChunk];
+        IntBuffer chunk2 = chunks[row2 / rowsPerChunk];
+        int offset1 = (row1 % rowsPerChunk) * columns;
+        int offset2 = (row2 % rowsPerChunk) * columns;
+        for (int column = 0; column < columns; column++) {
+            int temp = chunk1.get(offset1 + column);
+            chunk1.put(offset1 + column, chunk2.get(offset2 + column));
+            chunk2.put(offset2 + column, temp);
+        }
+    }
+
+    /**
+     * Internal equals
+     * @param row1
+     * @param row2
+     * @param flag
+     * @return
+     */
+    private boolean equals(int row1, int row2, int flag) {
+        IntBuffer chunk1 = chunks[row1 / rowsPerChunk];
+        IntBuffer chunk2 = chunks[row2 / rowsPerChunk];
+        int offset1 = (row1 % rowsPerChunk) * columns;
+        int offset2 = (row2 % rowsPerChunk) * columns;
+        if (columns > 0 && (chunk1.get(offset1) & flag) != (chunk2.get(offset2) & flag)) {
+            return false;
+        }
+        for (int column = 1; column < columns; column++) {
+            if (chunk1.get(offset1 + column) != chunk2.get(offset2 + column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Matrices are serialized as on-heap matrices
+     * @return
+     * @throws ObjectStreamException
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        DataMatrix result = new DataMatrix(this.rows, this.columns);
+        for (int row = 0; row < rows; row++) {
+            result.copyFrom(row, this, row);
+        }
+        return result;
+    }
+
+    @Override
+    protected DataMatrix clone(int[] subset) {
+        DataMatrixMapped result = new DataMatrixMapped(subset.length, this.columns, this.directory);
+        for (int row = 0; row < subset.length; row++) {
+            result.copyFrom(row, this, subset[row]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.data;
+
+/**
+ * A data matrix in which each column only occupies as many bits as are required for
+ * representing the codes of its domain. The cells of a row are packed into a fixed
+ * number of long words, which are compared directly when checking rows for equality.
+ * Column 0 reserves an additional bit for the outlier flag.
+ * 
+ * @author Fabian Prasser
+ */
+public class DataMatrixPacked extends DataMatrix {
+
+    /** SVUID */
+    private static final long serialVersionUID = -4215434337163896530L;
+
+    /** Number of bits per word */
+    private static final int  WORD_SIZE        = 64;
+
+    /**
+     * Returns whether packing data with the given domain sizes requires at most half of the
+     * memory required by the default representation.
+     * 
+     * @param domainSizes
+     * @return
+     */
+    public static boolean isBeneficial(int[] domainSizes) {
+        return domainSizes.length > 1 && getNumWords(getBits(domainSizes)) * 4 <= domainSizes.length;
+    }
+
+    /**
+     * Returns the number of bits required for each column
+     * @param domainSizes
+     * @return
+     */
+    private static int[] getBits(int[] domainSizes) {
+        int[] bits = new int[domainSizes.length];
+        for (int column = 0; column < bits.length; column++) {
+            bits[column] = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(0, domainSizes[column] - 1)));
+            if (column == 0) {
+                bits[column]++;
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the number of words required for storing one row
+     * @param bits
+     * @return
+     */
+    private static int getNumWords(int[] bits) {
+        int words = 1;
+        int used = 0;
+        for (int bit : bits) {
+            if (used + bit > WORD_SIZE) {
+                words++;
+                used = 0;
+            }
+            used += bit;
+        }
+        return words;
+    }
+
+    /** Backing array */
+    private final long[] array;
+
+    /** The number of rows. */
+    private final int    rows;
+
+    /** The number of columns. */
+    private final int    columns;
+
+    /** The number of words per row */
+    private final int    rowWords;
+
+    /** Index of the word of each column */
+    private final int[]  words;
+
+    /** Offset of each column in its word */
+    private final int[]  shifts;
+
+    /** Mask of each column */
+    private final long[] masks;
+
+    /** Bit representing the outlier flag in the first word */
+    private final long   outlierBit;
+
+    /** Row */
+    private int          baseOffset     = 0;
+
+    /** Iterate */
+    private int          iteratorI      = 0;
+
+    /** Iterate */
+    private int          iteratorOffset = 0;
+
+    /**
+     * Instantiates a new matrix.
+     *
+     * @param rows the num rows
+     * @param domainSizes the size of the domain of each column
+     */
+    public DataMatrixPacked(final int rows, final int[] domainSizes) {
+        super(0, 0);
+        
+        // Prepare layout
+        int[] bits = getBits(domainSizes);
+        this.rows = rows;
+        this.columns = domainSizes.length;
+        this.rowWords = getNumWords(bits);
+        this.words = new int[columns];
+        this.shifts = new int[columns];
+        this.masks = new long[columns];
+        int word = 0;
+        int used = 0;
+        for (int column = 0; column < columns; column++) {
+            if (used + bits[column] > WORD_SIZE) {
+                word++;
+                used = 0;
+            }
+            this.words[column] = word;
+            this.shifts[column] = used;
+            this.masks[column] = (1L << (column == 0 ? bits[column] - 1 : bits[column])) - 1L;
+            used += bits[column];
+        }
+        this.outlierBit = columns == 0 ? 0L : 1L << (shifts[0] + bits[0] - 1);
+        
+        // Allocate
+        try {
+            this.array = new long[Math.multiplyExact(rows, rowWords)];
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Not more then 2^31-1 words supported");
+        }
+    }
+
+    /**
+     * Instantiates a view on the given matrix
+     *
+     * @param other
+     */
+    private DataMatrixPacked(final DataMatrixPacked other) {
+        super(0, 0);
+        this.array = other.array;
+        this.rows = other.rows;
+        this.columns = other.columns;
+        this.rowWords = other.rowWords;
+        this.words = other.words;
+        this.shifts = other.shifts;
+        this.masks = other.masks;
+        this.outlierBit = other.outlierBit;
+    }
+
+    /**
+     * Instantiates a new matrix with the same layout as the given matrix.
+     *
+     * @param other
+     * @param rows
+     */
+    private DataMatrixPacked(final DataMatrixPacked other, final int rows) {
+        super(0, 0);
+        this.array = new long[rows * other.rowWords];
+        this.rows = rows;
+        this.columns = other.columns;
+        this.rowWords = other.rowWords;
+        this.words = other.words;
+        this.shifts = other.shifts;
+        this.masks = other.masks;
+        this.outlierBit = other.outlierBit;
+    }
+
+    @Override
+    public void and(int row, int value) {
+        set(row, 0, get(row, 0) & value);
+    }
+
+    @Override
+    public DataMatrix clone() {
+        DataMatrixPacked result = new DataMatrixPacked(this, this.rows);
+        System.arraycopy(this.array, 0, result.array, 0, this.array.length);
+        return result;
+    }
+
+    @Override
+    public void copyFrom(int row, DataMatrix sourceMatrix, int sourceRow) {
+        if (sourceMatrix instanceof DataMatrixPacked && ((DataMatrixPacked) sourceMatrix).words == this.words) {
+            System.arraycopy(((DataMatrixPacked) sourceMatrix).array, sourceRow * rowWords, this.array, row * rowWords, rowWords);
+        } else {
+            for (int column = 0; column < columns; column++) {
+                set(row, column, sourceMatrix.get(sourceRow, column));
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(final int row1, final int row2) {
+        int offset1 = row1 * rowWords;
+        int offset2 = row2 * rowWords;
+        for (int i = 0; i < rowWords; i++) {
+            if (array[offset1++] != array[offset2++]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(int row, int[] data) {
+        for (int column = 0; column < columns; column++) {
+            if (get(row, column) != data[column]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equalsIgnore(int row1, int row2, int ignore) {
+        int offset1 = row1 * rowWords;
+        int offset2 = row2 * rowWords;
+        for (int i = 0; i < rowWords; i++) {
+            long mask = (i == words[ignore]) ? ~((masks[ignore] << shifts[ignore]) | (ignore == 0 ? outlierBit : 0L)) : ~0L;
+            if ((array[offset1++] & mask) != (array[offset2++] & mask)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equalsIgnoringOutliers(int row1, int row2) {
+        int offset1 = row1 * rowWords;
+        int offset2 = row2 * rowWords;
+        if ((array[offset1++] & ~outlierBit) != (array[offset2++] & ~outlierBit)) {
+            return false;
+        }
+        for (int i = 1; i < rowWords; i++) {
+            if (array[offset1++] != array[offset2++]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int get(final int row, final int col) {
+        return decode(array[row * rowWords + words[col]], col);
+    }
+
+    @Override
+    public int getNumColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getNumRows() {
+        return rows;
+    }
+
+    @Override
+    public int getValueAtColumn(int column) {
+        return decode(array[baseOffset + words[column]], column);
+    }
+
+    @Override
+    public DataMatrix getView() {
+        return new DataMatrixPacked(this);
+    }
+
+    @Override
+    public int hashCode(final int row) {
+        int offset = row * rowWords;
+        int result = 23;
+        for (int column = 0; column < columns; column++) {
+            result = (37 * result) + decode(array[offset + words[column]], column);
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCodeIgnore(final int row, final int ignore) {
+        int offset = row * rowWords;
+        int result = 23;
+        for (int column = 0; column < columns; column++) {
+            result = (column == ignore) ? result : ((37 * result) + decode(array[offset + words[column]], column));
+        }
+        return result;
+    }
+
+    @Override
+    public void iterator(int row) {
+        iteratorOffset = row * rowWords;
+        iteratorI = 0;
+    }
+
+    @Override
+    public boolean iterator_hasNext() {
+        return iteratorI < columns;
+    }
+
+    @Override
+    public int iterator_next() {
+        return decode(array[iteratorOffset + words[iteratorI]], iteratorI++);
+    }
+
+    @Override
+    public void iterator_write(int value) {
+        encode(iteratorOffset + words[iteratorI], iteratorI++, value);
+    }
+
+    @Override
+    public void or(int row, int value) {
+        set(row, 0, get(row, 0) | value);
+    }
+
+    @Override
+    public void set(int row, int column, int value) {
+        encode(row * rowWords + words[column], column, value);
+    }
+
+    @Override
+    public void setRow(int row) {
+        this.baseOffset = row * rowWords;
+    }
+
+    @Override
+    public void setRow(int row, int[] data) {
+        for (int column = 0; column < data.length; column++) {
+            set(row, column, data[column]);
+        }
+    }
+
+    @Override
+    public void setValueAtColumn(int column, int value) {
+        encode(baseOffset + words[column], column, value);
+    }
+
+    @Override
+    public void swap(int row1, int row2) {
+        int offset1 = row1 * rowWords;
+        int offset2 = row2 * rowWords;
+        for (int i = 0; i < rowWords; i++) {
+            long temp = this.array[offset1];
+            this.array[offset1] = this.array[offset2];
+            this.array[offset2] = temp;
+            offset1++;
+            offset2++;
+        }
+    }
+
+    /**
+     * Decodes the value of the given column from the given word
+     * @param word
+     * @param column
+     * @return
+     */
+    private int decode(long word, int column) {
+        int value = (int) ((word >>> shifts[column]) & masks[column]);
+        return (column == 0 && (word & outlierBit) != 0) ? value | Data.OUTLIER_MASK : value;
+    }
+
+    /**
+     * Encodes the value of the given column into the word with the given index
+     * @param index
+     * @param column
+     * @param value
+     */
+    private void encode(int index, int column, int value) {
+        long code = (column == 0) ? (value & Data.REMOVE_OUTLIER_MASK) : value;
+        if (code < 0 || code > masks[column]) {
+            throw new IllegalArgumentException("Value " + value + " exceeds the domain of column " + column);
+        }
+        long mask = masks[column] << shifts[column];
+        long word = (array[index] & ~mask) | (code << shifts[column]);
+        if (column == 0) {
+            word = (value & Data.OUTLIER_MASK) != 0 ? word | outlierBit : word & ~outlierBit;
+        }
+        array[index] = word;
+    }
+
+    @Override
+    protected DataMatrix clone(int[] subset) {
+        DataMatrixPacked result = new DataMatrixPacked(this, subset.length);
+        int targetOffset = 0;
+        for (int source : subset) {
+            System.arraycopy(this.array, source * rowWords, result.array, targetOffset, rowWords);
+            targetOffset += rowWords;
+        }
+        return result;
+    }
+}
@@ -88,6 +88,11 @@ public class DataMatrixSubset extends DataMatrix {
         return matrix.getValueAtColumn(column);
     }
 
+    @Override
+    public DataMatrix getView() {
+        return new DataMatrixSubset(matrix.getView(), subset);
+    }
+
     @Override
     public int hashCode(int row) {
         return matrix.hashCode(subset[row]);
@@ -141,4 +146,4 @@ public class DataMatrixSubset extends DataMatrix {
     public void swap(int row1, int row2) {
         matrix.swap(subset[row1], subset[row2]);
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -52,11 +52,13 @@ public class Dictionary implements Serializable {
      */
     @SuppressWarnings("unchecked")
     public Dictionary(Dictionary input, int[] columns) {
-        maps = new ObjectIntOpenHashMap[columns.length];
+        maps = input.maps == null ? null : new ObjectIntOpenHashMap[columns.length];
         mapping = new String[columns.length][];
         suppressed = new int[columns.length];
         for (int i = 0; i < columns.length; i++) {
-            maps[i] = input.maps == null ? null : input.maps[columns[i]].clone();
+            if (maps != null) {
+                maps[i] = input.maps[columns[i]].clone();
+            }
             mapping[i] = input.mapping[columns[i]].clone();
             suppressed[i] = input.suppressed[columns[i]];
         }
@@ -0,0 +1,373 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.AttributeType.MicroAggregationFunction;
+import org.deidentifier.arx.DataDefinition;
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.aggregates.HierarchyBuilder;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+
+/**
+ * Reads data, including its definition and generalization hierarchies, stored in ARX's binary
+ * format, as written by {@link BinaryDataOutput}. The file is memory-mapped and read in one pass.
+ * 
+ * @author Fabian Prasser
+ */
+public class BinaryDataInput {
+
+    /** Size of the memory-mapped regions */
+    private static final long WINDOW_SIZE = 1 << 28;
+
+    /** Maximal number of codes read at once */
+    private static final int  BATCH_SIZE  = 1 << 16;
+
+    /** The file */
+    private final File        file;
+
+    /** The channel */
+    private FileChannel       channel;
+
+    /** The current region */
+    private ByteBuffer        window;
+
+    /** Position of the current region in the file */
+    private long              offset;
+
+    /** The header */
+    private String[]          header;
+
+    /** The dictionary */
+    private Dictionary        dictionary;
+
+    /** The data */
+    private DataMatrix        data;
+
+    /** The definition */
+    private DataDefinition    definition;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param file the file
+     */
+    public BinaryDataInput(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the encoded data. Only available after calling read().
+     * @return
+     */
+    public DataMatrix getData() {
+        return data;
+    }
+
+    /**
+     * Returns the definition. Only available after calling read().
+     * @return
+     */
+    public DataDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Returns the finalized dictionary. Only available after calling read().
+     * @return
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the header. Only available after calling read().
+     * @return
+     */
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Reads the file
+     * 
+     * @throws IOException
+     */
+    public void read() throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            
+            // Prepare
+            this.channel = channel;
+            this.window = null;
+            this.offset = 0;
+            
+            // Header
+            if (ensure(8).getInt() != BinaryDataOutput.MAGIC_NUMBER) {
+                throw new IOException("Not a binary ARX data file");
+            }
+            int version = window.getInt();
+            if (version != BinaryDataOutput.VERSION) {
+                throw new IOException("Unsupported version of the binary format: " + version);
+            }
+            int columns = ensure(4).getInt();
+            this.header = new String[columns];
+            for (int column = 0; column < columns; column++) {
+                header[column] = readString();
+            }
+            
+            // Dictionaries, mapping codes in the file to codes in the dictionary. The code
+            // following the last value denotes suppressed values, which are registered lazily.
+            this.dictionary = new Dictionary(columns);
+            int[][] mapping = new int[columns][];
+            int[] widths = new int[columns];
+            for (int column = 0; column < columns; column++) {
+                mapping[column] = new int[ensure(4).getInt() + 1];
+                widths[column] = BinaryDataOutput.getWidth(mapping[column].length);
+                for (int code = 0; code < mapping[column].length - 1; code++) {
+                    mapping[column][code] = dictionary.register(column, readString());
+                }
+                mapping[column][mapping[column].length - 1] = -1;
+            }
+            
+            // Data
+            int rows = ensure(4).getInt();
+            this.data = new DataMatrix(rows, columns);
+            int[] codes = new int[Math.min(rows, BinaryDataOutput.ROWS_PER_GROUP)];
+            for (int offset = 0; offset < rows; offset += BinaryDataOutput.ROWS_PER_GROUP) {
+                int size = Math.min(BinaryDataOutput.ROWS_PER_GROUP, rows - offset);
+                for (int column = 0; column < columns; column++) {
+                    readCodes(codes, size, widths[column]);
+                    for (int index = 0; index < size; index++) {
+                        int code = mapping[column][codes[index]];
+                        if (code == -1) {
+                            code = dictionary.register(column, DataType.ANY_VALUE);
+                            mapping[column][codes[index]] = code;
+                        }
+                        data.set(offset + index, column, code);
+                    }
+                }
+            }
+            this.dictionary.finalizeAll();
+            
+            // Definition
+            this.definition = new DataDefinition();
+            for (String attribute : header) {
+                readDefinition(attribute);
+            }
+            
+        } finally {
+            this.channel = null;
+            this.window = null;
+        }
+    }
+
+    /**
+     * Makes sure that the given number of bytes can be read from the current region
+     * 
+     * @param bytes
+     * @return the current region
+     * @throws IOException
+     */
+    private ByteBuffer ensure(int bytes) throws IOException {
+        if (window == null || window.remaining() < bytes) {
+            long position = window == null ? 0 : offset + window.position();
+            long size = channel.size();
+            if (position + bytes > size) {
+                throw new IOException("Unexpected end of file");
+            }
+            offset = position;
+            window = channel.map(MapMode.READ_ONLY, position, Math.min(size - position, Math.max(WINDOW_SIZE, bytes)));
+        }
+        return window;
+    }
+
+    /**
+     * Reads codes into the given array
+     * @param codes
+     * @param size
+     * @param width
+     * @throws IOException
+     */
+    private void readCodes(int[] codes, int size, int width) throws IOException {
+        for (int start = 0; start < size; start += BATCH_SIZE) {
+            int end = Math.min(size, start + BATCH_SIZE);
+            ByteBuffer buffer = ensure((end - start) * width);
+            for (int i = start; i < end; i++) {
+                switch (width) {
+                case 1:
+                    codes[i] = buffer.get() & 0xFF;
+                    break;
+                case 2:
+                    codes[i] = buffer.getShort() & 0xFFFF;
+                    break;
+                default:
+                    codes[i] = buffer.getInt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the definition of the given attribute
+     * @param attribute
+     * @throws IOException
+     */
+    private void readDefinition(String attribute) throws IOException {
+        
+        // Attribute type
+        AttributeType type = null;
+        switch (ensure(1).get()) {
+        case BinaryDataOutput.TYPE_NONE:
+            break;
+        case BinaryDataOutput.TYPE_QUASI_IDENTIFYING:
+            type = AttributeType.QUASI_IDENTIFYING_ATTRIBUTE;
+            break;
+        case BinaryDataOutput.TYPE_SENSITIVE:
+            type = AttributeType.SENSITIVE_ATTRIBUTE;
+            break;
+        case BinaryDataOutput.TYPE_INSENSITIVE:
+            type = AttributeType.INSENSITIVE_ATTRIBUTE;
+            break;
+        case BinaryDataOutput.TYPE_IDENTIFYING:
+            type = AttributeType.IDENTIFYING_ATTRIBUTE;
+            break;
+        case BinaryDataOutput.TYPE_HIERARCHY:
+            type = readHierarchy();
+            break;
+        case BinaryDataOutput.TYPE_SERIALIZED:
+            type = (AttributeType) readObject();
+            break;
+        default:
+            throw new IOException("Unknown attribute type");
+        }
+        if (type != null) {
+            definition.setAttributeType(attribute, type);
+        }
+        
+        // Hierarchy
+        switch (ensure(1).get()) {
+        case BinaryDataOutput.HIERARCHY_NONE:
+            break;
+        case BinaryDataOutput.HIERARCHY_ATTRIBUTE_TYPE:
+            definition.setHierarchy(attribute, (Hierarchy) type);
+            break;
+        case BinaryDataOutput.HIERARCHY_STORED:
+            definition.setHierarchy(attribute, readHierarchy());
+            break;
+        default:
+            throw new IOException("Unknown type of hierarchy");
+        }
+        
+        // Other properties
+        HierarchyBuilder<?> builder = (HierarchyBuilder<?>) readObject();
+        if (builder != null) {
+            definition.setHierarchy(attribute, builder);
+        }
+        DataType<?> dataType = (DataType<?>) readObject();
+        if (dataType != null) {
+            definition.setDataType(attribute, dataType);
+        }
+        MicroAggregationFunction function = (MicroAggregationFunction) readObject();
+        boolean clustering = ensure(1).get() != 0;
+        if (function != null) {
+            definition.setMicroAggregationFunction(attribute, function, clustering);
+        }
+        int minimum = ensure(8).getInt();
+        int maximum = window.getInt();
+        if (minimum != -1) {
+            definition.setMinimumGeneralization(attribute, minimum);
+        }
+        if (maximum != -1) {
+            definition.setMaximumGeneralization(attribute, maximum);
+        }
+        if (ensure(1).get() != 0) {
+            definition.setResponseVariable(attribute, true);
+        }
+    }
+
+    /**
+     * Reads a hierarchy
+     * @return
+     * @throws IOException
+     */
+    private Hierarchy readHierarchy() throws IOException {
+        
+        // Dictionary
+        int rows = ensure(12).getInt();
+        int levels = window.getInt();
+        String[] values = new String[window.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readString();
+        }
+        
+        // Codes
+        String[][] hierarchy = new String[rows][levels];
+        int[] codes = new int[rows];
+        for (int level = 0; level < levels; level++) {
+            readCodes(codes, rows, BinaryDataOutput.getWidth(values.length));
+            for (int row = 0; row < rows; row++) {
+                hierarchy[row][level] = values[codes[row]];
+            }
+        }
+        return Hierarchy.create(hierarchy);
+    }
+
+    /**
+     * Reads a serialized object, which may be null
+     * @return
+     * @throws IOException
+     */
+    private Object readObject() throws IOException {
+        int length = ensure(4).getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ensure(length).get(bytes);
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads a string
+     * @return
+     * @throws IOException
+     */
+    private String readString() throws IOException {
+        int length = ensure(4).getInt();
+        byte[] bytes = new byte[length];
+        ensure(length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
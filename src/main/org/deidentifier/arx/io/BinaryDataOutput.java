@@ -0,0 +1,338 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.DataDefinition;
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.io.CSVDataOutputParallel.Rows;
+
+/**
+ * Writes data, including its definition and generalization hierarchies, in ARX's binary format.
+ * The format consists of the header, a dictionary for each column, the encoded data and the
+ * definition of each attribute. Data is stored in groups of rows. Within each group, codes are
+ * stored column by column, using one, two or four bytes per code, depending on the size of the
+ * dictionary. Hierarchies are encoded analogously. All numbers are stored in big-endian byte order.
+ * 
+ * @author Fabian Prasser
+ */
+public class BinaryDataOutput {
+
+    /** Magic number: "ARXB" */
+    static final int         MAGIC_NUMBER             = 0x41525842;
+
+    /** Version of the format */
+    static final int         VERSION                  = 1;
+
+    /** Number of rows per group */
+    static final int         ROWS_PER_GROUP           = 1 << 16;
+
+    /** Attribute type: none */
+    static final byte        TYPE_NONE                = 0;
+
+    /** Attribute type: quasi-identifying */
+    static final byte        TYPE_QUASI_IDENTIFYING   = 1;
+
+    /** Attribute type: sensitive */
+    static final byte        TYPE_SENSITIVE           = 2;
+
+    /** Attribute type: insensitive */
+    static final byte        TYPE_INSENSITIVE         = 3;
+
+    /** Attribute type: identifying */
+    static final byte        TYPE_IDENTIFYING         = 4;
+
+    /** Attribute type: hierarchy */
+    static final byte        TYPE_HIERARCHY           = 5;
+
+    /** Attribute type: other, serialized */
+    static final byte        TYPE_SERIALIZED          = 6;
+
+    /** Hierarchy: none */
+    static final byte        HIERARCHY_NONE           = 0;
+
+    /** Hierarchy: identical to the attribute type */
+    static final byte        HIERARCHY_ATTRIBUTE_TYPE = 1;
+
+    /** Hierarchy: stored */
+    static final byte        HIERARCHY_STORED         = 2;
+
+    /** Size of the buffer */
+    private static final int BUFFER_SIZE              = 1 << 20;
+
+    /** Stream */
+    private final DataOutputStream out;
+
+    /** Should the stream be closed */
+    private final boolean          close;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param file
+     * @throws IOException
+     */
+    public BinaryDataOutput(File file) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        this.close = true;
+    }
+
+    /**
+     * Creates a new instance. The stream will be flushed but not closed.
+     * 
+     * @param stream
+     */
+    public BinaryDataOutput(OutputStream stream) {
+        this.out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE));
+        this.close = false;
+    }
+
+    /**
+     * Returns the number of bytes used per code for a dictionary of the given size
+     * @param size
+     * @return
+     */
+    static int getWidth(int size) {
+        return size <= (1 << 8) ? 1 : size <= (1 << 16) ? 2 : 4;
+    }
+
+    /**
+     * Writes the data
+     * 
+     * @param header the header
+     * @param dictionary the values referenced by the codes, per column. May be null for columns
+     *                   which only contain suppressed values.
+     * @param rows the rows
+     * @param definition the definition
+     * @throws IOException
+     */
+    public void write(String[] header, String[][] dictionary, Rows rows, DataDefinition definition) throws IOException {
+        
+        try {
+            
+            // Header
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(VERSION);
+            out.writeInt(header.length);
+            for (String attribute : header) {
+                writeString(attribute);
+            }
+            
+            // Dictionaries. If a dictionary does not contain the suppressed value, 
+            // its size is used as the code for suppressed values.
+            int columns = header.length;
+            int[] suppressed = new int[columns];
+            int[] widths = new int[columns];
+            for (int column = 0; column < columns; column++) {
+                String[] values = dictionary[column] != null ? dictionary[column] : new String[0];
+                suppressed[column] = values.length;
+                for (int code = 0; code < values.length; code++) {
+                    if (values[code].equals(DataType.ANY_VALUE)) {
+                        suppressed[column] = code;
+                        break;
+                    }
+                }
+                widths[column] = getWidth(values.length + 1);
+                out.writeInt(values.length);
+                for (String value : values) {
+                    writeString(value);
+                }
+            }
+            
+            // Data
+            int numRows = rows.getNumRows();
+            out.writeInt(numRows);
+            int[] row = new int[columns];
+            int[][] group = new int[columns][Math.min(numRows, ROWS_PER_GROUP)];
+            for (int offset = 0; offset < numRows; offset += ROWS_PER_GROUP) {
+                int size = Math.min(ROWS_PER_GROUP, numRows - offset);
+                for (int index = 0; index < size; index++) {
+                    rows.getRow(offset + index, row);
+                    for (int column = 0; column < columns; column++) {
+                        group[column][index] = row[column] == -1 ? suppressed[column] : row[column];
+                    }
+                }
+                for (int column = 0; column < columns; column++) {
+                    writeCodes(group[column], size, widths[column]);
+                }
+            }
+            
+            // Definition
+            for (String attribute : header) {
+                writeDefinition(definition, attribute);
+            }
+            out.flush();
+            
+        } finally {
+            if (close) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the given codes
+     * @param codes
+     * @param size
+     * @param width
+     * @throws IOException
+     */
+    private void writeCodes(int[] codes, int size, int width) throws IOException {
+        for (int i = 0; i < size; i++) {
+            switch (width) {
+            case 1:
+                out.writeByte(codes[i]);
+                break;
+            case 2:
+                out.writeShort(codes[i]);
+                break;
+            default:
+                out.writeInt(codes[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the definition of the given attribute
+     * @param definition
+     * @param attribute
+     * @throws IOException
+     */
+    private void writeDefinition(DataDefinition definition, String attribute) throws IOException {
+        
+        // Attribute type
+        AttributeType type = definition.getAttributeType(attribute);
+        if (type == null) {
+            out.writeByte(TYPE_NONE);
+        } else if (type == AttributeType.QUASI_IDENTIFYING_ATTRIBUTE) {
+            out.writeByte(TYPE_QUASI_IDENTIFYING);
+        } else if (type == AttributeType.SENSITIVE_ATTRIBUTE) {
+            out.writeByte(TYPE_SENSITIVE);
+        } else if (type == AttributeType.INSENSITIVE_ATTRIBUTE) {
+            out.writeByte(TYPE_INSENSITIVE);
+        } else if (type == AttributeType.IDENTIFYING_ATTRIBUTE) {
+            out.writeByte(TYPE_IDENTIFYING);
+        } else if (type instanceof Hierarchy) {
+            out.writeByte(TYPE_HIERARCHY);
+            writeHierarchy(((Hierarchy) type).getHierarchy());
+        } else {
+            out.writeByte(TYPE_SERIALIZED);
+            writeObject(type);
+        }
+        
+        // Hierarchy
+        Hierarchy hierarchy = definition.getHierarchyObject(attribute);
+        if (hierarchy == null) {
+            out.writeByte(HIERARCHY_NONE);
+        } else if (hierarchy == type) {
+            out.writeByte(HIERARCHY_ATTRIBUTE_TYPE);
+        } else {
+            out.writeByte(HIERARCHY_STORED);
+            writeHierarchy(hierarchy.getHierarchy());
+        }
+        
+        // Other properties
+        boolean quasiIdentifying = definition.getQuasiIdentifyingAttributes().contains(attribute);
+        writeObject(definition.getHierarchyBuilder(attribute));
+        writeObject(definition.getDataType(attribute));
+        writeObject(definition.getMicroAggregationFunction(attribute));
+        out.writeBoolean(definition.getQuasiIdentifiersWithClusteringAndMicroaggregation().contains(attribute));
+        out.writeInt(quasiIdentifying && definition.isMinimumGeneralizationAvailable(attribute) ? definition.getMinimumGeneralization(attribute) : -1);
+        out.writeInt(quasiIdentifying && definition.isMaximumGeneralizationAvailable(attribute) ? definition.getMaximumGeneralization(attribute) : -1);
+        out.writeBoolean(definition.isResponseVariable(attribute));
+    }
+
+    /**
+     * Writes a hierarchy. Values are stored in a dictionary, codes are stored level by level.
+     * @param hierarchy
+     * @throws IOException
+     */
+    private void writeHierarchy(String[][] hierarchy) throws IOException {
+        
+        // Encode
+        int levels = hierarchy.length == 0 ? 0 : hierarchy[0].length;
+        Map<String, Integer> dictionary = new LinkedHashMap<String, Integer>();
+        int[][] codes = new int[levels][hierarchy.length];
+        for (int row = 0; row < hierarchy.length; row++) {
+            for (int level = 0; level < levels; level++) {
+                String value = hierarchy[row][level];
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(value, code);
+                }
+                codes[level][row] = code;
+            }
+        }
+        
+        // Write
+        out.writeInt(hierarchy.length);
+        out.writeInt(levels);
+        out.writeInt(dictionary.size());
+        for (String value : dictionary.keySet()) {
+            writeString(value);
+        }
+        int width = getWidth(dictionary.size());
+        for (int level = 0; level < levels; level++) {
+            writeCodes(codes[level], hierarchy.length, width);
+        }
+    }
+
+    /**
+     * Writes a serialized object, which may be null
+     * @param object
+     * @throws IOException
+     */
+    private void writeObject(Serializable object) throws IOException {
+        if (object == null) {
+            out.writeInt(-1);
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(object);
+        oos.close();
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    /**
+     * Writes a string
+     * @param value
+     * @throws IOException
+     */
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
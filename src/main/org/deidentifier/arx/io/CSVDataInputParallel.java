@@ -0,0 +1,458 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.deidentifier.arx.common.ThreadPool;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+
+/**
+ * Reads a CSV file in parallel and encodes it into a dictionary and a data matrix. The file
+ * is split into ranges of bytes at line breaks outside of quoted values. Ranges are parsed
+ * concurrently into separate dictionaries, which are then merged, such that the resulting codes
+ * are identical to those obtained when loading the file sequentially. Splitting requires a
+ * charset which encodes ASCII characters with single bytes, such as UTF-8 or ISO-8859-1.
+ * Otherwise, the file is processed as a single range. Assumes that the file contains a header.
+ * <br>
+ * Each range is parsed with the univocity parser used by {@link CSVDataInput}, which materializes
+ * one short-lived array of strings per row before its values are encoded. The parser does not
+ * offer an interface for consuming values individually.
+ * 
+ * @author Fabian Prasser
+ */
+public class CSVDataInputParallel {
+
+    /**
+     * A range of the file
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Chunk extends EncodedChunk {
+
+        /** First byte */
+        private final long start;
+
+        /** First byte of the next chunk */
+        private final long end;
+
+        /**
+         * Creates a new instance
+         * @param start
+         * @param end
+         */
+        private Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * An input stream reading a range of a file
+     * 
+     * @author Fabian Prasser
+     */
+    private static class RangeInputStream extends InputStream {
+
+        /** Channel */
+        private final FileChannel channel;
+
+        /** Current position */
+        private long              position;
+
+        /** End position */
+        private final long        end;
+
+        /**
+         * Creates a new instance
+         * @param channel
+         * @param start
+         * @param end
+         */
+        private RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int count = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, end - position)), position);
+            if (count <= 0) {
+                return -1;
+            }
+            position += count;
+            return count;
+        }
+    }
+
+    /** Minimal size of a chunk in bytes */
+    private static final long  MIN_CHUNK_SIZE      = 1 << 20;
+
+    /** Number of chunks per thread */
+    private static final int   CHUNKS_PER_THREAD   = 4;
+
+    /** Size of the buffer used for splitting the file */
+    private static final int   BUFFER_SIZE         = 1 << 20;
+
+    /** Scanner state: at the beginning of a value */
+    private static final int   STATE_FIELD_START   = 0;
+
+    /** Scanner state: within an unquoted value */
+    private static final int   STATE_UNQUOTED      = 1;
+
+    /** Scanner state: within a quoted value */
+    private static final int   STATE_QUOTED        = 2;
+
+    /** Scanner state: quote within a quoted value, which either is escaped or closes the value */
+    private static final int   STATE_QUOTED_QUOTE  = 3;
+
+    /** Scanner state: escape character within a quoted value */
+    private static final int   STATE_QUOTED_ESCAPE = 4;
+
+    /** The file */
+    private final File         file;
+
+    /** The charset */
+    private final Charset      charset;
+
+    /** The syntax */
+    private final CSVSyntax    syntax;
+
+    /** The options, if any */
+    private final CSVOptions   options;
+
+    /** The number of threads */
+    private final int          numThreads;
+
+    /** The header */
+    private String[]           header;
+
+    /** The dictionary */
+    private Dictionary         dictionary;
+
+    /** The data */
+    private DataMatrix         data;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param file the file
+     * @param charset the charset
+     * @param syntax the syntax
+     * @param options the options, may be null
+     * @param numThreads the number of threads
+     */
+    public CSVDataInputParallel(File file, Charset charset, CSVSyntax syntax, CSVOptions options, int numThreads) {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be > 0");
+        }
+        this.file = file;
+        this.charset = charset;
+        this.syntax = syntax;
+        this.options = options;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Returns the encoded data. Only available after calling read().
+     * @return
+     */
+    public DataMatrix getData() {
+        return data;
+    }
+
+    /**
+     * Returns the finalized dictionary. Only available after calling read().
+     * @return
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the header. Only available after calling read().
+     * @return
+     */
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Reads the file
+     * 
+     * @throws IOException
+     */
+    public void read() throws IOException {
+
+        // Header
+        this.header = readHeader();
+        final int columns = header.length;
+
+        // Split
+        final List<Chunk> chunks = split(numThreads == 1 ? 1 : numThreads * CHUNKS_PER_THREAD);
+        ExecutorService executor = chunks.size() > 1 ? ThreadPool.create("arx-csv", Math.min(numThreads, chunks.size())) : null;
+        
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            
+            // Parse
+            List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>();
+            for (int i = 0; i < chunks.size(); i++) {
+                final Chunk chunk = chunks.get(i);
+                final boolean first = i == 0;
+                futures.add(submit(executor, new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() throws IOException {
+                        parse(channel, chunk, columns, first);
+                        return chunk;
+                    }
+                }));
+            }
+
+            // Merge dictionaries in order of the chunks
+            int rows = 0;
+            for (Future<Chunk> future : futures) {
+                rows += get(future).getNumRows();
+            }
+            this.dictionary = EncodedChunk.merge(chunks, columns);
+
+            // Encode
+            this.data = new DataMatrix(rows, columns);
+            futures.clear();
+            for (final Chunk chunk : chunks) {
+                futures.add(submit(executor, new Callable<Chunk>() {
+                    @Override
+                    public Chunk call() {
+                        chunk.encode(data);
+                        return chunk;
+                    }
+                }));
+            }
+            for (Future<Chunk> future : futures) {
+                get(future);
+            }
+            
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Returns the result of the given future
+     * @param future
+     * @return
+     * @throws IOException
+     */
+    private Chunk get(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new IOException("Error while reading data", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Returns whether the file can be split at arbitrary bytes matching ASCII characters
+     * @return
+     */
+    private boolean isSplittable() {
+        return charset.equals(StandardCharsets.UTF_8) || (charset.canEncode() && charset.newEncoder().maxBytesPerChar() == 1f);
+    }
+
+    /**
+     * Parses and encodes the given chunk
+     * 
+     * @param channel
+     * @param chunk
+     * @param columns
+     * @param skipHeader
+     * @throws IOException
+     */
+    private void parse(FileChannel channel, Chunk chunk, int columns, boolean skipHeader) throws IOException {
+        
+        // Prepare
+        chunk.initialize(columns);
+        CSVDataInput input = new CSVDataInput(new InputStreamReader(new RangeInputStream(channel, chunk.start, chunk.end), charset),
+                                              syntax.getDelimiter(), syntax.getQuote(), syntax.getEscape(), syntax.getLinebreak(),
+                                              null, options);
+        Iterator<String[]> iterator = input.iterator(false);
+        if (skipHeader && iterator.hasNext()) {
+            iterator.next();
+        }
+        
+        // Encode
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+        }
+        input.close();
+    }
+
+    /**
+     * Reads the header
+     * @return
+     * @throws IOException
+     */
+    private String[] readHeader() throws IOException {
+        CSVDataInput input = new CSVDataInput(file, charset, syntax, options);
+        Iterator<String[]> iterator = input.iterator(false);
+        if (!iterator.hasNext()) {
+            input.close();
+            throw new IllegalArgumentException("Data object is empty!");
+        }
+        String[] header = iterator.next();
+        input.close();
+        return Arrays.copyOf(header, header.length);
+    }
+
+    /**
+     * Splits the file into chunks at line breaks which are not part of quoted values
+     * 
+     * @param numChunks
+     * @return
+     * @throws IOException
+     */
+    private List<Chunk> split(int numChunks) throws IOException {
+
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        long size = file.length();
+        long target = Math.max(MIN_CHUNK_SIZE, size / numChunks);
+        
+        // Single chunk
+        if (numChunks == 1 || size <= target || !isSplittable()) {
+            chunks.add(new Chunk(0, size));
+            return chunks;
+        }
+        
+        // Prepare
+        char delimiter = syntax.getDelimiter();
+        char quote = syntax.getQuote();
+        char escape = syntax.getEscape();
+        char linebreak = syntax.getLinebreak()[syntax.getLinebreak().length - 1];
+        int state = STATE_FIELD_START;
+        long start = 0;
+        long position = 0;
+        
+        // Scan
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer, position) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    char c = (char) (buffer.get() & 0xFF);
+                    position++;
+                    
+                    // Quoted values
+                    if (state == STATE_QUOTED_ESCAPE) {
+                        state = STATE_QUOTED;
+                        continue;
+                    } else if (state == STATE_QUOTED) {
+                        if (c == escape && escape != quote) {
+                            state = STATE_QUOTED_ESCAPE;
+                        } else if (c == quote) {
+                            state = STATE_QUOTED_QUOTE;
+                        }
+                        continue;
+                    } else if (state == STATE_QUOTED_QUOTE) {
+                        if (c == quote && escape == quote) {
+                            state = STATE_QUOTED;
+                            continue;
+                        }
+                        state = STATE_UNQUOTED;
+                    } else if (state == STATE_FIELD_START) {
+                        if (c == quote) {
+                            state = STATE_QUOTED;
+                            continue;
+                        } else if (c == ' ' || c == '\t') {
+                            continue;
+                        }
+                        state = STATE_UNQUOTED;
+                    }
+                    
+                    // Unquoted values
+                    if (c == delimiter) {
+                        state = STATE_FIELD_START;
+                    } else if (c == linebreak) {
+                        state = STATE_FIELD_START;
+                        if (position - start >= target && position < size) {
+                            chunks.add(new Chunk(start, position));
+                            start = position;
+                        }
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        
+        // Last chunk
+        chunks.add(new Chunk(start, size));
+        return chunks;
+    }
+
+    /**
+     * Submits the given task or executes it, if there is no executor
+     * 
+     * @param executor
+     * @param task
+     * @return
+     */
+    private Future<Chunk> submit(ExecutorService executor, Callable<Chunk> task) {
+        if (executor != null) {
+            return executor.submit(task);
+        }
+        FutureTask<Chunk> future = new FutureTask<Chunk>(task);
+        future.run();
+        return future;
+    }
+}
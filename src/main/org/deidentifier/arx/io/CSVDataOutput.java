@@ -400,7 +400,7 @@ public class CSVDataOutput {
      * @param options the options
      * @return the csv writer settings
      */
-    private CsvWriterSettings createSettings(final char delimiter, final char quote, final char escape, final char[] linebreak, final CSVOptions options) {
+    static CsvWriterSettings createSettings(final char delimiter, final char quote, final char escape, final char[] linebreak, final CSVOptions options) {
         CsvFormat format = new CsvFormat();
         format.setDelimiter(delimiter);
         format.setQuote(quote);
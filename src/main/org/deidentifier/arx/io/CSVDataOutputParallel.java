@@ -0,0 +1,370 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.common.ThreadPool;
+
+import com.univocity.parsers.csv.CsvWriter;
+import com.univocity.parsers.csv.CsvWriterSettings;
+
+/**
+ * Writes dictionary-encoded data to a CSV file. Each value of the dictionary is rendered and
+ * encoded into bytes only once, such that rows can be written by concatenating byte arrays.
+ * Blocks of rows are rendered concurrently and written to the target in order, with the number
+ * of blocks in flight being bounded. Values are rendered with the same settings as in
+ * {@link CSVDataOutput}, resulting in identical output.
+ * 
+ * @author Fabian Prasser
+ */
+public class CSVDataOutputParallel {
+
+    /**
+     * A buffer holding rendered rows
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Block {
+
+        /** Bytes */
+        private byte[] buffer = new byte[BLOCK_SIZE];
+
+        /** Number of bytes used */
+        private int    size;
+
+        /**
+         * Appends the given bytes
+         * @param bytes
+         */
+        private void append(byte[] bytes) {
+            if (size + bytes.length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(size + bytes.length, buffer.length * 2));
+            }
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+    }
+
+    /**
+     * Provides the encoded rows to write
+     * 
+     * @author Fabian Prasser
+     */
+    public static interface Rows {
+
+        /**
+         * Returns the number of rows
+         * @return
+         */
+        public int getNumRows();
+
+        /**
+         * Stores the codes of the given row in the given array. A code of -1 denotes a suppressed value.
+         * Will be called concurrently.
+         * 
+         * @param row
+         * @param codes
+         */
+        public void getRow(int row, int[] codes);
+    }
+
+    /** Number of rows per block */
+    private static final int          ROWS_PER_BLOCK    = 8192;
+
+    /** Initial size of a block in bytes */
+    private static final int          BLOCK_SIZE        = 1 << 20;
+
+    /** Number of blocks in flight per thread */
+    private static final int          BLOCKS_PER_THREAD = 2;
+
+    /** Channel */
+    private final WritableByteChannel channel;
+
+    /** Stream, if any */
+    private final OutputStream        stream;
+
+    /** Charset */
+    private final Charset             charset;
+
+    /** Syntax */
+    private final CSVSyntax           syntax;
+
+    /** Settings */
+    private final CsvWriterSettings   settings;
+
+    /** Number of threads */
+    private final int                 numThreads;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param file the file
+     * @param charset the charset
+     * @param syntax the syntax
+     * @param options the options, may be null
+     * @param numThreads the number of threads
+     * @throws IOException
+     */
+    public CSVDataOutputParallel(File file, Charset charset, CSVSyntax syntax, CSVOptions options, int numThreads) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING),
+             null, charset, syntax, options, numThreads);
+    }
+
+    /**
+     * Creates a new instance. The stream will be flushed but not closed.
+     * 
+     * @param stream the stream
+     * @param charset the charset
+     * @param syntax the syntax
+     * @param options the options, may be null
+     * @param numThreads the number of threads
+     */
+    public CSVDataOutputParallel(OutputStream stream, Charset charset, CSVSyntax syntax, CSVOptions options, int numThreads) {
+        this(Channels.newChannel(stream), stream, charset, syntax, options, numThreads);
+    }
+
+    /**
+     * Creates a new instance
+     * 
+     * @param channel
+     * @param stream
+     * @param charset
+     * @param syntax
+     * @param options
+     * @param numThreads
+     */
+    private CSVDataOutputParallel(WritableByteChannel channel, OutputStream stream, Charset charset, CSVSyntax syntax, CSVOptions options, int numThreads) {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be > 0");
+        }
+        this.channel = channel;
+        this.stream = stream;
+        this.charset = charset;
+        this.syntax = syntax;
+        this.settings = CSVDataOutput.createSettings(syntax.getDelimiter(), syntax.getQuote(), syntax.getEscape(), syntax.getLinebreak(), options);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Writes the data
+     * 
+     * @param header the header
+     * @param dictionary the values referenced by the codes, per column. May be null for columns
+     *                   which only contain suppressed values.
+     * @param rows the rows
+     * @throws IOException
+     */
+    public void write(final String[] header, final String[][] dictionary, final Rows rows) throws IOException {
+
+        final int columns = header.length;
+        final int numRows = rows.getNumRows();
+        final int numBlocks = (numRows + ROWS_PER_BLOCK - 1) / ROWS_PER_BLOCK;
+        ExecutorService executor = numThreads > 1 && numBlocks > 1 ? ThreadPool.create("arx-csv", numThreads) : null;
+        
+        try {
+
+            // Encode dictionaries
+            final byte[][][] values = new byte[columns][][];
+            final byte[][] suppressed = new byte[columns][];
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < columns; i++) {
+                final int column = i;
+                futures.add(submit(executor, new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        CsvWriter writer = new CsvWriter(settings);
+                        suppressed[column] = encode(writer, DataType.ANY_VALUE, column == 0);
+                        if (dictionary[column] != null) {
+                            values[column] = new byte[dictionary[column].length][];
+                            for (int code = 0; code < values[column].length; code++) {
+                                values[column][code] = encode(writer, dictionary[column][code], column == 0);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                get(future);
+            }
+            final byte[] delimiter = String.valueOf(syntax.getDelimiter()).getBytes(charset);
+            final byte[] linebreak = new String(syntax.getLinebreak()).getBytes(charset);
+
+            // Header
+            Block block = new Block();
+            block.append(new CsvWriter(settings).writeRowToString((Object[]) header).getBytes(charset));
+            block.append(linebreak);
+            write(block);
+
+            // Render and write blocks in order
+            final ConcurrentLinkedQueue<Block> pool = new ConcurrentLinkedQueue<Block>();
+            pool.add(block);
+            Deque<Future<Block>> pending = new ArrayDeque<Future<Block>>();
+            int next = 0;
+            while (next < numBlocks || !pending.isEmpty()) {
+                while (next < numBlocks && pending.size() < numThreads * BLOCKS_PER_THREAD) {
+                    final int start = next * ROWS_PER_BLOCK;
+                    final int end = Math.min(numRows, start + ROWS_PER_BLOCK);
+                    pending.add(submit(executor, new Callable<Block>() {
+                        @Override
+                        public Block call() {
+                            Block block = pool.poll();
+                            block = block != null ? block : new Block();
+                            block.size = 0;
+                            int[] codes = new int[columns];
+                            for (int row = start; row < end; row++) {
+                                rows.getRow(row, codes);
+                                for (int column = 0; column < columns; column++) {
+                                    if (column != 0) {
+                                        block.append(delimiter);
+                                    }
+                                    int code = codes[column];
+                                    block.append(code == -1 ? suppressed[column] : values[column][code]);
+                                }
+                                block.append(linebreak);
+                            }
+                            return block;
+                        }
+                    }));
+                    next++;
+                }
+                block = get(pending.poll());
+                write(block);
+                pool.add(block);
+            }
+
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+            if (stream != null) {
+                stream.flush();
+            } else {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Renders the given value and encodes it into bytes
+     * 
+     * @param writer
+     * @param value
+     * @param first Whether the value is the first in a row
+     * @return
+     */
+    private byte[] encode(CsvWriter writer, String value, boolean first) {
+        
+        // Values which will not be modified by the writer
+        if (!value.isEmpty() && value.charAt(0) > ' ' && value.charAt(value.length() - 1) > ' ' &&
+            (!first || value.charAt(0) != settings.getFormat().getComment())) {
+            boolean plain = true;
+            for (int i = 0; i < value.length() && plain; i++) {
+                char c = value.charAt(i);
+                plain = c != syntax.getDelimiter() && c != syntax.getQuote() && c != syntax.getEscape() && c != '\r' && c != '\n';
+                for (char linebreak : syntax.getLinebreak()) {
+                    plain &= c != linebreak;
+                }
+            }
+            if (plain) {
+                return value.getBytes(charset);
+            }
+        }
+        
+        // Render as part of a row with two values and extract
+        String rendered;
+        if (first) {
+            rendered = writer.writeRowToString(value, "x");
+            rendered = rendered.substring(0, rendered.length() - 2);
+        } else {
+            rendered = writer.writeRowToString("x", value);
+            rendered = rendered.substring(2);
+        }
+        return rendered.getBytes(charset);
+    }
+
+    /**
+     * Returns the result of the given future
+     * @param future
+     * @return
+     * @throws IOException
+     */
+    private <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new IOException("Error while writing data", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Submits the given task or executes it, if there is no executor
+     * 
+     * @param executor
+     * @param task
+     * @return
+     */
+    private <T> Future<T> submit(ExecutorService executor, Callable<T> task) {
+        if (executor != null) {
+            return executor.submit(task);
+        }
+        FutureTask<T> future = new FutureTask<T>(task);
+        future.run();
+        return future;
+    }
+
+    /**
+     * Writes the given block
+     * @param block
+     * @throws IOException
+     */
+    private void write(Block block) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(block.buffer, 0, block.size);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+
+/**
+ * A part of a data set which is encoded with a dictionary of its own, such that parts can
+ * be encoded concurrently. Dictionaries of parts are merged in order, such that the resulting
+ * codes are identical to those obtained when encoding the parts sequentially.
+ * 
+ * @author Fabian Prasser
+ */
+class EncodedChunk {
+
+    /** Codes, row-major, relative to the dictionary of the chunk */
+    private int[]      codes;
+
+    /** Number of rows */
+    private int        rows;
+
+    /** Dictionary of the chunk */
+    private Dictionary dictionary;
+
+    /** Mapping from codes of the chunk to global codes, per column */
+    private int[][]    mapping;
+
+    /** Index of the first row in the resulting data */
+    private int        offset;
+
+    /**
+     * Adds a row. Missing values are interpreted as null values.
+     * 
+     * @param values
+     */
+    void add(String[] values) {
+        int columns = dictionary.getNumDimensions();
+        int index = rows * columns;
+        if (index + columns > codes.length) {
+            codes = Arrays.copyOf(codes, Math.max(index + columns, codes.length * 2));
+        }
+        for (int i = 0; i < columns; i++) {
+            String value = (i < values.length) ? values[i] : DataType.NULL_VALUE;
+            value = (value != null) ? value : DataType.NULL_VALUE;
+            codes[index++] = dictionary.register(i, value);
+        }
+        rows++;
+    }
+
+    /**
+     * Writes the rows of this chunk into the given matrix. Requires that the chunk has been merged.
+     * 
+     * @param data
+     */
+    void encode(DataMatrix data) {
+        int columns = mapping.length;
+        int index = 0;
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                data.set(offset + row, column, mapping[column][codes[index++]]);
+            }
+        }
+        codes = null;
+        mapping = null;
+    }
+
+    /**
+     * Returns the number of rows
+     * @return
+     */
+    int getNumRows() {
+        return rows;
+    }
+
+    /**
+     * Prepares the chunk for adding rows
+     * 
+     * @param columns
+     */
+    void initialize(int columns) {
+        dictionary = new Dictionary(columns);
+        codes = new int[columns * 1024];
+        rows = 0;
+    }
+
+    /**
+     * Merges the dictionaries of the given chunks in the given order and prepares the chunks
+     * for being encoded with the resulting dictionary
+     * 
+     * @param chunks
+     * @param columns
+     * @return the finalized dictionary
+     */
+    static Dictionary merge(List<? extends EncodedChunk> chunks, int columns) {
+        Dictionary dictionary = new Dictionary(columns);
+        int rows = 0;
+        for (EncodedChunk chunk : chunks) {
+            chunk.dictionary.finalizeAll();
+            chunk.mapping = new int[columns][];
+            String[][] values = chunk.dictionary.getMapping();
+            for (int column = 0; column < columns; column++) {
+                chunk.mapping[column] = new int[values[column].length];
+                for (int code = 0; code < values[column].length; code++) {
+                    chunk.mapping[column][code] = dictionary.register(column, values[column][code]);
+                }
+            }
+            chunk.dictionary = null;
+            chunk.offset = rows;
+            rows += chunk.rows;
+        }
+        dictionary.finalizeAll();
+        return dictionary;
+    }
+}
@@ -53,6 +53,9 @@ public class ImportAdapterJDBC extends ImportAdapter {
     /** Indicates whether there is another row to return. */
     private boolean                 hasNext;
     
+    /** Original auto-commit mode of the connection, if it has been changed. */
+    private Boolean                 autoCommit;
+    
     /**
      * Indicates whether the first row has already been returned
      * 
@@ -105,8 +108,8 @@ public class ImportAdapterJDBC extends ImportAdapter {
                 throw new IOException("Couldn't determine number of rows");
             }
             
-            /* Query for actual data */
-            statement = config.getConnection().createStatement();
+            /* Query for actual data, streaming results with a cursor if a fetch size is given */
+            statement = createStatement();
             statement.execute("SELECT * FROM " + config.getTable());
             resultSet = statement.getResultSet();
             hasNext = resultSet.next();
@@ -228,6 +231,15 @@ public class ImportAdapterJDBC extends ImportAdapter {
         } catch (Exception e) {
             /* Ignore silently */
         }
+        try {
+            if (autoCommit != null) {
+                config.getConnection().commit();
+                config.getConnection().setAutoCommit(autoCommit);
+                autoCommit = null;
+            }
+        } catch (Exception e) {
+            /* Ignore silently */
+        }
         try {
             if (config.isManageConnection()) {
                 config.getConnection().close();
@@ -282,6 +294,25 @@ public class ImportAdapterJDBC extends ImportAdapter {
         
     }
 
+    /**
+     * Creates a statement for retrieving data. If a fetch size has been specified,
+     * auto-commit will be disabled, as required by some drivers for using cursors.
+     * 
+     * @return
+     * @throws SQLException
+     */
+    private Statement createStatement() throws SQLException {
+        Statement statement = config.getConnection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (config.getFetchSize() != null) {
+            if (config.getConnection().getAutoCommit()) {
+                autoCommit = true;
+                config.getConnection().setAutoCommit(false);
+            }
+            statement.setFetchSize(config.getFetchSize());
+        }
+        return statement;
+    }
+
     /**
      * Returns an array with indexes of columns that should be imported
      * 
@@ -51,6 +51,24 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
      * Determines whether we need to manage the JDBC connection.
      */
     private final boolean manageConnection;
+
+    /** URL, if known, used for opening further connections. */
+    private final String  url;
+
+    /** User, if any. */
+    private final String  user;
+
+    /** Password, if any. */
+    private final String  password;
+
+    /** Number of rows fetched at once, null if the driver's default is to be used. */
+    private Integer       fetchSize;
+
+    /** Key column used for partitioning, if any. */
+    private String        partitionColumn;
+
+    /** Number of partitions. */
+    private int           numPartitions = 1;
     
     /**
      * Creates a new instance of this object.
@@ -62,6 +80,9 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
         this.connection = connection;
         this.table = table;
         this.manageConnection = false;
+        this.url = null;
+        this.user = null;
+        this.password = null;
     }
     
     /**
@@ -75,6 +96,9 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
         this.connection = DriverManager.getConnection(url);
         this.table = table;
         this.manageConnection = true;
+        this.url = url;
+        this.user = null;
+        this.password = null;
     }
     
     /**
@@ -90,6 +114,9 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
         this.connection = DriverManager.getConnection(url, user, password);
         this.table = table;
         this.manageConnection = true;
+        this.url = url;
+        this.user = user;
+        this.password = password;
     }
     
     /**
@@ -138,6 +165,79 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
         }
     }
     
+    /**
+     * Returns the number of rows fetched from the database at once, null if the driver's default is used.
+     * 
+     * @return
+     */
+    public Integer getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Returns the number of partitions
+     * 
+     * @return
+     */
+    public int getNumPartitions() {
+        return numPartitions;
+    }
+
+    /**
+     * Returns the key column used for partitioning, null if partitioning is disabled
+     * 
+     * @return
+     */
+    public String getPartitionColumn() {
+        return partitionColumn;
+    }
+
+    /**
+     * Returns whether data is imported in partitions
+     * 
+     * @return
+     */
+    public boolean isPartitioned() {
+        return partitionColumn != null && numPartitions > 1;
+    }
+
+    /**
+     * Sets the number of rows fetched from the database at once. This enables cursor-based
+     * streaming, such that results are not buffered client-side entirely. For this purpose,
+     * auto-commit is disabled while data is being imported.
+     * 
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be > 0");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Enables partitioned import. The table is split into the given number of ranges of values of
+     * the given numeric key column, which are fetched concurrently on separate connections and encoded
+     * directly. Requires a configuration created from a URL. Rows are not returned in the same order
+     * as when importing data sequentially. Rows in which the key is null are part of the first partition.
+     * 
+     * @param column the key column
+     * @param numPartitions the number of partitions
+     */
+    public void setPartitioning(String column, int numPartitions) {
+        if (url == null) {
+            throw new IllegalStateException("Partitioned import requires a configuration created from a URL");
+        }
+        if (column == null) {
+            throw new IllegalArgumentException("Column must not be null");
+        }
+        if (numPartitions <= 0) {
+            throw new IllegalArgumentException("Number of partitions must be > 0");
+        }
+        this.partitionColumn = column;
+        this.numPartitions = numPartitions;
+    }
+
     /**
      * 
      *
@@ -181,6 +281,19 @@ public class ImportConfigurationJDBC extends ImportConfiguration {
         
     }
     
+    /**
+     * Opens a new connection to the database
+     * 
+     * @return
+     * @throws SQLException
+     */
+    protected Connection createConnection() throws SQLException {
+        if (url == null) {
+            throw new IllegalStateException("No URL available");
+        }
+        return user == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+    }
+
     /**
      * @return {@link #connection}
      */
@@ -0,0 +1,404 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.io;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.common.ThreadPool;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.Dictionary;
+
+/**
+ * Imports data from a JDBC source in parallel and encodes it into a dictionary and a data matrix.
+ * The table is split into ranges of values of a numeric key column, which are fetched concurrently
+ * on separate connections. Each range is encoded into a separate dictionary, which are then merged
+ * in the order of the ranges. Ranges are half-open and the first and last range are unbounded, so
+ * that each row is fetched exactly once, also if the key column is not integral.
+ * 
+ * @author Fabian Prasser
+ */
+public class JDBCDataInputParallel {
+
+    /**
+     * A range of the key column
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Partition extends EncodedChunk {
+
+        /** Lower bound, inclusive, null if unbounded */
+        private final Number  lower;
+
+        /** Upper bound, exclusive, null if unbounded */
+        private final Number  upper;
+
+        /** Whether null keys are included */
+        private final boolean nulls;
+
+        /**
+         * Creates a new instance
+         * @param lower
+         * @param upper
+         * @param nulls
+         */
+        private Partition(Number lower, Number upper, boolean nulls) {
+            this.lower = lower;
+            this.upper = upper;
+            this.nulls = nulls;
+        }
+    }
+
+    /** The configuration */
+    private final ImportConfigurationJDBC config;
+
+    /** Indexes of columns to import, starting at 1 */
+    private final int[]                   indexes;
+
+    /** The data types */
+    private final DataType<?>[]           dataTypes;
+
+    /** The header */
+    private String[]                      header;
+
+    /** The dictionary */
+    private Dictionary                    dictionary;
+
+    /** The data */
+    private DataMatrix                    data;
+
+    /**
+     * Creates a new instance
+     * 
+     * @param config the configuration, which must specify partitioning
+     */
+    public JDBCDataInputParallel(ImportConfigurationJDBC config) {
+        if (!config.isPartitioned()) {
+            throw new IllegalArgumentException("Configuration does not specify partitioning");
+        }
+        if (config.getColumns().isEmpty()) {
+            throw new IllegalArgumentException("No columns specified");
+        }
+        this.config = config;
+        this.indexes = new int[config.getColumns().size()];
+        this.dataTypes = new DataType<?>[config.getColumns().size()];
+        for (int i = 0; i < indexes.length; i++) {
+            ImportColumn column = config.getColumns().get(i);
+            this.indexes[i] = ((ImportColumnJDBC) column).getIndex() + 1;
+            this.dataTypes[i] = column.getDataType();
+        }
+    }
+
+    /**
+     * Returns the encoded data. Only available after calling read().
+     * @return
+     */
+    public DataMatrix getData() {
+        return data;
+    }
+
+    /**
+     * Returns the finalized dictionary. Only available after calling read().
+     * @return
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the header. Only available after calling read().
+     * @return
+     */
+    public String[] getHeader() {
+        return header;
+    }
+
+    /**
+     * Reads the data
+     * 
+     * @throws IOException
+     */
+    public void read() throws IOException {
+
+        final int columns = indexes.length;
+        ExecutorService executor = null;
+        
+        try {
+            
+            // Header and partitions
+            this.header = readHeader();
+            List<Partition> partitions = split();
+            
+            // Fetch and encode
+            executor = ThreadPool.create("arx-jdbc", partitions.size());
+            List<Future<Partition>> futures = new ArrayList<Future<Partition>>();
+            for (final Partition partition : partitions) {
+                futures.add(executor.submit(new Callable<Partition>() {
+                    @Override
+                    public Partition call() throws SQLException {
+                        fetch(partition, columns);
+                        return partition;
+                    }
+                }));
+            }
+            int rows = 0;
+            for (Future<Partition> future : futures) {
+                rows += get(future).getNumRows();
+            }
+            if (rows == 0) {
+                throw new IOException("Table doesn't contain any rows");
+            }
+            
+            // Merge dictionaries and encode
+            this.dictionary = EncodedChunk.merge(partitions, columns);
+            this.data = new DataMatrix(rows, columns);
+            futures.clear();
+            for (final Partition partition : partitions) {
+                futures.add(executor.submit(new Callable<Partition>() {
+                    @Override
+                    public Partition call() {
+                        partition.encode(data);
+                        return partition;
+                    }
+                }));
+            }
+            for (Future<Partition> future : futures) {
+                get(future);
+            }
+            
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+            if (config.isManageConnection()) {
+                config.close();
+            }
+        }
+    }
+
+    /**
+     * Fetches and encodes the given partition on a separate connection
+     * 
+     * @param partition
+     * @param columns
+     * @throws SQLException
+     */
+    private void fetch(Partition partition, int columns) throws SQLException {
+        
+        // Prepare
+        partition.initialize(columns);
+        String key = config.getPartitionColumn();
+        List<String> conditions = new ArrayList<String>();
+        List<Number> parameters = new ArrayList<Number>();
+        if (partition.lower != null) {
+            conditions.add(key + " >= ?");
+            parameters.add(partition.lower);
+        }
+        if (partition.upper != null) {
+            conditions.add(key + " < ?");
+            parameters.add(partition.upper);
+        }
+        String query = "SELECT * FROM " + config.getTable();
+        if (!conditions.isEmpty()) {
+            String range = conditions.size() == 1 ? conditions.get(0) : conditions.get(0) + " AND " + conditions.get(1);
+            query += " WHERE (" + range + ")" + (partition.nulls ? " OR " + key + " IS NULL" : "");
+        }
+        
+        try (Connection connection = config.createConnection()) {
+            
+            // Cursor-based streaming, if requested
+            if (config.getFetchSize() != null) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                if (config.getFetchSize() != null) {
+                    statement.setFetchSize(config.getFetchSize());
+                }
+                for (int i = 0; i < parameters.size(); i++) {
+                    Number parameter = parameters.get(i);
+                    if (parameter instanceof Long) {
+                        statement.setLong(i + 1, parameter.longValue());
+                    } else {
+                        statement.setDouble(i + 1, parameter.doubleValue());
+                    }
+                }
+                
+                // Encode
+                try (ResultSet result = statement.executeQuery()) {
+                    String[] row = new String[columns];
+                    while (result.next()) {
+                        for (int i = 0; i < columns; i++) {
+                            row[i] = IOUtil.trim(result.getString(indexes[i]));
+                            if (!dataTypes[i].isValid(row[i])) {
+                                if (config.getColumns().get(i).isCleansing()) {
+                                    row[i] = DataType.NULL_VALUE;
+                                } else {
+                                    throw new IllegalArgumentException("Data value does not match data type");
+                                }
+                            }
+                        }
+                        partition.add(row);
+                    }
+                }
+            }
+            if (config.getFetchSize() != null) {
+                connection.commit();
+            }
+        }
+    }
+
+    /**
+     * Returns the result of the given future
+     * @param future
+     * @return
+     * @throws IOException
+     * @throws SQLException
+     */
+    private Partition get(Future<Partition> future) throws IOException, SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else {
+                throw new IOException("Error while reading data", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Reads the header. Uses aliases, if specified, and the names of the columns otherwise.
+     * 
+     * @return
+     * @throws SQLException
+     */
+    private String[] readHeader() throws SQLException {
+        String[] header = new String[indexes.length];
+        try (Statement statement = config.getConnection().createStatement();
+             ResultSet result = statement.executeQuery("SELECT * FROM " + config.getTable() + " WHERE 1 = 0")) {
+            ResultSetMetaData metadata = result.getMetaData();
+            for (int i = 0; i < header.length; i++) {
+                ImportColumn column = config.getColumns().get(i);
+                if (column.getAliasName() != null && !column.getAliasName().equals("")) {
+                    header[i] = column.getAliasName();
+                } else {
+                    header[i] = IOUtil.trim(metadata.getColumnName(indexes[i]));
+                }
+                column.setAliasName(header[i]);
+            }
+        }
+        return header;
+    }
+
+    /**
+     * Returns whether values of the given SQL type are integral
+     * 
+     * @param metadata
+     * @param column
+     * @return
+     * @throws SQLException
+     */
+    private boolean isIntegral(ResultSetMetaData metadata, int column) throws SQLException {
+        switch (metadata.getColumnType(column)) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+            return true;
+        case Types.NUMERIC:
+        case Types.DECIMAL:
+            return metadata.getScale(column) == 0;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Splits the range of values of the key column into partitions. Bounds are computed
+     * as integers for integral key columns and as floating point numbers otherwise. The
+     * first partition also covers null keys.
+     * 
+     * @return
+     * @throws SQLException
+     * @throws IOException
+     */
+    private List<Partition> split() throws SQLException, IOException {
+        
+        // Determine range and bounds between partitions
+        String key = config.getPartitionColumn();
+        List<Number> bounds = new ArrayList<Number>();
+        try (Statement statement = config.getConnection().createStatement();
+             ResultSet result = statement.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + config.getTable())) {
+            if (!result.next()) {
+                throw new IOException("Couldn't determine range of key column");
+            }
+            if (isIntegral(result.getMetaData(), 1)) {
+                long min = result.getLong(1);
+                long max = result.getLong(2);
+                if (!result.wasNull()) {
+                    int count = (int) Math.max(1, Math.min(config.getNumPartitions(), max - min + 1));
+                    long size = (max - min + 1) / count;
+                    long remainder = (max - min + 1) % count;
+                    long lower = min;
+                    for (int i = 1; i < count; i++) {
+                        lower += size + (i <= remainder ? 1 : 0);
+                        bounds.add(lower);
+                    }
+                }
+            } else {
+                double min = result.getDouble(1);
+                double max = result.getDouble(2);
+                if (!result.wasNull() && max > min) {
+                    int count = config.getNumPartitions();
+                    for (int i = 1; i < count; i++) {
+                        bounds.add(min + (max - min) * i / count);
+                    }
+                }
+            }
+        }
+        
+        // Split
+        List<Partition> partitions = new ArrayList<Partition>();
+        for (int i = 0; i <= bounds.size(); i++) {
+            Number lower = i == 0 ? null : bounds.get(i - 1);
+            Number upper = i == bounds.size() ? null : bounds.get(i);
+            partitions.add(new Partition(lower, upper, i == 0));
+        }
+        return partitions;
+    }
+}
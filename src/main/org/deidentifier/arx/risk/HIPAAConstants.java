@@ -51,20 +51,20 @@ public abstract class HIPAAConstants {
     }
 
     /** Cities */
-    private Set<String>                       cities     = null;
+    private volatile Set<String>                       cities     = null;
     /** First names */
-    private Set<String>                       firstnames = null;
+    private volatile Set<String>                       firstnames = null;
     /** Last names */
-    private Set<String>                       lastnames  = null;
+    private volatile Set<String>                       lastnames  = null;
     /** States */
-    private Set<String>                       states     = null;
+    private volatile Set<String>                       states     = null;
     /** Zip codes */
-    private Set<String>                       zipcodes   = null;
+    private volatile Set<String>                       zipcodes   = null;
     /** Labels */
-    private Map<String, Map<String, Integer>> labels     = null;
+    private volatile Map<String, Map<String, Integer>> labels     = null;
                                                          
     /** Default charset */
-    private static final Charset              CHARSET    = StandardCharsets.UTF_8;
+    private static final Charset                       CHARSET    = StandardCharsets.UTF_8;
 
     /**
      * Returns all matchers for the given category
@@ -138,26 +138,47 @@ public abstract class HIPAAConstants {
     
     /** Cities */
     private Set<String> getCities() {
-        if (cities == null) {
-            cities = load("cities.csv");
+        Set<String> result = cities;
+        if (result == null) {
+            synchronized (this) {
+                result = cities;
+                if (result == null) {
+                    result = load("cities.csv");
+                    cities = result;
+                }
+            }
         }
-        return cities;
+        return result;
     }
     
     /** First names */
     private Set<String> getFirstnames() {
-        if (firstnames == null) {
-            firstnames = load("firstnames.csv");
+        Set<String> result = firstnames;
+        if (result == null) {
+            synchronized (this) {
+                result = firstnames;
+                if (result == null) {
+                    result = load("firstnames.csv");
+                    firstnames = result;
+                }
+            }
         }
-        return firstnames;
+        return result;
     }
     
     /** Last names */
     private Set<String> getLastnames() {
-        if (lastnames == null) {
-            lastnames = load("lastnames.csv");
+        Set<String> result = lastnames;
+        if (result == null) {
+            synchronized (this) {
+                result = lastnames;
+                if (result == null) {
+                    result = load("lastnames.csv");
+                    lastnames = result;
+                }
+            }
         }
-        return lastnames;
+        return result;
     }
     
     /**
@@ -166,54 +187,47 @@ public abstract class HIPAAConstants {
      */
     private Map<String, Map<String, Integer>> getNameConfigurations() {
         
-        if (this.labels == null) {
-                
-            InputStream stream = getInputStream("labels.properties");
-            BufferedReader br = new BufferedReader(new InputStreamReader(stream, CHARSET));
-            this.labels = new HashMap<String, Map<String, Integer>>();
-    
-            try {
-                String line = br.readLine();
-                while (line != null) {
-    
-                    String[] parts = line.split("=");
-                    String label = parts[0];
-                    parts = parts[1].split(",");
-                    Map<String, Integer> map = new HashMap<String, Integer>();
-                    for (int i = 0; i < parts.length; i += 2) {
-                        map.put(parts[i], Integer.valueOf(parts[i+1]));
-                    }
-                    labels.put(label, map);
-                    line = br.readLine();
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            } finally {
-                try {
-                    br.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+        Map<String, Map<String, Integer>> result = this.labels;
+        if (result == null) {
+            synchronized (this) {
+                result = this.labels;
+                if (result == null) {
+                    result = loadLabels();
+                    this.labels = result;
                 }
             }
         }
-        
-        return this.labels;
+        return result;
     }
 
     /** States */
     private Set<String> getStates() {
-        if (states == null) {
-            states = load("states.csv");
+        Set<String> result = states;
+        if (result == null) {
+            synchronized (this) {
+                result = states;
+                if (result == null) {
+                    result = load("states.csv");
+                    states = result;
+                }
+            }
         }
-        return states;
+        return result;
     }
 
     /** Zip codes */
     private Set<String> getZipcodes() {
-        if (zipcodes == null) {
-            zipcodes = load("zipcodes.csv");
+        Set<String> result = zipcodes;
+        if (result == null) {
+            synchronized (this) {
+                result = zipcodes;
+                if (result == null) {
+                    result = load("zipcodes.csv");
+                    zipcodes = result;
+                }
+            }
         }
-        return zipcodes;
+        return result;
     }
 
     /**
@@ -242,6 +256,43 @@ public abstract class HIPAAConstants {
         }
         return set;
     }
+
+    /**
+     * Loads all name configurations
+     * @return
+     */
+    private Map<String, Map<String, Integer>> loadLabels() {
+        
+        InputStream stream = getInputStream("labels.properties");
+        BufferedReader br = new BufferedReader(new InputStreamReader(stream, CHARSET));
+        Map<String, Map<String, Integer>> labels = new HashMap<String, Map<String, Integer>>();
+
+        try {
+            String line = br.readLine();
+            while (line != null) {
+
+                String[] parts = line.split("=");
+                String label = parts[0];
+                parts = parts[1].split(",");
+                Map<String, Integer> map = new HashMap<String, Integer>();
+                for (int i = 0; i < parts.length; i += 2) {
+                    map.put(parts[i], Integer.valueOf(parts[i+1]));
+                }
+                labels.put(label, map);
+                line = br.readLine();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                br.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return labels;
+    }
     
     /**
      * Implement this to load the according file
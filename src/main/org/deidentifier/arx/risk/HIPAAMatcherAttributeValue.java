@@ -17,14 +17,16 @@
 
 package org.deidentifier.arx.risk;
 
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.validator.routines.CalendarValidator;
-import org.apache.commons.validator.routines.DateValidator;
 import org.apache.commons.validator.routines.EmailValidator;
 import org.apache.commons.validator.routines.InetAddressValidator;
 import org.apache.commons.validator.routines.UrlValidator;
@@ -32,7 +34,7 @@ import org.apache.commons.validator.routines.checkdigit.IBANCheckDigit;
 import org.deidentifier.arx.DataType;
 
 /**
- * Interfaces the patterns
+ * Interfaces the patterns. Implementations must be safe for concurrent use.
  * @author Florian Kohlmayer, Fabian Prasser, David Gassmann
  */
 abstract class HIPAAMatcherAttributeValue {
@@ -116,14 +118,34 @@ abstract class HIPAAMatcherAttributeValue {
             return isYearOlderThan89(value);
         }
         
+        /** Strict date formats, one instance per thread */
+        private final ThreadLocal<DateFormat[]> formats = new ThreadLocal<DateFormat[]>() {
+            @Override
+            protected DateFormat[] initialValue() {
+                List<String> patterns = DataType.DATE.getDescription().getExampleFormats();
+                DateFormat[] formats = new DateFormat[patterns.size()];
+                for (int i = 0; i < formats.length; i++) {
+                    formats[i] = new SimpleDateFormat(patterns.get(i));
+                    formats[i].setLenient(false);
+                }
+                return formats;
+            }
+        };
+        
         /**
+         * Validates dates like DateValidator, without creating formats for every value
          * @param value Cell content
          * @return True if input is a date
          */
         private boolean isDate(String value) {
-            DateValidator validator = DateValidator.getInstance();
-            for (String format : DataType.DATE.getDescription().getExampleFormats()) {
-                if (validator.isValid(value, format)) {
+            value = value.trim();
+            if (value.isEmpty()) {
+                return false;
+            }
+            for (DateFormat format : formats.get()) {
+                ParsePosition position = new ParsePosition(0);
+                Object date = format.parseObject(value, position);
+                if (date != null && position.getErrorIndex() == -1 && position.getIndex() >= value.length()) {
                     return true;
                 }
             }
@@ -207,7 +229,7 @@ abstract class HIPAAMatcherAttributeValue {
                 return false;
             }
             
-            value = value.replaceAll("\\s+", "");
+            value = WHITESPACE.matcher(value).replaceAll("");
             IBANCheckDigit validator = new IBANCheckDigit();
             return validator.isValid(value);
         }
@@ -290,17 +312,16 @@ abstract class HIPAAMatcherAttributeValue {
      * @author Florian Kohlmayer, Fabian Prasser, David Gassmann
      */
     static abstract class HIPAAMatcherString extends HIPAAMatcherAttributeValue {
-        Matcher matcher;
+        Pattern pattern;
         
         HIPAAMatcherString(String regex) {
             super(null);
-            Pattern pattern = Pattern.compile(regex);
-            matcher = pattern.matcher("");
+            pattern = Pattern.compile(regex);
         }
         
         @Override
         public boolean matches(String value) {
-            return matcher.reset(value).matches();
+            return pattern.matcher(value).matches();
         }
     }
     
@@ -336,7 +357,7 @@ abstract class HIPAAMatcherAttributeValue {
         
         @Override
         public boolean matches(String value) {
-            value = value.replaceAll("\\s+", "").replaceAll("-", "");
+            value = WHITESPACE_OR_DASH.matcher(value).replaceAll("");
             return super.matches(value);
         }
     }
@@ -380,7 +401,7 @@ abstract class HIPAAMatcherAttributeValue {
         
         @Override
         public boolean matches(String value) {
-            value = value.replaceAll("\\s+", "").replaceAll("-", "");
+            value = WHITESPACE_OR_DASH.matcher(value).replaceAll("");
             if (constants.isZipcode(value)) {
                 if (value.length() >= 3) {
                     String zipCode = value.substring(0, 3);
@@ -391,6 +412,12 @@ abstract class HIPAAMatcherAttributeValue {
         }
     }
 
+    /** Whitespace */
+    private static final Pattern   WHITESPACE         = Pattern.compile("\\s+");
+
+    /** Whitespace or dashes */
+    private static final Pattern   WHITESPACE_OR_DASH = Pattern.compile("\\s+|-");
+
     /** Constants*/
     protected final HIPAAConstants constants;
 
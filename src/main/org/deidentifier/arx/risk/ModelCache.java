@@ -0,0 +1,267 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.risk;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deidentifier.arx.ARXPopulationModel;
+import org.deidentifier.arx.risk.RiskModelPopulationUniqueness.PopulationUniquenessModel;
+
+import de.linearbits.newtonraphson.NewtonRaphsonConfiguration;
+import de.linearbits.newtonraphson.Vector2D;
+
+/**
+ * Caches estimates of population uniqueness, which are identified by the statistical model,
+ * the class size distribution, the population size and the configuration of the solver.
+ * Moreover, the most recent solutions of the solvers are kept, which can be used as start
+ * values for solving similar problems. This is only done for non-deterministic solver
+ * configurations, as the result may depend on the start value. Instances are owned by
+ * a risk estimate builder or a privacy model and may be used concurrently.
+ * 
+ * @author Fabian Prasser
+ */
+public class ModelCache {
+
+    /**
+     * Key for cached estimates
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Key {
+
+        /** Model */
+        private final PopulationUniquenessModel model;
+        /** Histogram */
+        private final int[]                     histogram;
+        /** Population size */
+        private final double                    populationSize;
+        /** Solver configuration */
+        private final double[]                  parameters;
+        /** Solver configuration */
+        private final double[][]                startValues;
+        /** Hash code */
+        private final int                       hashCode;
+
+        /**
+         * Creates a new instance
+         * 
+         * @param model
+         * @param histogram
+         * @param populationSize
+         * @param config
+         */
+        private Key(PopulationUniquenessModel model,
+                    RiskModelHistogram histogram,
+                    double populationSize,
+                    NewtonRaphsonConfiguration<?> config) {
+            this.model = model;
+            this.histogram = histogram.getHistogram();
+            this.populationSize = populationSize;
+            this.parameters = config == null ? null : new double[] { config.getAccuracy(),
+                                                                     config.getIterationsPerTry(),
+                                                                     config.getIterationsTotal(),
+                                                                     config.getTimePerTry(),
+                                                                     config.getTimeTotal() };
+            this.startValues = config == null ? null : config.getStartValues();
+            int result = model.hashCode();
+            result = 31 * result + Arrays.hashCode(this.histogram);
+            result = 31 * result + Double.valueOf(populationSize).hashCode();
+            result = 31 * result + Arrays.hashCode(this.parameters);
+            result = 31 * result + Arrays.deepHashCode(this.startValues);
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            Key other = (Key) obj;
+            return model == other.model && populationSize == other.populationSize &&
+                   Arrays.equals(histogram, other.histogram) &&
+                   Arrays.equals(parameters, other.parameters) &&
+                   Arrays.deepEquals(startValues, other.startValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * A solution of a solver
+     * 
+     * @author Fabian Prasser
+     */
+    private static class Solution {
+
+        /** Population size */
+        private final double   populationSize;
+        /** Number of records */
+        private final double   numRecords;
+        /** Number of classes */
+        private final double   numClasses;
+        /** Solution */
+        private final Vector2D solution;
+
+        /**
+         * Creates a new instance
+         * 
+         * @param populationSize
+         * @param histogram
+         * @param solution
+         */
+        private Solution(double populationSize, RiskModelHistogram histogram, Vector2D solution) {
+            this.populationSize = populationSize;
+            this.numRecords = histogram.getNumRecords();
+            this.numClasses = histogram.getNumClasses();
+            this.solution = new Vector2D(solution.x, solution.y);
+        }
+    }
+
+    /** Maximal number of cached estimates */
+    private static final int    MAX_ENTRIES             = 1000;
+
+    /** Maximal relative difference in the number of classes of similar problems */
+    private static final double MAX_RELATIVE_DIFFERENCE = 0.1d;
+
+    /** Estimates, least recently used entries are evicted */
+    private final Map<Key, Double> estimates = Collections.synchronizedMap(new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+        private static final long serialVersionUID = -3453712867385467021L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    });
+
+    /** Most recent solutions */
+    private final Map<PopulationUniquenessModel, Solution> solutions = Collections.synchronizedMap(new EnumMap<PopulationUniquenessModel, Solution>(PopulationUniquenessModel.class));
+
+    /** Number of estimates that have been stored */
+    private final AtomicInteger numEstimates = new AtomicInteger();
+
+    /**
+     * Creates a new, empty cache
+     */
+    public ModelCache() {
+        // Empty by design
+    }
+
+    /**
+     * Removes all estimates and solutions
+     */
+    public void clear() {
+        estimates.clear();
+        solutions.clear();
+    }
+
+    /**
+     * Returns the number of estimates that have been stored, i.e. the number of times
+     * a model has been evaluated because no cached estimate was available
+     * 
+     * @return
+     */
+    public int getNumEstimates() {
+        return numEstimates.get();
+    }
+
+    /**
+     * Returns a cached estimate, null if there is none
+     * 
+     * @param model
+     * @param population
+     * @param histogram
+     * @param config
+     * @return
+     */
+    Double getEstimate(PopulationUniquenessModel model,
+                       ARXPopulationModel population,
+                       RiskModelHistogram histogram,
+                       NewtonRaphsonConfiguration<?> config) {
+        return estimates.get(new Key(model, histogram, population.getPopulationSize(), config));
+    }
+
+    /**
+     * Returns a start value for solving the given problem, null if there is none. Start values
+     * are only returned for non-deterministic configurations, if a solution for a problem with
+     * the same population and sample size and a similar number of classes is available.
+     * 
+     * @param model
+     * @param population
+     * @param histogram
+     * @param config
+     * @return
+     */
+    Vector2D getStartValue(PopulationUniquenessModel model,
+                           ARXPopulationModel population,
+                           RiskModelHistogram histogram,
+                           NewtonRaphsonConfiguration<?> config) {
+        if (config.getStartValues() != null) {
+            return null;
+        }
+        Solution solution = solutions.get(model);
+        if (solution == null ||
+            solution.populationSize != population.getPopulationSize() ||
+            solution.numRecords != histogram.getNumRecords() ||
+            Math.abs(solution.numClasses - histogram.getNumClasses()) > MAX_RELATIVE_DIFFERENCE * solution.numClasses) {
+            return null;
+        }
+        return new Vector2D(solution.solution.x, solution.solution.y);
+    }
+
+    /**
+     * Stores an estimate
+     * 
+     * @param model
+     * @param population
+     * @param histogram
+     * @param config
+     * @param estimate
+     */
+    void putEstimate(PopulationUniquenessModel model,
+                     ARXPopulationModel population,
+                     RiskModelHistogram histogram,
+                     NewtonRaphsonConfiguration<?> config,
+                     double estimate) {
+        estimates.put(new Key(model, histogram, population.getPopulationSize(), config), estimate);
+        numEstimates.incrementAndGet();
+    }
+
+    /**
+     * Stores the solution of a solver, if valid
+     * 
+     * @param model
+     * @param population
+     * @param histogram
+     * @param solution
+     */
+    void putSolution(PopulationUniquenessModel model,
+                     ARXPopulationModel population,
+                     RiskModelHistogram histogram,
+                     Vector2D solution) {
+        if (!Double.isNaN(solution.x) && !Double.isNaN(solution.y) &&
+            !Double.isInfinite(solution.x) && !Double.isInfinite(solution.y)) {
+            solutions.put(model, new Solution(population.getPopulationSize(), histogram, solution));
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.deidentifier.arx.risk;
 import org.deidentifier.arx.ARXPopulationModel;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
+import org.deidentifier.arx.risk.RiskModelPopulationUniqueness.PopulationUniquenessModel;
 
 import de.linearbits.newtonraphson.Constraint2D;
 import de.linearbits.newtonraphson.Function;
@@ -49,11 +50,13 @@ class ModelPitman extends RiskModelPopulation {
      * @param histogram
      * @param config
      * @param stop
+     * @param cache Cache for start values, may be null
      */
     ModelPitman(final ARXPopulationModel model,
                 final RiskModelHistogram histogram,
                 final NewtonRaphsonConfiguration<?> config,
-                final WrappedBoolean stop) {
+                final WrappedBoolean stop,
+                final ModelCache cache) {
 
         super(histogram, model, stop, new WrappedInteger());
 
@@ -71,6 +74,13 @@ class ModelPitman extends RiskModelPopulation {
                    (((2 * c1 * u) + (c1 * c)) - (n * c));
         double a = ((t * (c1 - n)) + ((n - 1) * c1)) / (n * u);
 
+        // Warm start, if possible
+        Vector2D start = cache == null ? null : cache.getStartValue(PopulationUniquenessModel.PITMAN, model, histogram, config);
+        if (start != null) {
+            t = start.x;
+            a = start.y;
+        }
+
         // Solve the Maximum Likelihood Estimates with Polygamma functions
         NewtonRaphson2D solver = new NewtonRaphson2D(getMasterFunctionClosed(histogram.getHistogram(), u, n),
                                                      getConstraint()).configure(config);
@@ -102,6 +112,9 @@ class ModelPitman extends RiskModelPopulation {
         }
 
         // Compile the result
+        if (cache != null) {
+            cache.putSolution(PopulationUniquenessModel.PITMAN, model, histogram, result);
+        }
         this.numUniques = getResult(result, p);
     }
 
@@ -20,6 +20,7 @@ package org.deidentifier.arx.risk;
 import org.deidentifier.arx.ARXPopulationModel;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
+import org.deidentifier.arx.risk.RiskModelPopulationUniqueness.PopulationUniquenessModel;
 
 import de.linearbits.newtonraphson.Function;
 import de.linearbits.newtonraphson.NewtonRaphson2D;
@@ -47,11 +48,13 @@ class ModelSNB extends RiskModelPopulation {
      * @param histogram
      * @param config
      * @param stop
+     * @param cache Cache for start values, may be null
      */
     ModelSNB(final ARXPopulationModel model,
              final RiskModelHistogram histogram,
              final NewtonRaphsonConfiguration<?> config,
-             final WrappedBoolean stop) {
+             final WrappedBoolean stop,
+             final ModelCache cache) {
 
         super(histogram, model, stop, new WrappedInteger());
 
@@ -63,13 +66,17 @@ class ModelSNB extends RiskModelPopulation {
                                                       c1, super.getSamplingFraction());
         double f = getSamplingFraction();
 
-        // Solve the maximum likelihood estimates
-        Vector2D result = new NewtonRaphson2D(getObjectFunction(k, f, c1, c2),
-                                              getDerivatives(k, f, c1, c2))
-                                             .configure(config)
-                                             .solve();
+        // Solve the maximum likelihood estimates, warm start if possible
+        Vector2D start = cache == null ? null : cache.getStartValue(PopulationUniquenessModel.SNB, model, histogram, config);
+        NewtonRaphson2D solver = new NewtonRaphson2D(getObjectFunction(k, f, c1, c2),
+                                                     getDerivatives(k, f, c1, c2))
+                                                    .configure(config);
+        Vector2D result = start != null ? solver.solve(start) : solver.solve();
 
         // Compile and store
+        if (cache != null) {
+            cache.putSolution(PopulationUniquenessModel.SNB, model, histogram, result);
+        }
         this.uniques = k * Math.pow(result.y, result.x);
     }
 
@@ -24,6 +24,7 @@ import org.deidentifier.arx.ARXPopulationModel;
 import org.deidentifier.arx.ARXSolverConfiguration;
 import org.deidentifier.arx.DataHandleInternal;
 import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
 
@@ -51,6 +52,8 @@ public class RiskEstimateBuilder {
     private final WrappedInteger         progress = new WrappedInteger();
     /** Model */
     private final ARXConfiguration       arxconfig;
+    /** Cache for population uniqueness estimates */
+    private final ModelCache             cache    = new ModelCache();
 
     /**
      * Creates a new instance
@@ -178,6 +181,20 @@ public class RiskEstimateBuilder {
         return new RiskModelAttributes(this.population, this.handle, this.identifiers, this.stop, progress, this.solverconfig, this.arxconfig);
     }
 
+    /**
+     * Returns a class providing access to an analysis of potential quasi-identifiers using
+     * the concepts of alpha distinction and alpha separation. Only combinations of at most
+     * the given number of attributes will be analyzed, using the given number of threads.
+     *
+     * @param maxSize the maximal number of attributes per quasi-identifier
+     * @param numThreads the number of threads
+     * @return the RiskModelAttributes data from risk analysis
+     */
+    public RiskModelAttributes getAttributeRisks(int maxSize, int numThreads) {
+        progress.value = 0;
+        return new RiskModelAttributes(this.handle, this.identifiers, maxSize, numThreads, this.stop, progress);
+    }
+
     /**
      * Returns a model of the equivalence classes in this data set
      *
@@ -208,6 +225,18 @@ public class RiskEstimateBuilder {
         return new RiskModelHIPAASafeHarbor().getMatches(handle, threshold, stop);
     }
 
+    /**
+     * Returns the a set of potential HIPAA identifiers. Values are matched with the
+     * given confidence threshold, analyzing attributes with the given number of threads.
+     *
+     * @param threshold Confidence threshold
+     * @param numThreads the number of threads
+     * @return
+     */
+    public HIPAAIdentifierMatch[] getHIPAAIdentifiers(double threshold, int numThreads) {
+        return new RiskModelHIPAASafeHarbor().getMatches(handle, threshold, numThreads, stop);
+    }
+
     /**
      * Returns an interruptible instance of this object.
      *
@@ -218,6 +247,16 @@ public class RiskEstimateBuilder {
         return new RiskEstimateBuilderInterruptible(this);
     }
 
+    /**
+     * Returns the cache for population uniqueness estimates, which is shared by all
+     * models returned by this builder and can be cleared by callers.
+     *
+     * @return
+     */
+    public ModelCache getModelCache() {
+        return cache;
+    }
+
     /**
      * Returns a class providing population-based uniqueness estimates
      *
@@ -230,7 +269,30 @@ public class RiskEstimateBuilder {
                 stop,
                 progress,
                 solverconfig,
-                false);
+                false,
+                1,
+                cache);
+    }
+
+    /**
+     * Returns a class providing population-based uniqueness estimates. All estimates
+     * are computed immediately, concurrently if more than one thread is given. As there
+     * are three statistical models, at most three threads are used.
+     *
+     * @param numThreads the number of threads
+     * @return
+     */
+    public RiskModelPopulationUniqueness getPopulationBasedUniquenessRisk(int numThreads) {
+        if (numThreads < 1) { throw new IllegalArgumentException("Number of threads must be > 0"); }
+        progress.value = 0;
+        return new RiskModelPopulationUniqueness(population,
+                getHistogram(0.25),
+                stop,
+                progress,
+                solverconfig,
+                true,
+                numThreads,
+                cache);
     }
 
     /**
@@ -340,7 +402,9 @@ public class RiskEstimateBuilder {
                 stop,
                 progress,
                 solverconfig,
-                true);
+                true,
+                ThreadPool.getAvailableProcessors(),
+                cache);
     }
 
     /**
@@ -53,6 +53,23 @@ public class RiskEstimateBuilderInterruptible {
         }
     }
 
+    /**
+     * Returns a class providing access to an analysis of potential quasi-identifiers using
+     * the concepts of alpha distinction and alpha separation. Only combinations of at most
+     * the given number of attributes will be analyzed, using the given number of threads.
+     *
+     * @param maxSize the maximal number of attributes per quasi-identifier
+     * @param numThreads the number of threads
+     * @return the RiskModelAttributes data from risk analysis
+     */
+    public RiskModelAttributes getAttributeRisks(int maxSize, int numThreads) throws InterruptedException {
+        try {
+            return parent.getAttributeRisks(maxSize, numThreads);
+        } catch (ComputationInterruptedException e) {
+            throw new InterruptedException("Computation interrupted");
+        }
+    }
+
     /**
      * Returns a model of the equivalence classes in this data set
      * 
@@ -80,6 +97,23 @@ public class RiskEstimateBuilderInterruptible {
         }
     }
     
+    /**
+     * Returns a class providing access to the identifier HIPAA identifiers. Values are matched
+     * with the given confidence threshold, analyzing attributes with the given number of threads.
+     * 
+     * @param threshold Confidence threshold
+     * @param numThreads the number of threads
+     * @return
+     * @throws InterruptedException
+     */
+    public HIPAAIdentifierMatch[] getHIPAAIdentifiers(double threshold, int numThreads) throws InterruptedException {
+        try {
+            return parent.getHIPAAIdentifiers(threshold, numThreads);
+        } catch (ComputationInterruptedException e) {
+            throw new InterruptedException("Computation interrupted");
+        }
+    }
+    
     /**
      * Returns a class providing population-based uniqueness estimates
      * 
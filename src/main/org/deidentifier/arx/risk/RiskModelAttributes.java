@@ -21,25 +21,35 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXPopulationModel;
 import org.deidentifier.arx.ARXSolverConfiguration;
 import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.common.EncodedGroupify;
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
 
+import com.carrotsearch.hppc.IntIntOpenHashMap;
+import com.carrotsearch.hppc.LongIntOpenHashMap;
+
 /**
  * A class for analyzing attribute-related risks. Calculates alpha-distinction and
  * alpha separation as described in R. Motwani et al.
  * "Efficient algorithms for masking and finding quasi-identifiers" Proc. VLDB Conf., 2007.
- *
+ * <br>
+ * The combinations of attributes are traversed as a set-enumeration tree. The equivalence
+ * classes of each combination are derived from the classes of its parent, which requires
+ * a single pass over the records. Subtrees are processed in parallel, if requested.
  *
  * @author Fabian Prasser
  * @author Maximilian Zitzmann
@@ -65,20 +75,13 @@ public class RiskModelAttributes {
          * Creates a new instance
          *
          * @param identifier
+         * @param histogram
          */
-        private QuasiIdentifierRisk(List<String> identifier) {
+        private QuasiIdentifierRisk(List<String> identifier, RiskModelHistogram histogram) {
 
             // Store identifier
             this.identifier = identifier;
 
-            // Calculate distribution of class sizes
-            RiskModelHistogram histogram = new RiskEstimateBuilder(population,
-                                                                   handle,
-                                                                   new HashSet<String>(identifier),
-                                                                   stop,
-                                                                   solverconfig,
-                                                                   arxconfig).getEquivalenceClassModel();
-
             // Calculate distinction and separation
             this.alphaDistinction = getAlphaDistinction(histogram);
             this.alphaSeparation = getAlphaSeparation(histogram);
@@ -136,18 +139,31 @@ public class RiskModelAttributes {
             return Double.isNaN(alphaSeparation) ? 0d : alphaSeparation;
         }
     }
+    /** Minimal number of records for which attribute combinations are analyzed in parallel */
+    private static final int            MIN_RECORDS_FOR_PARALLELIZATION = 1000;
+
     /** Stop flag */
     private final WrappedBoolean        stop;
     /** Results */
     private final QuasiIdentifierRisk[] risks;
-    /** Just needed for creating risk models */
-    private ARXPopulationModel          population;
-    /** Data handle */
-    private DataHandleInternal          handle;
-    /** Just needed for creating risk models */
-    private ARXSolverConfiguration      solverconfig;
-    /** Just needed for creating risk models */
-    private ARXConfiguration            arxconfig;
+    /** Number of records */
+    private final int                   numRows;
+    /** Canonical codes per attribute and record */
+    private final int[][]               codes;
+    /** Suppression status per attribute and record */
+    private final boolean[][]           suppressed;
+    /** Attributes, ordered by column index */
+    private final String[]              attributes;
+    /** Maximal number of attributes per combination */
+    private final int                   maxSize;
+    /** Intermediate results */
+    private final List<QuasiIdentifierRisk> scores;
+    /** Number of combinations analyzed */
+    private final AtomicInteger         done;
+    /** Total number of combinations */
+    private final double                total;
+    /** Progress */
+    private final WrappedInteger        percentageDone;
 
     /**
      * Creates a new instance
@@ -166,52 +182,122 @@ public class RiskModelAttributes {
                         final WrappedInteger percentageDone,
                         final ARXSolverConfiguration solverconfig,
                         final ARXConfiguration arxconfig) {
+        this(handle, identifiers, Math.max(identifiers.size(), 1), 1, stop, percentageDone);
+    }
+
+    /**
+     * Creates a new instance, which only analyzes combinations of at most the given number
+     * of attributes.
+     * 
+     * @param handle
+     * @param identifiers
+     * @param maxSize
+     * @param numThreads
+     * @param stop
+     * @param percentageDone
+     */
+    RiskModelAttributes(final DataHandleInternal handle,
+                        final Set<String> identifiers,
+                        final int maxSize,
+                        final int numThreads,
+                        final WrappedBoolean stop,
+                        final WrappedInteger percentageDone) {
+        
+        // Check
+        if (maxSize < 1) { throw new IllegalArgumentException("Maximal size must be > 0"); }
+        if (numThreads < 1) { throw new IllegalArgumentException("Number of threads must be > 0"); }
         
-        this.population = population;
-        this.handle = handle;
         this.stop = stop;
-        this.solverconfig = solverconfig;
-        this.arxconfig = arxconfig;
+        this.numRows = handle.getNumRows();
+        this.percentageDone = percentageDone;
+
+        // Order attributes by column index
+        this.attributes = identifiers.toArray(new String[identifiers.size()]);
+        Arrays.sort(attributes, new Comparator<String>(){
+            @Override
+            public int compare(String o1, String o2) {
+                int index1 = handle.getColumnIndexOf(o1);
+                int index2 = handle.getColumnIndexOf(o2);
+                return Integer.valueOf(index1).compareTo(index2);
+            }
+        });
+        int[] indices = new int[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            indices[i] = handle.getColumnIndexOf(attributes[i]);
+            if (indices[i] == -1) { throw new IllegalArgumentException(attributes[i] + " is not an attribute"); }
+        }
 
-        // Find order list of qis
-        List<List<String>> qis = new ArrayList<>();
-        Set<Set<String>> powerset = getPowerSet(identifiers);
-        for (Set<String> set : powerset) {
-            
-            // Exclude empty set
-            if (!set.isEmpty()) {
-                
-                // Create and add
-                List<String> qi = new ArrayList<String>(set);
-                qis.add(qi);
-                
-                // Sort by column index
-                Collections.sort(qi, new Comparator<String>(){
-                    @Override
-                    public int compare(String o1, String o2) {
-                        int index1 = handle.getColumnIndexOf(o1);
-                        int index2 = handle.getColumnIndexOf(o2);
-                        return Integer.valueOf(index1).compareTo(index2);
-                    }
-                });
+        // Extract canonical codes and suppression status once
+        EncodedGroupify encoded = new EncodedGroupify(handle, indices, false, 10);
+        this.codes = new int[indices.length][numRows];
+        this.suppressed = new boolean[indices.length][numRows];
+        for (int i = 0; i < indices.length; i++) {
+            int[] column = new int[] { indices[i] };
+            for (int row = 0; row < numRows; row++) {
+                codes[i][row] = encoded.getCode(row, i);
+                suppressed[i][row] = handle.isOutlier(row, column);
             }
+            checkInterrupt();
         }
         
-        // Compute risk estimates for all elements in the power set
-        Map<List<String>, QuasiIdentifierRisk> scores = new HashMap<>();
-        int done = 0;
-        for (List<String> qi : qis) {
-            checkInterrupt();
-            scores.put(qi, new QuasiIdentifierRisk(qi));
-            percentageDone.value = (int) Math.round((double) done++ / (double) (powerset.size() - 1) * 100d);
+        // Each task handles a subtree of the lattice, defined by the first one or two attributes
+        this.maxSize = Math.min(maxSize, attributes.length);
+        List<int[]> prefixes = new ArrayList<int[]>();
+        for (int i = 0; i < attributes.length; i++) {
+            prefixes.add(new int[] { i });
+            for (int j = i + 1; j < attributes.length && this.maxSize > 1; j++) {
+                prefixes.add(new int[] { i, j });
+            }
+        }
+        
+        // Process larger subtrees first
+        Collections.sort(prefixes, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return Integer.compare(o1[o1.length - 1], o2[o2.length - 1]);
+            }
+        });
+        
+        // Compute risk estimates for all elements in the (bounded) power set
+        this.scores = Collections.synchronizedList(new ArrayList<QuasiIdentifierRisk>());
+        this.done = new AtomicInteger();
+        this.total = getNumCombinations(attributes.length, this.maxSize);
+        int numTasks = numRows >= MIN_RECORDS_FOR_PARALLELIZATION ? Math.min(numThreads, prefixes.size()) : 1;
+        if (numTasks <= 1) {
+            for (int[] prefix : prefixes) {
+                analyze(prefix);
+            }
+        } else {
+            ExecutorService executor = ThreadPool.create("arx-risk", numTasks);
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            try {
+                for (final int[] prefix : prefixes) {
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            analyze(prefix);
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ComputationInterruptedException("Interrupted while analyzing attribute risks");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ComputationInterruptedException) {
+                    throw (ComputationInterruptedException) e.getCause();
+                }
+                throw new RuntimeException("Error while analyzing attribute risks", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
         }
 
         // Now create sorted array
-        risks = new QuasiIdentifierRisk[scores.size()];
-        int idx = 0;
-        for (QuasiIdentifierRisk value : scores.values()) {
-            risks[idx++] = value;
-        }
+        risks = scores.toArray(new QuasiIdentifierRisk[scores.size()]);
         Arrays.sort(risks);
     }
 
@@ -224,6 +310,90 @@ public class RiskModelAttributes {
         return this.risks;
     }
 
+    /**
+     * Analyzes all combinations of attributes starting with the given prefix. If the
+     * prefix consists of one attribute, only this attribute is analyzed.
+     * 
+     * @param prefix
+     */
+    private void analyze(int[] prefix) {
+        int[] selection = new int[maxSize];
+        int[][] levels = new int[maxSize][];
+        int numClasses = 0;
+        for (int depth = 0; depth < prefix.length; depth++) {
+            selection[depth] = prefix[depth];
+            levels[depth] = new int[numRows];
+            numClasses = refine(depth == 0 ? null : levels[depth - 1], prefix[depth], levels[depth]);
+        }
+        if (prefix.length == 1) {
+            analyze(selection, 1, levels[0], numClasses);
+        } else {
+            analyze(selection, prefix.length, levels, numClasses);
+        }
+    }
+
+    /**
+     * Analyzes the given combination of attributes
+     * 
+     * @param selection
+     * @param depth
+     * @param classes
+     * @param numClasses
+     */
+    private void analyze(int[] selection, int depth, int[] classes, int numClasses) {
+        
+        // Calculate distribution of class sizes
+        int[] sizes = new int[numClasses];
+        for (int row = 0; row < numRows; row++) {
+            if (classes[row] >= 0) {
+                sizes[classes[row]]++;
+            }
+        }
+        IntIntOpenHashMap distribution = new IntIntOpenHashMap();
+        for (int size : sizes) {
+            if (size > 0) {
+                distribution.putOrAdd(size, 1, 1);
+            }
+        }
+        
+        // Store
+        List<String> identifier = new ArrayList<String>();
+        for (int i = 0; i < depth; i++) {
+            identifier.add(attributes[selection[i]]);
+        }
+        scores.add(new QuasiIdentifierRisk(identifier, new RiskModelHistogram(distribution)));
+        percentageDone.value = (int) Math.round((double) done.incrementAndGet() / total * 100d);
+        checkInterrupt();
+    }
+
+    /**
+     * Analyzes the given combination of attributes and all combinations obtained by adding
+     * attributes with a larger index. Classes are derived from the classes of the parent.
+     * 
+     * @param selection
+     * @param depth
+     * @param levels
+     * @param numClasses
+     */
+    private void analyze(int[] selection, int depth, int[][] levels, int numClasses) {
+        
+        // Analyze this combination
+        analyze(selection, depth, levels[depth - 1], numClasses);
+        if (depth == maxSize) {
+            return;
+        }
+        
+        // Refine
+        if (levels[depth] == null) {
+            levels[depth] = new int[numRows];
+        }
+        for (int attribute = selection[depth - 1] + 1; attribute < attributes.length; attribute++) {
+            selection[depth] = attribute;
+            int numChildClasses = refine(levels[depth - 1], attribute, levels[depth]);
+            analyze(selection, depth + 1, levels, numChildClasses);
+        }
+    }
+
     /**
      * Checks for interrupts
      */
@@ -309,29 +479,48 @@ public class RiskModelAttributes {
     }
 
     /**
-     * Returns the power set
-     *
-     * @param originalSet
+     * Returns the number of non-empty combinations of at most the given size
+     * 
+     * @param numAttributes
+     * @param maxSize
      * @return
      */
-    private <T> Set<Set<T>> getPowerSet(Set<T> originalSet) {
-        checkInterrupt();
-        Set<Set<T>> sets = new HashSet<Set<T>>();
-        if (originalSet.isEmpty()) {
-            sets.add(new HashSet<T>());
-            return sets;
+    private double getNumCombinations(int numAttributes, int maxSize) {
+        double result = 0d;
+        double binomial = 1d;
+        for (int size = 1; size <= maxSize; size++) {
+            binomial = binomial * (numAttributes - size + 1) / size;
+            result += binomial;
         }
-        List<T> list = new ArrayList<T>(originalSet);
-        T head = list.get(0);
-        Set<T> rest = new HashSet<T>(list.subList(1, list.size()));
-        for (Set<T> set : getPowerSet(rest)) {
-            checkInterrupt();
-            Set<T> newSet = new HashSet<T>();
-            newSet.add(head);
-            newSet.addAll(set);
-            sets.add(newSet);
-            sets.add(set);
+        return result;
+    }
+
+    /**
+     * Refines the given classes by the values of the given attribute. Records which are
+     * suppressed regarding all attributes are represented by the complement of their class.
+     * 
+     * @param parent The classes to refine, null for a single attribute
+     * @param attribute
+     * @param classes The resulting classes
+     * @return The number of resulting classes
+     */
+    private int refine(int[] parent, int attribute, int[] classes) {
+        LongIntOpenHashMap map = new LongIntOpenHashMap();
+        int[] codes = this.codes[attribute];
+        boolean[] suppressed = this.suppressed[attribute];
+        for (int row = 0; row < numRows; row++) {
+            int clazz = parent == null ? 0 : parent[row];
+            boolean outlier = suppressed[row] && (parent == null || clazz < 0);
+            clazz = clazz >= 0 ? clazz : ~clazz;
+            long key = ((long) clazz << 32) | codes[row];
+            int index = map.getOrDefault(key, -1);
+            if (index == -1) {
+                index = map.size();
+                map.put(key, index);
+            }
+            classes[row] = outlier ? ~index : index;
         }
-        return sets;
+        checkInterrupt();
+        return map.size();
     }
 }
\ No newline at end of file
@@ -19,8 +19,13 @@ package org.deidentifier.arx.risk;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
 import org.deidentifier.arx.risk.HIPAAIdentifierMatch.HIPAAIdentifier;
@@ -66,62 +71,62 @@ class RiskModelHIPAASafeHarbor {
     public HIPAAIdentifierMatch[] getMatches(DataHandleInternal handle, 
                                              double threshold,
                                              WrappedBoolean stop) {
+        return getMatches(handle, threshold, 1, stop);
+    }
+    
+    /**
+     * Returns a list of matches with HIPAA identifiers. Attributes are analyzed concurrently
+     * if more than one thread is given.
+     * 
+     * @param handle
+     * @param threshold
+     * @param numThreads
+     * @param stop
+     * @return An array of warnings
+     */
+    public HIPAAIdentifierMatch[] getMatches(final DataHandleInternal handle, 
+                                             final double threshold,
+                                             int numThreads,
+                                             final WrappedBoolean stop) {
+        
+        // Check
+        if (numThreads < 1) { throw new IllegalArgumentException("Number of threads must be > 0"); }
         
         // Prepare
         List<HIPAAIdentifierMatch> results = new ArrayList<HIPAAIdentifierMatch>();
+        int numTasks = Math.min(numThreads, handle.getNumColumns());
         
         // Check each attribute
-        for (int column = 0; column < handle.getNumColumns(); column++) {
-
-            // Init
-            String attribute = handle.getAttributeName(column);
-            String[] values = handle.getDistinctValues(column);
-            
-            // Match attribute name
-            for (HIPAAIdentifierConfig config : configurations) {
-                if (stop.value) {
-                    throw new ComputationInterruptedException();
-                }
-                String match = config.getMatchingAttributeName(attribute);
-                if (match != null) {
-                    results.add(new HIPAAIdentifierMatch(attribute, 
-                                                         config.getIdentifier(), 
-                                                         config.getInstance(),
-                                                         MatchType.ATTRIBUTE_NAME, 
-                                                         match));
-                }
+        if (numTasks <= 1) {
+            for (int column = 0; column < handle.getNumColumns(); column++) {
+                results.addAll(getMatches(handle, column, threshold, stop));
             }
-            
-            // Match attribute values
-            for (HIPAAIdentifierConfig config : configurations) {
-                int matches = 0;
-                int nonmatches = 0;
-                for (String value : values) {
-                    if (stop.value) {
-                        throw new ComputationInterruptedException();
-                    }
-                    
-                    // Count matching values
-                    if (config.getMatchingAttributeValue(value) != null) {
-                        matches++;
-                    } else {
-                        
-                        // Break if too many non-matching values
-                        nonmatches++;
-                        double nonpercentage = (double)nonmatches / (double)values.length;
-                        if (nonpercentage > 1d - threshold) {
-                            break;
+        } else {
+            ExecutorService executor = ThreadPool.create("arx-risk", numTasks);
+            List<Future<List<HIPAAIdentifierMatch>>> futures = new ArrayList<Future<List<HIPAAIdentifierMatch>>>();
+            try {
+                for (int column = 0; column < handle.getNumColumns(); column++) {
+                    final int _column = column;
+                    futures.add(executor.submit(new Callable<List<HIPAAIdentifierMatch>>() {
+                        @Override
+                        public List<HIPAAIdentifierMatch> call() {
+                            return getMatches(handle, _column, threshold, stop);
                         }
-                    }
+                    }));
+                }
+                for (Future<List<HIPAAIdentifierMatch>> future : futures) {
+                    results.addAll(future.get());
                 }
-                double percentage = (double)matches / (double)values.length;
-                if (percentage > threshold) {
-                    results.add(new HIPAAIdentifierMatch(attribute, 
-                                                         config.getIdentifier(), 
-                                                         config.getInstance(),
-                                                         MatchType.ATTRIBUTE_VALUE, 
-                                                         String.valueOf(percentage)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ComputationInterruptedException("Interrupted while matching HIPAA identifiers");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ComputationInterruptedException) {
+                    throw (ComputationInterruptedException) e.getCause();
                 }
+                throw new RuntimeException("Error while matching HIPAA identifiers", e.getCause());
+            } finally {
+                executor.shutdownNow();
             }
         }
         
@@ -257,4 +262,83 @@ class RiskModelHIPAASafeHarbor {
         return configurations;
     }
     
+    /**
+     * Returns matches with HIPAA identifiers for the given attribute. The distinct values are
+     * matched in a single pass, in which each configuration is skipped as soon as it is
+     * known that it cannot exceed the threshold.
+     * 
+     * @param handle
+     * @param column
+     * @param threshold
+     * @param stop
+     * @return
+     */
+    private List<HIPAAIdentifierMatch> getMatches(DataHandleInternal handle,
+                                                  int column,
+                                                  double threshold,
+                                                  WrappedBoolean stop) {
+
+        // Init
+        List<HIPAAIdentifierMatch> results = new ArrayList<HIPAAIdentifierMatch>();
+        String attribute = handle.getAttributeName(column);
+        
+        // Match attribute name
+        for (HIPAAIdentifierConfig config : configurations) {
+            if (stop.value) {
+                throw new ComputationInterruptedException();
+            }
+            String match = config.getMatchingAttributeName(attribute);
+            if (match != null) {
+                results.add(new HIPAAIdentifierMatch(attribute, 
+                                                     config.getIdentifier(), 
+                                                     config.getInstance(),
+                                                     MatchType.ATTRIBUTE_NAME, 
+                                                     match));
+            }
+        }
+        
+        // Match attribute values
+        String[] values = handle.getDistinctValues(column);
+        int[] matches = new int[configurations.size()];
+        int[] nonmatches = new int[configurations.size()];
+        boolean[] decided = new boolean[configurations.size()];
+        int undecided = configurations.size();
+        for (int index = 0; index < values.length && undecided > 0; index++) {
+            if (stop.value) {
+                throw new ComputationInterruptedException();
+            }
+            for (int config = 0; config < decided.length; config++) {
+                if (decided[config]) {
+                    continue;
+                }
+                
+                // Count matching values
+                if (configurations.get(config).getMatchingAttributeValue(values[index]) != null) {
+                    matches[config]++;
+                } else {
+                    
+                    // Skip if too many non-matching values
+                    nonmatches[config]++;
+                    double nonpercentage = (double)nonmatches[config] / (double)values.length;
+                    if (nonpercentage > 1d - threshold) {
+                        decided[config] = true;
+                        undecided--;
+                    }
+                }
+            }
+        }
+        for (int config = 0; config < decided.length; config++) {
+            double percentage = (double)matches[config] / (double)values.length;
+            if (percentage > threshold) {
+                results.add(new HIPAAIdentifierMatch(attribute, 
+                                                     configurations.get(config).getIdentifier(), 
+                                                     configurations.get(config).getInstance(),
+                                                     MatchType.ATTRIBUTE_VALUE, 
+                                                     String.valueOf(percentage)));
+            }
+        }
+        
+        // Return
+        return results;
+    }
 }
@@ -22,9 +22,7 @@ import java.util.Comparator;
 import java.util.Set;
 
 import org.deidentifier.arx.DataHandleInternal;
-import org.deidentifier.arx.common.Groupify;
-import org.deidentifier.arx.common.Groupify.Group;
-import org.deidentifier.arx.common.TupleWrapper;
+import org.deidentifier.arx.common.EncodedGroupify;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
 import org.deidentifier.arx.exceptions.ComputationInterruptedException;
@@ -94,7 +92,7 @@ public class RiskModelHistogram {
         // Calculate equivalence classes
         int capacity = handle.getNumRows() / 10;
         capacity = capacity > 10 ? capacity : 10;
-        Groupify<TupleWrapper> map = new Groupify<TupleWrapper>(capacity);
+        EncodedGroupify map = new EncodedGroupify(handle, indices, false, capacity);
         int numRows = handle.getNumRows();
         for (int row = 0; row < numRows; row++) {
 
@@ -104,8 +102,7 @@ public class RiskModelHistogram {
             }
 
             if (!handle.isOutlier(row, indices)) {
-                TupleWrapper tuple = new TupleWrapper(handle, indices, row);
-                map.add(tuple);
+                map.add(row);
             }
             if (stop.value) { throw new ComputationInterruptedException(); }
         }
@@ -113,16 +110,13 @@ public class RiskModelHistogram {
         // Group by size
         IntIntOpenHashMap grouped = new IntIntOpenHashMap();
 
-        int i = 0;
         int size = map.size();
-        Group<TupleWrapper> element = map.first();
-        while (element != null) {
-            int prog = (int) Math.round((80d + (double) i++ / (double) size * 20d) * factor);
+        for (int i = 0; i < size; i++) {
+            int prog = (int) Math.round((80d + (double) i / (double) size * 20d) * factor);
             if (prog != progress.value) {
                 progress.value = prog;
             }
-            grouped.putOrAdd(element.getCount(), 1, 1);
-            element = element.next();
+            grouped.putOrAdd(map.getCount(i), 1, 1);
             if (stop.value) { throw new ComputationInterruptedException(); }
         }
 
@@ -18,11 +18,17 @@
 package org.deidentifier.arx.risk;
 
 import java.io.Serializable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.deidentifier.arx.ARXPopulationModel;
 import org.deidentifier.arx.ARXSolverConfiguration;
+import org.deidentifier.arx.common.ThreadPool;
 import org.deidentifier.arx.common.WrappedBoolean;
 import org.deidentifier.arx.common.WrappedInteger;
+import org.deidentifier.arx.exceptions.ComputationInterruptedException;
 
 /**
  * Class for risks based on population uniqueness. It implements Dankar et al.'s
@@ -66,6 +72,8 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
     private ARXSolverConfiguration    config;
     /** Parameter */
     private WrappedBoolean            stop;
+    /** Cache, may be null */
+    private ModelCache                cache;
 
     /**
      * Creates a new instance
@@ -77,12 +85,29 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
     public RiskModelPopulationUniqueness(ARXPopulationModel model,
                                          RiskModelHistogram classes,
                                          ARXSolverConfiguration config) {
+        this(model, classes, config, null);
+    }
+
+    /**
+     * Creates a new instance, which uses the given cache for estimates
+     * 
+     * @param model
+     * @param classes
+     * @param config
+     * @param cache Cache, may be null
+     */
+    public RiskModelPopulationUniqueness(ARXPopulationModel model,
+                                         RiskModelHistogram classes,
+                                         ARXSolverConfiguration config,
+                                         ModelCache cache) {
         this(model,
              classes,
              new WrappedBoolean(),
              new WrappedInteger(),
              config,
-             false);
+             false,
+             1,
+             cache);
     }
 
     /**
@@ -94,13 +119,17 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
      * @param progress
      * @param config
      * @param precompute
+     * @param numThreads Number of threads used for precomputation
+     * @param cache Cache, may be null
      */
     RiskModelPopulationUniqueness(ARXPopulationModel model,
                                   RiskModelHistogram histogram,
                                   WrappedBoolean stop,
                                   WrappedInteger progress,
                                   ARXSolverConfiguration config,
-                                  boolean precompute) {
+                                  boolean precompute,
+                                  int numThreads,
+                                  ModelCache cache) {
         super(histogram, model, stop, progress);
 
         // Init
@@ -110,6 +139,7 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
         this.histogram = histogram;
         this.config = config;
         this.stop = stop;
+        this.cache = cache;
 
         // Handle cases where there are no sample uniques
         if (numClassesOfSize1 == 0) {
@@ -123,7 +153,9 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
         }
 
         // If precomputation (for interruptible builders)
-        if (precompute) {
+        if (precompute && numThreads > 1) {
+            precompute(progress, numThreads);
+        } else if (precompute) {
 
             // Estimate with Zayatz's model
             getNumUniqueTuplesZayatz();
@@ -270,10 +302,19 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
             if (this.numClassesOfSize1 == 0) {
                 numUniquesPitman = 0;
             } else {
-                numUniquesPitman = new ModelPitman(model,
-                                                   histogram,
-                                                   config,
-                                                   stop).getNumUniques();
+                Double cached = cache == null ? null : cache.getEstimate(PopulationUniquenessModel.PITMAN, model, histogram, config);
+                if (cached != null) {
+                    numUniquesPitman = cached;
+                } else {
+                    numUniquesPitman = new ModelPitman(model,
+                                                       histogram,
+                                                       config,
+                                                       stop,
+                                                       cache).getNumUniques();
+                    if (cache != null) {
+                        cache.putEstimate(PopulationUniquenessModel.PITMAN, model, histogram, config, numUniquesPitman);
+                    }
+                }
             }
         }
         return isValid(numUniquesPitman) ? numUniquesPitman : 0d;
@@ -288,10 +329,19 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
             if (this.numClassesOfSize1 == 0) {
                 numUniquesSNB = 0;
             } else {
-                numUniquesSNB = new ModelSNB(model,
-                                             histogram,
-                                             config,
-                                             stop).getNumUniques();
+                Double cached = cache == null ? null : cache.getEstimate(PopulationUniquenessModel.SNB, model, histogram, config);
+                if (cached != null) {
+                    numUniquesSNB = cached;
+                } else {
+                    numUniquesSNB = new ModelSNB(model,
+                                                 histogram,
+                                                 config,
+                                                 stop,
+                                                 cache).getNumUniques();
+                    if (cache != null) {
+                        cache.putEstimate(PopulationUniquenessModel.SNB, model, histogram, config, numUniquesSNB);
+                    }
+                }
             }
         }
         return isValid(numUniquesSNB) ? numUniquesSNB : 0d;
@@ -306,9 +356,17 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
             if (this.numClassesOfSize1 == 0) {
                 numUniquesZayatz = 0;
             } else {
-                numUniquesZayatz = new ModelZayatz(model,
-                                                   histogram,
-                                                   stop).getNumUniques();
+                Double cached = cache == null ? null : cache.getEstimate(PopulationUniquenessModel.ZAYATZ, model, histogram, null);
+                if (cached != null) {
+                    numUniquesZayatz = cached;
+                } else {
+                    numUniquesZayatz = new ModelZayatz(model,
+                                                       histogram,
+                                                       stop).getNumUniques();
+                    if (cache != null) {
+                        cache.putEstimate(PopulationUniquenessModel.ZAYATZ, model, histogram, null, numUniquesZayatz);
+                    }
+                }
             }
         }
         return isValid(numUniquesZayatz) ? numUniquesZayatz : 0d;
@@ -377,4 +435,56 @@ public class RiskModelPopulationUniqueness extends RiskModelPopulation {
     private boolean isValid(double value) {
         return !Double.isNaN(value) && value != 0d;
     }
+
+    /**
+     * Precomputes the estimates of Pitman's and the SNB model concurrently to Zayatz's model.
+     * As there are three models, at most three threads are used, including the calling thread.
+     * 
+     * @param progress
+     * @param numThreads
+     */
+    private void precompute(WrappedInteger progress, int numThreads) {
+        
+        ExecutorService executor = ThreadPool.create("arx-risk", Math.min(numThreads - 1, 2));
+        try {
+            
+            // Estimate with Pitman's model
+            Future<Double> pitman = executor.submit(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return getNumUniqueTuplesPitman();
+                }
+            });
+            
+            // Estimate with SNB model
+            Future<Double> snb = executor.submit(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return getNumUniqueTuplesSNB();
+                }
+            });
+
+            // Estimate with Zayatz's model
+            getNumUniqueTuplesZayatz();
+            progress.value = 50;
+            pitman.get();
+            progress.value = 75;
+            snb.get();
+            
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ComputationInterruptedException("Interrupted while estimating population uniqueness");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ComputationInterruptedException) {
+                throw (ComputationInterruptedException) e.getCause();
+            }
+            throw new RuntimeException("Error while estimating population uniqueness", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Decision rule by Dankar et al.
+        getNumUniqueTuplesDankar();
+        progress.value = 100;
+    }
 }
@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.Set;
 
 import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.common.EncodedGroupify;
 import org.deidentifier.arx.common.Groupify;
 import org.deidentifier.arx.common.Groupify.Group;
 import org.deidentifier.arx.common.TupleWrapper;
@@ -232,14 +233,31 @@ public class RiskModelSampleSummary {
             sample = getGroups(handle, identifiers, 0d, 0.9d, stop, progress, false, suppressed);
             population = sample;
         }
-        if (sample.size() == 0) {
+        
+        // Collect class sizes
+        int[] sampleSizes = new int[sample.size()];
+        int[] populationSizes = population == sample ? sampleSizes : new int[sample.size()];
+        int index = 0;
+        Group<TupleWrapper> element = sample.first();
+        while (element != null) {
+            sampleSizes[index] = element.getCount();
+            if (population != sample) {
+                populationSizes[index] = population.get(element.getElement()).getCount();
+            }
+            index++;
+            element = element.next();
+            if (stop.value) { throw new ComputationInterruptedException(); }
+        }
+        
+        // Compute
+        if (sampleSizes.length == 0) {
             this.prosecutorRisk = new ProsecutorRisk(threshold, 0d, 0d, 0d, 0d);
             this.journalistRisk = new JournalistRisk(threshold, 0d, 0d, 0d, 0d);
             this.marketerRisk = new MarketerRisk(0d);          
         } else {
-            this.prosecutorRisk = getProsecutorRisk(population, sample, 0.9d, stop, progress);
-            this.journalistRisk = getJournalistRisk(population, sample, 0.933d, stop, progress);
-            this.marketerRisk = getMarketerRisk(population, sample, 0.966d, stop, progress);
+            this.prosecutorRisk = getProsecutorRisk(sampleSizes, 0.9d, stop, progress);
+            this.journalistRisk = getJournalistRisk(populationSizes, sampleSizes, 0.933d, stop, progress);
+            this.marketerRisk = getMarketerRisk(populationSizes, sampleSizes, 0.966d, stop, progress);
         }
     }
     
@@ -261,6 +279,42 @@ public class RiskModelSampleSummary {
         this(handle, identifiers, threshold, null, stop, progress);
     }
 
+    /**
+     * Creates a new instance from the sizes of the equivalence classes in a sample and the sizes
+     * of the corresponding classes in the population. Classes must not be empty.
+     * @param sampleSizes Sizes of the classes in the sample
+     * @param populationSizes Sizes of the corresponding classes in the population
+     * @param threshold Acceptable highest probability of re-identification for a single record. Please note that this
+     *                  threshold may be exceeded by up to 1% due to rounding issues.
+     * @param stop Stop flag
+     * @param progress Progress
+     */
+    public RiskModelSampleSummary(int[] sampleSizes,
+                                  int[] populationSizes,
+                                  double threshold,
+                                  WrappedBoolean stop,
+                                  WrappedInteger progress) {
+
+        // Check
+        if (sampleSizes.length != populationSizes.length) {
+            throw new IllegalArgumentException("Numbers of classes in sample and population don't match");
+        }
+        
+        // Init
+        this.threshold = threshold;
+        
+        // Compute
+        if (sampleSizes.length == 0) {
+            this.prosecutorRisk = new ProsecutorRisk(threshold, 0d, 0d, 0d, 0d);
+            this.journalistRisk = new JournalistRisk(threshold, 0d, 0d, 0d, 0d);
+            this.marketerRisk = new MarketerRisk(0d);          
+        } else {
+            this.prosecutorRisk = getProsecutorRisk(sampleSizes, 0.9d, stop, progress);
+            this.journalistRisk = getJournalistRisk(populationSizes, sampleSizes, 0.933d, stop, progress);
+            this.marketerRisk = getMarketerRisk(populationSizes, sampleSizes, 0.966d, stop, progress);
+        }
+    }
+
     /**
      * Returns the journalist risk
      * @return
@@ -336,7 +390,7 @@ public class RiskModelSampleSummary {
         // Calculate equivalence classes
         int capacity = handle.getNumRows() / 10;
         capacity = capacity > 10 ? capacity : 10;
-        Groupify<TupleWrapper> map = new Groupify<TupleWrapper>(capacity);
+        EncodedGroupify map = new EncodedGroupify(handle, indices, ignoreOutliers, capacity);
         int numRows = handle.getNumRows();
         for (int row = 0; row < numRows; row++) {
 
@@ -346,14 +400,13 @@ public class RiskModelSampleSummary {
             }
 
             if (ignoreOutliers || !handle.isOutlier(row, indices)) {
-                TupleWrapper tuple = new TupleWrapper(handle, indices, row, ignoreOutliers);
-                map.add(tuple);
+                map.add(row);
             }
             if (stop.value) { throw new ComputationInterruptedException(); }
         }
 
         // Return
-        return map;
+        return map.getGroupify();
     }
 
     /**
@@ -365,8 +418,8 @@ public class RiskModelSampleSummary {
      * @param stop 
      * @return
      */
-    private JournalistRisk getJournalistRisk(Groupify<TupleWrapper> population,
-                                             Groupify<TupleWrapper> sample,
+    private JournalistRisk getJournalistRisk(int[] population,
+                                             int[] sample,
                                              double offset,
                                              WrappedBoolean stop,
                                              WrappedInteger progress) {
@@ -381,25 +434,20 @@ public class RiskModelSampleSummary {
         double numClassesInSample = 0d;
         double smallestClassSizeInPopulation = Integer.MAX_VALUE;
         double largestClassSizeInPopulation = -Double.MAX_VALUE;
-        int maxindex = sample.size();
-        int index = 0;
+        int maxindex = sample.length;
         
         // For each group
-        Group<TupleWrapper> element = sample.first();
-        while (element != null) {
+        for (int index = 0; index < maxindex; index++) {
             
             // Track progress
-            int prog = (int) Math.round(offset + (double) index++ / (double) maxindex * 3.3d);
+            int prog = (int) Math.round(offset + (double) index / (double) maxindex * 3.3d);
             if (prog != progress.value) {
                 progress.value = prog;
             }
             
             // Process
-            int groupSizeInSample = element.getCount();
-            int groupSizeInPopulation = groupSizeInSample;
-            if (population != sample) {
-                groupSizeInPopulation = population.get(element.getElement()).getCount();
-            }
+            int groupSizeInSample = sample[index];
+            int groupSizeInPopulation = population[index];
 
             // Compute rA
             if (1d / groupSizeInPopulation > threshold) {
@@ -418,9 +466,6 @@ public class RiskModelSampleSummary {
             numRecordsInSample += groupSizeInSample;
             rC1 += groupSizeInPopulation;
             rC2 += (double) groupSizeInSample / (double) groupSizeInPopulation;
-
-            // Next element
-            element = element.next();
             
             // Stop, if required
             if (stop.value) { throw new ComputationInterruptedException(); }
@@ -453,8 +498,8 @@ public class RiskModelSampleSummary {
      * @param stop 
      * @return
      */
-    private MarketerRisk getMarketerRisk(Groupify<TupleWrapper> population,
-                                         Groupify<TupleWrapper> sample,
+    private MarketerRisk getMarketerRisk(int[] population,
+                                         int[] sample,
                                          double offset,
                                          WrappedBoolean stop,
                                          WrappedInteger progress) {
@@ -462,32 +507,24 @@ public class RiskModelSampleSummary {
         // Init
         double rC = 0d;
         double numRecordsInSample = 0d;
-        int maxindex = sample.size();
-        int index = 0;
+        int maxindex = sample.length;
         
         // For each group
-        Group<TupleWrapper> element = sample.first();
-        while (element != null) {
+        for (int index = 0; index < maxindex; index++) {
             
             // Track progress
-            int prog = (int) Math.round(offset + (double) index++ / (double) maxindex * 3.3d);
+            int prog = (int) Math.round(offset + (double) index / (double) maxindex * 3.3d);
             if (prog != progress.value) {
                 progress.value = prog;
             }
             
             // Process
-            int groupSizeInSample = element.getCount();
-            int groupSizeInPopulation = groupSizeInSample;
-            if (population != sample) {
-                groupSizeInPopulation = population.get(element.getElement()).getCount();
-            }
+            int groupSizeInSample = sample[index];
+            int groupSizeInPopulation = population[index];
 
             // Compute rC
             numRecordsInSample += groupSizeInSample;
             rC += (double) groupSizeInSample / (double) groupSizeInPopulation;
-
-            // Next element
-            element = element.next();
             
             // Stop, if required
             if (stop.value) { throw new ComputationInterruptedException(); }
@@ -502,15 +539,13 @@ public class RiskModelSampleSummary {
 
     /**
      * Computes risks
-     * @param population
      * @param sample
      * @param offset
      * @param progress 
      * @param stop 
      * @return
      */
-    private ProsecutorRisk getProsecutorRisk(Groupify<TupleWrapper> population,
-                                             Groupify<TupleWrapper> sample,
+    private ProsecutorRisk getProsecutorRisk(int[] sample,
                                              double offset,
                                              WrappedBoolean stop,
                                              WrappedInteger progress) {
@@ -524,21 +559,19 @@ public class RiskModelSampleSummary {
         double numClasses = 0d;
         double smallestClassSize = Integer.MAX_VALUE;
         double largestClassSize = -Double.MAX_VALUE;
-        int maxindex = sample.size();
-        int index = 0;
+        int maxindex = sample.length;
         
         // For each group
-        Group<TupleWrapper> element = sample.first();
-        while (element != null) {
+        for (int index = 0; index < maxindex; index++) {
             
             // Track progress
-            int prog = (int) Math.round(offset + (double) index++ / (double) maxindex * 3.3d);
+            int prog = (int) Math.round(offset + (double) index / (double) maxindex * 3.3d);
             if (prog != progress.value) {
                 progress.value = prog;
             }
 
             // Compute rA
-            int groupSize = element.getCount();
+            int groupSize = sample[index];
             if (1d / groupSize > threshold) {
                 rA += groupSize;
             }
@@ -553,9 +586,6 @@ public class RiskModelSampleSummary {
             // Compute rC
             numClasses++;
             numRecords += groupSize;
-    
-            // Next element
-            element = element.next();
             
             // Stop, if required
             if (stop.value) { throw new ComputationInterruptedException(); }
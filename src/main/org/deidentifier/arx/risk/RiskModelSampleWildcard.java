@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.deidentifier.arx.DataHandleInternal;
+import org.deidentifier.arx.common.EncodedGroupify;
 import org.deidentifier.arx.common.Groupify;
 import org.deidentifier.arx.common.Groupify.Group;
 import org.deidentifier.arx.common.TupleWrapper;
@@ -351,7 +352,7 @@ public class RiskModelSampleWildcard {
          * ********************************/
         int capacity = handle.getNumRows() / 10;
         capacity = capacity > 10 ? capacity : 10;
-        Groupify<TupleWrapper> map = new Groupify<TupleWrapper>(capacity);
+        EncodedGroupify map = new EncodedGroupify(handle, indices, false, capacity);
         int numRows = handle.getNumRows();
         for (int row = 0; row < numRows; row++) {
 
@@ -361,8 +362,7 @@ public class RiskModelSampleWildcard {
             }
 
             if (!handle.isOutlier(row, indices)) {
-                TupleWrapper tuple = new TupleWrapper(handle, indices, row);
-                map.add(tuple);
+                map.add(row);
             }
             if (stop.value) { 
                 throw new ComputationInterruptedException();
@@ -370,7 +370,7 @@ public class RiskModelSampleWildcard {
         }
 
         // Return
-        return map;
+        return map.getGroupify();
     }
     
     /**
@@ -0,0 +1,119 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXProcessStatistics;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.criteria.EntropyLDiversity;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.exceptions.RollbackRequiredException;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.test.AbstractAnonymizationTest.ARXAnonymizationTestCase;
+import org.junit.Test;
+
+/**
+ * Tests whether iterative local recoding produces the same results as repeatedly
+ * optimizing the output step by step
+ * 
+ * @author Fabian Prasser
+ */
+public class TestAnonymizationLocalRecodingIterative {
+
+    /**
+     * Test with k-anonymity
+     * 
+     * @throws IOException
+     * @throws RollbackRequiredException
+     */
+    @Test
+    public void testKAnonymity() throws IOException, RollbackRequiredException {
+        test(ARXConfiguration.create(1d, Metric.createLossMetric(0.05d)).addPrivacyModel(new KAnonymity(5)), -1231665634);
+    }
+
+    /**
+     * Test with l-diversity
+     * 
+     * @throws IOException
+     * @throws RollbackRequiredException
+     */
+    @Test
+    public void testLDiversity() throws IOException, RollbackRequiredException {
+        test(ARXConfiguration.create(1d, Metric.createLossMetric(0.05d)).addPrivacyModel(new EntropyLDiversity("occupation", 5)), -998962150);
+    }
+
+    /**
+     * Returns a hash code for the given handle
+     * 
+     * @param handle
+     * @return
+     */
+    private int getHashCode(DataHandle handle) {
+        int hashcode = 23;
+        for (int row = 0; row < handle.getNumRows(); row++) {
+            for (int column = 0; column < handle.getNumColumns(); column++) {
+                hashcode = (37 * hashcode) + handle.getValue(row, column).hashCode();
+            }
+        }
+        return hashcode;
+    }
+
+    /**
+     * Performs the test
+     * 
+     * @param config
+     * @param hashcode
+     * @throws IOException
+     * @throws RollbackRequiredException
+     */
+    private void test(ARXConfiguration config, int hashcode) throws IOException, RollbackRequiredException {
+
+        // Iterative
+        ARXAnonymizationTestCase testCase = new ARXAnonymizationTestCase(config.clone(), "./data/adult.csv", "occupation", hashcode);
+        ARXResult result = new ARXAnonymizer().anonymize(AbstractAnonymizationTest.getDataObject(testCase), testCase.config);
+        DataHandle expected = result.getOutput();
+        ARXProcessStatistics statistics = result.optimizeIterative(expected, 0.05d, 100, 0.05d);
+        assertEquals(hashcode, getHashCode(expected));
+
+        // Step by step
+        testCase = new ARXAnonymizationTestCase(config.clone(), "./data/adult.csv", "occupation", hashcode);
+        result = new ARXAnonymizer().anonymize(AbstractAnonymizationTest.getDataObject(testCase), testCase.config);
+        DataHandle actual = result.getOutput();
+        double gsFactor = 0.05d;
+        int steps = 0;
+        for (int iteration = 0; iteration < 100 && result.isOptimizable(actual) && gsFactor <= 1d; iteration++) {
+            ARXProcessStatistics step = result.optimize(actual, gsFactor);
+            if (step.isSolutationAvailable()) {
+                steps++;
+                if (step.getStep(0).getNumberOfRecordsTransformed() == 0) {
+                    gsFactor += 0.05d;
+                }
+            } else {
+                gsFactor += 0.05d;
+            }
+        }
+        assertEquals(statistics.getNumberOfSteps(), steps);
+        assertEquals(hashcode, getHashCode(actual));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXLattice.ARXNode;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.DataSubset;
+import org.deidentifier.arx.criteria.DPresence;
+import org.deidentifier.arx.criteria.EntropyLDiversity;
+import org.deidentifier.arx.criteria.HierarchicalDistanceTCloseness;
+import org.deidentifier.arx.criteria.Inclusion;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.criteria.OrderedDistanceTCloseness;
+import org.deidentifier.arx.criteria.RecursiveCLDiversity;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.test.AbstractAnonymizationTest.ARXAnonymizationTestCase;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Test for multi-threaded anonymization. Results must be identical to sequential processing.
+ *
+ * @author Fabian Prasser
+ */
+@RunWith(Parameterized.class)
+public class TestAnonymizationParallel {
+
+    /**
+     * Returns the test cases.
+     *
+     * @return
+     * @throws IOException
+     */
+    @Parameters(name = "{index}:[{0}]")
+    public static Collection<Object[]> cases() throws IOException {
+        return Arrays.asList(new Object[][] {
+                                              { new ARXAnonymizationTestCase(ARXConfiguration.create(0.04d, Metric.createPrecomputedEntropyMetric(0.1d, true)).addPrivacyModel(new KAnonymity(5)), "./data/adult.csv", 0d, null, false) },
+                                              { new ARXAnonymizationTestCase(ARXConfiguration.create(0.0d, Metric.createDiscernabilityMetric(false)).addPrivacyModel(new KAnonymity(100)), "./data/adult.csv", 0d, null, false) },
+                                              { new ARXAnonymizationTestCase(ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new RecursiveCLDiversity("occupation", 4.0, 5)), "occupation", "./data/adult.csv", 0d, null, false) },
+                                              { new ARXAnonymizationTestCase(ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5)).addPrivacyModel(new HierarchicalDistanceTCloseness("occupation", 0.2, Hierarchy.create("./data/adult_hierarchy_occupation.csv", StandardCharsets.UTF_8, ';'))), "occupation", "./data/adult.csv", 0d, null, false) },
+                                              { new ARXAnonymizationTestCase(ARXConfiguration.create(0.02d, Metric.createPrecomputedEntropyMetric(0.1d, true)).addPrivacyModel(new KAnonymity(5)).addPrivacyModel(new Inclusion(getSubset(20000))), "./data/adult.csv", 0d, null, false) },
+                                              { new ARXAnonymizationTestCase(ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new EntropyLDiversity("occupation", 3)), "occupation", "./data/adult.csv", 0d, null, false) },
+                                              { new ARXAnonymizationTestCase(ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5)).addPrivacyModel(new OrderedDistanceTCloseness("occupation", 0.2)), "occupation", "./data/adult.csv", 0d, null, false) },
+                                              { new ARXAnonymizationTestCase(ARXConfiguration.create(0.02d, Metric.createPrecomputedEntropyMetric(0.1d, true)).addPrivacyModel(new KAnonymity(5)).addPrivacyModel(new DPresence(0.0d, 0.7d, getSubset(20000))), "./data/adult.csv", 0d, null, false) },
+        });
+    }
+
+    /**
+     * Returns a random subset of the given size
+     * @param size
+     * @return
+     */
+    private static DataSubset getSubset(int size) {
+        Set<Integer> set = new HashSet<Integer>();
+        Random random = new Random(0xDEADBEEF);
+        for (int i = 0; i < size; i++) {
+            set.add(random.nextInt(size));
+        }
+        return DataSubset.create(30162, set);
+    }
+
+    /** The test case. */
+    private final ARXAnonymizationTestCase testCase;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param testCase
+     */
+    public TestAnonymizationParallel(final ARXAnonymizationTestCase testCase) {
+        this.testCase = testCase;
+    }
+
+    /**
+     * Compares sequential and parallel anonymization
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void test() throws IOException {
+        compare(anonymize(1, false), anonymize(4, false));
+    }
+
+    /**
+     * Compares sequential anonymization and parallel anonymization with speculative checks
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testSpeculativeChecking() throws IOException {
+        compare(anonymize(1, false), anonymize(4, true));
+    }
+
+    /**
+     * Compares the given results
+     * @param expected
+     * @param actual
+     */
+    private void compare(ARXResult expected, ARXResult actual) {
+        
+        // Compare search
+        assertArrayEquals(expected.getGlobalOptimum().getTransformation(), actual.getGlobalOptimum().getTransformation());
+        assertEquals(expected.getGlobalOptimum().getHighestScore().toString(), actual.getGlobalOptimum().getHighestScore().toString());
+        ARXNode[][] expectedLevels = expected.getLattice().getLevels();
+        ARXNode[][] actualLevels = actual.getLattice().getLevels();
+        for (int level = 0; level < expectedLevels.length; level++) {
+            for (int i = 0; i < expectedLevels[level].length; i++) {
+                assertEquals(expectedLevels[level][i].getAnonymity(), actualLevels[level][i].getAnonymity());
+                assertEquals(expectedLevels[level][i].getHighestScore(), actualLevels[level][i].getHighestScore());
+            }
+        }
+        
+        // Compare output
+        DataHandle expectedOutput = expected.getOutput();
+        DataHandle actualOutput = actual.getOutput();
+        assertEquals(expectedOutput.getNumRows(), actualOutput.getNumRows());
+        for (int row = 0; row < expectedOutput.getNumRows(); row++) {
+            for (int column = 0; column < expectedOutput.getNumColumns(); column++) {
+                assertEquals(expectedOutput.getValue(row, column), actualOutput.getValue(row, column));
+            }
+        }
+    }
+
+    /**
+     * Anonymizes the data with the given number of threads
+     * @param threads
+     * @param speculative
+     * @return
+     * @throws IOException
+     */
+    private ARXResult anonymize(int threads, boolean speculative) throws IOException {
+        Data data = AbstractAnonymizationTest.getDataObject(testCase);
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        anonymizer.setNumberOfThreads(threads);
+        ARXConfiguration config = testCase.config.clone();
+        config.setSpeculativeCheckingEnabled(speculative);
+        return anonymizer.anonymize(data, config);
+    }
+}
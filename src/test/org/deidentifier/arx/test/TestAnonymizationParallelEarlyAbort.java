@@ -0,0 +1,167 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXLattice.ARXNode;
+import org.deidentifier.arx.ARXLattice.Anonymity;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.Hierarchy.DefaultHierarchy;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.Data.DefaultData;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.criteria.EqualDistanceTCloseness;
+import org.deidentifier.arx.framework.check.groupify.HashGroupifyEntry;
+import org.deidentifier.arx.framework.lattice.Transformation;
+import org.deidentifier.arx.metric.Metric;
+import org.junit.Test;
+
+/**
+ * Test for the early abort when checking classes of non-anonymous transformations in parallel.
+ * Results must be identical to sequential processing and the check must not evaluate all classes.
+ *
+ * @author Fabian Prasser
+ */
+public class TestAnonymizationParallelEarlyAbort {
+
+    /**
+     * t-closeness which counts the number of classes checked
+     *
+     * @author Fabian Prasser
+     */
+    public static class CountingTCloseness extends EqualDistanceTCloseness {
+
+        /** SVUID */
+        private static final long          serialVersionUID = 2358620427474738571L;
+
+        /** Counter, shared by all copies of the criterion */
+        private static final AtomicInteger COUNTER          = new AtomicInteger();
+
+        /**
+         * Creates a new instance
+         * @param attribute
+         * @param t
+         */
+        public CountingTCloseness(String attribute, double t) {
+            super(attribute, t);
+        }
+
+        @Override
+        public CountingTCloseness clone() {
+            return new CountingTCloseness(this.getAttribute(), this.getT());
+        }
+
+        @Override
+        public boolean isAnonymous(Transformation<?> node, HashGroupifyEntry entry) {
+            COUNTER.incrementAndGet();
+            return super.isAnonymous(node, entry);
+        }
+    }
+
+    /** Number of records, each of which forms a class of its own in the bottom transformation */
+    private static final int NUM_RECORDS     = 20000;
+
+    /** Minimal number of classes checked per thread in one round */
+    private static final int ROUND_PER_THREAD = 256;
+
+    /**
+     * Compares sequential and parallel checks of a non-anonymous transformation
+     *
+     * @throws IOException
+     */
+    @Test
+    public void test() throws IOException {
+
+        // Sequential
+        CountingTCloseness.COUNTER.set(0);
+        ARXResult expected = anonymize(1);
+        int expectedChecks = CountingTCloseness.COUNTER.get();
+
+        // Parallel
+        CountingTCloseness.COUNTER.set(0);
+        ARXResult actual = anonymize(4);
+        int actualChecks = CountingTCloseness.COUNTER.get();
+
+        // Compare search
+        ARXNode expectedBottom = expected.getLattice().getBottom();
+        ARXNode actualBottom = actual.getLattice().getBottom();
+        assertEquals(Anonymity.NOT_ANONYMOUS, expectedBottom.getAnonymity());
+        assertEquals(Anonymity.NOT_ANONYMOUS, actualBottom.getAnonymity());
+        assertEquals(Anonymity.ANONYMOUS, actual.getLattice().getTop().getAnonymity());
+
+        // The bottom transformation must have been aborted early
+        assertTrue("Too many classes checked sequentially: " + expectedChecks, expectedChecks < NUM_RECORDS / 100);
+        assertTrue("Too many classes checked in parallel: " + actualChecks, actualChecks <= expectedChecks + 4 * ROUND_PER_THREAD);
+
+        // Compare outliers
+        DataHandle expectedOutput = expected.getOutput(expectedBottom, false);
+        DataHandle actualOutput = actual.getOutput(actualBottom, false);
+        assertEquals(NUM_RECORDS, getNumOutliers(expectedOutput));
+        assertEquals(getNumOutliers(expectedOutput), getNumOutliers(actualOutput));
+    }
+
+    /**
+     * Anonymizes the data with the given number of threads
+     * @param threads
+     * @return
+     * @throws IOException
+     */
+    private ARXResult anonymize(int threads) throws IOException {
+
+        // Each record is unique and the sensitive values alternate
+        DefaultData data = Data.create();
+        DefaultHierarchy hierarchy = AttributeType.Hierarchy.create();
+        data.add("id", "value");
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            data.add(String.valueOf(i), String.valueOf(i % 2));
+            hierarchy.add(String.valueOf(i), "*");
+        }
+        data.getDefinition().setAttributeType("id", hierarchy);
+        data.getDefinition().setAttributeType("value", AttributeType.SENSITIVE_ATTRIBUTE);
+
+        // Suppression limit of 20 records
+        ARXConfiguration config = ARXConfiguration.create(0.001d, Metric.createLossMetric());
+        config.addPrivacyModel(new CountingTCloseness("value", 0.2d));
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        anonymizer.setNumberOfThreads(threads);
+        return anonymizer.anonymize(data, config);
+    }
+
+    /**
+     * Returns the number of outliers
+     * @param handle
+     * @return
+     */
+    private int getNumOutliers(DataHandle handle) {
+        int count = 0;
+        for (int row = 0; row < handle.getNumRows(); row++) {
+            if (handle.isOutlier(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXConfiguration.AnonymizationAlgorithm;
+import org.deidentifier.arx.ARXLattice.Anonymity;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.test.AbstractAnonymizationTest.ARXAnonymizationTestCase;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Test for the island model of the genetic algorithm. Results must be reproducible in deterministic mode,
+ * independently of the number of threads, if more than one thread is used.
+ *
+ * @author Fabian Prasser
+ */
+@RunWith(Parameterized.class)
+public class TestAnonymizationParallelGenetic {
+
+    /**
+     * Returns the test cases.
+     *
+     * @return
+     */
+    @Parameters(name = "{index}:[{0}]")
+    public static Collection<Object[]> cases() {
+        
+        // Create list
+        List<Object[]> cases = Arrays.asList(new Object[][] {
+             { new ARXAnonymizationTestCase(ARXConfiguration.create(1d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5)), "./data/adult.csv", 0d, null, false) },
+             { new ARXAnonymizationTestCase(ARXConfiguration.create(0.04d, Metric.createPrecomputedEntropyMetric(0.1d)).addPrivacyModel(new KAnonymity(100)), "./data/adult.csv", 0d, null, false) },
+        });
+        
+        // Select genetic algorithm (deterministic) and limit the number of iterations
+        for (Object[] testcase : cases) {
+            ((ARXAnonymizationTestCase)testcase[0]).config.setAlgorithm(AnonymizationAlgorithm.BEST_EFFORT_GENETIC);
+            ((ARXAnonymizationTestCase)testcase[0]).config.setGeneticAlgorithmDeterministic(true);
+            ((ARXAnonymizationTestCase)testcase[0]).config.setGeneticAlgorithmIterations(10);
+            ((ARXAnonymizationTestCase)testcase[0]).config.setHeuristicSearchTimeLimit(Integer.MAX_VALUE);
+            ((ARXAnonymizationTestCase)testcase[0]).config.setHeuristicSearchStepLimit(Integer.MAX_VALUE);
+        }
+        
+        // Return
+        return cases;
+    }
+
+    /** The test case. */
+    private final ARXAnonymizationTestCase testCase;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param testCase
+     */
+    public TestAnonymizationParallelGenetic(final ARXAnonymizationTestCase testCase) {
+        this.testCase = testCase;
+    }
+
+    /**
+     * Compares two parallel executions with each other and with an execution using fewer threads
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void test() throws IOException {
+        
+        ARXResult expected = anonymize(2);
+        ARXResult actual1 = anonymize(4);
+        ARXResult actual2 = anonymize(4);
+        
+        // Compare
+        assertTrue(expected.getGlobalOptimum().getAnonymity() == Anonymity.ANONYMOUS);
+        assertArrayEquals(expected.getGlobalOptimum().getTransformation(), actual1.getGlobalOptimum().getTransformation());
+        assertEquals(expected.getGlobalOptimum().getHighestScore().toString(), actual1.getGlobalOptimum().getHighestScore().toString());
+        assertArrayEquals(expected.getGlobalOptimum().getTransformation(), actual2.getGlobalOptimum().getTransformation());
+        assertEquals(expected.getGlobalOptimum().getHighestScore().toString(), actual2.getGlobalOptimum().getHighestScore().toString());
+    }
+
+    /**
+     * Anonymizes the data with the given number of threads
+     * @param threads
+     * @return
+     * @throws IOException
+     */
+    private ARXResult anonymize(int threads) throws IOException {
+        Data data = AbstractAnonymizationTest.getDataObject(testCase);
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        anonymizer.setNumberOfThreads(threads);
+        return anonymizer.anonymize(data, testCase.config.clone());
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXPreparedData;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.Hierarchy;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.DataSubset;
+import org.deidentifier.arx.criteria.DPresence;
+import org.deidentifier.arx.criteria.EqualDistanceTCloseness;
+import org.deidentifier.arx.criteria.HierarchicalDistanceTCloseness;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.criteria.PrivacyCriterion;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.test.AbstractAnonymizationTest.ARXAnonymizationTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for anonymizing prepared data
+ * 
+ * @author Fabian Prasser
+ */
+public class TestAnonymizationPrepared {
+
+    /** The dataset */
+    private static final String DATASET = "./data/adult.csv";
+
+    /**
+     * Test a sequential parameter sweep
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testSweep() throws IOException {
+
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        ARXPreparedData prepared = anonymizer.prepare(getData());
+        for (ARXConfiguration config : getConfigurations()) {
+            ARXResult expected = anonymizer.anonymize(getData(), config.clone());
+            ARXResult actual = anonymizer.anonymize(prepared, config.clone());
+            compare(expected, actual);
+        }
+    }
+
+    /**
+     * Test processing several configurations concurrently
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testConcurrent() throws IOException {
+
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        Data data = getData();
+        ARXPreparedData prepared = anonymizer.prepare(data);
+        List<ARXConfiguration> configs = getConfigurations();
+        List<ARXConfiguration> clones = new ArrayList<ARXConfiguration>();
+        for (ARXConfiguration config : configs) {
+            clones.add(config.clone());
+        }
+        List<ARXResult> results = anonymizer.anonymize(prepared, clones, 3);
+        assertEquals(configs.size(), results.size());
+        
+        // Handles of different results must be independent
+        results.get(0).getOutput().sort(true, 0);
+        
+        // The original data must still be usable
+        ARXResult expected = anonymizer.anonymize(data, configs.get(0).clone());
+        assertArrayEquals(expected.getGlobalOptimum().getTransformation(), results.get(0).getGlobalOptimum().getTransformation());
+        for (int i = 1; i < configs.size(); i++) {
+            compare(anonymizer.anonymize(getData(), configs.get(i).clone()), results.get(i));
+        }
+    }
+
+    /**
+     * Test processing configurations concurrently, which have been derived from each other via
+     * clone() and thus share privacy models and quality models
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testConcurrentClones() throws IOException {
+
+        ARXConfiguration config = ARXConfiguration.create(0d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+        List<ARXConfiguration> configs = new ArrayList<ARXConfiguration>();
+        for (double limit : new double[] { 0d, 0.02d, 0.04d, 0.1d }) {
+            ARXConfiguration clone = config.clone();
+            clone.setSuppressionLimit(limit);
+            configs.add(clone);
+        }
+        compare(null, configs);
+    }
+
+    /**
+     * Test processing configurations with t-closeness and research subsets concurrently, which
+     * have been derived from each other via clone()
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testConcurrentClonesWithSensitiveAttributesAndSubsets() throws IOException {
+
+        String attribute = "occupation";
+        Hierarchy hierarchy = Hierarchy.create("./data/adult_hierarchy_occupation.csv", StandardCharsets.UTF_8, ';');
+        DataSubset subset = DataSubset.create(Data.create(DATASET, StandardCharsets.UTF_8, ';'), 
+                                              Data.create("./data/adult_subset.csv", StandardCharsets.UTF_8, ';'));
+        List<ARXConfiguration> configs = new ArrayList<ARXConfiguration>();
+        ARXConfiguration[] prototypes = new ARXConfiguration[] {
+            ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5))
+                                                                   .addPrivacyModel(new HierarchicalDistanceTCloseness(attribute, 0.2d, hierarchy)),
+            ARXConfiguration.create(0.04d, Metric.createEntropyMetric()).addPrivacyModel(new EqualDistanceTCloseness(attribute, 0.2d)),
+            ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(2))
+                                                                   .addPrivacyModel(new EqualDistanceTCloseness(attribute, 0.5d))
+                                                                   .addPrivacyModel(new DPresence(0.05d, 0.15d, subset)),
+        };
+        for (ARXConfiguration prototype : prototypes) {
+            configs.add(prototype);
+            ARXConfiguration clone = prototype.clone();
+            clone.setSuppressionLimit(0.1d);
+            configs.add(clone);
+        }
+        compare(attribute, configs);
+    }
+
+    /**
+     * Anonymizes the given configurations concurrently and compares the results
+     * with anonymizing the data for each configuration separately.
+     * 
+     * @param sensitiveAttribute
+     * @param configs
+     * @throws IOException
+     */
+    private void compare(String sensitiveAttribute, List<ARXConfiguration> configs) throws IOException {
+        
+        // Expected
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        List<ARXResult> expected = new ArrayList<ARXResult>();
+        for (ARXConfiguration config : configs) {
+            expected.add(anonymizer.anonymize(getData(sensitiveAttribute), config.clone()));
+        }
+        
+        // Compare
+        ARXPreparedData prepared = anonymizer.prepare(getData(sensitiveAttribute));
+        List<ARXResult> results = anonymizer.anonymize(prepared, configs, 3);
+        assertEquals(configs.size(), results.size());
+        for (int i = 0; i < configs.size(); i++) {
+            compare(expected.get(i), results.get(i));
+        }
+        
+        // Runs must not share stateful models
+        for (int i = 0; i < configs.size(); i++) {
+            ARXConfiguration config = results.get(i).getConfiguration();
+            for (int j = 0; j < configs.size(); j++) {
+                assertNotSame(configs.get(j).getQualityModel(), config.getQualityModel());
+                for (PrivacyCriterion model : config.getPrivacyModels()) {
+                    for (PrivacyCriterion other : configs.get(j).getPrivacyModels()) {
+                        assertNotSame(other, model);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the given results
+     * 
+     * @param expected
+     * @param actual
+     */
+    private void compare(ARXResult expected, ARXResult actual) {
+        assertArrayEquals(expected.getGlobalOptimum().getTransformation(), actual.getGlobalOptimum().getTransformation());
+        assertEquals(expected.getGlobalOptimum().getHighestScore(), actual.getGlobalOptimum().getHighestScore());
+        DataHandle output1 = expected.getOutput();
+        DataHandle output2 = actual.getOutput();
+        assertEquals(output1.getNumRows(), output2.getNumRows());
+        for (int row = 0; row < output1.getNumRows(); row++) {
+            for (int column = 0; column < output1.getNumColumns(); column++) {
+                assertEquals(output1.getValue(row, column), output2.getValue(row, column));
+            }
+        }
+    }
+
+    /**
+     * Returns the configurations to test
+     * 
+     * @return
+     */
+    private List<ARXConfiguration> getConfigurations() {
+        List<ARXConfiguration> configs = new ArrayList<ARXConfiguration>();
+        configs.add(ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(2)));
+        configs.add(ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5)));
+        configs.add(ARXConfiguration.create(0d, Metric.createEntropyMetric()).addPrivacyModel(new KAnonymity(10)));
+        return configs;
+    }
+
+    /**
+     * Returns the dataset
+     * 
+     * @return
+     * @throws IOException
+     */
+    private Data getData() throws IOException {
+        return getData(null);
+    }
+
+    /**
+     * Returns the dataset
+     * 
+     * @param sensitiveAttribute may be null
+     * @return
+     * @throws IOException
+     */
+    private Data getData(String sensitiveAttribute) throws IOException {
+        ARXConfiguration config = ARXConfiguration.create();
+        Data data = AbstractAnonymizationTest.getDataObject(new ARXAnonymizationTestCase(config, DATASET, 0d, null, false));
+        if (sensitiveAttribute != null) {
+            data.getDefinition().setAttributeType(sensitiveAttribute, AttributeType.SENSITIVE_ATTRIBUTE);
+        }
+        return data;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.AttributeType;
+import org.deidentifier.arx.AttributeType.MicroAggregationFunction;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.Data.DefaultData;
+import org.deidentifier.arx.DataDefinition;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.aggregates.HierarchyBuilderRedactionBased;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.test.AbstractAnonymizationTest.ARXAnonymizationTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for storing data in ARX's binary format
+ * 
+ * @author Fabian Prasser
+ */
+public class TestDataBinary {
+
+    /**
+     * Test storing input data and hierarchies
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testInput() throws IOException {
+
+        // Load and store
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+        ARXAnonymizationTestCase testCase = new ARXAnonymizationTestCase(config, "./data/adult.csv", 0d, null, false);
+        Data expected = AbstractAnonymizationTest.getDataObject(testCase);
+        File file = File.createTempFile("arx", ".bin");
+        file.deleteOnExit();
+        expected.getHandle().saveBinary(file);
+        Data actual = Data.createFromBinary(file);
+        
+        // Compare
+        compare(expected.getHandle(), actual.getHandle());
+        for (String attribute : expected.getHandle().getDefinition().getQuasiIdentifyingAttributes()) {
+            assertArrayEquals(expected.getDefinition().getHierarchy(attribute), actual.getDefinition().getHierarchy(attribute));
+        }
+        
+        // Anonymize
+        ARXResult result1 = new ARXAnonymizer().anonymize(expected, config.clone());
+        ARXResult result2 = new ARXAnonymizer().anonymize(actual, config.clone());
+        assertArrayEquals(result1.getGlobalOptimum().getTransformation(), result2.getGlobalOptimum().getTransformation());
+        compare(result1.getOutput(), result2.getOutput());
+        file.delete();
+    }
+
+    /**
+     * Test storing output data, including suppressed values
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testOutput() throws IOException {
+        
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+        ARXAnonymizationTestCase testCase = new ARXAnonymizationTestCase(config, "./data/adult.csv", 0d, null, false);
+        DataHandle output = new ARXAnonymizer().anonymize(AbstractAnonymizationTest.getDataObject(testCase), config).getOutput();
+        File file = File.createTempFile("arx", ".bin");
+        file.deleteOnExit();
+        output.saveBinary(file);
+        compare(output, Data.createFromBinary(file).getHandle());
+        file.delete();
+    }
+
+    /**
+     * Test storing the definition
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testDefinition() throws IOException {
+        
+        // Create
+        DefaultData data = Data.create();
+        data.add("age", "zipcode", "disease", "name");
+        data.add("34", "81667", "flu", "a");
+        data.add("45", "81675", "cancer", "b");
+        data.add("66", "81925", "gastritis", "c");
+        DataDefinition definition = data.getDefinition();
+        definition.setDataType("age", DataType.INTEGER);
+        definition.setAttributeType("age", AttributeType.Hierarchy.create(new String[][] { { "34", "<50" }, { "45", "<50" }, { "66", ">=50" } }));
+        definition.setMicroAggregationFunction("age", MicroAggregationFunction.createArithmeticMean(), true);
+        definition.setAttributeType("zipcode", HierarchyBuilderRedactionBased.create('*'));
+        definition.setMinimumGeneralization("zipcode", 1);
+        definition.setMaximumGeneralization("zipcode", 3);
+        definition.setAttributeType("disease", AttributeType.SENSITIVE_ATTRIBUTE);
+        definition.setResponseVariable("disease", true);
+        definition.setAttributeType("name", AttributeType.IDENTIFYING_ATTRIBUTE);
+        
+        // Store and load
+        File file = File.createTempFile("arx", ".bin");
+        file.deleteOnExit();
+        data.getHandle().saveBinary(file);
+        Data loaded = Data.createFromBinary(file);
+        DataDefinition actual = loaded.getDefinition();
+        compare(data.getHandle(), loaded.getHandle());
+        
+        // Compare
+        assertEquals(DataType.INTEGER, actual.getDataType("age"));
+        assertArrayEquals(definition.getHierarchy("age"), actual.getHierarchy("age"));
+        assertEquals(definition.getMicroAggregationFunction("age").getLabel(), actual.getMicroAggregationFunction("age").getLabel());
+        assertTrue(actual.getQuasiIdentifiersWithClusteringAndMicroaggregation().contains("age"));
+        assertNotNull(actual.getHierarchyBuilder("zipcode"));
+        assertNull(actual.getHierarchy("zipcode"));
+        assertEquals(1, actual.getMinimumGeneralization("zipcode"));
+        assertEquals(3, actual.getMaximumGeneralization("zipcode"));
+        assertEquals(AttributeType.SENSITIVE_ATTRIBUTE, actual.getAttributeType("disease"));
+        assertTrue(actual.isResponseVariable("disease"));
+        assertFalse(actual.isResponseVariable("zipcode"));
+        assertEquals(AttributeType.IDENTIFYING_ATTRIBUTE, actual.getAttributeType("name"));
+        file.delete();
+    }
+
+    /**
+     * Compares the given handles
+     * 
+     * @param expected
+     * @param actual
+     */
+    private void compare(DataHandle expected, DataHandle actual) {
+        assertEquals(expected.getNumRows(), actual.getNumRows());
+        assertEquals(expected.getNumColumns(), actual.getNumColumns());
+        for (int column = 0; column < expected.getNumColumns(); column++) {
+            assertEquals(expected.getAttributeName(column), actual.getAttributeName(column));
+        }
+        for (int row = 0; row < expected.getNumRows(); row++) {
+            for (int column = 0; column < expected.getNumColumns(); column++) {
+                assertEquals(expected.getValue(row, column), actual.getValue(row, column));
+            }
+        }
+    }
+}
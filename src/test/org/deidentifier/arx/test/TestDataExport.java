@@ -0,0 +1,145 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.io.CSVDataOutput;
+import org.deidentifier.arx.io.CSVSyntax;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.test.AbstractAnonymizationTest.ARXAnonymizationTestCase;
+import org.junit.Test;
+
+/**
+ * Tests for exporting data directly from the encoded representation
+ * 
+ * @author Fabian Prasser
+ */
+public class TestDataExport {
+
+    /**
+     * Test input data
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testInput() throws IOException {
+        CSVSyntax syntax = new CSVSyntax(';');
+        DataHandle handle = Data.create(new File("data/adult.csv"), StandardCharsets.UTF_8, syntax).getHandle();
+        compare(handle, syntax);
+    }
+
+    /**
+     * Test output data, including suppressed records, sorted data and views
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testOutput() throws IOException {
+        
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+        ARXAnonymizationTestCase testCase = new ARXAnonymizationTestCase(config, "./data/adult.csv", 0d, null, false);
+        ARXResult result = new ARXAnonymizer().anonymize(AbstractAnonymizationTest.getDataObject(testCase), config);
+        DataHandle output = result.getOutput();
+        CSVSyntax syntax = new CSVSyntax(',');
+        
+        // Output
+        assertTrue(output.getNumRows() > 0);
+        compare(output, syntax);
+        
+        // Sorted output
+        output.sort(true, 0, 1);
+        compare(output, syntax);
+        
+        // View
+        compare(output.getView(), syntax);
+        
+        // Other transformation
+        output.release();
+        compare(result.getOutput(result.getLattice().getBottom(), false), syntax);
+    }
+
+    /**
+     * Test values which need to be quoted or trimmed
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testQuoted() throws IOException {
+        
+        // Create file
+        File file = File.createTempFile("arx", ".csv");
+        file.deleteOnExit();
+        Random random = new Random(0xDEADBEEF);
+        String[] values = new String[] { "a", "b;c", "\"d\"\"e\"", "\"f\ng;h\"", "\"\"", " i ", "", "#j", "\"#k\"", "l#", "*", "m,n" };
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("c1;c2;c3\n");
+            for (int row = 0; row < 20000; row++) {
+                for (int column = 0; column < 3; column++) {
+                    writer.write(column != 0 ? ";" : "");
+                    writer.write(random.nextInt(2) == 0 ? values[random.nextInt(values.length)] : String.valueOf(random.nextInt(1000)));
+                }
+                writer.write("\n");
+            }
+        }
+        
+        // Compare
+        CSVSyntax syntax = new CSVSyntax(';');
+        DataHandle handle = Data.create(file, StandardCharsets.UTF_8, syntax).getHandle();
+        compare(handle, syntax);
+        compare(handle, new CSVSyntax(',', '\'', '\'', new char[] { '\r', '\n' }));
+        file.delete();
+    }
+
+    /**
+     * Compares the output of the given handle with the output of the generic writer
+     * 
+     * @param handle
+     * @param syntax
+     * @throws IOException
+     */
+    private void compare(DataHandle handle, CSVSyntax syntax) throws IOException {
+        
+        // Expected
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        CSVDataOutput output = new CSVDataOutput(expected, syntax.getDelimiter(), syntax.getQuote(), syntax.getEscape(), syntax.getLinebreak(), StandardCharsets.UTF_8);
+        output.write(handle.iterator());
+        
+        // Compare
+        for (int threads : new int[] { 1, 4 }) {
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            handle.save(actual, StandardCharsets.UTF_8, syntax, threads);
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        }
+    }
+}
@@ -17,14 +17,27 @@
 
 package org.deidentifier.arx.test;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.DataSource;
+import org.deidentifier.arx.io.CSVSyntax;
 import org.junit.Test;
 
 import cern.colt.Arrays;
@@ -52,4 +65,181 @@ public class TestDataImport extends AbstractTest {
             System.out.println(Arrays.toString(result.get(result.size() - 1)));
         }
     }
+
+    /**
+     * Test parallel import
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testParallel() throws IllegalArgumentException, IOException {
+        CSVSyntax syntax = new CSVSyntax(';');
+        File file = new File("data/adult.csv");
+        compare(Data.create(file, StandardCharsets.UTF_8, syntax).getHandle(),
+                Data.create(file, StandardCharsets.UTF_8, syntax, null, 4).getHandle());
+    }
+
+    /**
+     * Test parallel import with quoted values spanning multiple lines
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     */
+    @Test
+    public void testParallelQuoted() throws IllegalArgumentException, IOException {
+        
+        // Create file
+        File file = File.createTempFile("arx", ".csv");
+        file.deleteOnExit();
+        Random random = new Random(0xDEADBEEF);
+        String[] values = new String[] { "a", "b;c", "\"d\"\"e\"", "\"f\ng;h\"", "\"\"", " i ", "", "\"j\"\"\nk\"" };
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("c1;c2;c3\n");
+            for (int row = 0; row < 200000; row++) {
+                for (int column = 0; column < 3; column++) {
+                    writer.write(column != 0 ? ";" : "");
+                    writer.write(random.nextInt(4) == 0 ? values[random.nextInt(values.length)] : String.valueOf(random.nextInt(1000)));
+                }
+                writer.write("\n");
+            }
+        }
+        
+        // Compare
+        CSVSyntax syntax = new CSVSyntax(';');
+        compare(Data.create(file, StandardCharsets.UTF_8, syntax).getHandle(),
+                Data.create(file, StandardCharsets.UTF_8, syntax, null, 4).getHandle());
+        file.delete();
+    }
+
+    /**
+     * Test streaming and partitioned import from a database
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     * @throws SQLException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void testJDBC() throws IllegalArgumentException, IOException, SQLException, ClassNotFoundException {
+        
+        // Create database
+        File file = File.createTempFile("arx", ".db");
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        DataHandle expected = Data.create(new File("data/adult.csv"), StandardCharsets.UTF_8, ';').getHandle();
+        createDatabase(url, expected, "INTEGER", 1d);
+        
+        // Sequential with fetch size
+        DataSource source = DataSource.createJDBCSource(url, "adult");
+        for (int column = 0; column < expected.getNumColumns(); column++) {
+            source.addColumn(column + 1, expected.getAttributeName(column));
+        }
+        source.setFetchSize(1000);
+        compare(expected, Data.create(source).getHandle());
+        
+        // Partitioned
+        source = DataSource.createJDBCSource(url, "adult");
+        for (int column = 0; column < expected.getNumColumns(); column++) {
+            source.addColumn(column + 1, expected.getAttributeName(column));
+        }
+        source.setFetchSize(1000);
+        source.setPartitioning("id", 4);
+        compare(expected, Data.create(source).getHandle());
+        file.delete();
+    }
+
+    /**
+     * Test partitioned import from a database with a key column containing fractional values,
+     * many of which are located between integer bounds
+     *
+     * @throws IllegalArgumentException
+     * @throws IOException
+     * @throws SQLException
+     * @throws ClassNotFoundException
+     */
+    @Test
+    public void testJDBCFractionalKey() throws IllegalArgumentException, IOException, SQLException, ClassNotFoundException {
+        
+        // Create database
+        File file = File.createTempFile("arx", ".db");
+        file.deleteOnExit();
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        DataHandle expected = Data.create(new File("data/adult.csv"), StandardCharsets.UTF_8, ';').getHandle();
+        createDatabase(url, expected, "REAL", 0.5d);
+        
+        // Partitioned
+        for (int partitions : new int[] {1, 4, 7}) {
+            DataSource source = DataSource.createJDBCSource(url, "adult");
+            for (int column = 0; column < expected.getNumColumns(); column++) {
+                source.addColumn(column + 1, expected.getAttributeName(column));
+            }
+            source.setPartitioning("id", partitions);
+            compare(expected, Data.create(source).getHandle());
+        }
+        file.delete();
+    }
+
+    /**
+     * Stores the given data in a table "adult" with a preceding key column "id", whose value in
+     * the i-th row is i * factor
+     * 
+     * @param url
+     * @param data
+     * @param type of the key column
+     * @param factor
+     * @throws SQLException
+     * @throws ClassNotFoundException
+     */
+    private void createDatabase(String url, DataHandle data, String type, double factor) throws SQLException, ClassNotFoundException {
+        Class.forName("org.sqlite.JDBC");
+        try (Connection connection = DriverManager.getConnection(url)) {
+            connection.setAutoCommit(false);
+            StringBuilder create = new StringBuilder("CREATE TABLE adult (id " + type);
+            StringBuilder insert = new StringBuilder("INSERT INTO adult VALUES (?");
+            for (int column = 0; column < data.getNumColumns(); column++) {
+                create.append(", ").append(data.getAttributeName(column).replace('-', '_')).append(" TEXT");
+                insert.append(", ?");
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(create.append(")").toString());
+            }
+            try (PreparedStatement statement = connection.prepareStatement(insert.append(")").toString())) {
+                for (int row = 0; row < data.getNumRows(); row++) {
+                    if (factor == 1d) {
+                        statement.setInt(1, row);
+                    } else {
+                        statement.setDouble(1, row * factor);
+                    }
+                    for (int column = 0; column < data.getNumColumns(); column++) {
+                        statement.setString(column + 2, data.getValue(row, column));
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            connection.commit();
+        }
+    }
+
+    /**
+     * Compares the given handles
+     * 
+     * @param expected
+     * @param actual
+     */
+    private void compare(DataHandle expected, DataHandle actual) {
+        assertEquals(expected.getNumRows(), actual.getNumRows());
+        assertEquals(expected.getNumColumns(), actual.getNumColumns());
+        for (int column = 0; column < expected.getNumColumns(); column++) {
+            assertEquals(expected.getAttributeName(column), actual.getAttributeName(column));
+            assertEquals(java.util.Arrays.toString(expected.getDistinctValues(column)), 
+                         java.util.Arrays.toString(actual.getDistinctValues(column)));
+        }
+        for (int row = 0; row < expected.getNumRows(); row++) {
+            for (int column = 0; column < expected.getNumColumns(); column++) {
+                assertEquals(expected.getValue(row, column), actual.getValue(row, column));
+            }
+        }
+    }
 }
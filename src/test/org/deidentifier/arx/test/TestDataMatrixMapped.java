@@ -0,0 +1,195 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.framework.data.Data;
+import org.deidentifier.arx.framework.data.DataMatrix;
+import org.deidentifier.arx.framework.data.DataMatrixMapped;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.test.AbstractAnonymizationTest.ARXAnonymizationTestCase;
+import org.junit.Test;
+
+/**
+ * Tests the off-heap representation of data matrices against the default representation
+ *
+ * @author Fabian Prasser
+ */
+public class TestDataMatrixMapped {
+
+    /** Number of columns */
+    private static final int COLUMNS = 7;
+
+    /** Number of rows */
+    private static final int ROWS    = 1000;
+
+    /**
+     * Test
+     */
+    @Test
+    public void testAccess() {
+        
+        Random random = new Random(0xDEADBEEF);
+        File directory = new File(System.getProperty("java.io.tmpdir"));
+        DataMatrix expected = new DataMatrix(ROWS, COLUMNS);
+        DataMatrix actual = DataMatrixMapped.create(ROWS, COLUMNS, 0L, directory);
+        assertTrue(actual instanceof DataMatrixMapped);
+        assertFalse(DataMatrixMapped.create(ROWS, COLUMNS, Long.MAX_VALUE, directory) instanceof DataMatrixMapped);
+        
+        // Fill
+        for (int row = 0; row < ROWS; row++) {
+            expected.setRow(row);
+            actual.setRow(row);
+            for (int column = 0; column < COLUMNS; column++) {
+                int value = random.nextInt(10);
+                expected.setValueAtColumn(column, value);
+                actual.setValueAtColumn(column, value);
+            }
+        }
+        
+        // Mark outliers
+        for (int row = 0; row < ROWS; row += 3) {
+            expected.or(row, Data.OUTLIER_MASK);
+            actual.or(row, Data.OUTLIER_MASK);
+        }
+        for (int row = 0; row < ROWS; row += 9) {
+            expected.and(row, Data.REMOVE_OUTLIER_MASK);
+            actual.and(row, Data.REMOVE_OUTLIER_MASK);
+        }
+        
+        // Swap
+        for (int row = 0; row < ROWS - 1; row += 2) {
+            expected.swap(row, row + 1);
+            actual.swap(row, row + 1);
+        }
+        
+        // Compare cells
+        DataMatrix view = actual.getView();
+        DataMatrix clone = actual.clone();
+        for (int row = 0; row < ROWS; row++) {
+            view.setRow(row);
+            actual.iterator(row);
+            for (int column = 0; column < COLUMNS; column++) {
+                assertEquals(expected.get(row, column), actual.get(row, column));
+                assertEquals(expected.get(row, column), clone.get(row, column));
+                assertEquals(expected.get(row, column), view.getValueAtColumn(column));
+                assertTrue(actual.iterator_hasNext());
+                assertEquals(expected.get(row, column), actual.iterator_next());
+            }
+            assertFalse(actual.iterator_hasNext());
+            assertEquals(expected.hashCode(row), actual.hashCode(row));
+            assertEquals(expected.hashCodeIgnore(row, 3), actual.hashCodeIgnore(row, 3));
+        }
+        
+        // Compare rows
+        for (int i = 0; i < ROWS * 10; i++) {
+            int row1 = random.nextInt(ROWS);
+            int row2 = random.nextInt(ROWS);
+            if (random.nextBoolean()) {
+                actual.copyFrom(row1, actual, row2);
+                expected.copyFrom(row1, expected, row2);
+            }
+            for (int column = 0; column < COLUMNS; column++) {
+                assertEquals(expected.equalsIgnore(row1, row2, column), actual.equalsIgnore(row1, row2, column));
+            }
+            assertEquals(expected.equals(row1, row2), actual.equals(row1, row2));
+            assertEquals(expected.equalsIgnoringOutliers(row1, row2), actual.equalsIgnoringOutliers(row1, row2));
+        }
+    }
+
+    /**
+     * Compares results of anonymizing data on-heap and off-heap
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testAnonymization() throws IOException {
+        test(false);
+    }
+
+    /**
+     * Compares results of anonymizing data on-heap and off-heap, where the data
+     * has been encoded on-heap before
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testAnonymizationEncoded() throws IOException {
+        test(true);
+    }
+
+    /**
+     * Compares the given handles
+     * @param handle1
+     * @param handle2
+     */
+    private void compare(DataHandle handle1, DataHandle handle2) {
+        assertEquals(handle1.getNumRows(), handle2.getNumRows());
+        for (int row = 0; row < handle1.getNumRows(); row++) {
+            for (int column = 0; column < handle1.getNumColumns(); column++) {
+                assertEquals(handle1.getValue(row, column), handle2.getValue(row, column));
+            }
+        }
+    }
+
+    /**
+     * Compares results of anonymizing data on-heap and off-heap
+     * 
+     * @param encoded Whether the data is encoded before anonymization
+     * @throws IOException
+     */
+    private void test(boolean encoded) throws IOException {
+        
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+        ARXAnonymizationTestCase testCase = new ARXAnonymizationTestCase(config, "./data/adult.csv", 0d, null, false);
+        
+        ARXResult expected = new ARXAnonymizer().anonymize(AbstractAnonymizationTest.getDataObject(testCase), config.clone());
+        ARXConfiguration offHeap = config.clone();
+        offHeap.setOffHeapThreshold(0L);
+        org.deidentifier.arx.Data data = AbstractAnonymizationTest.getDataObject(testCase);
+        if (encoded) {
+            data.getHandle();
+        }
+        ARXResult actual = new ARXAnonymizer().anonymize(data, offHeap);
+        
+        // Compare
+        assertArrayEquals(expected.getGlobalOptimum().getTransformation(), actual.getGlobalOptimum().getTransformation());
+        DataHandle output1 = expected.getOutput();
+        DataHandle output2 = actual.getOutput();
+        compare(expected.getInput(), actual.getInput());
+        compare(output1, output2);
+        
+        // Sorting must be reflected in input and output
+        output1.sort(true, 0, 1);
+        output2.sort(true, 0, 1);
+        compare(expected.getInput(), actual.getInput());
+        compare(output1, output2);
+    }
+}
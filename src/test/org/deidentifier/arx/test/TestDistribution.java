@@ -0,0 +1,137 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.deidentifier.arx.DataType;
+import org.deidentifier.arx.framework.check.distribution.Distribution;
+import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction.DistributionAggregateFunctionMode;
+import org.junit.Test;
+
+/**
+ * Tests the dense representation of distributions against the hash-based representation
+ *
+ * @author Fabian Prasser
+ */
+public class TestDistribution {
+
+    /** Domain sizes */
+    private static final int[] DOMAINS = new int[] { 1, 2, 5, 8, 9, 256, 257, 1000 };
+
+    /** Number of distributions */
+    private static final int   SIZE    = 100;
+
+    /**
+     * Test
+     */
+    @Test
+    public void testAddAndMerge() {
+        
+        Random random = new Random(0xDEADBEEF);
+        for (int domain : DOMAINS) {
+            
+            // Fill
+            Distribution[] expected = new Distribution[SIZE];
+            Distribution[] actual = new Distribution[SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                expected[i] = new Distribution();
+                actual[i] = new Distribution(domain);
+                int count = random.nextInt(20);
+                for (int j = 0; j < count; j++) {
+                    int value = random.nextInt(domain);
+                    int frequency = 1 + random.nextInt(3);
+                    expected[i].add(value, frequency);
+                    actual[i].add(value, frequency);
+                }
+                check(expected[i], actual[i]);
+            }
+            
+            // Merge distributions with each other
+            for (int i = 1; i < SIZE; i++) {
+                expected[i].merge(expected[i - 1]);
+                actual[i].merge(actual[i - 1]);
+                check(expected[i], actual[i]);
+            }
+            
+            // Merge with packed representations
+            for (int i = 1; i < SIZE; i++) {
+                int[][] packed = expected[i - 1].pack();
+                expected[i].merge(packed[0], packed[1]);
+                actual[i].merge(packed[0], packed[1]);
+                check(expected[i], actual[i]);
+            }
+        }
+    }
+
+    /**
+     * Test
+     */
+    @Test
+    public void testModeWithTies() {
+        
+        // Dictionary
+        String[] dictionary = new String[200];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = String.valueOf(i);
+        }
+        DistributionAggregateFunctionMode function = new DistributionAggregateFunctionMode(false);
+        function.initialize(dictionary, DataType.STRING);
+        
+        // Values with equal frequencies, hash-based and dense
+        Random random = new Random(0xDEADBEEF);
+        for (int i = 0; i < SIZE; i++) {
+            Distribution expected = new Distribution();
+            Distribution actual = new Distribution(dictionary.length);
+            int count = 1 + random.nextInt(20);
+            for (int j = 0; j < count; j++) {
+                int value = random.nextInt(dictionary.length);
+                expected.add(value, 1);
+                actual.add(value, 1);
+            }
+            assertEquals(function.aggregate(expected), function.aggregate(actual));
+        }
+    }
+
+    /**
+     * Compares the content of two distributions
+     * @param expected
+     * @param actual
+     */
+    private void check(Distribution expected, Distribution actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(toMap(expected), toMap(actual));
+    }
+
+    /**
+     * Returns the frequencies of values in the given distribution, ordered by value
+     * @param distribution
+     * @return
+     */
+    private Map<Integer, Integer> toMap(Distribution distribution) {
+        Map<Integer, Integer> result = new TreeMap<>();
+        int[][] packed = distribution.pack();
+        for (int i = 0; i < packed[0].length; i++) {
+            result.put(packed[0][i], packed[1][i]);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXListener;
+import org.deidentifier.arx.ARXProcessStatistics;
+import org.deidentifier.arx.ARXProcessStatistics.EngineStatistics;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.test.AbstractAnonymizationTest.ARXAnonymizationTestCase;
+import org.junit.Test;
+
+/**
+ * Tests the collection of statistics about the internals of the engine
+ *
+ * @author Fabian Prasser
+ */
+public class TestEngineStatistics {
+
+    /**
+     * Test
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testEngineStatistics() throws IOException {
+        
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+        ARXAnonymizationTestCase testCase = new ARXAnonymizationTestCase(config, "./data/adult.csv", 0d, null, false);
+        
+        // Without statistics
+        ARXResult expected = new ARXAnonymizer().anonymize(AbstractAnonymizationTest.getDataObject(testCase), config.clone());
+        assertFalse(expected.getProcessStatistics().isEngineStatisticsAvailable());
+        
+        // With statistics
+        ARXConfiguration enabled = config.clone();
+        enabled.setEngineStatisticsEnabled(true);
+        final EngineStatistics[] reported = new EngineStatistics[1];
+        ARXAnonymizer anonymizer = new ARXAnonymizer();
+        anonymizer.setListener(new ARXListener() {
+            @Override
+            public void progress(double progress) {
+                // Ignore
+            }
+            @Override
+            public void statistics(EngineStatistics statistics) {
+                reported[0] = statistics;
+            }
+        });
+        ARXResult actual = anonymizer.anonymize(AbstractAnonymizationTest.getDataObject(testCase), enabled);
+        
+        // Results must not change
+        assertArrayEquals(expected.getGlobalOptimum().getTransformation(), actual.getGlobalOptimum().getTransformation());
+        
+        // Check statistics
+        ARXProcessStatistics process = actual.getProcessStatistics();
+        assertTrue(process.isEngineStatisticsAvailable());
+        EngineStatistics statistics = process.getEngineStatistics();
+        assertNotNull(reported[0]);
+        assertEquals(reported[0].getNumberOfTransformationsEvaluated(), statistics.getNumberOfTransformationsEvaluated());
+        assertTrue(statistics.getNumberOfTransformationsEvaluated() > 0);
+        assertEquals(statistics.getNumberOfTransformationsEvaluated(),
+                     statistics.getNumberOfTransitionsFullScan() +
+                     statistics.getNumberOfTransitionsRollup() +
+                     statistics.getNumberOfTransitionsSnapshot());
+        assertEquals(statistics.getNumberOfTransitionsSnapshot(), statistics.getNumberOfHistoryHits());
+        assertTrue(statistics.getMaximalNumberOfEquivalenceClasses() > 0);
+        assertTrue(statistics.getNumberOfHistoryStores() >= statistics.getNumberOfHistoryEvictions());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * ARX Data Anonymization Tool
+ * Copyright 2012 - 2024 Fabian Prasser and contributors
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.deidentifier.arx.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXConfiguration.HistoryEvictionPolicy;
+import org.deidentifier.arx.ARXProcessStatistics.EngineStatistics;
+import org.deidentifier.arx.ARXResult;
+import org.deidentifier.arx.criteria.DistinctLDiversity;
+import org.deidentifier.arx.criteria.KAnonymity;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.test.AbstractAnonymizationTest.ARXAnonymizationTestCase;
+import org.junit.Test;
+
+/**
+ * Tests the history with a limited amount of memory and compressed snapshots
+ *
+ * @author Fabian Prasser
+ */
+public class TestHistory {
+
+    /** Memory limit */
+    private static final long LIMIT = 64 * 1024;
+
+    /**
+     * Test
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testCompression() throws IOException {
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+        ARXConfiguration compressed = config.clone();
+        compressed.setHistoryCompressionEnabled(true);
+        test(new ARXAnonymizationTestCase(config, "./data/adult.csv", 0d, null, false), compressed);
+    }
+
+    /**
+     * Test
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testCompressionDistribution() throws IOException {
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new DistinctLDiversity("occupation", 5));
+        ARXConfiguration compressed = config.clone();
+        compressed.setHistoryCompressionEnabled(true);
+        compressed.setHistoryMemoryLimit(LIMIT);
+        test(new ARXAnonymizationTestCase(config, "occupation", "./data/adult.csv", 0d, null, false), compressed);
+    }
+
+    /**
+     * Test
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testCostAware() throws IOException {
+        test(HistoryEvictionPolicy.COST_AWARE);
+    }
+
+    /**
+     * Test
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testLRU() throws IOException {
+        test(HistoryEvictionPolicy.LRU);
+    }
+
+    /**
+     * Test
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testOffHeap() throws IOException {
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+        ARXConfiguration offHeap = config.clone();
+        offHeap.setOffHeapThreshold(LIMIT);
+        test(new ARXAnonymizationTestCase(config, "./data/adult.csv", 0d, null, false), offHeap);
+    }
+
+    /**
+     * Test
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testOffHeapCompressionDistribution() throws IOException {
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new DistinctLDiversity("occupation", 5));
+        ARXConfiguration offHeap = config.clone();
+        offHeap.setHistoryCompressionEnabled(true);
+        offHeap.setHistoryMemoryLimit(LIMIT);
+        offHeap.setOffHeapThreshold(0L);
+        test(new ARXAnonymizationTestCase(config, "occupation", "./data/adult.csv", 0d, null, false), offHeap);
+    }
+
+    /**
+     * Compares results with and without a memory limit for the history
+     * 
+     * @param policy
+     * @throws IOException
+     */
+    private void test(HistoryEvictionPolicy policy) throws IOException {
+        ARXConfiguration config = ARXConfiguration.create(0.04d, Metric.createLossMetric()).addPrivacyModel(new KAnonymity(5));
+        ARXConfiguration limited = config.clone();
+        limited.setHistoryMemoryLimit(LIMIT);
+        limited.setHistoryEvictionPolicy(policy);
+        test(new ARXAnonymizationTestCase(config, "./data/adult.csv", 0d, null, false), limited);
+    }
+
+    /**
+     * Compares the results of the test case with results obtained with the given configuration
+     * 
+     * @param testCase
+     * @param modified
+     * @throws IOException
+     */
+    private void test(ARXAnonymizationTestCase testCase, ARXConfiguration modified) throws IOException {
+        
+        ARXResult expected = new ARXAnonymizer().anonymize(AbstractAnonymizationTest.getDataObject(testCase), testCase.config.clone());
+        modified.setEngineStatisticsEnabled(true);
+        ARXResult actual = new ARXAnonymizer().anonymize(AbstractAnonymizationTest.getDataObject(testCase), modified);
+        
+        // Results must not change
+        assertArrayEquals(expected.getGlobalOptimum().getTransformation(), actual.getGlobalOptimum().getTransformation());
+        assertEquals(expected.getGlobalOptimum().getHighestScore().toString(), actual.getGlobalOptimum().getHighestScore().toString());
+        
+        // Check memory
+        EngineStatistics statistics = actual.getProcessStatistics().getEngineStatistics();
+        assertTrue(statistics.getNumberOfHistoryStores() > 0);
+        assertTrue(statistics.getMaximalHistoryMemory() > 0);
+        assertTrue(statistics.getMaximalHistoryMemory() <= modified.getHistoryMemoryLimit());
+    }
+}
@@ -25,6 +25,8 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -120,6 +122,46 @@ public class TestMicroaggregation extends AbstractTest {
         assertEquals(Integer.valueOf(statistics.getMedianAsString()), 40, 0d);
     }
     
+    /**
+     * Test microaggregation with multiple threads
+     * @throws IOException
+     */
+    @Test
+    public void testMicroaggregationParallel() throws IOException {
+        String[][] expected = getMicroaggregatedOutput(1);
+        String[][] actual = getMicroaggregatedOutput(4);
+        assertTrue(Arrays.deepEquals(expected, actual));
+    }
+    
+    /**
+     * Anonymizes the adult dataset with several microaggregated attributes
+     * @param numThreads
+     * @return
+     * @throws IOException
+     */
+    private String[][] getMicroaggregatedOutput(int numThreads) throws IOException {
+        Data data = getDataObject("./data/adult.csv");
+        
+        Map<String, Double> distribution = new HashMap<String, Double>();
+        for (String occupation : new String[] { "Adm-clerical", "Craft-repair", "Exec-managerial", "Prof-specialty", "Sales" }) {
+            distribution.put(occupation, 0.2d);
+        }
+        data.getDefinition().setAttributeType("age", MicroAggregationFunction.createMedian());
+        data.getDefinition().setDataType("age", DataType.INTEGER);
+        data.getDefinition().setAttributeType("education", MicroAggregationFunction.createMode());
+        data.getDefinition().setAttributeType("workclass", MicroAggregationFunction.createSet());
+        data.getDefinition().setAttributeType("occupation", MicroAggregationFunction.createModeWithDistributionFallback(distribution, 0L));
+        
+        final ARXAnonymizer anonymizer = new ARXAnonymizer();
+        anonymizer.setNumberOfThreads(numThreads);
+        final ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(2));
+        config.setSuppressionLimit(1d);
+        
+        ARXResult result = anonymizer.anonymize(data, config);
+        return resultToArray(result);
+    }
+
     /**
      * Test microaggregation arithmetic mean
      * @throws IOException
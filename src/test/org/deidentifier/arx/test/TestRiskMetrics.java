@@ -17,6 +17,7 @@
 
 package org.deidentifier.arx.test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -24,22 +25,38 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.deidentifier.arx.ARXAnonymizer;
 import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXLattice.ARXNode;
 import org.deidentifier.arx.ARXPopulationModel;
 import org.deidentifier.arx.ARXResult;
 import org.deidentifier.arx.AttributeType.Hierarchy;
 import org.deidentifier.arx.Data;
+import org.deidentifier.arx.Data.DefaultData;
 import org.deidentifier.arx.DataHandle;
 import org.deidentifier.arx.criteria.KAnonymity;
 import org.deidentifier.arx.io.CSVHierarchyInput;
 import org.deidentifier.arx.metric.Metric;
 import org.deidentifier.arx.metric.Metric.AggregateFunction;
+import org.deidentifier.arx.risk.HIPAAIdentifierMatch;
+import org.deidentifier.arx.risk.HIPAAIdentifierMatch.MatchType;
+import org.deidentifier.arx.risk.RiskEstimateBuilder;
 import org.deidentifier.arx.risk.RiskModelPopulationUniqueness;
 import org.deidentifier.arx.risk.RiskModelPopulationUniqueness.PopulationUniquenessModel;
+import org.deidentifier.arx.risk.RiskModelSampleSummary;
+import org.deidentifier.arx.risk.RiskModelSampleSummary.RiskSummary;
 import org.junit.Test;
 
 /**
@@ -200,6 +217,44 @@ public class TestRiskMetrics {
         assertTrue(populationUniqueness + "/" + sampleUniqueness, compareUniqueness(populationUniqueness, sampleUniqueness) == 0);
     }
     
+    /**
+     * Test decision rule using the adult dataset, with estimates being computed concurrently.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Test
+    public void testDecisionRuleParallel() throws IOException {
+        
+        Data data = getDataObject("./data/adult.csv");
+        DataHandle handle = data.getHandle();
+        
+        // All three models are evaluated
+        RiskEstimateBuilder builder = handle.getRiskEstimator(ARXPopulationModel.create(handle.getNumRows(), 0.2d));
+        RiskModelPopulationUniqueness model = builder.getPopulationBasedUniquenessRisk(3);
+        double populationUniqueness = model.getFractionOfUniqueTuplesDankar();
+        assertTrue("Is: " + populationUniqueness, compareUniqueness(populationUniqueness, 0.3577099234829125d) == 0);
+        assertTrue(model.isAvailableEstimatePitman() && model.isAvailableEstimateZayatz());
+        assertEquals(3, builder.getModelCache().getNumEstimates());
+        
+        // Caches are not shared between builders
+        builder = handle.getRiskEstimator(ARXPopulationModel.create(handle.getNumRows(), 0.01d));
+        model = builder.getPopulationBasedUniquenessRisk(2);
+        populationUniqueness = model.getFractionOfUniqueTuplesDankar();
+        assertTrue("Is: " + populationUniqueness, compareUniqueness(populationUniqueness, 0.1446083531167384) == 0);
+        assertEquals(3, builder.getModelCache().getNumEstimates());
+        
+        // Cached estimates
+        model = builder.getPopulationBasedUniquenessRisk();
+        assertTrue("Is: " + model.getFractionOfUniqueTuplesDankar(), model.getFractionOfUniqueTuplesDankar() == populationUniqueness);
+        assertEquals(3, builder.getModelCache().getNumEstimates());
+        
+        // Pitman's model is evaluated again after clearing the cache
+        builder.getModelCache().clear();
+        model = builder.getPopulationBasedUniquenessRisk();
+        assertTrue("Is: " + model.getFractionOfUniqueTuplesDankar(), model.getFractionOfUniqueTuplesDankar() == populationUniqueness);
+        assertEquals(4, builder.getModelCache().getNumEstimates());
+    }
+    
     /**
      * Compares two uniqueness measures with four significant digits
      * @param val1
@@ -210,6 +265,89 @@ public class TestRiskMetrics {
         return Integer.compare((int) (val1 * 10000d), (int) (val2 * 10000d));
     }
     
+    /**
+     * Test the equivalence class model for few and many quasi-identifiers.
+     */
+    @Test
+    public void testEquivalenceClasses() {
+        
+        // Create data with many attributes
+        Random random = new Random(0xDEADBEEF);
+        String[] header = new String[20];
+        for (int column = 0; column < header.length; column++) {
+            header[column] = "attr" + column;
+        }
+        DefaultData data = Data.create();
+        data.add(header);
+        for (int row = 0; row < 1000; row++) {
+            String[] record = new String[header.length];
+            for (int column = 0; column < header.length; column++) {
+                record[column] = String.valueOf(random.nextInt(10));
+            }
+            data.add(record);
+        }
+        DataHandle handle = data.getHandle();
+        
+        // Compare with a grouping of the strings
+        for (int numQIs : new int[] { 1, 5, 20 }) {
+            Set<String> qis = new HashSet<String>();
+            for (int column = 0; column < numQIs; column++) {
+                qis.add(header[column]);
+            }
+            Map<String, Integer> classes = new HashMap<String, Integer>();
+            for (int row = 0; row < handle.getNumRows(); row++) {
+                StringBuilder key = new StringBuilder();
+                for (int column = 0; column < numQIs; column++) {
+                    key.append(handle.getValue(row, column)).append(';');
+                }
+                Integer count = classes.get(key.toString());
+                classes.put(key.toString(), count == null ? 1 : count + 1);
+            }
+            Map<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+            for (int size : classes.values()) {
+                Integer count = expected.get(size);
+                expected.put(size, count == null ? 1 : count + 1);
+            }
+            int[] histogram = handle.getRiskEstimator(ARXPopulationModel.create(handle.getNumRows(), 0.1d), qis)
+                                    .getEquivalenceClassModel()
+                                    .getHistogram();
+            int index = 0;
+            assertTrue("Is: " + histogram.length, histogram.length == expected.size() * 2);
+            for (Entry<Integer, Integer> entry : expected.entrySet()) {
+                assertTrue("Is: " + histogram[index], histogram[index++] == entry.getKey());
+                assertTrue("Is: " + histogram[index], histogram[index++] == entry.getValue());
+            }
+        }
+    }
+    
+    /**
+     * Test matching of HIPAA identifiers using the adult dataset, sequentially and concurrently.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Test
+    public void testHIPAAIdentifiers() throws IOException {
+        
+        Data data = getDataObject("./data/adult.csv");
+        HIPAAIdentifierMatch[] expected = data.getHandle().getRiskEstimator().getHIPAAIdentifiers(0.5d);
+        HIPAAIdentifierMatch[] actual = data.getHandle().getRiskEstimator().getHIPAAIdentifiers(0.5d, 4);
+        
+        // Compare
+        assertEquals(expected.length, actual.length);
+        boolean age = false;
+        for (int index = 0; index < expected.length; index++) {
+            assertEquals(expected[index].getColumn(), actual[index].getColumn());
+            assertEquals(expected[index].getIdentifier(), actual[index].getIdentifier());
+            assertEquals(expected[index].getInstance(), actual[index].getInstance());
+            assertEquals(expected[index].getMatchType(), actual[index].getMatchType());
+            assertEquals(expected[index].getValue(), actual[index].getValue());
+            assertEquals(expected[index].getConfidence(), actual[index].getConfidence());
+            age |= actual[index].getColumn().equals("age") && actual[index].getInstance().equals("Age") &&
+                   actual[index].getMatchType() == MatchType.ATTRIBUTE_VALUE;
+        }
+        assertTrue(age);
+    }
+    
     /**
      * Test highest individual risk using the test dataset.
      */
@@ -239,6 +377,49 @@ public class TestRiskMetrics {
         assertTrue(getAnonymizedData(data).getRiskEstimator(ARXPopulationModel.create(data.getHandle().getNumRows(), 0.1d)).getSampleBasedReidentificationRisk().getHighestRisk() == 0.5d);
     }
     
+    /**
+     * Test batch computation of risk summaries for transformations in the lattice using the adult dataset.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Test
+    public void testSampleBasedRiskSummaries() throws IOException {
+        
+        Data data = getDataObject("./data/adult.csv");
+        ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(5));
+        config.setSuppressionLimit(0.05d);
+        ARXResult result = new ARXAnonymizer().anonymize(data, config);
+        
+        // Select transformations
+        List<ARXNode> nodes = new ArrayList<ARXNode>();
+        int index = 0;
+        for (ARXNode[] level : result.getLattice().getLevels()) {
+            for (ARXNode node : level) {
+                if (index++ % 3 == 0) {
+                    nodes.add(node);
+                }
+            }
+        }
+        
+        // Compare to risks of output data
+        List<RiskModelSampleSummary> summaries = result.getSampleBasedRiskSummaries(nodes, 0.1d);
+        assertEquals(nodes.size(), summaries.size());
+        for (index = 0; index < nodes.size(); index++) {
+            DataHandle handle = result.getOutput(nodes.get(index), false);
+            RiskModelSampleSummary expected = handle.getRiskEstimator().getSampleBasedRiskSummary(0.1d);
+            RiskModelSampleSummary actual = summaries.get(index);
+            for (RiskSummary[] risks : new RiskSummary[][] { { expected.getProsecutorRisk(), actual.getProsecutorRisk() },
+                                                             { expected.getJournalistRisk(), actual.getJournalistRisk() } }) {
+                assertEquals(risks[0].getRecordsAtRisk(), risks[1].getRecordsAtRisk(), 0d);
+                assertEquals(risks[0].getHighestRisk(), risks[1].getHighestRisk(), 0d);
+                assertEquals(risks[0].getLowestRisk(), risks[1].getLowestRisk(), 0d);
+                assertEquals(risks[0].getSuccessRate(), risks[1].getSuccessRate(), 0d);
+            }
+            assertEquals(expected.getMarketerRisk().getSuccessRate(), actual.getMarketerRisk().getSuccessRate(), 0d);
+        }
+    }
+    
     /**
      * 2-Anonymizes the given data. No suppression allowed.
      *
@@ -17,8 +17,18 @@
 
 package org.deidentifier.arx.test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deidentifier.arx.ARXAnonymizer;
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.ARXResult;
 import org.deidentifier.arx.AttributeType;
 import org.deidentifier.arx.Data;
+import org.deidentifier.arx.DataHandle;
+import org.deidentifier.arx.criteria.KAnonymity;
 import org.deidentifier.arx.risk.RiskEstimateBuilder;
 import org.deidentifier.arx.risk.RiskModelAttributes;
 import org.junit.Test;
@@ -61,6 +71,101 @@ public class TestRiskQuasiIdentifiers {
         }
     }
 
+    /**
+     * Compares the results for input and output data with values calculated by
+     * building a separate risk estimator for each combination of attributes
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testAgainstReference() throws IOException {
+        
+        // Define data
+        Data data = Data.create("./data/adult.csv", StandardCharsets.UTF_8, ';');
+        for (String attribute : new String[] { "age", "sex", "race", "marital-status", "education", "workclass", "occupation" }) {
+            data.getDefinition().setAttributeType(attribute, AttributeType.Hierarchy.create("./data/adult_hierarchy_" + attribute + ".csv", StandardCharsets.UTF_8, ';'));
+        }
+        
+        // Anonymize with suppression
+        ARXConfiguration config = ARXConfiguration.create();
+        config.addPrivacyModel(new KAnonymity(5));
+        config.setSuppressionLimit(0.1d);
+        ARXResult result = new ARXAnonymizer().anonymize(data, config);
+        DataHandle output = result.getOutput(false);
+        
+        // Calculated with the previous implementation
+        ResultSet[] expectedInput = new ResultSet[]{
+                new ResultSet("[sex]", 6.630860022544923E-5, 0.43828434814896455),
+                new ResultSet("[occupation]", 4.6416020157814467E-4, 0.8946220036154093),
+                new ResultSet("[age]", 0.0023871096081161725, 0.9781172561484958),
+                new ResultSet("[sex, race]", 3.315430011272462E-4, 0.5689230170166433),
+                new ResultSet("[sex, age]", 0.004707910616006896, 0.9875711178204718),
+                new ResultSet("[age, education, occupation]", 0.16723028976858298, 0.9993357202186957),
+                new ResultSet("[sex, age, race, marital-status, education, workclass, occupation]", 0.5726410715469796, 0.9998712873144525),
+        };
+        ResultSet[] expectedOutput = new ResultSet[]{
+                new ResultSet("[sex]", 7.211885186787827E-5, 0.42713085044648336),
+                new ResultSet("[occupation]", 1.0817827780181739E-4, 0.6641061444486795),
+                new ResultSet("[age]", 1.8029712966969566E-4, 0.5814375250414124),
+                new ResultSet("[sex, race]", 3.605942593393913E-4, 0.527896076950313),
+                new ResultSet("[sex, age]", 3.245348334054522E-4, 0.7586457333656584),
+                new ResultSet("[age, education, occupation]", 0.0011899610558199914, 0.9266022588703158),
+                new ResultSet("[sex, age, race, marital-status, education, workclass, occupation]", 0.023005913745853167, 0.9896220319396921),
+        };
+        
+        // Check
+        RiskEstimateBuilder builder = data.getHandle().getRiskEstimator(null);
+        check(expectedInput, builder.getAttributeRisks().getAttributeRisks());
+        check(expectedInput, builder.getAttributeRisks(7, 4).getAttributeRisks());
+        builder = output.getRiskEstimator(null);
+        check(expectedOutput, builder.getAttributeRisks().getAttributeRisks());
+        check(expectedOutput, builder.getAttributeRisks(7, 4).getAttributeRisks());
+    }
+
+    /**
+     * Compares the results of sequential, parallel and size-bounded analyses
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void testParallelAndBounded() throws IOException {
+        
+        // Define data
+        Data data = Data.create("./data/adult.csv", StandardCharsets.UTF_8, ';');
+        for (String attribute : new String[] { "age", "sex", "race", "marital-status", "education", "workclass", "occupation" }) {
+            data.getDefinition().setAttributeType(attribute, AttributeType.QUASI_IDENTIFYING_ATTRIBUTE);
+        }
+        
+        // Perform calculations
+        RiskEstimateBuilder builder = data.getHandle().getRiskEstimator(null);
+        RiskModelAttributes.QuasiIdentifierRisk[] expected = builder.getAttributeRisks().getAttributeRisks();
+        RiskModelAttributes.QuasiIdentifierRisk[] parallel = builder.getAttributeRisks(7, 4).getAttributeRisks();
+        List<RiskModelAttributes.QuasiIdentifierRisk> bounded = new ArrayList<RiskModelAttributes.QuasiIdentifierRisk>();
+        for (RiskModelAttributes.QuasiIdentifierRisk risk : builder.getAttributeRisks(3, 2).getAttributeRisks()) {
+            bounded.add(risk);
+        }
+        
+        // Check
+        assertTrue("Number of potential quasi-identifiers expected: 127; got: " + expected.length, expected.length == 127);
+        assertTrue("Number of potential quasi-identifiers expected: 127; got: " + parallel.length, parallel.length == 127);
+        assertTrue("Number of potential quasi-identifiers expected: 63; got: " + bounded.size(), bounded.size() == 63);
+        int index = 0;
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(expected[i].getIdentifier().equals(parallel[i].getIdentifier()));
+            assertTrue(expected[i].getDistinction() == parallel[i].getDistinction());
+            assertTrue(expected[i].getSeparation() == parallel[i].getSeparation());
+            if (expected[i].getIdentifier().size() <= 3) {
+                assertTrue(expected[i].getIdentifier().equals(bounded.get(index).getIdentifier()));
+                assertTrue(expected[i].getDistinction() == bounded.get(index).getDistinction());
+                assertTrue(expected[i].getSeparation() == bounded.get(index).getSeparation());
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Compares the results with values calculated by hand
+     */
     @Test
     public void testWithDefinedDataSet() {
         
@@ -104,4 +209,24 @@ public class TestRiskQuasiIdentifiers {
             assertTrue("Separation expected: " + expectedResults[i].separation + "; got: " + risks[i].getSeparation(), expectedResults[i].separation == risks[i].getSeparation());
         }
     }
+
+    /**
+     * Checks whether the given risks contain the expected results
+     * 
+     * @param expectedResults
+     * @param risks
+     */
+    private void check(ResultSet[] expectedResults, RiskModelAttributes.QuasiIdentifierRisk[] risks) {
+        for (ResultSet expected : expectedResults) {
+            RiskModelAttributes.QuasiIdentifierRisk risk = null;
+            for (RiskModelAttributes.QuasiIdentifierRisk candidate : risks) {
+                if (expected.identifier.equals(candidate.getIdentifier().toString())) {
+                    risk = candidate;
+                }
+            }
+            assertTrue("Identifier expected: " + expected.identifier, risk != null);
+            assertTrue("Distinction expected: " + expected.distinction + "; got: " + risk.getDistinction(), expected.distinction == risk.getDistinction());
+            assertTrue("Separation expected: " + expected.separation + "; got: " + risk.getSeparation(), expected.separation == risk.getSeparation());
+        }
+    }
 }